@@ -0,0 +1,45 @@
+package com.example.invoicetracker.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Multipart limits for POST /invoices/batch. The servlet container applies
+ * multipart limits per servlet, so the batch route gets its own dispatcher
+ * (sharing the application context, controllers and security filters) with
+ * room for ZIP archives and many files. Every other route keeps the
+ * spring.servlet.multipart.* limits.
+ */
+@Slf4j
+@Configuration
+public class BatchUploadServletConfig {
+
+    @Value("${invoice.batch.max-file-size:200MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(200);
+
+    @Value("${invoice.batch.max-request-size:500MB}")
+    private DataSize maxRequestSize = DataSize.ofMegabytes(500);
+
+    @Value("${spring.servlet.multipart.file-size-threshold:2KB}")
+    private DataSize fileSizeThreshold = DataSize.ofKilobytes(2);
+
+    @Bean
+    public ServletRegistrationBean<DispatcherServlet> batchUploadServlet(WebApplicationContext webApplicationContext) {
+        ServletRegistrationBean<DispatcherServlet> registration =
+                new ServletRegistrationBean<>(new DispatcherServlet(webApplicationContext), "/invoices/batch");
+        registration.setName("batchUploadServlet");
+        registration.setLoadOnStartup(1);
+        registration.setMultipartConfig(new MultipartConfigElement(null,
+                maxFileSize.toBytes(), maxRequestSize.toBytes(), (int) fileSizeThreshold.toBytes()));
+
+        log.info("Batch upload servlet - Max file size: {}, Max request size: {}", maxFileSize, maxRequestSize);
+        return registration;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.invoicetracker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Threads that load chart data and render chart PNGs. Rendering is CPU bound,
+ * so the pool stays small and request threads only wait on it asynchronously;
+ * beyond the queue, new renders are refused instead of piling up.
+ */
+@Slf4j
+@Configuration
+public class ChartRenderConfig {
+
+    @Value("${invoice.chart.render.pool-size:2}")
+    private int poolSize = 2;
+
+    @Value("${invoice.chart.render.queue-capacity:20}")
+    private int queueCapacity = 20;
+
+    @Bean(name = "chartRenderExecutor")
+    public ThreadPoolTaskExecutor chartRenderExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chart-render-");
+        executor.initialize();
+
+        log.info("Chart render executor - Threads: {}, Queue: {}", poolSize, queueCapacity);
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.invoicetracker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Threads that relay streamed chat answers to SSE clients. Each stream holds
+ * a thread for its whole duration, so the pool is sized for concurrent chats;
+ * beyond the queue, new streams are refused and the controller answers 503.
+ */
+@Slf4j
+@Configuration
+public class ChatStreamConfig {
+
+    @Value("${ai.chat.stream.pool-size:8}")
+    private int poolSize = 8;
+
+    @Value("${ai.chat.stream.queue-capacity:50}")
+    private int queueCapacity = 50;
+
+    @Bean(name = "chatStreamExecutor")
+    public ThreadPoolTaskExecutor chatStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-stream-");
+        // Never run a relay on the request thread: it would block for the whole answer
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        log.info("Chat stream executor - Threads: {}, Queue: {}", poolSize, queueCapacity);
+        return executor;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.invoicetracker.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Makes MySQL full-text search available to JPQL as
+ * {@code fulltext_match(column, :query) > 0}, where the query is in boolean
+ * mode. Registered through META-INF/services. Other databases get a plain
+ * {@code match_words(column, query)} call that they must provide themselves;
+ * the H2 tests register one as an alias.
+ */
+public class FullTextFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        String pattern = functionContributions.getDialect() instanceof MySQLDialect
+                ? "match(?1) against(?2 in boolean mode)"
+                : "match_words(?1, ?2)";
+        functionContributions.getFunctionRegistry().registerPattern("fulltext_match", pattern,
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry()
+                        .resolve(StandardBasicTypes.DOUBLE));
+    }
+}
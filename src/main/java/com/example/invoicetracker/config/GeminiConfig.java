@@ -1,7 +1,9 @@
 package com.example.invoicetracker.config;
 
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -23,6 +25,32 @@ public class GeminiConfig {
     @Value("${google.ai.base-url:https://generativelanguage.googleapis.com/v1beta}")
     private String baseUrl;
 
+    // Built once from the properties above; every Gemini request reuses them
+    private String apiEndpoint;
+    private HttpUrl requestUrl;
+    private HttpUrl streamRequestUrl;
+
+    @PostConstruct
+    void init() {
+        String base = baseUrl.strip();
+        if (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        apiEndpoint = String.format("%s/models/%s:generateContent", base, modelName);
+        requestUrl = HttpUrl.get(apiEndpoint).newBuilder()
+                .addQueryParameter("key", apiKey)
+                .build();
+        streamRequestUrl = HttpUrl.get(String.format("%s/models/%s:streamGenerateContent", base, modelName))
+                .newBuilder()
+                .addQueryParameter("alt", "sse")
+                .addQueryParameter("key", apiKey)
+                .build();
+
+        log.info("🔧 Gemini API Endpoint: {}", apiEndpoint);
+        log.info("🔧 API Key configured: {}", apiKey != null && !apiKey.isEmpty());
+        log.info("🔧 Model: {}", modelName);
+    }
+
     @Bean
     public OkHttpClient okHttpClient() {
         return new OkHttpClient.Builder()
@@ -31,12 +59,4 @@ public class GeminiConfig {
                 .writeTimeout(Duration.ofSeconds(60))
                 .build();
     }
-
-    public String getApiEndpoint() {
-        String endpoint = String.format("%s/models/%s:generateContent", baseUrl, modelName);
-        log.info("🔧 Gemini API Endpoint: {}", endpoint);
-        log.info("🔧 API Key configured: {}", apiKey != null && !apiKey.isEmpty());
-        log.info("🔧 Model: {}", modelName);
-        return endpoint;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.example.invoicetracker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pool for asynchronous invoice ingestion jobs. The queue itself lives
+ * in the ingestion_job table; the worker only hands this pool as many jobs as
+ * it has threads, so no in-memory backlog is lost on restart.
+ */
+@Slf4j
+@Configuration
+@EnableScheduling
+public class IngestionConfig {
+
+    @Value("${invoice.ingestion.worker-threads:4}")
+    private int workerThreads;
+
+    @Bean(name = "ingestionWorkerExecutor")
+    public ThreadPoolTaskExecutor ingestionWorkerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(workerThreads);
+        executor.setThreadNamePrefix("ingestion-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+
+        log.info("Ingestion worker executor - Threads: {}", workerThreads);
+        return executor;
+    }
+}
@@ -1,14 +1,102 @@
 package com.example.invoicetracker.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * HTTP clients for outbound REST calls.
+ * The duplicate-check service gets its own pooled client: connections are
+ * kept alive and reused per route, idle ones are evicted, and every phase
+ * (pool lease, connect, response) is bounded so a slow service cannot hang
+ * upload threads. Pool usage is published as httpcomponents.httpclient.pool.*
+ * metrics tagged httpclient=duplicate-check.
+ */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
-    
+
+    @Value("${duplicate.check.timeout:5000}")
+    private long duplicateCheckTimeoutMs;
+
+    @Value("${duplicate.check.connect-timeout-ms:2000}")
+    private long duplicateCheckConnectTimeoutMs;
+
+    @Value("${duplicate.check.pool.max-total:50}")
+    private int duplicateCheckMaxTotal;
+
+    @Value("${duplicate.check.pool.max-per-route:20}")
+    private int duplicateCheckMaxPerRoute;
+
+    @Value("${duplicate.check.pool.acquire-timeout-ms:1000}")
+    private long duplicateCheckAcquireTimeoutMs;
+
+    @Value("${duplicate.check.pool.idle-eviction-ms:30000}")
+    private long duplicateCheckIdleEvictionMs;
+
+    @Value("${duplicate.check.pool.time-to-live-ms:300000}")
+    private long duplicateCheckTimeToLiveMs;
+
     @Bean
+    @Primary
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
-}
\ No newline at end of file
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager duplicateCheckConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(duplicateCheckMaxTotal)
+                .setMaxConnPerRoute(duplicateCheckMaxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(duplicateCheckConnectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(duplicateCheckTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMilliseconds(duplicateCheckTimeToLiveMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "duplicate-check")
+                .bindTo(meterRegistry);
+
+        log.info("Duplicate-check HTTP pool - Max total: {}, Max per route: {}, Timeout: {}ms",
+                duplicateCheckMaxTotal, duplicateCheckMaxPerRoute, duplicateCheckTimeoutMs);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient duplicateCheckHttpClient(
+            @Qualifier("duplicateCheckConnectionManager") PoolingHttpClientConnectionManager connectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(duplicateCheckAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(duplicateCheckTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(duplicateCheckIdleEvictionMs))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    public RestTemplate duplicateCheckRestTemplate(
+            @Qualifier("duplicateCheckHttpClient") CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+}
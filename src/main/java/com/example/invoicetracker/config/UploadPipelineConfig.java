@@ -0,0 +1,66 @@
+package com.example.invoicetracker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bounded executor for the remote stages of the invoice upload pipeline
+ * (AI extraction running alongside the duplicate check).
+ * When the queue is full the caller runs the stage itself, so uploads slow
+ * down instead of failing.
+ * Batch uploads get their own pool so a large batch cannot starve the
+ * extraction stages of regular uploads.
+ */
+@Slf4j
+@Configuration
+public class UploadPipelineConfig {
+
+    @Value("${invoice.pipeline.pool-size:8}")
+    private int poolSize;
+
+    @Value("${invoice.pipeline.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${invoice.batch.parallelism:4}")
+    private int batchParallelism;
+
+    @Value("${invoice.batch.queue-capacity:1000}")
+    private int batchQueueCapacity;
+
+    @Bean(name = "invoicePipelineExecutor")
+    public ThreadPoolTaskExecutor invoicePipelineExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("invoice-pipeline-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("Invoice pipeline executor - Pool size: {}, Queue capacity: {}", poolSize, queueCapacity);
+        return executor;
+    }
+
+    @Bean(name = "invoiceBatchExecutor")
+    public ThreadPoolTaskExecutor invoiceBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchParallelism);
+        executor.setMaxPoolSize(batchParallelism);
+        executor.setQueueCapacity(batchQueueCapacity);
+        executor.setThreadNamePrefix("invoice-batch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("Invoice batch executor - Parallelism: {}, Queue capacity: {}", batchParallelism, batchQueueCapacity);
+        return executor;
+    }
+}
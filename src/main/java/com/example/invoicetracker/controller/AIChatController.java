@@ -1,16 +1,30 @@
 package com.example.invoicetracker.controller;
 
 import com.example.invoicetracker.controller.util.AuthHelper;
+import com.example.invoicetracker.service.ai.GeminiService;
 import com.example.invoicetracker.service.ai.InvoiceChatbotService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 
@@ -25,6 +39,12 @@ public class AIChatController {
     private final InvoiceChatbotService chatbotService;
     private final AuthHelper authHelper;
 
+    @Qualifier("chatStreamExecutor")
+    private final Executor chatStreamExecutor;
+
+    @Value("${ai.chat.stream.timeout-ms:120000}")
+    private long streamTimeoutMs = 120000;
+
     @PostMapping
     @Operation(
         summary = "Chat with AI assistant",
@@ -35,9 +55,8 @@ public class AIChatController {
             Authentication authentication) {
         
         String query = request.get("query");
-        if (query == null || query.trim().isEmpty()) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Query is required"));
+        if (isBlank(query)) {
+            return queryRequired();
         }
         
         Map<String, String> userInfo = authHelper.getUserInfo(authentication);
@@ -53,6 +72,96 @@ public class AIChatController {
         ));
     }
     
+    @PostMapping(value = "/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Operation(
+        summary = "Chat with AI assistant (streamed)",
+        description = "Same as /ai/chat, but the answer is pushed as Server-Sent Events: "
+                + "a 'token' event per chunk of text, then 'done' (or 'error')"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Answer stream", content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Query is missing or blank"),
+            @ApiResponse(responseCode = "503", description = "Too many chats streaming, retry shortly")
+    })
+    public ResponseEntity<?> streamChat(
+            @RequestBody Map<String, String> request,
+            Authentication authentication) {
+
+        String query = request.get("query");
+        if (isBlank(query)) {
+            return queryRequired();
+        }
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        GeminiService.Cancellation cancellation = new GeminiService.Cancellation();
+        // A disconnect surfaces as an error or timeout; either way stop Gemini
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(e -> cancellation.cancel());
+
+        try {
+            chatStreamExecutor.execute(() -> relay(emitter, cancellation, query, userInfo));
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Chat stream rejected - all relay threads busy");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", "Too many chats in progress, please try again shortly"));
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static boolean isBlank(String query) {
+        return query == null || query.trim().isEmpty();
+    }
+
+    private static ResponseEntity<Map<String, String>> queryRequired() {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "Query is required"));
+    }
+
+    private void relay(SseEmitter emitter, GeminiService.Cancellation cancellation,
+                       String query, Map<String, String> userInfo) {
+        try {
+            chatbotService.streamChat(query, userInfo.get("username"), userInfo.get("role"),
+                    text -> send(emitter, cancellation, SseEmitter.event().name("token").data(text)),
+                    cancellation);
+            if (!cancellation.isCancelled()) {
+                send(emitter, cancellation, SseEmitter.event().name("done").data(""));
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                log.debug("Chat stream cancelled by client");
+                return;
+            }
+            log.error("Error streaming chat: {}", e.getMessage(), e);
+            sendError(emitter, "Sorry, I encountered an error processing your request: " + e.getMessage());
+        }
+    }
+
+    private void send(SseEmitter emitter, GeminiService.Cancellation cancellation,
+                      SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException e) {
+            // The client went away: stop Gemini and unwind the read loop
+            cancellation.cancel();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
     @GetMapping("/debug")
     @Operation(
         summary = "Debug - View raw invoice data",
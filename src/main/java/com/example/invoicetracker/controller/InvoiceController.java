@@ -2,14 +2,22 @@ package com.example.invoicetracker.controller;
 
 import com.example.invoicetracker.controller.util.AuthHelper;
 import com.example.invoicetracker.dto.*;
+import com.example.invoicetracker.service.InvoiceBatchService;
 import com.example.invoicetracker.service.InvoiceService;
 import com.example.invoicetracker.service.InvoiceUploadRequestMapper;
+import com.example.invoicetracker.service.chart.ChartType;
+import com.example.invoicetracker.service.chart.InvoiceChartService;
+import com.example.invoicetracker.service.ingestion.IngestionJobService;
+import com.example.invoicetracker.service.stats.InvoiceAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,12 +25,15 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.example.invoicetracker.exception.DuplicateInvoiceException;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -44,11 +55,24 @@ public class InvoiceController {
     private final InvoiceService invoiceService;
     private final InvoiceUploadRequestMapper requestMapper;
     private final AuthHelper authHelper;
+    private final IngestionJobService ingestionJobService;
+    private final InvoiceBatchService invoiceBatchService;
+    private final InvoiceAnalyticsService invoiceAnalyticsService;
+    private final InvoiceChartService invoiceChartService;
 
     private Pageable createPageable(int page, int size, String sortBy, String direction) {
         return PageRequest.of(page, size, Sort.by(Sort.Direction.fromString(direction), sortBy));
     }
 
+    private InvoiceSearchRequest createCursorRequest(String cursor, int size, String direction, boolean includeTotal) {
+        InvoiceSearchRequest request = new InvoiceSearchRequest();
+        request.setCursor(cursor);
+        request.setSize(size);
+        request.setDirection(direction);
+        request.setIncludeTotal(includeTotal);
+        return request;
+    }
+
     // ==================== CREATE / UPLOAD ====================
 
     // Create invoice with JSON (for Web Form)
@@ -117,6 +141,84 @@ public class InvoiceController {
         }
     }
 
+    // Queue invoice upload for background processing
+
+    @PreAuthorize("hasRole('USER') or hasRole('SUPERUSER')")
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, params = "async=true")
+    @Operation(summary = "Queue invoice upload", description = "Stores the file and creates the invoice in the background; poll /invoices/jobs/{id} for the result")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Upload queued", content = @Content(schema = @Schema(implementation = IngestionJobResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<IngestionJobResponse> uploadInvoiceAsync(
+            @Validated @ModelAttribute InvoiceUploadRequest uploadRequest,
+            @Parameter(hidden = true) Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        log.info("Queueing invoice upload for user: {}, role: {}",
+                userInfo.get("username"), userInfo.get("role"));
+
+        InvoiceRequest request = requestMapper.prepareInvoiceUploadRequest(uploadRequest);
+
+        IngestionJobResponse response = ingestionJobService.submit(
+                request,
+                userInfo.get("username"),
+                userInfo.get("role"));
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    // Upload many invoice files (or ZIP archives) in one request
+
+    @PreAuthorize("hasRole('USER') or hasRole('SUPERUSER')")
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Batch upload invoices", description = "Creates one invoice per file; ZIP archives are expanded. Returns a per-file report")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed", content = @Content(schema = @Schema(implementation = BatchUploadResponse.class))),
+            @ApiResponse(responseCode = "400", description = "No files, too many files or invalid date"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<BatchUploadResponse> uploadInvoiceBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @Parameter(description = "Invoice date applied to every file (YYYY-MM-DD), defaults to today") @RequestParam(required = false) String invoiceDate,
+            @Parameter(description = "User ID (for SUPERUSER)") @RequestParam(required = false) String userId,
+            @Parameter(hidden = true) Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        log.info("Batch upload of {} files for user: {}, role: {}",
+                files.size(), userInfo.get("username"), userInfo.get("role"));
+
+        BatchUploadResponse response = invoiceBatchService.uploadBatch(
+                files,
+                invoiceDate,
+                userId,
+                userInfo.get("username"),
+                userInfo.get("role"));
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Get ingestion job status", description = "Returns the status of a queued invoice upload")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Job found", content = @Content(schema = @Schema(implementation = IngestionJobResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Job not found"),
+            @ApiResponse(responseCode = "403", description = "Access denied")
+    })
+    public ResponseEntity<IngestionJobResponse> getIngestionJob(
+            @PathVariable Long id,
+            @Parameter(hidden = true) Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+
+        return ResponseEntity.ok(ingestionJobService.getJob(
+                id,
+                userInfo.get("username"),
+                userInfo.get("role")));
+    }
+
     // ==================== UPDATE ====================
 
     // Update invoice with JSON
@@ -197,8 +299,8 @@ public class InvoiceController {
     // ==================== DOWNLOAD ====================
     @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
     @GetMapping("/{id}/download")
-    @Operation(summary = "Download invoice file", description = "Downloads the invoice file (PDF/Image)")
-    public ResponseEntity<byte[]> downloadInvoice(@PathVariable Long id, Authentication authentication) {
+    @Operation(summary = "Download invoice file", description = "Streams the invoice file (PDF/Image); supports Range and If-None-Match")
+    public ResponseEntity<Resource> downloadInvoice(@PathVariable Long id, Authentication authentication) {
         Map<String, String> userInfo = authHelper.getUserInfo(authentication);
         return invoiceService.downloadInvoiceFile(id, userInfo.get("username"), userInfo.get("role"));
     }
@@ -237,6 +339,19 @@ public class InvoiceController {
         return ResponseEntity.ok(invoiceService.getAllInvoices(pageable));
     }
 
+    @PreAuthorize("hasRole('SUPERUSER') or hasRole('AUDITOR')")
+    @GetMapping(value = "/all", params = "cursor")
+    @Operation(summary = "Get all invoices by cursor", description = "Keyset pages by createdAt; pass an empty cursor for the first page, then nextCursor (SUPERUSER/AUDITOR only)")
+    public ResponseEntity<InvoiceCursorPageResponse> getAllInvoicesByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "DESC") String direction,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        return ResponseEntity.ok(invoiceService.getAllInvoicesByCursor(
+                createCursorRequest(cursor, size, direction, includeTotal)));
+    }
+
     @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
     @GetMapping
     @Operation(summary = "Get user invoices", description = "Retrieves invoices for the current user")
@@ -252,6 +367,21 @@ public class InvoiceController {
         return ResponseEntity.ok(invoiceService.getUserInvoices(userInfo.get("username"), pageable));
     }
 
+    @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
+    @GetMapping(params = "cursor")
+    @Operation(summary = "Get user invoices by cursor", description = "Keyset pages by createdAt; pass an empty cursor for the first page, then nextCursor")
+    public ResponseEntity<InvoiceCursorPageResponse> getUserInvoicesByCursor(
+            Authentication authentication,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "DESC") String direction,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        return ResponseEntity.ok(invoiceService.getUserInvoicesByCursor(userInfo.get("username"),
+                createCursorRequest(cursor, size, direction, includeTotal)));
+    }
+
     // ==================== SEARCH ====================
     @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
     @GetMapping("/search")
@@ -268,6 +398,20 @@ public class InvoiceController {
         return ResponseEntity.ok(result);
     }
 
+    @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
+    @GetMapping(value = "/search", params = "cursor")
+    @Operation(summary = "Search invoices by cursor", description = "Search with keyset pages by createdAt; pass an empty cursor for the first page, then nextCursor")
+    public ResponseEntity<InvoiceCursorPageResponse> searchInvoicesByCursor(
+            @ModelAttribute InvoiceSearchRequest searchRequest,
+            Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        return ResponseEntity.ok(invoiceService.searchInvoicesByCursor(
+                searchRequest,
+                userInfo.get("username"),
+                userInfo.get("role")));
+    }
+
     // ==================== STATS ====================
     @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
     @GetMapping("/stats")
@@ -280,6 +424,53 @@ public class InvoiceController {
         return ResponseEntity.ok(stats);
     }
 
+    @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
+    @GetMapping("/analytics")
+    @Operation(summary = "Get invoice analytics", description = "Invoice count and amount per day, week or month of invoice date, with empty buckets as zeros")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Time series", content = @Content(schema = @Schema(implementation = InvoiceAnalyticsResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid granularity or range"),
+            @ApiResponse(responseCode = "404", description = "Uploader not found")
+    })
+    public ResponseEntity<InvoiceAnalyticsResponse> getInvoiceAnalytics(
+            @ModelAttribute InvoiceAnalyticsRequest analyticsRequest,
+            Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        return ResponseEntity.ok(invoiceAnalyticsService.getAnalytics(
+                analyticsRequest,
+                userInfo.get("username"),
+                userInfo.get("role")));
+    }
+
+    @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
+    @GetMapping("/charts/{type}.png")
+    @Operation(summary = "Get invoice chart", description = "PNG chart: monthly-totals, status-mix or user-volume (SUPERUSER/AUDITOR); supports If-None-Match")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Chart image", content = @Content(mediaType = MediaType.IMAGE_PNG_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Unknown chart type"),
+            @ApiResponse(responseCode = "503", description = "Too many charts rendering, retry shortly")
+    })
+    public CompletableFuture<ResponseEntity<byte[]>> getInvoiceChart(
+            @PathVariable String type,
+            Authentication authentication) {
+
+        Map<String, String> userInfo = authHelper.getUserInfo(authentication);
+        try {
+            return invoiceChartService.getChart(ChartType.fromPath(type), userInfo.get("username"), userInfo.get("role"))
+                    .thenApply(image -> ResponseEntity.ok()
+                            .contentType(MediaType.IMAGE_PNG)
+                            .eTag(image.etag())
+                            .cacheControl(CacheControl.noCache().cachePrivate())
+                            .body(image.png()));
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Chart render rejected - all render threads busy");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+    }
+
     // ==================== AUDIT LOGS ====================
     @PreAuthorize("hasAnyRole('USER','SUPERUSER','AUDITOR')")
     @GetMapping("/{id}/audit-logs")
@@ -0,0 +1,61 @@
+package com.example.invoicetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Per-file report for a batch invoice upload")
+public class BatchUploadResponse {
+    @Schema(description = "Number of files found in the request (ZIP entries included)", example = "300")
+    private int totalFiles;
+
+    @Schema(description = "Invoices created", example = "291")
+    private int created;
+
+    @Schema(description = "Files rejected as duplicates", example = "4")
+    private int duplicates;
+
+    @Schema(description = "Files that failed validation or processing", example = "5")
+    private int failed;
+
+    @Schema(description = "Processing time in milliseconds", example = "84210")
+    private long durationMs;
+
+    @Schema(description = "Result for each file, in upload order")
+    private List<FileResult> results;
+
+    public enum FileStatus {
+        CREATED, DUPLICATE, FAILED
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Result for a single file in a batch")
+    public static class FileResult {
+        @Schema(description = "File name (ZIP entries as archive.zip!/entry.pdf)", example = "march/inv_001.pdf")
+        private String fileName;
+
+        @Schema(description = "Outcome")
+        private FileStatus status;
+
+        @Schema(description = "Created invoice ID", example = "1001")
+        private Long invoiceId;
+
+        @Schema(description = "Total amount of the created invoice", example = "1500.75")
+        private Double totalAmount;
+
+        @Schema(description = "Reason when DUPLICATE or FAILED")
+        private String errorMessage;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.invoicetracker.dto;
+
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Data
+@Builder
+@Schema(description = "Asynchronous invoice ingestion job")
+public class IngestionJobResponse {
+    @Schema(description = "Job ID", example = "42")
+    private Long jobId;
+
+    @Schema(description = "Job status")
+    private IngestionJobStatus status;
+
+    @Schema(description = "Original file name", example = "january_invoice.pdf")
+    private String originalFileName;
+
+    @Schema(description = "Processing attempts so far", example = "1")
+    private int attempts;
+
+    @Schema(description = "Maximum processing attempts", example = "5")
+    private int maxAttempts;
+
+    @Schema(description = "Created invoice ID (when COMPLETED)", example = "1001")
+    private Long invoiceId;
+
+    @Schema(description = "Last error (when retrying or FAILED)")
+    private String errorMessage;
+
+    @Schema(description = "Next scheduled attempt (when QUEUED)")
+    private LocalDateTime nextAttemptAt;
+
+    @Schema(description = "Creation timestamp")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Last update timestamp")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,33 @@
+package com.example.invoicetracker.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Data
+@Schema(description = "Invoice analytics criteria")
+public class InvoiceAnalyticsRequest {
+    @Schema(description = "Bucket size: DAY, WEEK (starting Monday) or MONTH", example = "MONTH")
+    private String granularity = "MONTH";
+
+    @Schema(description = "First invoice date, widened to the start of its bucket; defaults to 12 buckets before endDate",
+            example = "2024-01-01")
+    private LocalDate startDate;
+
+    @Schema(description = "Last invoice date, widened to the end of its bucket; defaults to today", example = "2024-12-31")
+    private LocalDate endDate;
+
+    @Schema(description = "Uploader filter (SUPERUSER/AUDITOR only; users always see their own invoices)",
+            example = "john")
+    private String username;
+
+    @Schema(description = "File type filter", example = "PDF")
+    private String fileType;
+
+    @Schema(description = "Status filter", example = "APPROVED")
+    private String status;
+
+    @Schema(description = "Only invoices with a line item in this category", example = "1")
+    private Long categoryId;
+}
@@ -0,0 +1,31 @@
+package com.example.invoicetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceAnalyticsResponse {
+    private String granularity;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<Bucket> series;
+
+    // One bucket per period in the range, zeros included, oldest first
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private LocalDate bucketStart;
+        private long invoiceCount;
+        private double totalAmount;
+    }
+}
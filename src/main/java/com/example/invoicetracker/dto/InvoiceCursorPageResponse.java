@@ -0,0 +1,32 @@
+package com.example.invoicetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "One keyset page of invoices")
+public class InvoiceCursorPageResponse {
+    @Schema(description = "Invoices on this page")
+    private List<InvoiceResponse> content;
+
+    @Schema(description = "Requested page size", example = "10")
+    private int size;
+
+    @Schema(description = "Whether more invoices follow this page", example = "true")
+    private boolean hasNext;
+
+    @Schema(description = "Opaque cursor for the next page; null on the last page", example = "djF8MjAyNC0wMS0xNVQxMDozMDowMHw0MnxE")
+    private String nextCursor;
+
+    @Schema(description = "Number of matching invoices; only set when includeTotal=true", example = "1250")
+    private Long totalElements;
+}
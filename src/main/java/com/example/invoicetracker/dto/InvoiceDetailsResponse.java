@@ -48,6 +48,12 @@ public class InvoiceDetailsResponse {
     
     @Schema(description = "List of products in the invoice")
     private List<ProductDetail> products;
+
+    @Schema(description = "Vendor read from the invoice file by the AI extraction", example = "Acme Inc.")
+    private String vendor;
+
+    @Schema(description = "Line items read from the invoice file by the AI extraction")
+    private List<ExtractedItemDetail> extractedItems;
     
     @Schema(description = "Audit logs for the invoice")
     private List<AuditLogResponse> auditLogs;
@@ -82,4 +88,23 @@ public class InvoiceDetailsResponse {
         @Schema(description = "Subtotal", example = "1999.98")
         private Double subtotal;
     }
-}
\ No newline at end of file
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Line item read from the invoice file")
+    public static class ExtractedItemDetail {
+        @Schema(description = "Item description as printed", example = "Printer paper A4")
+        private String name;
+
+        @Schema(description = "Quantity", example = "5.0")
+        private Double quantity;
+
+        @Schema(description = "Unit price", example = "4.99")
+        private Double unitPrice;
+
+        @Schema(description = "Subtotal", example = "24.95")
+        private Double subtotal;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.invoicetracker.dto;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only invoice columns for list and search pages, selected with a
+ * constructor expression so no Invoice or User entity (and none of their
+ * associations) is loaded per row.
+ */
+@Value
+public class InvoiceListRow {
+    Long invoiceId;
+    String uploadedByUser;
+    LocalDate invoiceDate;
+    FileType fileType;
+    String fileName;
+    Double totalAmount;
+    InvoiceStatus status;
+    LocalDateTime createdAt;
+}
@@ -20,7 +20,9 @@ public class InvoiceSearchRequest {
     @Schema(description = "Sort direction", example = "DESC")
     private String direction = "DESC";
     
-    @Schema(description = "Search term", example = "january")
+    @Schema(description = "Words to find in file names, uploader, vendor and item names. Each word must start "
+            + "a word of the invoice, in any order: 'jan off' finds 'office_january.pdf', 'uary' does not",
+            example = "january")
     private String search;
     
     @Schema(description = "Start date for filtering", example = "2024-01-01")
@@ -34,4 +36,11 @@ public class InvoiceSearchRequest {
     
     @Schema(description = "Status filter", example = "APPROVED")
     private String status;
+
+    @Schema(description = "Keyset pagination: empty for the first page, then the previous page's nextCursor. "
+            + "Pages are ordered by createdAt in the requested direction; page and sortBy are ignored")
+    private String cursor;
+
+    @Schema(description = "Whether a cursor page also counts all matching invoices", example = "false")
+    private boolean includeTotal = false;
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.example.invoicetracker.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * A line item as the AI extraction read it from the invoice file. Unlike
+ * InvoiceProduct it is free text, not a catalog product, and any of the
+ * numbers may be missing.
+ */
+@Entity
+@Table(name = "invoice_extracted_item", indexes = {
+        @Index(name = "idx_extracted_item_invoice", columnList = "invoice_id, line_number")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExtractedLineItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "invoice_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Invoice invoice;
+
+    @Column(name = "line_number", nullable = false)
+    private Integer lineNumber;
+
+    @Column(name = "name", length = 500, nullable = false)
+    private String name;
+
+    @Column(name = "quantity")
+    private Double quantity;
+
+    @Column(name = "unit_price")
+    private BigDecimal unitPrice;
+
+    @Column(name = "subtotal")
+    private BigDecimal subtotal;
+}
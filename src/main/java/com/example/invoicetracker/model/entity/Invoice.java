@@ -13,7 +13,16 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "invoice")
+@Table(name = "invoice", indexes = {
+        @Index(name = "idx_invoice_stored_file_name", columnList = "stored_file_name"),
+        @Index(name = "idx_invoice_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_invoice_active_user_date", columnList = "is_active, uploaded_by_user_id, invoice_date"),
+        @Index(name = "idx_invoice_active_date", columnList = "is_active, invoice_date"),
+        // keyset list pages seek on (created_at, invoice_id), for everyone's and for one uploader's invoices
+        @Index(name = "idx_invoice_active_created", columnList = "is_active, created_at, invoice_id"),
+        @Index(name = "idx_invoice_user_active_created", columnList = "uploaded_by_user_id, is_active, created_at, invoice_id"),
+        @Index(name = "idx_invoice_vendor_date_amount", columnList = "vendor_id, invoice_date, total_amount")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -55,6 +64,10 @@ public class Invoice extends BaseEntity {
     @Column(name = "stored_file_name")
     private String storedFileName;
     
+    // SHA-256 of the uploaded file; null for web forms and invoices saved before it was recorded
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "original_file_name")
     private String originalFileName; 
     
@@ -64,6 +77,19 @@ public class Invoice extends BaseEntity {
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<InvoiceProduct> invoiceProduct;
 
+    // Vendor and line items read by the AI extraction; null/empty for web forms and failed extractions
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vendor_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Vendor vendor;
+
+    @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("lineNumber ASC")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<ExtractedLineItem> extractedItems;
+
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Log> log;
 
@@ -0,0 +1,27 @@
+package com.example.invoicetracker.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Searchable words of one invoice: file names, uploader, vendor, line item
+ * product names and extracted item names, lower-cased, accent-folded and
+ * space-separated (InvoiceSearchIndex.tokenize). On MySQL search_text
+ * carries the FULLTEXT index ft_invoice_search_text that searches match
+ * against; InvoiceSearchIndex creates it, since JPA cannot declare one.
+ */
+@Entity
+@Table(name = "invoice_search_document")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceSearchDocument {
+
+    @Id
+    @Column(name = "invoice_id", nullable = false)
+    private Long invoiceId;
+
+    @Column(name = "search_text", columnDefinition = "TEXT", nullable = false)
+    private String searchText;
+}
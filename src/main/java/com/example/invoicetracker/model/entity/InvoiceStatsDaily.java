@@ -0,0 +1,50 @@
+package com.example.invoicetracker.model.entity;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Count and amount of active invoices for one uploader, or for everyone
+ * (scope "*"), by invoice date, status and file type. Maintained by
+ * InvoiceStatsRollup in the transactions that change invoices.
+ */
+@Entity
+@Table(name = "invoice_stats_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_invoice_stats_daily_key",
+                columnNames = { "scope", "stat_date", "status", "file_type" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceStatsDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "stats_id")
+    private Long statsId;
+
+    @Column(name = "scope", length = 20, nullable = false)
+    private String scope;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private InvoiceStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "file_type", length = 20, nullable = false)
+    private FileType fileType;
+
+    @Column(name = "invoice_count", nullable = false)
+    private long invoiceCount;
+
+    @Column(name = "total_amount", nullable = false)
+    private double totalAmount;
+}
@@ -0,0 +1,28 @@
+package com.example.invoicetracker.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * All-time count and amount of active invoices for one uploader, or for
+ * everyone (scope "*"), so the stats endpoint reads one row instead of
+ * aggregating the invoice table.
+ */
+@Entity
+@Table(name = "invoice_stats_total")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceStatsTotal {
+
+    @Id
+    @Column(name = "scope", length = 20, nullable = false)
+    private String scope;
+
+    @Column(name = "invoice_count", nullable = false)
+    private long invoiceCount;
+
+    @Column(name = "total_amount", nullable = false)
+    private double totalAmount;
+}
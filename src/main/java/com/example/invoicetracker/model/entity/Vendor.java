@@ -0,0 +1,31 @@
+package com.example.invoicetracker.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Vendor dimension for extracted invoices. Spellings of the same vendor
+ * ("ACME Inc.", "Acme, inc") share one row through normalized_name; name
+ * keeps the first spelling seen, for display.
+ */
+@Entity
+@Table(name = "vendor", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_vendor_normalized_name", columnNames = "normalized_name")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Vendor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "vendor_id")
+    private Long vendorId;
+
+    @Column(name = "name", length = 255, nullable = false)
+    private String name;
+
+    @Column(name = "normalized_name", length = 255, nullable = false)
+    private String normalizedName;
+}
@@ -0,0 +1,11 @@
+package com.example.invoicetracker.model.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Asynchronous ingestion job states")
+public enum IngestionJobStatus {
+    @Schema(description = "Waiting for a worker (new or scheduled for retry)") QUEUED,
+    @Schema(description = "Claimed by a worker") PROCESSING,
+    @Schema(description = "Invoice created") COMPLETED,
+    @Schema(description = "Failed permanently") FAILED
+}
@@ -0,0 +1,32 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.FingerprintOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FingerprintOutboxRepository extends JpaRepository<FingerprintOutbox, Long> {
+
+    @Query("SELECT o.outboxId FROM FingerprintOutbox o WHERE o.nextAttemptAt <= :now ORDER BY o.outboxId ASC")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Leases the rows to one dispatcher by pushing nextAttemptAt past the lease;
+    // rows of a crashed dispatcher become due again when the lease runs out
+    @Modifying
+    @Transactional
+    @Query("UPDATE FingerprintOutbox o SET o.claimToken = :token, o.nextAttemptAt = :leaseUntil " +
+           "WHERE o.outboxId IN :ids AND o.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+            @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<FingerprintOutbox> findByClaimTokenOrderByOutboxIdAsc(String claimToken);
+}
@@ -0,0 +1,51 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.IngestionJob;
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    @Query("SELECT j.jobId FROM IngestionJob j WHERE j.status = :status AND j.nextAttemptAt <= :now " +
+           "ORDER BY j.nextAttemptAt ASC")
+    List<Long> findDueJobIds(@Param("status") IngestionJobStatus status, @Param("now") LocalDateTime now,
+            Pageable pageable);
+
+    // Conditional update so only one worker (or app instance) can claim a job
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = com.example.invoicetracker.model.enums.IngestionJobStatus.PROCESSING, " +
+           "j.lockedAt = :now, j.attempts = j.attempts + 1, j.updatedAt = :now " +
+           "WHERE j.jobId = :jobId AND j.status = com.example.invoicetracker.model.enums.IngestionJobStatus.QUEUED")
+    int claim(@Param("jobId") Long jobId, @Param("now") LocalDateTime now);
+
+    // Called inside the invoice's transaction, so the job links to the invoice exactly when it commits
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = com.example.invoicetracker.model.enums.IngestionJobStatus.COMPLETED, " +
+           "j.invoiceId = :invoiceId, j.lockedAt = NULL, j.errorMessage = NULL, j.updatedAt = :now " +
+           "WHERE j.jobId = :jobId")
+    int markCompleted(@Param("jobId") Long jobId, @Param("invoiceId") Long invoiceId, @Param("now") LocalDateTime now);
+
+    // Jobs left PROCESSING by a crashed or restarted instance go back to the queue
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = com.example.invoicetracker.model.enums.IngestionJobStatus.QUEUED, " +
+           "j.lockedAt = NULL, j.nextAttemptAt = :now, j.updatedAt = :now " +
+           "WHERE j.status = com.example.invoicetracker.model.enums.IngestionJobStatus.PROCESSING " +
+           "AND j.lockedAt < :staleBefore")
+    int requeueStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    boolean existsByStagedFileNameAndStatusIn(String stagedFileName, Collection<IngestionJobStatus> statuses);
+}
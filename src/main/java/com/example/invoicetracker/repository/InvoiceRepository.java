@@ -1,5 +1,6 @@
 package com.example.invoicetracker.repository;
 
+import com.example.invoicetracker.dto.InvoiceListRow;
 import com.example.invoicetracker.model.entity.Invoice;
 import com.example.invoicetracker.model.entity.User;
 import com.example.invoicetracker.model.enums.FileType;
@@ -11,39 +12,270 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
-    Page<Invoice> findAllByIsActiveTrue(Pageable pageable);
-    Page<Invoice> findAllByUploadedByUserAndIsActiveTrue(User user, Pageable pageable);
+    boolean existsByStoredFileName(String storedFileName);
+
+    // Stats while the rollup has not been built yet
     long countByUploadedByUserAndIsActiveTrue(User user);
     long countByIsActiveTrue();
-    
+
     @Query("SELECT SUM(i.totalAmount) FROM Invoice i WHERE i.uploadedByUser = :user AND i.isActive = true")
     Double sumTotalAmountByUserAndIsActiveTrue(@Param("user") User user);
-    
+
     @Query("SELECT SUM(i.totalAmount) FROM Invoice i WHERE i.isActive = true")
     Double sumTotalAmountByIsActiveTrue();
+
+    // Columns for the local duplicate index, read in id order a page at a time
+    @Query("SELECT i.invoiceId, i.uploadedByUser.userId, i.invoiceDate, i.totalAmount, " +
+           "i.originalFileName, i.fileName, v.vendorId FROM Invoice i LEFT JOIN i.vendor v " +
+           "WHERE i.isActive = true AND i.invoiceId > :afterId ORDER BY i.invoiceId ASC")
+    List<Object[]> findSignatureRows(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT ip.invoice.invoiceId, ip.product.productId, ip.quantity FROM InvoiceProduct ip " +
+           "WHERE ip.invoice.invoiceId IN :invoiceIds")
+    List<Object[]> findLineItemRows(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    @Query("SELECT e.invoice.invoiceId, e.name, e.quantity FROM ExtractedLineItem e " +
+           "WHERE e.invoice.invoiceId IN :invoiceIds")
+    List<Object[]> findExtractedItemRows(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    // Confirms a content hash filter hit; served by idx_invoice_content_hash
+    Optional<Invoice> findFirstByUploadedByUserAndContentHashAndIsActiveTrueOrderByInvoiceIdAsc(
+            User uploadedByUser, String contentHash);
+
+    // Every recorded content hash in id order, for rebuilding the content hash filter
+    @Query("SELECT i.invoiceId, i.contentHash FROM Invoice i WHERE i.contentHash IS NOT NULL " +
+           "AND i.invoiceId > :afterId ORDER BY i.invoiceId ASC")
+    List<Object[]> findContentHashRows(@Param("afterId") Long afterId, Pageable pageable);
     
-    @Query("SELECT i FROM Invoice i WHERE i.uploadedByUser = :user AND i.isActive = true AND " +
-           "(:search IS NULL OR LOWER(i.fileName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(i.uploadedByUser.username) LIKE LOWER(CONCAT('%', :search, '%'))) AND " +
+    // Chatbot context aggregates, grouped in the database. A null userId covers every uploader
+    @Query("SELECT COUNT(i), COALESCE(SUM(i.totalAmount), 0) FROM Invoice i WHERE i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId)")
+    List<Object[]> summarizeActive(@Param("userId") String userId);
+
+    @Query("SELECT YEAR(i.invoiceDate), MONTH(i.invoiceDate), COUNT(i), SUM(i.totalAmount) FROM Invoice i " +
+           "WHERE i.isActive = true AND (:userId IS NULL OR i.uploadedByUser.userId = :userId) " +
+           "GROUP BY YEAR(i.invoiceDate), MONTH(i.invoiceDate) " +
+           "ORDER BY YEAR(i.invoiceDate) DESC, MONTH(i.invoiceDate) DESC")
+    List<Object[]> summarizeActiveByMonth(@Param("userId") String userId);
+
+    @Query("SELECT i.fileType, COUNT(i) FROM Invoice i WHERE i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId) GROUP BY i.fileType")
+    List<Object[]> countActiveByFileType(@Param("userId") String userId);
+
+    @Query("SELECT i.status, COUNT(i) FROM Invoice i WHERE i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId) GROUP BY i.status")
+    List<Object[]> countActiveByStatus(@Param("userId") String userId);
+
+    @Query("SELECT u.username, COUNT(i), SUM(i.totalAmount) FROM Invoice i JOIN i.uploadedByUser u " +
+           "WHERE i.isActive = true GROUP BY u.username ORDER BY COUNT(i) DESC")
+    List<Object[]> summarizeActiveByUser(Pageable pageable);
+
+    // Invoices quoted to the chatbot, newest first, with their uploader in the same query
+    @Query("SELECT i FROM Invoice i JOIN FETCH i.uploadedByUser WHERE i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId) AND " +
+           "(:startDate IS NULL OR i.invoiceDate >= :startDate) AND " +
+           "(:endDate IS NULL OR i.invoiceDate <= :endDate) " +
+           "ORDER BY i.invoiceDate DESC, i.invoiceId DESC")
+    List<Invoice> findActiveForChat(@Param("userId") String userId, @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate, Pageable pageable);
+
+    @Query("SELECT i FROM Invoice i JOIN FETCH i.uploadedByUser WHERE i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId) AND i.invoiceId IN :invoiceIds")
+    List<Invoice> findActiveForChatByIds(@Param("userId") String userId,
+            @Param("invoiceIds") Collection<Long> invoiceIds);
+
+    // Chatbot query plans: the planner's filters, each skipped when null. userId is the caller's scope,
+    // uploader an optional username filter within it
+    String CHAT_PLAN_FILTER = "i.isActive = true AND " +
+           "(:userId IS NULL OR i.uploadedByUser.userId = :userId) AND " +
+           "(:uploader IS NULL OR i.uploadedByUser.username = :uploader) AND " +
            "(:startDate IS NULL OR i.invoiceDate >= :startDate) AND " +
            "(:endDate IS NULL OR i.invoiceDate <= :endDate) AND " +
+           "(:status IS NULL OR i.status = :status) AND " +
            "(:fileType IS NULL OR i.fileType = :fileType) AND " +
-           "(:status IS NULL OR i.status = :status)")
-    Page<Invoice> searchUserInvoices(@Param("user") User user, @Param("search") String search,
+           "(:minAmount IS NULL OR i.totalAmount >= :minAmount) AND " +
+           "(:maxAmount IS NULL OR i.totalAmount <= :maxAmount)";
+
+    @Query("SELECT COUNT(i), COALESCE(SUM(i.totalAmount), 0), AVG(i.totalAmount), MIN(i.totalAmount), " +
+           "MAX(i.totalAmount) FROM Invoice i WHERE " + CHAT_PLAN_FILTER)
+    List<Object[]> aggregateForPlan(@Param("userId") String userId, @Param("uploader") String uploader,
             @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
-            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status, Pageable pageable);
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount);
 
-    @Query("SELECT i FROM Invoice i WHERE i.isActive = true AND " +
-           "(:search IS NULL OR LOWER(i.fileName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(i.uploadedByUser.username) LIKE LOWER(CONCAT('%', :search, '%'))) AND " +
-           "(:startDate IS NULL OR i.invoiceDate >= :startDate) AND " +
+    @Query("SELECT YEAR(i.invoiceDate), MONTH(i.invoiceDate), COUNT(i), SUM(i.totalAmount), AVG(i.totalAmount) " +
+           "FROM Invoice i WHERE " + CHAT_PLAN_FILTER + " GROUP BY YEAR(i.invoiceDate), MONTH(i.invoiceDate) " +
+           "ORDER BY YEAR(i.invoiceDate) DESC, MONTH(i.invoiceDate) DESC")
+    List<Object[]> aggregateForPlanByMonth(@Param("userId") String userId, @Param("uploader") String uploader,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount, Pageable pageable);
+
+    @Query("SELECT i.status, COUNT(i), SUM(i.totalAmount), AVG(i.totalAmount) FROM Invoice i WHERE " +
+           CHAT_PLAN_FILTER + " GROUP BY i.status ORDER BY COUNT(i) DESC")
+    List<Object[]> aggregateForPlanByStatus(@Param("userId") String userId, @Param("uploader") String uploader,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount);
+
+    @Query("SELECT i.fileType, COUNT(i), SUM(i.totalAmount), AVG(i.totalAmount) FROM Invoice i WHERE " +
+           CHAT_PLAN_FILTER + " GROUP BY i.fileType ORDER BY COUNT(i) DESC")
+    List<Object[]> aggregateForPlanByFileType(@Param("userId") String userId, @Param("uploader") String uploader,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount);
+
+    @Query("SELECT i.uploadedByUser.username, COUNT(i), SUM(i.totalAmount), AVG(i.totalAmount) FROM Invoice i " +
+           "WHERE " + CHAT_PLAN_FILTER + " GROUP BY i.uploadedByUser.username ORDER BY COUNT(i) DESC")
+    List<Object[]> aggregateForPlanByUploader(@Param("userId") String userId, @Param("uploader") String uploader,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount, Pageable pageable);
+
+    // Sorted by the pageable (newest or largest first)
+    @Query("SELECT i FROM Invoice i JOIN FETCH i.uploadedByUser WHERE " + CHAT_PLAN_FILTER)
+    List<Invoice> findForPlan(@Param("userId") String userId, @Param("uploader") String uploader,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("status") InvoiceStatus status, @Param("fileType") FileType fileType,
+            @Param("minAmount") Double minAmount, @Param("maxAmount") Double maxAmount, Pageable pageable);
+
+    // Source of one uploader's stats rollup rows: one row per invoice date, status and file type
+    @Query("SELECT i.invoiceDate, i.status, i.fileType, COUNT(i), SUM(i.totalAmount) FROM Invoice i " +
+           "WHERE i.uploadedByUser.userId = :userId AND i.isActive = true " +
+           "GROUP BY i.invoiceDate, i.status, i.fileType")
+    List<Object[]> aggregateActiveStatsRows(@Param("userId") String userId);
+
+    @Query("SELECT DISTINCT i.uploadedByUser.userId FROM Invoice i WHERE i.isActive = true")
+    List<String> findActiveUploaderIds();
+
+    // Analytics when the rollup can't answer (category filter): [invoiceDate, count, amount] per day in [start, end)
+    @Query("SELECT i.invoiceDate, COUNT(i), SUM(i.totalAmount) FROM Invoice i WHERE i.isActive = true " +
+           "AND i.invoiceDate >= :start AND i.invoiceDate < :end " +
+           "AND (:userId IS NULL OR i.uploadedByUser.userId = :userId) " +
+           "AND (:status IS NULL OR i.status = :status) AND (:fileType IS NULL OR i.fileType = :fileType) " +
+           "AND (:categoryId IS NULL OR EXISTS (SELECT 1 FROM InvoiceProduct ip " +
+           "WHERE ip.invoice = i AND ip.product.category.categoryId = :categoryId)) " +
+           "GROUP BY i.invoiceDate")
+    List<Object[]> sumActiveByDay(@Param("userId") String userId, @Param("status") InvoiceStatus status,
+            @Param("fileType") FileType fileType, @Param("categoryId") Long categoryId,
+            @Param("start") LocalDate start, @Param("end") LocalDate end);
+    
+    // List and search pages as InvoiceListRow; products and categories come from findProductNameRows
+    String LIST_ROW = "SELECT new com.example.invoicetracker.dto.InvoiceListRow(i.invoiceId, u.username, " +
+           "i.invoiceDate, i.fileType, i.fileName, i.totalAmount, i.status, i.createdAt) FROM Invoice i JOIN i.uploadedByUser u ";
+
+    // Criteria other than the search text, shared by the filtered and the full-text pages
+    String CRITERIA_FILTER = "(:startDate IS NULL OR i.invoiceDate >= :startDate) AND " +
            "(:endDate IS NULL OR i.invoiceDate <= :endDate) AND " +
            "(:fileType IS NULL OR i.fileType = :fileType) AND " +
-           "(:status IS NULL OR i.status = :status)")
-    Page<Invoice> searchAllInvoices(@Param("search") String search, @Param("startDate") LocalDate startDate,
+           "(:status IS NULL OR i.status = :status)";
+
+    @Query(value = LIST_ROW + "WHERE i.isActive = true",
+           countQuery = "SELECT COUNT(i) FROM Invoice i WHERE i.isActive = true")
+    Page<InvoiceListRow> findActiveListRows(Pageable pageable);
+
+    @Query(value = LIST_ROW + "WHERE i.isActive = true AND i.uploadedByUser = :user",
+           countQuery = "SELECT COUNT(i) FROM Invoice i WHERE i.isActive = true AND i.uploadedByUser = :user")
+    Page<InvoiceListRow> findActiveListRowsByUser(@Param("user") User user, Pageable pageable);
+
+    @Query(value = LIST_ROW + "WHERE i.uploadedByUser = :user AND i.isActive = true AND " + CRITERIA_FILTER,
+           countQuery = "SELECT COUNT(i) FROM Invoice i " +
+                   "WHERE i.uploadedByUser = :user AND i.isActive = true AND " + CRITERIA_FILTER)
+    Page<InvoiceListRow> searchUserInvoices(@Param("user") User user,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status, Pageable pageable);
+
+    @Query(value = LIST_ROW + "WHERE i.isActive = true AND " + CRITERIA_FILTER,
+           countQuery = "SELECT COUNT(i) FROM Invoice i WHERE i.isActive = true AND " + CRITERIA_FILTER)
+    Page<InvoiceListRow> searchAllInvoices(@Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate, @Param("fileType") FileType fileType,
             @Param("status") InvoiceStatus status, Pageable pageable);
+
+    // Keyset pages over (createdAt, invoiceId): rows after the cursor in the page's direction, no OFFSET.
+    // A null cursor starts from the first row; pass a size + 1 Pageable to learn whether more rows follow.
+    String SEEK_FILTER = "i.isActive = true AND (:userId IS NULL OR u.userId = :userId) AND " + CRITERIA_FILTER;
+
+    @Query(LIST_ROW + "WHERE " + SEEK_FILTER + " AND (:afterCreatedAt IS NULL OR i.createdAt < :afterCreatedAt OR " +
+           "(i.createdAt = :afterCreatedAt AND i.invoiceId < :afterInvoiceId)) " +
+           "ORDER BY i.createdAt DESC, i.invoiceId DESC")
+    List<InvoiceListRow> seekListRowsDescending(@Param("userId") String userId,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterInvoiceId") Long afterInvoiceId,
+            Pageable pageable);
+
+    @Query(LIST_ROW + "WHERE " + SEEK_FILTER + " AND (:afterCreatedAt IS NULL OR i.createdAt > :afterCreatedAt OR " +
+           "(i.createdAt = :afterCreatedAt AND i.invoiceId > :afterInvoiceId)) " +
+           "ORDER BY i.createdAt ASC, i.invoiceId ASC")
+    List<InvoiceListRow> seekListRowsAscending(@Param("userId") String userId,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterInvoiceId") Long afterInvoiceId,
+            Pageable pageable);
+
+    @Query("SELECT COUNT(i) FROM Invoice i JOIN i.uploadedByUser u WHERE " + SEEK_FILTER)
+    long countListRows(@Param("userId") String userId,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status);
+
+    // Full-text pages: :terms is an InvoiceSearchIndex.booleanQuery, matched by the FULLTEXT index on the
+    // search documents; the invoices it finds are joined by primary key and filtered like the pages above
+    String MATCH_JOIN = "JOIN InvoiceSearchDocument d ON d.invoiceId = i.invoiceId ";
+    String MATCH_FILTER = "fulltext_match(d.searchText, :terms) > 0 AND " + SEEK_FILTER;
+
+    @Query(value = LIST_ROW + MATCH_JOIN + "WHERE " + MATCH_FILTER,
+           countQuery = "SELECT COUNT(i) FROM Invoice i JOIN i.uploadedByUser u " + MATCH_JOIN + "WHERE " + MATCH_FILTER)
+    Page<InvoiceListRow> matchListRows(@Param("userId") String userId, @Param("terms") String terms,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status, Pageable pageable);
+
+    @Query(LIST_ROW + MATCH_JOIN + "WHERE " + MATCH_FILTER + " AND (:afterCreatedAt IS NULL OR " +
+           "i.createdAt < :afterCreatedAt OR (i.createdAt = :afterCreatedAt AND i.invoiceId < :afterInvoiceId)) " +
+           "ORDER BY i.createdAt DESC, i.invoiceId DESC")
+    List<InvoiceListRow> seekMatchingRowsDescending(@Param("userId") String userId, @Param("terms") String terms,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterInvoiceId") Long afterInvoiceId,
+            Pageable pageable);
+
+    @Query(LIST_ROW + MATCH_JOIN + "WHERE " + MATCH_FILTER + " AND (:afterCreatedAt IS NULL OR " +
+           "i.createdAt > :afterCreatedAt OR (i.createdAt = :afterCreatedAt AND i.invoiceId > :afterInvoiceId)) " +
+           "ORDER BY i.createdAt ASC, i.invoiceId ASC")
+    List<InvoiceListRow> seekMatchingRowsAscending(@Param("userId") String userId, @Param("terms") String terms,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterInvoiceId") Long afterInvoiceId,
+            Pageable pageable);
+
+    @Query("SELECT COUNT(i) FROM Invoice i JOIN i.uploadedByUser u " + MATCH_JOIN + "WHERE " + MATCH_FILTER)
+    long countMatchingRows(@Param("userId") String userId, @Param("terms") String terms,
+            @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+            @Param("fileType") FileType fileType, @Param("status") InvoiceStatus status);
+
+    // Searchable text for InvoiceSearchIndex: file names, uploader and vendor of each invoice
+    @Query("SELECT i.invoiceId, i.fileName, i.originalFileName, u.username, v.name FROM Invoice i " +
+           "JOIN i.uploadedByUser u LEFT JOIN i.vendor v WHERE i.invoiceId IN :invoiceIds")
+    List<Object[]> findSearchDocumentRows(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    // Invoices whose search documents name the product or the uploader, to rewrite after a rename
+    @Query("SELECT DISTINCT ip.invoice.invoiceId FROM InvoiceProduct ip WHERE ip.product.productId = :productId")
+    List<Long> findInvoiceIdsByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT i.invoiceId FROM Invoice i WHERE i.uploadedByUser.userId = :userId")
+    List<Long> findInvoiceIdsByUploaderId(@Param("userId") String userId);
+
+    @Query("SELECT e.invoice.invoiceId, e.name FROM ExtractedLineItem e WHERE e.invoice.invoiceId IN :invoiceIds")
+    List<Object[]> findExtractedItemNameRows(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    // Product and category names for a whole page of invoices in one query, in line item order
+    @Query("SELECT ip.invoice.invoiceId, p.productName, c.categoryName FROM InvoiceProduct ip " +
+           "JOIN ip.product p JOIN p.category c WHERE ip.invoice.invoiceId IN :invoiceIds ORDER BY ip.id")
+    List<Object[]> findProductNameRows(@Param("invoiceIds") Collection<Long> invoiceIds);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.InvoiceSearchDocument;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface InvoiceSearchDocumentRepository extends JpaRepository<InvoiceSearchDocument, Long> {
+
+    // Writes the invoice's words in one statement, whether or not it has a document yet
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO invoice_search_document (invoice_id, search_text) VALUES (:invoiceId, :searchText) " +
+                   "ON DUPLICATE KEY UPDATE search_text = :searchText",
+           nativeQuery = true)
+    int upsert(@Param("invoiceId") Long invoiceId, @Param("searchText") String searchText);
+
+    // Invoices saved before the search documents existed, in id order a page at a time
+    @Query("SELECT i.invoiceId FROM Invoice i WHERE i.invoiceId > :afterId AND NOT EXISTS " +
+           "(SELECT 1 FROM InvoiceSearchDocument d WHERE d.invoiceId = i.invoiceId) ORDER BY i.invoiceId ASC")
+    List<Long> findUndocumentedInvoiceIds(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -0,0 +1,52 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.InvoiceStatsDaily;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface InvoiceStatsDailyRepository extends JpaRepository<InvoiceStatsDaily, Long> {
+
+    // Adds to the key's row, creating it on first use, in one statement
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO invoice_stats_daily (scope, stat_date, status, file_type, invoice_count, total_amount) " +
+                   "VALUES (:scope, :statDate, :status, :fileType, :count, :amount) ON DUPLICATE KEY UPDATE " +
+                   "invoice_count = invoice_count + :count, total_amount = total_amount + :amount",
+           nativeQuery = true)
+    int addDelta(@Param("scope") String scope, @Param("statDate") LocalDate statDate,
+            @Param("status") String status, @Param("fileType") String fileType,
+            @Param("count") long count, @Param("amount") double amount);
+
+    // Analytics source: [statDate, count, amount] per day in [start, end), on the unique key's index
+    @Query("SELECT d.statDate, SUM(d.invoiceCount), SUM(d.totalAmount) FROM InvoiceStatsDaily d " +
+           "WHERE d.scope = :scope AND d.statDate >= :start AND d.statDate < :end " +
+           "AND (:status IS NULL OR d.status = :status) AND (:fileType IS NULL OR d.fileType = :fileType) " +
+           "GROUP BY d.statDate")
+    List<Object[]> sumByDay(@Param("scope") String scope, @Param("status") InvoiceStatus status,
+            @Param("fileType") FileType fileType, @Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Status mix chart: [status, count] over all dates, the same shape as InvoiceRepository.countActiveByStatus
+    @Query("SELECT d.status, SUM(d.invoiceCount) FROM InvoiceStatsDaily d WHERE d.scope = :scope " +
+           "GROUP BY d.status HAVING SUM(d.invoiceCount) > 0")
+    List<Object[]> countByStatus(@Param("scope") String scope);
+
+    // Source of the everyone rows on rebuild: [statDate, status, fileType, count, amount] summed over the uploaders
+    @Query("SELECT d.statDate, d.status, d.fileType, SUM(d.invoiceCount), SUM(d.totalAmount) " +
+           "FROM InvoiceStatsDaily d WHERE d.scope <> :allScope GROUP BY d.statDate, d.status, d.fileType")
+    List<Object[]> sumUploaderRows(@Param("allScope") String allScope);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM invoice_stats_daily WHERE scope = :scope", nativeQuery = true)
+    int deleteScope(@Param("scope") String scope);
+}
@@ -0,0 +1,47 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.InvoiceStatsTotal;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InvoiceStatsTotalRepository extends JpaRepository<InvoiceStatsTotal, String> {
+
+    // Adds to the scope's row, creating it on first use, in one statement
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO invoice_stats_total (scope, invoice_count, total_amount) " +
+                   "VALUES (:scope, :count, :amount) ON DUPLICATE KEY UPDATE " +
+                   "invoice_count = invoice_count + :count, total_amount = total_amount + :amount",
+           nativeQuery = true)
+    int addDelta(@Param("scope") String scope, @Param("count") long count, @Param("amount") double amount);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM InvoiceStatsTotal t WHERE t.scope = :scope")
+    Optional<InvoiceStatsTotal> findForUpdate(@Param("scope") String scope);
+
+    @Query("SELECT t.scope FROM InvoiceStatsTotal t")
+    List<String> findAllScopes();
+
+    // Per-user volume chart: [username, count, amount], busiest first, the same shape as
+    // InvoiceRepository.summarizeActiveByUser; the "*" row has no user and drops out of the join
+    @Query("SELECT u.username, t.invoiceCount, t.totalAmount FROM InvoiceStatsTotal t, User u " +
+           "WHERE u.userId = t.scope AND t.invoiceCount > 0 ORDER BY t.invoiceCount DESC")
+    List<Object[]> findTopUploaderRows(Pageable pageable);
+
+    // Detaches the row findForUpdate loaded, so reads after a rebuild see the new one
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "DELETE FROM invoice_stats_total WHERE scope = :scope", nativeQuery = true)
+    int deleteScope(@Param("scope") String scope);
+}
@@ -0,0 +1,31 @@
+package com.example.invoicetracker.repository;
+
+import com.example.invoicetracker.model.entity.Vendor;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface VendorRepository extends JpaRepository<Vendor, Long> {
+    Optional<Vendor> findByNormalizedName(String normalizedName);
+
+    // SELECT ... FOR SHARE: waits for a concurrent insert of the name and sees it once committed
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Transactional
+    @Query("SELECT v FROM Vendor v WHERE v.normalizedName = :normalizedName")
+    Optional<Vendor> findForShareByNormalizedName(@Param("normalizedName") String normalizedName);
+
+    // Concurrent uploads may both see a new vendor; the loser's insert is ignored instead of failing its transaction
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO vendor (name, normalized_name) VALUES (:name, :normalizedName)",
+           nativeQuery = true)
+    int insertIgnore(@Param("name") String name, @Param("normalizedName") String normalizedName);
+}
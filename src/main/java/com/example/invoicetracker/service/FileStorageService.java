@@ -1,8 +1,18 @@
 package com.example.invoicetracker.service;
 
 import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import com.example.invoicetracker.repository.IngestionJobRepository;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+import com.example.invoicetracker.service.storage.StorageBackend;
+import com.example.invoicetracker.service.storage.StoredObject;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -12,43 +22,234 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class FileStorageService {
 
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    private static final int MAX_CACHED_HASHES = 10_000;
+    private static final int KEY_LOCK_STRIPES = 64;
+    private static final List<IngestionJobStatus> ACTIVE_JOB_STATUSES =
+            List.of(IngestionJobStatus.QUEUED, IngestionJobStatus.PROCESSING);
+
+    private final StorageBackend storageBackend;
+    private final InvoiceRepository invoiceRepository;
+    private final IngestionJobRepository ingestionJobRepository;
+
+    private final Map<String, CachedHash> contentHashes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedHash> eldest) {
+            return size() > MAX_CACHED_HASHES;
+        }
+    };
+
+    // Files ingested by uploads that have not been committed yet
+    private final ConcurrentHashMap<String, Integer> pinnedFiles = new ConcurrentHashMap<>();
+
+    // Guards a key's reference check and delete against a concurrent write of the same content
+    private final Object[] keyLocks = newKeyLocks();
 
     public String storeFile(MultipartFile file) throws IOException {
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        if (file instanceof StoredMultipartFile stored && stored.getStoredFileName() != null) {
+            return stored.getStoredFileName();
+        }
+
+        StoredObject stored = write(file, false);
+        rememberContentHash(stored);
+        return stored.getKey();
+    }
+
+    /**
+     * Reads an upload once, writing it to storage and hashing it in the same
+     * pass. The returned file is backed by the stored copy: storeFile returns
+     * its name without copying again and calculateFileHash returns the hash
+     * without re-reading, while other consumers stream it from disk.
+     * The stored file stays pinned against deletion until {@link #unpin} is
+     * called, since with content-addressed storage a concurrent upload of the
+     * same bytes shares it before any invoice row references it.
+     */
+    public MultipartFile ingest(MultipartFile file) throws IOException {
+        if (file instanceof StoredMultipartFile stored && stored.getStoredFileName() != null) {
+            return file;
+        }
+
+        StoredObject stored = write(file, true);
+        Path storedPath = rememberContentHash(stored);
+        return new StoredMultipartFile(storedPath, file.getOriginalFilename(),
+                file.getContentType(), stored.getKey(), stored.getContentHash());
+    }
+
+    /**
+     * Writes the upload and, under its key's lock, optionally pins it. Identical
+     * content maps to an existing key, which a concurrent deleteFile may have
+     * removed between the write and the lock; the content is then written
+     * again. Once pinned, no delete can remove it.
+     */
+    private StoredObject write(MultipartFile file, boolean pin) throws IOException {
+        String extension = getFileExtension(file.getOriginalFilename());
+        StoredObject stored;
+        try (InputStream in = file.getInputStream()) {
+            stored = storageBackend.write(in, extension);
+        }
+
+        synchronized (keyLock(stored.getKey())) {
+            if (pin) {
+                pinnedFiles.merge(stored.getKey(), 1, Integer::sum);
+            }
+            if (!Files.exists(storageBackend.resolve(stored.getKey()))) {
+                log.debug("Stored file {} was deleted concurrently - writing it again", stored.getKey());
+                try (InputStream in = file.getInputStream()) {
+                    stored = storageBackend.write(in, extension);
+                }
+            }
         }
+        return stored;
+    }
+
+    private Object keyLock(String fileName) {
+        return keyLocks[Math.floorMod(fileName.hashCode(), KEY_LOCK_STRIPES)];
+    }
+
+    private static Object[] newKeyLocks() {
+        Object[] locks = new Object[KEY_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
 
-        String originalFileName = file.getOriginalFilename();
-        String fileExtension = getFileExtension(originalFileName);
-        String fileName = UUID.randomUUID().toString() + fileExtension;
+    // The hash computed while writing saves getContentHash a re-read
+    private Path rememberContentHash(StoredObject stored) throws IOException {
+        Path storedPath = storageBackend.resolve(stored.getKey());
+        synchronized (contentHashes) {
+            contentHashes.put(stored.getKey(), new CachedHash(stored.getSize(),
+                    Files.getLastModifiedTime(storedPath).toMillis(), stored.getContentHash()));
+        }
+        return storedPath;
+    }
 
-        Path targetLocation = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Releases the pin taken by {@link #ingest}. Inside a transaction the pin is
+     * held until it completes, so the invoice row referencing the file is
+     * visible before the file becomes deletable.
+     */
+    public void unpin(String fileName) {
+        if (fileName == null) {
+            return;
+        }
+        TransactionCallbacks.afterCompletion(() -> releasePin(fileName));
+    }
 
-        return fileName;
+    /**
+     * Releases the pin of an ingested file whose upload was rejected and
+     * deletes it if nothing else references it.
+     */
+    public void discard(String fileName) throws IOException {
+        releasePin(fileName);
+        deleteFile(fileName);
     }
 
-    public byte[] loadFile(String fileName) throws IOException {
-        Path filePath = Paths.get(uploadDir).resolve(fileName);
-        return Files.readAllBytes(filePath);
+    private void releasePin(String fileName) {
+        pinnedFiles.computeIfPresent(fileName, (name, count) -> count > 1 ? count - 1 : null);
     }
 
+    /**
+     * SHA-256 of the file content as lowercase hex, computed by streaming the
+     * upload instead of loading it into memory.
+     */
+    public String calculateFileHash(MultipartFile file) throws IOException {
+        if (file instanceof StoredMultipartFile stored && stored.getContentHash() != null) {
+            return stored.getContentHash();
+        }
+
+        try (InputStream in = file.getInputStream()) {
+            return hashStream(in);
+        }
+    }
+
+    /**
+     * SHA-256 of a stored file, used as its download ETag. Stored files are
+     * never rewritten in place, so the hash is remembered per file name and only
+     * recomputed when the size or modification time changes.
+     */
+    public String getContentHash(String fileName) throws IOException {
+        Path filePath = getFilePath(fileName);
+        long size = Files.size(filePath);
+        long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+
+        synchronized (contentHashes) {
+            CachedHash cached = contentHashes.get(fileName);
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+                return cached.hash;
+            }
+        }
+
+        String hash;
+        try (InputStream in = Files.newInputStream(filePath)) {
+            hash = hashStream(in);
+        }
+
+        synchronized (contentHashes) {
+            contentHashes.put(fileName, new CachedHash(size, lastModified, hash));
+        }
+        return hash;
+    }
+
+    private String hashStream(InputStream in) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Path getFilePath(String fileName) {
+        return storageBackend.resolve(fileName);
+    }
+
+    /**
+     * Deletes a stored file unless something still references it: an invoice
+     * (active or soft-deleted), a pending ingestion job, or an upload in flight.
+     * Identical uploads share one file, so callers cannot assume they own it.
+     */
     public void deleteFile(String fileName) throws IOException {
-        Path filePath = Paths.get(uploadDir).resolve(fileName);
-        Files.deleteIfExists(filePath);
+        // Check and delete under the key's lock, so an upload of the same
+        // content cannot pin the file in between
+        synchronized (keyLock(fileName)) {
+            if (pinnedFiles.containsKey(fileName)
+                    || invoiceRepository.existsByStoredFileName(fileName)
+                    || ingestionJobRepository.existsByStagedFileNameAndStatusIn(fileName, ACTIVE_JOB_STATUSES)) {
+                log.debug("Keeping stored file {} - still referenced", fileName);
+                return;
+            }
+
+            storageBackend.delete(fileName);
+        }
+        synchronized (contentHashes) {
+            contentHashes.remove(fileName);
+        }
     }
 
     public String getFileExtension(String fileName) {
@@ -72,13 +273,39 @@ public class FileStorageService {
         }
     }
 
-    public ResponseEntity<byte[]> createFileResponse(byte[] fileContent, String contentType, String fileName) {
+    /**
+     * Streams a stored file from disk instead of loading it into memory. The
+     * MVC layer answers Range requests with 206 partial content and
+     * If-None-Match with 304 based on the headers set here.
+     */
+    public ResponseEntity<Resource> createFileResponse(Path filePath, String contentType,
+                                                       String fileName, String contentHash) throws IOException {
+        if (!Files.isReadable(filePath)) {
+            throw new NoSuchFileException(filePath.getFileName().toString());
+        }
+
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType(contentType));
         headers.setContentDisposition(ContentDisposition.attachment()
                 .filename(fileName)
                 .build());
+        headers.setETag("\"" + contentHash + "\"");
+        headers.setLastModified(Files.getLastModifiedTime(filePath).toMillis());
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        return new ResponseEntity<>(new FileSystemResource(filePath), headers, HttpStatus.OK);
+    }
+
+    private static class CachedHash {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
 
-        return new ResponseEntity<>(fileContent, headers, HttpStatus.OK);
+        private CachedHash(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,418 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.config.FileValidator;
+import com.example.invoicetracker.dto.BatchUploadResponse;
+import com.example.invoicetracker.dto.BatchUploadResponse.FileResult;
+import com.example.invoicetracker.dto.BatchUploadResponse.FileStatus;
+import com.example.invoicetracker.dto.InvoiceRequest;
+import com.example.invoicetracker.dto.InvoiceResponse;
+import com.example.invoicetracker.exception.DuplicateInvoiceException;
+import com.example.invoicetracker.service.InvoiceService.PreparedInvoice;
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Creates invoices for many files in one request. Files (and ZIP entries) are
+ * prepared in parallel on a bounded pool, and the resulting invoices are saved
+ * in chunks, one transaction per chunk, in upload order. A file whose content
+ * repeats an earlier file of the same batch is reported as a duplicate without
+ * being prepared.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceBatchService {
+
+    private static final Map<String, String> CONTENT_TYPES_BY_EXTENSION = Map.of(
+            ".pdf", "application/pdf",
+            ".jpg", "image/jpeg",
+            ".jpeg", "image/jpeg",
+            ".png", "image/png",
+            ".gif", "image/gif");
+
+    private static final long MAX_ENTRY_SIZE = 10 * 1024 * 1024;
+
+    private final InvoiceService invoiceService;
+    private final FileValidator fileValidator;
+    private final FileStorageService fileStorageService;
+    @Qualifier("invoiceBatchExecutor")
+    private final Executor invoiceBatchExecutor;
+
+    @Value("${invoice.batch.max-files:500}")
+    private int maxFiles = 500;
+
+    @Value("${invoice.batch.insert-chunk-size:50}")
+    private int insertChunkSize = 50;
+
+    public BatchUploadResponse uploadBatch(List<MultipartFile> files, String invoiceDate,
+                                           String targetUserId, String username, String role) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("No files provided for batch upload");
+        }
+
+        long startTime = System.currentTimeMillis();
+        LocalDate date = parseInvoiceDate(invoiceDate);
+        List<Path> tempFiles = new ArrayList<>();
+
+        try {
+            List<BatchEntry> entries = expandEntries(files, tempFiles);
+            log.info("📦 Batch upload - User: {}, Files: {}", username, entries.size());
+
+            List<CompletableFuture<ScreenedEntry>> screened = new ArrayList<>(entries.size());
+            for (BatchEntry entry : entries) {
+                screened.add(CompletableFuture.supplyAsync(() -> screenEntry(entry), invoiceBatchExecutor));
+            }
+
+            // The content hash filter only learns a hash once its invoice is saved,
+            // so repeats within the batch are rejected here, in upload order,
+            // before they reach extraction alongside the first copy.
+            Map<String, String> firstEntryByHash = new HashMap<>();
+            List<CompletableFuture<FileOutcome>> outcomes = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                BatchEntry entry = entries.get(i);
+                ScreenedEntry screening = screened.get(i).join();
+                if (screening.rejected != null) {
+                    outcomes.add(CompletableFuture.completedFuture(screening.rejected));
+                    continue;
+                }
+                String firstEntry = screening.contentHash == null
+                        ? null : firstEntryByHash.putIfAbsent(screening.contentHash, entry.name);
+                if (firstEntry != null) {
+                    log.warn("Batch entry {} rejected as duplicate of {}", entry.name, firstEntry);
+                    outcomes.add(CompletableFuture.completedFuture(FileOutcome.failed(entry.name, FileStatus.DUPLICATE,
+                            "Identical file content to " + firstEntry + " in this batch ("
+                                    + InvoiceService.EXACT_HASH_METHOD + ")")));
+                    continue;
+                }
+                outcomes.add(CompletableFuture.supplyAsync(
+                        () -> prepareEntry(entry, date, targetUserId, username, role), invoiceBatchExecutor));
+            }
+
+            // Chunks are flushed as soon as they fill up, so inserts overlap
+            // with extraction of the files further down the batch.
+            FileResult[] results = new FileResult[entries.size()];
+            List<PreparedInvoice> chunk = new ArrayList<>(insertChunkSize);
+            List<Integer> chunkIndexes = new ArrayList<>(insertChunkSize);
+
+            for (int i = 0; i < entries.size(); i++) {
+                FileOutcome outcome = outcomes.get(i).join();
+                if (outcome.prepared == null) {
+                    results[i] = outcome.result;
+                    continue;
+                }
+                chunk.add(outcome.prepared);
+                chunkIndexes.add(i);
+                if (chunk.size() >= insertChunkSize) {
+                    saveChunk(chunk, chunkIndexes, entries, results);
+                }
+            }
+            saveChunk(chunk, chunkIndexes, entries, results);
+
+            return buildResponse(List.of(results), System.currentTimeMillis() - startTime);
+
+        } finally {
+            for (Path tempFile : tempFiles) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("⚠️ Could not delete temporary batch file {}: {}", tempFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ==================== PREPARE ====================
+
+    /**
+     * Validates an entry and hashes its content. ZIP entries were hashed while
+     * being extracted; other files are read once more here.
+     */
+    private ScreenedEntry screenEntry(BatchEntry entry) {
+        if (entry.error != null) {
+            return ScreenedEntry.rejected(FileOutcome.failed(entry.name, FileStatus.FAILED, entry.error));
+        }
+
+        try {
+            fileValidator.validateFile(entry.file);
+            return ScreenedEntry.accepted(fileStorageService.calculateFileHash(entry.file));
+        } catch (Exception e) {
+            log.warn("Batch entry {} failed: {}", entry.name, e.getMessage());
+            return ScreenedEntry.rejected(FileOutcome.failed(entry.name, FileStatus.FAILED, e.getMessage()));
+        }
+    }
+
+    private FileOutcome prepareEntry(BatchEntry entry, LocalDate invoiceDate,
+                                     String targetUserId, String username, String role) {
+        try {
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(entry.file);
+            request.setInvoiceDate(invoiceDate);
+            request.setUserId(targetUserId);
+
+            return FileOutcome.prepared(invoiceService.prepareInvoice(request, username, role));
+
+        } catch (DuplicateInvoiceException e) {
+            log.warn("Batch entry {} rejected as duplicate: {}", entry.name, e.getMessage());
+            return FileOutcome.failed(entry.name, FileStatus.DUPLICATE, e.getMessage());
+        } catch (Exception e) {
+            log.warn("Batch entry {} failed: {}", entry.name, e.getMessage());
+            return FileOutcome.failed(entry.name, FileStatus.FAILED, e.getMessage());
+        }
+    }
+
+    // ==================== SAVE ====================
+
+    private void saveChunk(List<PreparedInvoice> chunk, List<Integer> chunkIndexes,
+                           List<BatchEntry> entries, FileResult[] results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<InvoiceResponse> saved = invoiceService.saveInvoiceBatch(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                InvoiceResponse invoice = saved.get(i);
+                results[chunkIndexes.get(i)] = FileResult.builder()
+                        .fileName(entries.get(chunkIndexes.get(i)).name)
+                        .status(FileStatus.CREATED)
+                        .invoiceId(invoice.getInvoiceId())
+                        .totalAmount(invoice.getTotalAmount())
+                        .build();
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to save batch chunk of {} invoices: {}", chunk.size(), e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                deleteStoredFile(chunk.get(i));
+                results[chunkIndexes.get(i)] = FileResult.builder()
+                        .fileName(entries.get(chunkIndexes.get(i)).name)
+                        .status(FileStatus.FAILED)
+                        .errorMessage("Failed to save invoice: " + e.getMessage())
+                        .build();
+            }
+        }
+
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private void deleteStoredFile(PreparedInvoice prepared) {
+        String storedFileName = prepared.getInvoice().getStoredFileName();
+        if (storedFileName == null) {
+            return;
+        }
+        try {
+            fileStorageService.deleteFile(storedFileName);
+        } catch (IOException e) {
+            log.warn("⚠️ Could not delete stored file {}: {}", storedFileName, e.getMessage());
+        }
+    }
+
+    // ==================== INPUT EXPANSION ====================
+
+    private List<BatchEntry> expandEntries(List<MultipartFile> files, List<Path> tempFiles) {
+        List<BatchEntry> entries = new ArrayList<>();
+
+        for (MultipartFile file : files) {
+            if (isZip(file)) {
+                expandZip(file, entries, tempFiles);
+            } else {
+                entries.add(new BatchEntry(file.getOriginalFilename(), file, null));
+            }
+            checkEntryLimit(entries);
+        }
+
+        return entries;
+    }
+
+    private void expandZip(MultipartFile zipFile, List<BatchEntry> entries, List<Path> tempFiles) {
+        String zipName = zipFile.getOriginalFilename();
+
+        try (ZipInputStream zip = new ZipInputStream(zipFile.getInputStream())) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                if (zipEntry.isDirectory() || isHiddenEntry(zipEntry.getName())) {
+                    continue;
+                }
+
+                String entryName = zipName + "!/" + zipEntry.getName();
+                String simpleName = zipEntry.getName().substring(zipEntry.getName().lastIndexOf('/') + 1);
+
+                Path tempFile = Files.createTempFile("invoice-batch-", extensionOf(simpleName));
+                tempFiles.add(tempFile);
+
+                String contentHash = copyBounded(zip, tempFile);
+                if (contentHash == null) {
+                    entries.add(new BatchEntry(entryName, null, "File size must be less than 10MB"));
+                } else {
+                    entries.add(new BatchEntry(entryName, new StoredMultipartFile(
+                            tempFile, simpleName, contentTypeOf(simpleName), null, contentHash), null));
+                }
+                checkEntryLimit(entries);
+            }
+        } catch (IOException e) {
+            log.warn("Could not read ZIP archive {}: {}", zipName, e.getMessage());
+            entries.add(new BatchEntry(zipName, null, "Could not read ZIP archive: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Copies the current ZIP entry and returns its SHA-256, or null once it
+     * exceeds the per-file limit so a malformed or malicious archive cannot
+     * fill the disk.
+     */
+    private String copyBounded(InputStream in, Path target) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_ENTRY_SIZE) {
+                    return null;
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void checkEntryLimit(List<BatchEntry> entries) {
+        if (entries.size() > maxFiles) {
+            throw new IllegalArgumentException("Batch exceeds the maximum of " + maxFiles + " files");
+        }
+    }
+
+    private boolean isZip(MultipartFile file) {
+        String contentType = file.getContentType();
+        String name = file.getOriginalFilename();
+        return "application/zip".equals(contentType)
+                || "application/x-zip-compressed".equals(contentType)
+                || (name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip"));
+    }
+
+    private boolean isHiddenEntry(String name) {
+        String simpleName = name.substring(name.lastIndexOf('/') + 1);
+        return name.startsWith("__MACOSX/") || simpleName.startsWith(".");
+    }
+
+    private String extensionOf(String fileName) {
+        int idx = fileName.lastIndexOf('.');
+        return idx == -1 ? "" : fileName.substring(idx).toLowerCase(Locale.ROOT);
+    }
+
+    private String contentTypeOf(String fileName) {
+        return CONTENT_TYPES_BY_EXTENSION.getOrDefault(extensionOf(fileName), "application/octet-stream");
+    }
+
+    private LocalDate parseInvoiceDate(String invoiceDate) {
+        if (invoiceDate == null || invoiceDate.trim().isEmpty()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(invoiceDate.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date format. Use YYYY-MM-DD");
+        }
+    }
+
+    private BatchUploadResponse buildResponse(List<FileResult> results, long durationMs) {
+        int created = 0;
+        int duplicates = 0;
+        int failed = 0;
+        for (FileResult result : results) {
+            switch (result.getStatus()) {
+                case CREATED -> created++;
+                case DUPLICATE -> duplicates++;
+                case FAILED -> failed++;
+            }
+        }
+
+        log.info("📦 Batch upload finished - Created: {}, Duplicates: {}, Failed: {}, Time: {} ms",
+                created, duplicates, failed, durationMs);
+
+        return BatchUploadResponse.builder()
+                .totalFiles(results.size())
+                .created(created)
+                .duplicates(duplicates)
+                .failed(failed)
+                .durationMs(durationMs)
+                .results(results)
+                .build();
+    }
+
+    // ==================== INTERNAL TYPES ====================
+
+    @RequiredArgsConstructor
+    private static class BatchEntry {
+        private final String name;
+        private final MultipartFile file;
+        private final String error;
+    }
+
+    @RequiredArgsConstructor
+    private static class ScreenedEntry {
+        private final String contentHash;
+        private final FileOutcome rejected;
+
+        static ScreenedEntry accepted(String contentHash) {
+            return new ScreenedEntry(contentHash, null);
+        }
+
+        static ScreenedEntry rejected(FileOutcome rejected) {
+            return new ScreenedEntry(null, rejected);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class FileOutcome {
+        private final PreparedInvoice prepared;
+        private final FileResult result;
+
+        static FileOutcome prepared(PreparedInvoice prepared) {
+            return new FileOutcome(prepared, null);
+        }
+
+        static FileOutcome failed(String fileName, FileStatus status, String errorMessage) {
+            return new FileOutcome(null, FileResult.builder()
+                    .fileName(fileName)
+                    .status(status)
+                    .errorMessage(errorMessage)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.invoicetracker.service;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last invoice on a keyset page. Clients get it as an opaque
+ * URL-safe token; the direction is part of it so a cursor cannot be replayed
+ * against the opposite order and silently skip rows.
+ */
+record InvoiceCursor(LocalDateTime createdAt, Long invoiceId, Sort.Direction direction) {
+
+    private static final String VERSION = "v1";
+
+    String encode() {
+        String raw = String.join("|", VERSION, createdAt.toString(), invoiceId.toString(),
+                direction.isAscending() ? "A" : "D");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static InvoiceCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 4 || !parts[0].equals(VERSION) || !(parts[3].equals("A") || parts[3].equals("D"))) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new InvoiceCursor(LocalDateTime.parse(parts[1]), Long.valueOf(parts[2]),
+                    parts[3].equals("A") ? Sort.Direction.ASC : Sort.Direction.DESC);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
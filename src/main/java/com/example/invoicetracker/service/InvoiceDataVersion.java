@@ -0,0 +1,49 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that change whenever an uploader's invoices do. Caches of derived
+ * data (chat answers, charts) store the version they were computed at and
+ * treat a different current version as a miss, so they never need to know
+ * which writes affect which entries. The all-invoices version moves on any
+ * uploader's change and covers the SUPERUSER/AUDITOR views.
+ * Versions live in memory only: they restart with the caches they guard.
+ */
+@Component
+public class InvoiceDataVersion {
+
+    private final ConcurrentHashMap<String, AtomicLong> byUser = new ConcurrentHashMap<>();
+    private final AtomicLong all = new AtomicLong();
+
+    /**
+     * Records a change to the uploader's invoices. Inside a transaction the
+     * bump waits for the commit; bumping earlier would let a reader cache data
+     * that is still uncommitted under the new version.
+     */
+    public void bump(String userId) {
+        TransactionCallbacks.afterCommit(() -> increment(userId));
+    }
+
+    /**
+     * @param userId uploader, or null for the all-invoices version
+     */
+    public long current(String userId) {
+        if (userId == null) {
+            return all.get();
+        }
+        AtomicLong version = byUser.get(userId);
+        return version == null ? 0 : version.get();
+    }
+
+    private void increment(String userId) {
+        if (userId != null) {
+            byUser.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        }
+        all.incrementAndGet();
+    }
+}
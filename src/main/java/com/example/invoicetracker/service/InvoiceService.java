@@ -8,26 +8,48 @@ import com.example.invoicetracker.model.entity.*;
 import com.example.invoicetracker.model.enums.ActionType;
 import com.example.invoicetracker.model.enums.FileType;
 import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.FingerprintOutboxRepository;
 import com.example.invoicetracker.repository.InvoiceRepository;
 import com.example.invoicetracker.repository.ProductRepository;
 import com.example.invoicetracker.repository.UserRepository;
 import com.example.invoicetracker.service.ai.InvoiceExtractorService;
+import com.example.invoicetracker.service.duplicate.ContentHashFilter;
+import com.example.invoicetracker.service.duplicate.InvoiceSignature;
+import com.example.invoicetracker.service.duplicate.LocalDuplicateIndex;
 import com.example.invoicetracker.service.external.DuplicateCheckClient;
-
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup.Contribution;
+import com.example.invoicetracker.service.util.FilterValues;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.security.MessageDigest;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,6 +58,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InvoiceService {
 
+    static final String EXACT_HASH_METHOD = "EXACT_HASH";
+
     // === DEPENDENCIES ===
     private final InvoiceExtractorService invoiceExtractorService;
     private final InvoiceRepository invoiceRepository;
@@ -45,10 +69,68 @@ public class InvoiceService {
     private final FileStorageService fileStorageService;
     private final AuditLogService auditLogService;
     private final DuplicateCheckClient duplicateCheckClient;
+    private final FingerprintOutboxRepository fingerprintOutboxRepository;
+    private final LocalDuplicateIndex localDuplicateIndex;
+    private final ContentHashFilter contentHashFilter;
+    private final InvoiceSearchIndex invoiceSearchIndex;
+    private final VendorResolver vendorResolver;
+    private final InvoiceStatsRollup invoiceStatsRollup;
+    private final InvoiceDataVersion invoiceDataVersion;
+    @Qualifier("invoicePipelineExecutor")
+    private final Executor invoicePipelineExecutor;
+
+    @Value("${invoice.pipeline.extraction-timeout-ms:90000}")
+    private long extractionTimeoutMs = 90000;
+
+    @Value("${duplicate.check.enabled:true}")
+    private boolean duplicateCheckEnabled = true;
 
     // ==================== CREATE INVOICE ====================
     
     public InvoiceResponse createInvoice(InvoiceRequest request, String username, String role) {
+        PreparedInvoice prepared = prepareInvoice(request, username, role);
+        releaseReservationOnRollback(prepared);
+
+        // ==================== STEP 6: SAVE & AUDIT ====================
+        log.info("=== STEP 6: Saving invoice and creating audit log ===");
+
+        Invoice savedInvoice;
+        try {
+            auditLogService.logInvoiceAction(prepared.getInvoice(), prepared.getCurrentUser(), ActionType.CREATE, null, null);
+            savedInvoice = invoiceRepository.save(prepared.getInvoice());
+            invoiceStatsRollup.record(null, Contribution.of(savedInvoice));
+            localDuplicateIndex.indexAfterCommit(savedInvoice);
+            invoiceSearchIndex.index(savedInvoice);
+            contentHashFilter.addAfterCommit(savedInvoice.getContentHash(), savedInvoice.getInvoiceId());
+            invoiceDataVersion.bump(savedInvoice.getUploadedByUser().getUserId());
+        } finally {
+            fileStorageService.unpin(prepared.getInvoice().getStoredFileName());
+        }
+
+        log.info("🎉 Invoice created successfully - ID: {}, Type: {}, Amount: ${}",
+                savedInvoice.getInvoiceId(),
+                savedInvoice.getFileType(),
+                savedInvoice.getTotalAmount());
+
+        // ==================== STEP 7: QUEUE FINAL FINGERPRINT ====================
+        if (duplicateCheckEnabled) {
+            log.info("=== STEP 7: Queueing final fingerprint ===");
+            fingerprintOutboxRepository.save(toFingerprintOutbox(savedInvoice, username, role, prepared.getReservationId()));
+        }
+
+        return toInvoiceResponse(savedInvoice);
+    }
+
+    /**
+     * Runs steps 1-5 of invoice creation (validation, duplicate check, factory,
+     * extraction) and returns the unsaved invoice.
+     * Batch uploads call this from worker threads through the proxy; it runs
+     * without a surrounding transaction there so no connection is held while
+     * waiting on the remote services. Called from createInvoice it simply joins
+     * the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PreparedInvoice prepareInvoice(InvoiceRequest request, String username, String role) {
         boolean hasFile = request.getFile() != null && !request.getFile().isEmpty();
         boolean hasProducts = request.getProductQuantities() != null && !request.getProductQuantities().isEmpty();
 
@@ -59,42 +141,93 @@ public class InvoiceService {
                 hasProducts,
                 hasProducts ? request.getProductQuantities().size() : 0);
 
-        // ==================== STEP 1: DUPLICATE CHECK  ====================
-        log.info("=== STEP 1: Checking for duplicate invoices ===");
-
-        Long temporaryId = generateTemporaryId();
-        log.info("Generated temporary ID for duplicate check: {}", temporaryId);
-        
-        saveTemporaryFingerprintForCheck(temporaryId, request, username, role);
-        
-        DuplicateCheckResponse duplicateCheckResult = performDuplicateCheck(
-                request, username, role, temporaryId); 
-
-        handleDuplicateCheckResult(duplicateCheckResult);
-
-        // ==================== STEP 2: VALIDATION & PREPARATION ====================
-        log.info("=== STEP 2: Validating and preparing invoice ===");
+        // ==================== STEP 1: VALIDATION & PREPARATION ====================
+        log.info("=== STEP 1: Validating and preparing invoice ===");
 
         User currentUser = getUserByUsername(username);
         validateInvoiceCreation(role);
         User invoiceOwner = determineInvoiceOwner(username, role, request.getUserId());
         validateInvoiceRequest(request);
 
-        // ==================== STEP 3: CREATE INVOICE ====================
-        log.info("=== STEP 3: Creating invoice object ===");
+        if (hasFile) {
+            request.setFile(ingestFile(request.getFile()));
+        }
+
+        try {
+            return prepareIngestedInvoice(request, username, role, currentUser, invoiceOwner);
+        } catch (RuntimeException e) {
+            discardIngestedFile(request.getFile());
+            throw e;
+        }
+    }
+
+    private PreparedInvoice prepareIngestedInvoice(InvoiceRequest request, String username, String role,
+                                                   User currentUser, User invoiceOwner) {
+        // ==================== STEP 2: START AI EXTRACTION ====================
+        log.info("=== STEP 2: Starting AI extraction in background ===");
+
+        FutureTask<InvoiceExtractionResult> extractionTask = startExtraction(request);
+
+        // ==================== STEP 3: DUPLICATE CHECK ====================
+        log.info("=== STEP 3: Checking for duplicate invoices ===");
+
+        String reservationId = UUID.randomUUID().toString();
+
+        boolean checkedLocally;
+        try {
+            DuplicateCheckResponse duplicateCheckResult = performDuplicateCheck(
+                    request, username, role, invoiceOwner, reservationId);
+
+            handleDuplicateCheckResult(duplicateCheckResult);
+            checkedLocally = duplicateCheckResult != null
+                    && LocalDuplicateIndex.SIMILARITY_METHOD.equals(duplicateCheckResult.getCheckMethod());
+        } catch (RuntimeException e) {
+            if (extractionTask != null) {
+                log.info("Duplicate check rejected upload - Cancelling AI extraction");
+                extractionTask.cancel(true);
+            }
+            throw e;
+        }
+
+        // The check passed, so the service may now hold a reservation for this upload
+        try {
+            Invoice invoice = buildInvoice(request, invoiceOwner, extractionTask, checkedLocally);
+            return new PreparedInvoice(invoice, currentUser, username, role, reservationId);
+        } catch (RuntimeException e) {
+            releaseReservation(reservationId);
+            throw e;
+        }
+    }
+
+    private Invoice buildInvoice(InvoiceRequest request, User invoiceOwner,
+                                 FutureTask<InvoiceExtractionResult> extractionTask, boolean checkedLocally) {
+        // ==================== STEP 4: CREATE INVOICE ====================
+        log.info("=== STEP 4: Creating invoice object ===");
 
         Invoice invoice;
         try {
             invoice = invoiceFactory.createInvoice(request, invoiceOwner);
+            if (request.getFile() instanceof StoredMultipartFile stored) {
+                invoice.setContentHash(stored.getContentHash());
+            }
         } catch (Exception e) {
+            if (extractionTask != null) {
+                extractionTask.cancel(true);
+            }
             log.error("Failed to create invoice: {}", e.getMessage());
+            if (e instanceof IllegalArgumentException invalidInput) {
+                // Bad input stays typed: a 400 for the caller, and no retries for ingestion jobs
+                throw invalidInput;
+            }
             throw new RuntimeException("Failed to create invoice: " + e.getMessage());
         }
 
-        // ==================== STEP 4: AI EXTRACTION & AMOUNT CALCULATION ====================
-        log.info("=== STEP 4: Extracting data and calculating amount ===");
+        // ==================== STEP 5: JOIN AI EXTRACTION & AMOUNT CALCULATION ====================
+        log.info("=== STEP 5: Joining extraction and calculating amount ===");
 
-        Double extractedTotalAmount = extractTotalAmountFromFile(request);
+        InvoiceExtractionResult extractionResult = awaitExtraction(extractionTask);
+        recordExtraction(invoice, extractionResult);
+        Double extractedTotalAmount = applyExtractionResult(request, extractionResult);
         if (extractedTotalAmount != null) {
             log.info("✅ AI extracted total amount: ${}", extractedTotalAmount);
             invoice.setTotalAmount(extractedTotalAmount);
@@ -105,152 +238,224 @@ public class InvoiceService {
             log.info("📊 Using traditional calculation - Amount: ${}", totalAmount);
         }
 
-        // ==================== STEP 5: SAVE & AUDIT ====================
-        log.info("=== STEP 5: Saving invoice and creating audit log ===");
-
-        auditLogService.logInvoiceAction(invoice, currentUser, ActionType.CREATE, null, null);
-        Invoice savedInvoice = invoiceRepository.save(invoice);
-
-        log.info("🎉 Invoice created successfully - ID: {}, Type: {}, Amount: ${}",
-                savedInvoice.getInvoiceId(),
-                savedInvoice.getFileType(),
-                savedInvoice.getTotalAmount());
-
-        // ==================== STEP 6: SAVE FINAL FINGERPRINT & DELETE TEMPORARY ====================
-        log.info("=== STEP 6: Saving final fingerprint ===");
+        if (checkedLocally) {
+            // A file upload gave the local index only its name to compare; the
+            // extracted vendor, items and amount add the signals that can block it
+            log.info("=== STEP 5b: Re-checking the extracted invoice against the local index ===");
+            handleDuplicateCheckResult(localDuplicateIndex.check(InvoiceSignature.of(invoice)));
+        }
 
-        saveFinalFingerprint(savedInvoice, username, role, temporaryId);
+        return invoice;
+    }
 
-        return toInvoiceResponse(savedInvoice);
+    /**
+     * Frees the remote reservation of an upload that will not be saved; a
+     * retry of the same file would otherwise be rejected as its duplicate.
+     */
+    private void releaseReservation(String reservationId) {
+        if (duplicateCheckEnabled) {
+            duplicateCheckClient.releaseReservation(reservationId);
+        }
     }
 
-   
-    private Long generateTemporaryId() {
-        long timestamp = System.currentTimeMillis() % 1000000000L; 
-        long random = (long) (Math.random() * 10000L);
-        return timestamp * 10000L + random;
+    private void releaseReservationOnRollback(PreparedInvoice prepared) {
+        String reservationId = prepared.getReservationId();
+        TransactionCallbacks.afterRollback(() -> releaseReservation(reservationId));
     }
 
-   
-    private void saveTemporaryFingerprintForCheck(Long temporaryId, InvoiceRequest request, 
-                                                 String username, String role) {
+    /**
+     * Writes the upload to storage once, hashing it on the way; every later
+     * stage (hash, duplicate check, extraction, factory) reads the stored copy.
+     */
+    private MultipartFile ingestFile(MultipartFile file) {
         try {
-            log.info("💾 Saving TEMPORARY fingerprint for checking: {}", temporaryId);
-            
-            String vendor = extractVendorFromRequest(request);
-            BigDecimal totalAmount = determineTotalAmountForCheck(request);
-            
-            String textContent = createTemporaryFingerprintText(temporaryId, request, vendor, totalAmount);
-            
-            duplicateCheckClient.saveTemporaryFingerprint(
-                temporaryId,
-                request.getInvoiceDate(),
-                totalAmount,
-                vendor,
-                textContent,
-                username,
-                role
-            );
-            
-            log.info("✅ Temporary fingerprint saved for check: {}", temporaryId);
-            
-        } catch (Exception e) {
-            log.warn("⚠️ Could not save temporary fingerprint: {}", e.getMessage());
+            return fileStorageService.ingest(file);
+        } catch (IOException e) {
+            log.error("Failed to store uploaded file: {}", e.getMessage());
+            throw new RuntimeException("Failed to store uploaded file: " + e.getMessage());
         }
     }
 
-   
-    private void saveFinalFingerprint(Invoice savedInvoice, String username, 
-                                     String role, Long temporaryId) {
-        try {
-            log.info("📝 Saving FINAL fingerprint for invoice: {}", savedInvoice.getInvoiceId());
-            
-            duplicateCheckClient.replaceTemporaryWithFinal(
-                temporaryId,
-                savedInvoice.getInvoiceId(),
-                savedInvoice.getInvoiceDate(),
-                BigDecimal.valueOf(savedInvoice.getTotalAmount()),
-                savedInvoice.getFileName(),
-                savedInvoice.getInvoiceProduct(),
-                username,
-                role
-            );
-            
-            log.info("✅ Final fingerprint saved for invoice: {}", savedInvoice.getInvoiceId());
-            
-        } catch (Exception e) {
-            log.error("❌ Failed to save final fingerprint: {}", e.getMessage());
-            log.error("Stack trace:", e);
+    private void discardIngestedFile(MultipartFile file) {
+        if (file instanceof StoredMultipartFile stored && stored.getStoredFileName() != null) {
+            try {
+                fileStorageService.discard(stored.getStoredFileName());
+            } catch (IOException e) {
+                log.warn("⚠️ Could not delete rejected upload {}: {}", stored.getStoredFileName(), e.getMessage());
+            }
         }
     }
 
-    
-    private String createTemporaryFingerprintText(Long tempId, InvoiceRequest request, 
-                                                String vendor, BigDecimal totalAmount) {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append("[TEMPORARY_FINGERPRINT]|ID:").append(tempId)
-          .append("|Date:").append(request.getInvoiceDate())
-          .append("|Amount:").append(totalAmount)
-          .append("|Vendor:").append(vendor)
-          .append("|User:username");
-        
-        if (request.getProductQuantities() != null && !request.getProductQuantities().isEmpty()) {
-            sb.append("|ProductsCount:").append(request.getProductQuantities().size());
+    /**
+     * Saves a group of prepared invoices in one transaction with a single
+     * saveAll, and queues their final fingerprints in the same transaction.
+     */
+    public List<InvoiceResponse> saveInvoiceBatch(List<PreparedInvoice> batch) {
+        List<Invoice> invoices = new ArrayList<>(batch.size());
+        for (PreparedInvoice prepared : batch) {
+            releaseReservationOnRollback(prepared);
+            auditLogService.logInvoiceAction(prepared.getInvoice(), prepared.getCurrentUser(), ActionType.CREATE, null, null);
+            invoices.add(prepared.getInvoice());
         }
-        
-        if (request.getFile() != null && !request.getFile().isEmpty()) {
-            try {
-                String fileHash = calculateFileHash(request.getFile());
-                sb.append("|FileHash:").append(fileHash.substring(0, Math.min(20, fileHash.length())));
-            } catch (Exception e) {
+
+        List<Invoice> savedInvoices;
+        try {
+            savedInvoices = invoiceRepository.saveAll(invoices);
+            invoiceStatsRollup.record(List.of(),
+                    savedInvoices.stream().map(Contribution::of).filter(Objects::nonNull).toList());
+            for (Invoice savedInvoice : savedInvoices) {
+                localDuplicateIndex.indexAfterCommit(savedInvoice);
+                invoiceSearchIndex.index(savedInvoice);
+                contentHashFilter.addAfterCommit(savedInvoice.getContentHash(), savedInvoice.getInvoiceId());
+                invoiceDataVersion.bump(savedInvoice.getUploadedByUser().getUserId());
             }
+        } finally {
+            invoices.forEach(invoice -> fileStorageService.unpin(invoice.getStoredFileName()));
         }
-        
-        return sb.toString();
+        log.info("🎉 Saved batch of {} invoices", savedInvoices.size());
+
+        List<FingerprintOutbox> fingerprints = new ArrayList<>(savedInvoices.size());
+        List<InvoiceResponse> responses = new ArrayList<>(savedInvoices.size());
+        for (int i = 0; i < savedInvoices.size(); i++) {
+            PreparedInvoice prepared = batch.get(i);
+            Invoice savedInvoice = savedInvoices.get(i);
+            fingerprints.add(toFingerprintOutbox(savedInvoice, prepared.getUsername(), prepared.getRole(),
+                    prepared.getReservationId()));
+            responses.add(toInvoiceResponse(savedInvoice));
+        }
+        if (duplicateCheckEnabled) {
+            fingerprintOutboxRepository.saveAll(fingerprints);
+        }
+        return responses;
     }
 
-   
-    private String calculateFileHash(MultipartFile file) throws Exception {
+    /**
+     * Invoice that passed validation and duplicate check but is not saved yet.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PreparedInvoice {
+        private final Invoice invoice;
+        private final User currentUser;
+        private final String username;
+        private final String role;
+        private final String reservationId;
+    }
+
+    /**
+     * Submits the AI extraction to the pipeline executor so it overlaps with the
+     * duplicate check. Returns null when the request has no file to extract from.
+     */
+    private FutureTask<InvoiceExtractionResult> startExtraction(InvoiceRequest request) {
+        if (request.getFile() == null || request.getFile().isEmpty()) {
+            return null;
+        }
+
+        FutureTask<InvoiceExtractionResult> task = new FutureTask<>(() -> extractFromFile(request));
+        invoicePipelineExecutor.execute(task);
+        return task;
+    }
+
+    private InvoiceExtractionResult awaitExtraction(FutureTask<InvoiceExtractionResult> task) {
+        if (task == null) {
+            return null;
+        }
+
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = file.getBytes();
-            byte[] hash = digest.digest(fileBytes);
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+            return task.get(extractionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("⏱️ AI extraction timed out after {} ms - Falling back", extractionTimeoutMs);
+            task.cancel(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+        } catch (ExecutionException | CancellationException e) {
+            log.error("❌ Error during AI extraction: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Final fingerprint row for the outbox, written in the invoice's
+     * transaction and delivered by FingerprintOutboxDispatcher. Not written
+     * while the duplicate check is disabled: nothing would deliver it.
+     */
+    private FingerprintOutbox toFingerprintOutbox(Invoice savedInvoice, String username,
+                                                  String role, String reservationId) {
+        // The extracted vendor when there is one; file name otherwise, as before extraction was persisted
+        String vendor = savedInvoice.getVendor() != null ? savedInvoice.getVendor().getName()
+                : savedInvoice.getFileName() != null ? savedInvoice.getFileName() : "Unknown";
+        BigDecimal totalAmount = BigDecimal.valueOf(savedInvoice.getTotalAmount());
+
+        StringBuilder textContent = new StringBuilder(String.format(
+                "InvoiceID:%d|Vendor:%s|Date:%s|Amount:%.2f",
+                savedInvoice.getInvoiceId(), vendor, savedInvoice.getInvoiceDate(), totalAmount));
+
+        List<InvoiceProduct> products = savedInvoice.getInvoiceProduct();
+        if (products != null && !products.isEmpty()) {
+            textContent.append("|Products:");
+            for (InvoiceProduct ip : products) {
+                textContent.append(String.format("%s(%.1f),", ip.getProduct().getProductName(), ip.getQuantity()));
             }
-            return hexString.toString();
-        } catch (Exception e) {
-            throw new Exception("Failed to calculate file hash: " + e.getMessage());
         }
+        textContent.append("|User:").append(username);
+
+        return FingerprintOutbox.builder()
+                .reservationId(reservationId)
+                .invoiceId(savedInvoice.getInvoiceId())
+                .invoiceDate(savedInvoice.getInvoiceDate())
+                .totalAmount(totalAmount)
+                .vendor(vendor)
+                .textContent(textContent.toString())
+                .username(username)
+                .role(role)
+                .build();
     }
 
    
+    /**
+     * Rejects an exact re-upload first, without a network hop. Otherwise the
+     * duplicate-check service decides (and reserves the fingerprint); the
+     * local index result stands in when the service is disabled or unavailable.
+     */
     private DuplicateCheckResponse performDuplicateCheck(InvoiceRequest request,
             String username,
             String role,
-            Long temporaryId) {
+            User invoiceOwner,
+            String reservationId) {
         try {
-            log.info("Initiating duplicate check for user: {}, tempId: {}", username, temporaryId);
+            log.info("Initiating duplicate check for user: {}, reservation: {}", username, reservationId);
+
+            DuplicateCheckResponse exactMatch = checkExactContent(request, invoiceOwner);
+            if (exactMatch != null) {
+                log.info("Identical file already uploaded - Skipping remote check");
+                return exactMatch;
+            }
+
+            DuplicateCheckResponse localResult = checkLocally(request, invoiceOwner);
+            if (!duplicateCheckEnabled) {
+                return localResult != null ? localResult : createDefaultDuplicateResponse("Duplicate check disabled");
+            }
 
             String vendor = extractVendorFromRequest(request);
 
             BigDecimal totalAmountForCheck = determineTotalAmountForCheck(request);
 
-            DuplicateCheckResponse response = duplicateCheckClient.checkForDuplicates(
+            DuplicateCheckResponse response = duplicateCheckClient.checkAndReserve(
                     request.getFile(),
                     request.getInvoiceDate(),
                     totalAmountForCheck,
                     vendor,
                     username,
                     role,
-                    temporaryId,
+                    reservationId,
                     request.getFileName());
 
+            if ((response == null || "SERVICE_UNAVAILABLE".equals(response.getCheckMethod())) && localResult != null) {
+                log.warn("⚠️ Duplicate check service unavailable - Using local index result");
+                return localResult;
+            }
+
             log.info("Duplicate check completed. Result: duplicate={}, confidence={}",
                     response != null && response.isDuplicate(),
                     response != null ? response.getConfidenceScore() : "N/A");
@@ -263,6 +468,53 @@ public class InvoiceService {
         }
     }
 
+    /**
+     * Looks for an active invoice of the same owner with byte-identical file
+     * content. The filter answers most uploads (new files) from memory; only a
+     * possible hit costs an indexed lookup on content_hash.
+     */
+    private DuplicateCheckResponse checkExactContent(InvoiceRequest request, User invoiceOwner) {
+        if (!(request.getFile() instanceof StoredMultipartFile stored)
+                || stored.getContentHash() == null || invoiceOwner == null) {
+            return null;
+        }
+        if (!contentHashFilter.mightContain(stored.getContentHash())) {
+            return null;
+        }
+
+        return invoiceRepository
+                .findFirstByUploadedByUserAndContentHashAndIsActiveTrueOrderByInvoiceIdAsc(
+                        invoiceOwner, stored.getContentHash())
+                .map(existing -> DuplicateCheckResponse.builder()
+                        .duplicate(true)
+                        .confidenceScore(BigDecimal.ONE)
+                        .checkMethod(EXACT_HASH_METHOD)
+                        .similarInvoices(List.of(DuplicateCheckResponse.SimilarInvoice.builder()
+                                .invoiceId(existing.getInvoiceId())
+                                .uploadDate(existing.getInvoiceDate())
+                                .totalAmount(BigDecimal.valueOf(existing.getTotalAmount()))
+                                .similarityScore(BigDecimal.ONE)
+                                .matchReason("Identical file content")
+                                .build()))
+                        .recommendation("This exact file was already uploaded as invoice #" + existing.getInvoiceId())
+                        .build())
+                .orElse(null);
+    }
+
+    private DuplicateCheckResponse checkLocally(InvoiceRequest request, User invoiceOwner) {
+        if (!localDuplicateIndex.isEnabled() || invoiceOwner == null) {
+            return null;
+        }
+        MultipartFile file = request.getFile();
+        return localDuplicateIndex.check(InvoiceSignature.forUpload(
+                invoiceOwner.getUserId(),
+                request.getInvoiceDate(),
+                request.getTotalAmount(),
+                file != null ? file.getOriginalFilename() : null,
+                request.getFileName(),
+                request.getProductQuantities()));
+    }
+
     // ==================== DUPLICATE CHECK METHODS ====================
 
     private BigDecimal determineTotalAmountForCheck(InvoiceRequest request) {
@@ -279,18 +531,6 @@ public class InvoiceService {
             }
         }
 
-        if (request.getFile() != null && !request.getFile().isEmpty()) {
-            try {
-                Double aiAmount = extractTotalAmountFromFile(request);
-                if (aiAmount != null && aiAmount > 0) {
-                    log.info("Using AI extracted amount for duplicate check: ${}", aiAmount);
-                    return BigDecimal.valueOf(aiAmount);
-                }
-            } catch (Exception e) {
-                log.warn("AI extraction failed for duplicate check: {}", e.getMessage());
-            }
-        }
-
         log.info("No amount source found, using default: $0");
         return BigDecimal.ZERO;
     }
@@ -423,7 +663,68 @@ public class InvoiceService {
     }
 
     // ==================== EXISTING METHODS ====================
-    private Double extractTotalAmountFromFile(InvoiceRequest request) {
+    private Double extractTotalAmountFromFile(Invoice invoice, InvoiceRequest request) {
+        InvoiceExtractionResult extractionResult = extractFromFile(request);
+        recordExtraction(invoice, extractionResult);
+        return applyExtractionResult(request, extractionResult);
+    }
+
+    /**
+     * Keeps what the extraction read besides the amount: the vendor, as a row
+     * of the vendor dimension, and the line items. Both are saved with the
+     * invoice, so later readers never have to extract the file again.
+     */
+    private void recordExtraction(Invoice invoice, InvoiceExtractionResult extractionResult) {
+        if (extractionResult == null || !extractionResult.isSuccess()) {
+            return;
+        }
+
+        if (extractionResult.getVendor() != null) {
+            invoice.setVendor(vendorResolver.resolve(extractionResult.getVendor()));
+        }
+
+        List<ExtractedLineItem> items = new ArrayList<>();
+        if (extractionResult.getExtractedItems() != null) {
+            for (InvoiceExtractionResult.ExtractedItem item : extractionResult.getExtractedItems()) {
+                if (item == null || item.getName() == null || item.getName().isBlank()) {
+                    continue;
+                }
+                String name = item.getName().strip();
+                items.add(ExtractedLineItem.builder()
+                        .invoice(invoice)
+                        .lineNumber(items.size() + 1)
+                        .name(name.length() > 500 ? name.substring(0, 500) : name)
+                        .quantity(finiteOrNull(item.getQuantity()))
+                        .unitPrice(toMoney(item.getUnitPrice()))
+                        .subtotal(toMoney(item.getSubtotal()))
+                        .build());
+            }
+        }
+        // Replace in place so orphan removal deletes a previous extraction's items on update
+        if (invoice.getExtractedItems() == null) {
+            invoice.setExtractedItems(items);
+        } else {
+            invoice.getExtractedItems().clear();
+            invoice.getExtractedItems().addAll(items);
+        }
+        log.info("🧾 Recorded extraction - Vendor: {}, Line items: {}",
+                invoice.getVendor() != null ? invoice.getVendor().getName() : "none", items.size());
+    }
+
+    private static Double finiteOrNull(Double value) {
+        return value != null && Double.isFinite(value) ? value : null;
+    }
+
+    private static BigDecimal toMoney(Double value) {
+        return finiteOrNull(value) == null ? null
+                : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Runs the AI extraction without touching the request, so it is safe to call
+     * from a pipeline thread while the duplicate check reads the same request.
+     */
+    private InvoiceExtractionResult extractFromFile(InvoiceRequest request) {
         try {
             if (request.getFile() != null && !request.getFile().isEmpty()) {
                 String contentType = request.getFile().getContentType();
@@ -434,27 +735,7 @@ public class InvoiceService {
                     log.info("🔍 Attempting AI extraction for file: {} (Type: {})",
                             request.getFile().getOriginalFilename(), contentType);
 
-                    InvoiceExtractionResult extractionResult = invoiceExtractorService
-                            .extractInvoiceData(request.getFile());
-
-                    if (extractionResult.isSuccess() && extractionResult.getTotalAmount() != null) {
-                        log.info("✅ AI extraction successful - Total Amount: ${}", extractionResult.getTotalAmount());
-
-                        if (extractionResult.getInvoiceDate() != null) {
-                            log.info("📅 Extracted invoice date: {}", extractionResult.getInvoiceDate());
-                            if (request.getInvoiceDate() == null) {
-                                request.setInvoiceDate(extractionResult.getInvoiceDate());
-                            }
-                        }
-                        if (extractionResult.getVendor() != null) {
-                            log.info("🏢 Extracted vendor: {}", extractionResult.getVendor());
-                        }
-
-                        return extractionResult.getTotalAmount();
-                    } else {
-                        log.warn("❌ AI extraction failed or no amount found: {}",
-                                extractionResult.getErrorMessage());
-                    }
+                    return invoiceExtractorService.extractInvoiceData(request.getFile());
                 } else {
                     log.info("⏭️ Skipping AI extraction - Unsupported file type: {}", contentType);
                 }
@@ -467,6 +748,31 @@ public class InvoiceService {
         return null;
     }
 
+    private Double applyExtractionResult(InvoiceRequest request, InvoiceExtractionResult extractionResult) {
+        if (extractionResult == null) {
+            return null;
+        }
+
+        if (extractionResult.isSuccess() && extractionResult.getTotalAmount() != null) {
+            log.info("✅ AI extraction successful - Total Amount: ${}", extractionResult.getTotalAmount());
+
+            if (extractionResult.getInvoiceDate() != null) {
+                log.info("📅 Extracted invoice date: {}", extractionResult.getInvoiceDate());
+                if (request.getInvoiceDate() == null) {
+                    request.setInvoiceDate(extractionResult.getInvoiceDate());
+                }
+            }
+            if (extractionResult.getVendor() != null) {
+                log.info("🏢 Extracted vendor: {}", extractionResult.getVendor());
+            }
+
+            return extractionResult.getTotalAmount();
+        }
+
+        log.warn("❌ AI extraction failed or no amount found: {}", extractionResult.getErrorMessage());
+        return null;
+    }
+
     // ==================== UPDATE INVOICE ====================
     @Transactional
     public InvoiceResponse updateInvoice(Long id, InvoiceRequest request, String username, String role) {
@@ -477,6 +783,7 @@ public class InvoiceService {
         validateInvoiceModification(invoice, username, role);
 
         Map<String, Object> oldValues = auditLogService.captureInvoiceState(invoice);
+        Contribution before = Contribution.of(invoice);
 
         if (request.getInvoiceDate() != null) {
             invoice.setInvoiceDate(request.getInvoiceDate());
@@ -491,6 +798,7 @@ public class InvoiceService {
         }
 
         // Calculate total amount with AI extraction support
+        boolean lineItemsChanged = request.getProductQuantities() != null && !request.getProductQuantities().isEmpty();
         double totalAmount = calculateTotalAmountForUpdate(invoice, request);
         invoice.setTotalAmount(totalAmount);
 
@@ -498,6 +806,10 @@ public class InvoiceService {
         auditLogService.logInvoiceAction(invoice, currentUser, ActionType.UPDATE, oldValues, newValues);
 
         Invoice saved = invoiceRepository.save(invoice);
+        invoiceStatsRollup.record(before, Contribution.of(saved), lineItemsChanged);
+        localDuplicateIndex.indexAfterCommit(saved);
+        invoiceSearchIndex.index(saved);
+        invoiceDataVersion.bump(saved.getUploadedByUser().getUserId());
         log.info("Invoice updated successfully - ID: {}, New Amount: ${}", id, totalAmount);
 
         return toInvoiceResponse(saved);
@@ -508,11 +820,15 @@ public class InvoiceService {
         Invoice invoice = getActiveInvoice(id);
         validateInvoiceModification(invoice, username, role);
 
+        Contribution before = Contribution.of(invoice);
         invoice.setIsActive(false);
         User currentUser = getUserByUsername(username);
         auditLogService.logInvoiceAction(invoice, currentUser, ActionType.DELETE, null, null);
 
         invoiceRepository.save(invoice);
+        invoiceStatsRollup.record(before, null);
+        localDuplicateIndex.removeAfterCommit(id);
+        invoiceDataVersion.bump(invoice.getUploadedByUser().getUserId());
         log.info("Invoice deleted (soft delete) - ID: {}", id);
     }
 
@@ -526,15 +842,13 @@ public class InvoiceService {
 
     @Transactional(readOnly = true)
     public Page<InvoiceResponse> getAllInvoices(Pageable pageable) {
-        return invoiceRepository.findAllByIsActiveTrue(pageable)
-                .map(this::toInvoiceResponse);
+        return toInvoiceResponses(invoiceRepository.findActiveListRows(pageable));
     }
 
     @Transactional(readOnly = true)
     public Page<InvoiceResponse> getUserInvoices(String username, Pageable pageable) {
         User user = getUserByUsername(username);
-        return invoiceRepository.findAllByUploadedByUserAndIsActiveTrue(user, pageable)
-                .map(this::toInvoiceResponse);
+        return toInvoiceResponses(invoiceRepository.findActiveListRowsByUser(user, pageable));
     }
 
     // ==================== SEARCH METHODS ====================
@@ -552,38 +866,129 @@ public class InvoiceService {
 
     private Page<InvoiceResponse> searchUserInvoices(InvoiceSearchRequest searchRequest, User user, Pageable pageable) {
         if (!hasSearchCriteria(searchRequest)) {
-            return invoiceRepository.findAllByUploadedByUserAndIsActiveTrue(user, pageable)
-                    .map(this::toInvoiceResponse);
+            return toInvoiceResponses(invoiceRepository.findActiveListRowsByUser(user, pageable));
         }
 
-        FileType fileType = convertToFileType(searchRequest.getFileType());
-        InvoiceStatus status = convertToInvoiceStatus(searchRequest.getStatus());
+        FileType fileType = FilterValues.fileType(searchRequest.getFileType());
+        InvoiceStatus status = FilterValues.invoiceStatus(searchRequest.getStatus());
 
-        Page<Invoice> invoicePage = invoiceRepository.searchUserInvoices(
-                user, searchRequest.getSearch(), searchRequest.getStartDate(),
-                searchRequest.getEndDate(), fileType, status, pageable);
+        String terms = InvoiceSearchIndex.booleanQuery(searchRequest.getSearch());
+        Page<InvoiceListRow> rowPage = terms != null
+                ? invoiceRepository.matchListRows(user.getUserId(), terms, searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status, pageable)
+                : invoiceRepository.searchUserInvoices(user, searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status, pageable);
 
-        return invoicePage.map(this::toInvoiceResponse);
+        return toInvoiceResponses(rowPage);
     }
 
     private Page<InvoiceResponse> searchAllInvoices(InvoiceSearchRequest searchRequest, Pageable pageable) {
         if (!hasSearchCriteria(searchRequest)) {
-            return invoiceRepository.findAllByIsActiveTrue(pageable)
-                    .map(this::toInvoiceResponse);
+            return toInvoiceResponses(invoiceRepository.findActiveListRows(pageable));
+        }
+
+        FileType fileType = FilterValues.fileType(searchRequest.getFileType());
+        InvoiceStatus status = FilterValues.invoiceStatus(searchRequest.getStatus());
+
+        String terms = InvoiceSearchIndex.booleanQuery(searchRequest.getSearch());
+        Page<InvoiceListRow> rowPage = terms != null
+                ? invoiceRepository.matchListRows(null, terms, searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status, pageable)
+                : invoiceRepository.searchAllInvoices(searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status, pageable);
+
+        return toInvoiceResponses(rowPage);
+    }
+
+    // ==================== KEYSET PAGES ====================
+    @Transactional(readOnly = true)
+    public InvoiceCursorPageResponse getAllInvoicesByCursor(InvoiceSearchRequest pageRequest) {
+        return seekInvoices(null, pageRequest);
+    }
+
+    @Transactional(readOnly = true)
+    public InvoiceCursorPageResponse getUserInvoicesByCursor(String username, InvoiceSearchRequest pageRequest) {
+        return seekInvoices(getUserByUsername(username).getUserId(), pageRequest);
+    }
+
+    @Transactional(readOnly = true)
+    public InvoiceCursorPageResponse searchInvoicesByCursor(InvoiceSearchRequest searchRequest, String username,
+            String role) {
+        String userId = role.equals("USER") ? getUserByUsername(username).getUserId() : null;
+        return seekInvoices(userId, searchRequest);
+    }
+
+    /**
+     * Keyset page over (createdAt, invoiceId): seeks past the cursor's row
+     * through the created_at indexes instead of reading and discarding every
+     * earlier row as OFFSET does, so deep pages cost the same as the first.
+     * Reads one row beyond the page to tell whether another page follows; the
+     * total is counted only when asked for.
+     *
+     * @param userId uploader to restrict to, or null for all invoices
+     */
+    private InvoiceCursorPageResponse seekInvoices(String userId, InvoiceSearchRequest searchRequest) {
+        if (searchRequest.getSize() < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        Sort.Direction direction = Sort.Direction.fromString(searchRequest.getDirection());
+        InvoiceCursor after = searchRequest.getCursor() == null || searchRequest.getCursor().isBlank() ? null
+                : InvoiceCursor.decode(searchRequest.getCursor());
+        if (after != null && after.direction() != direction) {
+            throw new IllegalArgumentException("Cursor was issued for the opposite sort direction");
         }
 
-        FileType fileType = convertToFileType(searchRequest.getFileType());
-        InvoiceStatus status = convertToInvoiceStatus(searchRequest.getStatus());
+        FileType fileType = FilterValues.fileType(searchRequest.getFileType());
+        InvoiceStatus status = FilterValues.invoiceStatus(searchRequest.getStatus());
+        LocalDateTime afterCreatedAt = after == null ? null : after.createdAt();
+        Long afterInvoiceId = after == null ? null : after.invoiceId();
+        Pageable window = PageRequest.of(0, searchRequest.getSize() + 1);
+
+        String terms = InvoiceSearchIndex.booleanQuery(searchRequest.getSearch());
+
+        List<InvoiceListRow> rows;
+        if (terms != null) {
+            rows = direction.isAscending()
+                    ? invoiceRepository.seekMatchingRowsAscending(userId, terms, searchRequest.getStartDate(),
+                            searchRequest.getEndDate(), fileType, status, afterCreatedAt, afterInvoiceId, window)
+                    : invoiceRepository.seekMatchingRowsDescending(userId, terms, searchRequest.getStartDate(),
+                            searchRequest.getEndDate(), fileType, status, afterCreatedAt, afterInvoiceId, window);
+        } else {
+            rows = direction.isAscending()
+                    ? invoiceRepository.seekListRowsAscending(userId, searchRequest.getStartDate(),
+                            searchRequest.getEndDate(), fileType, status, afterCreatedAt, afterInvoiceId, window)
+                    : invoiceRepository.seekListRowsDescending(userId, searchRequest.getStartDate(),
+                            searchRequest.getEndDate(), fileType, status, afterCreatedAt, afterInvoiceId, window);
+        }
 
-        Page<Invoice> invoicePage = invoiceRepository.searchAllInvoices(
-                searchRequest.getSearch(), searchRequest.getStartDate(),
-                searchRequest.getEndDate(), fileType, status, pageable);
+        boolean hasNext = rows.size() > searchRequest.getSize();
+        List<InvoiceListRow> pageRows = hasNext ? rows.subList(0, searchRequest.getSize()) : rows;
+        InvoiceListRow last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+        return InvoiceCursorPageResponse.builder()
+                .content(toInvoiceResponses(new PageImpl<>(pageRows)).getContent())
+                .size(searchRequest.getSize())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? new InvoiceCursor(last.getCreatedAt(), last.getInvoiceId(), direction).encode()
+                        : null)
+                .totalElements(searchRequest.isIncludeTotal()
+                        ? countSeekRows(userId, terms, searchRequest, fileType, status)
+                        : null)
+                .build();
+    }
 
-        return invoicePage.map(this::toInvoiceResponse);
+    private long countSeekRows(String userId, String terms, InvoiceSearchRequest searchRequest,
+            FileType fileType, InvoiceStatus status) {
+        return terms != null
+                ? invoiceRepository.countMatchingRows(userId, terms, searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status)
+                : invoiceRepository.countListRows(userId, searchRequest.getStartDate(),
+                        searchRequest.getEndDate(), fileType, status);
     }
 
     // ==================== FILE DOWNLOAD ====================
-    public ResponseEntity<byte[]> downloadInvoiceFile(Long id, String username, String role) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<Resource> downloadInvoiceFile(Long id, String username, String role) {
         Invoice invoice = getActiveInvoice(id);
         validateInvoiceAccess(invoice, username, role);
 
@@ -594,10 +999,14 @@ public class InvoiceService {
         }
 
         try {
-            byte[] fileContent = fileStorageService.loadFile(invoice.getStoredFileName());
+            String storedFileName = invoice.getStoredFileName();
             String contentType = fileStorageService.determineContentType(invoice.getFileType());
 
-            return fileStorageService.createFileResponse(fileContent, contentType, invoice.getOriginalFileName());
+            return fileStorageService.createFileResponse(
+                    fileStorageService.getFilePath(storedFileName),
+                    contentType,
+                    invoice.getOriginalFileName(),
+                    fileStorageService.getContentHash(storedFileName));
         } catch (Exception e) {
             throw new ResourceNotFoundException("File not found: " + e.getMessage());
         }
@@ -636,44 +1045,67 @@ public class InvoiceService {
         User currentUser = getUserByUsername(username);
         InvoiceStatus oldStatus = invoice.getStatus();
         InvoiceStatus status = InvoiceStatus.valueOf(newStatus.toUpperCase());
+        Contribution before = Contribution.of(invoice);
 
         auditLogService.logStatusChange(invoice, currentUser, oldStatus, status);
         invoice.setStatus(status);
 
         Invoice saved = invoiceRepository.save(invoice);
+        invoiceStatsRollup.record(before, Contribution.of(saved));
+        invoiceDataVersion.bump(saved.getUploadedByUser().getUserId());
         log.info("Invoice status updated successfully - ID: {}, From: {} To: {}",
                 id, oldStatus, status);
 
         return toInvoiceResponse(saved);
     }
 
+    // Reads the rollup row of the uploader, or of everyone, instead of aggregating invoices
     public Map<String, Object> getInvoiceStats(String username, String role) {
         User user = getUserByUsername(username);
         Map<String, Object> stats = new HashMap<>();
 
         if (role.equals("USER")) {
-            long totalInvoices = invoiceRepository.countByUploadedByUserAndIsActiveTrue(user);
-            Double totalAmount = invoiceRepository.sumTotalAmountByUserAndIsActiveTrue(user);
+            InvoiceStatsTotal totals = statsTotals(user);
+            long totalInvoices = totals.getInvoiceCount();
+            double totalAmount = totals.getTotalAmount();
 
             stats.put("totalInvoices", totalInvoices);
-            stats.put("totalAmount", totalAmount != null ? totalAmount : 0.0);
-            stats.put("averageAmount",
-                    totalInvoices > 0 ? (totalAmount != null ? totalAmount : 0.0) / totalInvoices : 0);
+            stats.put("totalAmount", totalAmount);
+            stats.put("averageAmount", totalInvoices > 0 ? totalAmount / totalInvoices : 0);
         } else {
-            long totalInvoices = invoiceRepository.countByIsActiveTrue();
-            Double totalAmount = invoiceRepository.sumTotalAmountByIsActiveTrue();
+            InvoiceStatsTotal totals = statsTotals(null);
+            long totalInvoices = totals.getInvoiceCount();
+            double totalAmount = totals.getTotalAmount();
             long totalUsers = userRepository.countByIsActiveTrue();
 
             stats.put("totalInvoices", totalInvoices);
-            stats.put("totalAmount", totalAmount != null ? totalAmount : 0.0);
+            stats.put("totalAmount", totalAmount);
             stats.put("totalUsers", totalUsers);
-            stats.put("averageAmount",
-                    totalInvoices > 0 ? (totalAmount != null ? totalAmount : 0.0) / totalInvoices : 0);
+            stats.put("averageAmount", totalInvoices > 0 ? totalAmount / totalInvoices : 0);
         }
 
         return stats;
     }
 
+    /**
+     * The uploader's rollup totals, or everyone's for a null user. Until the
+     * first rebuild commits the rollup only holds deltas since deploy, so the
+     * invoice table is aggregated instead.
+     */
+    private InvoiceStatsTotal statsTotals(User user) {
+        String scope = user != null ? user.getUserId() : InvoiceStatsRollup.ALL_SCOPE;
+        if (invoiceStatsRollup.isBuilt()) {
+            return invoiceStatsRollup.totals(scope);
+        }
+        long count = user != null
+                ? invoiceRepository.countByUploadedByUserAndIsActiveTrue(user)
+                : invoiceRepository.countByIsActiveTrue();
+        Double amount = user != null
+                ? invoiceRepository.sumTotalAmountByUserAndIsActiveTrue(user)
+                : invoiceRepository.sumTotalAmountByIsActiveTrue();
+        return new InvoiceStatsTotal(scope, count, amount != null ? amount : 0.0);
+    }
+
     // ==================== HELPER METHODS ====================
 
     private double processInvoiceProducts(Invoice invoice, InvoiceRequest request) {
@@ -738,7 +1170,7 @@ public class InvoiceService {
         // Priority 1: Try AI extraction if new file is provided
         if (request.getFile() != null && !request.getFile().isEmpty()) {
             log.info("🔍 New file provided during update - Attempting AI extraction");
-            Double extractedAmount = extractTotalAmountFromFile(request);
+            Double extractedAmount = extractTotalAmountFromFile(invoice, request);
 
             if (extractedAmount != null && extractedAmount > 0) {
                 log.info("✅ AI extraction successful during update - Amount: ${}", extractedAmount);
@@ -813,26 +1245,6 @@ public class InvoiceService {
                 searchRequest.getStatus() != null;
     }
 
-    private FileType convertToFileType(String fileType) {
-        if (fileType == null)
-            return null;
-        try {
-            return FileType.valueOf(fileType.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
-    }
-
-    private InvoiceStatus convertToInvoiceStatus(String status) {
-        if (status == null)
-            return null;
-        try {
-            return InvoiceStatus.valueOf(status.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
-    }
-
     private void validateInvoiceRequest(InvoiceRequest request) {
         boolean hasFile = request.getFile() != null && !request.getFile().isEmpty();
         boolean hasProducts = request.getProductQuantities() != null && !request.getProductQuantities().isEmpty();
@@ -891,6 +1303,38 @@ public class InvoiceService {
                 .build();
     }
 
+    /**
+     * Maps a page of list rows with one extra query for the whole page's
+     * product and category names, instead of walking each invoice's line
+     * items, products and categories entity by entity.
+     */
+    private Page<InvoiceResponse> toInvoiceResponses(Page<InvoiceListRow> rows) {
+        if (rows.isEmpty()) {
+            return rows.map(row -> toInvoiceResponse(row, List.of()));
+        }
+
+        List<Long> invoiceIds = rows.map(InvoiceListRow::getInvoiceId).getContent();
+        Map<Long, List<Object[]>> namesByInvoice = invoiceRepository.findProductNameRows(invoiceIds).stream()
+                .collect(Collectors.groupingBy(row -> (Long) row[0]));
+
+        return rows.map(row -> toInvoiceResponse(row, namesByInvoice.getOrDefault(row.getInvoiceId(), List.of())));
+    }
+
+    // names are [invoiceId, productName, categoryName] rows in line item order
+    private InvoiceResponse toInvoiceResponse(InvoiceListRow row, List<Object[]> names) {
+        return InvoiceResponse.builder()
+                .invoiceId(row.getInvoiceId())
+                .uploadedByUser(row.getUploadedByUser())
+                .invoiceDate(row.getInvoiceDate())
+                .fileType(row.getFileType())
+                .fileName(row.getFileName())
+                .totalAmount(row.getTotalAmount())
+                .status(row.getStatus())
+                .productNames(names.stream().map(name -> (String) name[1]).collect(Collectors.toList()))
+                .categories(names.stream().map(name -> (String) name[2]).distinct().collect(Collectors.toList()))
+                .build();
+    }
+
     private InvoiceDetailsResponse toInvoiceDetailsResponse(Invoice invoice) {
         List<InvoiceDetailsResponse.ProductDetail> productDetails = invoice.getInvoiceProduct() == null ? List.of()
                 : invoice.getInvoiceProduct().stream()
@@ -904,6 +1348,17 @@ public class InvoiceService {
                                 .build())
                         .collect(Collectors.toList());
 
+        List<InvoiceDetailsResponse.ExtractedItemDetail> extractedItems = invoice.getExtractedItems() == null
+                ? List.of()
+                : invoice.getExtractedItems().stream()
+                        .map(item -> InvoiceDetailsResponse.ExtractedItemDetail.builder()
+                                .name(item.getName())
+                                .quantity(item.getQuantity())
+                                .unitPrice(item.getUnitPrice() != null ? item.getUnitPrice().doubleValue() : null)
+                                .subtotal(item.getSubtotal() != null ? item.getSubtotal().doubleValue() : null)
+                                .build())
+                        .collect(Collectors.toList());
+
         List<AuditLogResponse> auditLogs = invoice.getLog() == null ? List.of()
                 : invoice.getLog().stream()
                         .map(this::toAuditLogResponse)
@@ -921,6 +1376,8 @@ public class InvoiceService {
                 .totalAmount(invoice.getTotalAmount())
                 .status(invoice.getStatus())
                 .products(productDetails)
+                .vendor(invoice.getVendor() != null ? invoice.getVendor().getName() : null)
+                .extractedItems(extractedItems)
                 .auditLogs(auditLogs)
                 .createdAt(invoice.getCreatedAt())
                 .updatedAt(invoice.getUpdatedAt())
@@ -8,18 +8,24 @@ import com.example.invoicetracker.exception.ResourceNotFoundException;
 import com.example.invoicetracker.model.entity.Product;
 import com.example.invoicetracker.repository.CategoryRepository;
 import com.example.invoicetracker.repository.ProductRepository;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Objects;
+
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final AnalyticsBucketCache analyticsBucketCache;
+    private final InvoiceSearchIndex invoiceSearchIndex;
 
     @Transactional
     public ProductResponse createProduct(ProductRequest request) {
@@ -35,6 +41,7 @@ public class ProductService {
         productRepository.findByProductCode(request.getProductCode())
                 .filter(p -> p.getIsActive() != null && !p.getIsActive())
                 .ifPresentOrElse(inactive -> {
+                    boolean renamed = !Objects.equals(inactive.getProductName(), request.getProductName());
                     inactive.setProductName(request.getProductName());
                     inactive.setCategory(categoryRepository.findById(request.getCategoryId())
                             .orElseThrow(() -> new ResourceNotFoundException("Category not found")));
@@ -42,6 +49,9 @@ public class ProductService {
                     inactive.setUnitPrice(request.getUnitPrice());
                     inactive.setIsActive(true);
                     productRepository.save(inactive);
+                    if (renamed) {
+                        invoiceSearchIndex.reindexProduct(inactive.getProductId());
+                    }
                 }, () -> {
                     Product product = Product.builder()
                             .productCode(request.getProductCode())
@@ -94,6 +104,9 @@ public class ProductService {
                     });
         }
 
+        Long previousCategoryId = product.getCategory() != null ? product.getCategory().getCategoryId() : null;
+        boolean renamed = !product.getProductName().equals(request.getProductName());
+
         product.setProductCode(request.getProductCode());
         product.setProductName(request.getProductName());
         product.setCategory(categoryRepository.findById(request.getCategoryId())
@@ -102,6 +115,14 @@ public class ProductService {
         product.setUnitPrice(request.getUnitPrice());
 
         Product updated = productRepository.save(product);
+        if (!Objects.equals(previousCategoryId, updated.getCategory().getCategoryId())) {
+            // Every invoice line of this product, closed periods included, now counts for another category
+            analyticsBucketCache.clearAfterCommit();
+        }
+        if (renamed) {
+            // Invoices with a line of this product are found by its name
+            invoiceSearchIndex.reindexProduct(updated.getProductId());
+        }
         return mapToResponse(updated);
     }
 
@@ -7,6 +7,7 @@ import com.example.invoicetracker.model.entity.Role;
 import com.example.invoicetracker.model.entity.User;
 import com.example.invoicetracker.repository.RoleRepository;
 import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -23,6 +24,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final InvoiceSearchIndex invoiceSearchIndex;
 
     @Transactional
     public UserResponse createUser(UserRequest request) {
@@ -70,7 +72,8 @@ public Page<UserResponse> listUsers(UserFilterRequest filter) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
 
-        if (request.getUsername() != null && !request.getUsername().equals(user.getUsername())) {
+        boolean renamed = request.getUsername() != null && !request.getUsername().equals(user.getUsername());
+        if (renamed) {
             validateUsernameUniqueness(request.getUsername());
             user.setUsername(request.getUsername());
         }
@@ -90,6 +93,10 @@ public Page<UserResponse> listUsers(UserFilterRequest filter) {
         }
 
         User updatedUser = userRepository.save(user);
+        if (renamed) {
+            // Their invoices are found by their username
+            invoiceSearchIndex.reindexUploader(updatedUser.getUserId());
+        }
         return mapToResponse(updatedUser);
     }
 
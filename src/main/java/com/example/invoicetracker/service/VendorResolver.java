@@ -0,0 +1,150 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.model.entity.Vendor;
+import com.example.invoicetracker.repository.VendorRepository;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the vendor names the AI extraction reads to rows of the vendor
+ * dimension. Names are canonicalized first (case, accents, punctuation,
+ * legal suffixes), and the canonical name to vendor mapping is kept in a
+ * bounded LRU cache, so a known vendor costs no query per upload.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VendorResolver {
+
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Set<String> LEGAL_SUFFIXES = Set.of(
+            "inc", "incorporated", "llc", "llp", "ltd", "limited", "co", "corp", "corporation", "company",
+            "plc", "gmbh", "ag", "sa", "sas", "sarl", "srl", "spa", "bv", "nv", "pty", "oy", "ab");
+
+    private final VendorRepository vendorRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${invoice.vendor.cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    private final Map<String, Vendor> byNormalizedName = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("invoice.vendor.cache.hits");
+        misses = meterRegistry.counter("invoice.vendor.cache.misses");
+        Gauge.builder("invoice.vendor.cache.size", this, VendorResolver::size).register(meterRegistry);
+    }
+
+    /**
+     * @return the vendor row for the name, created on first sight, or null when
+     *         the name has nothing left after canonicalization
+     */
+    public Vendor resolve(String rawName) {
+        String normalized = normalize(rawName);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+
+        synchronized (byNormalizedName) {
+            Vendor cached = byNormalizedName.get(normalized);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+
+        Vendor existing = vendorRepository.findByNormalizedName(normalized).orElse(null);
+        if (existing != null) {
+            cache(normalized, existing);
+            return existing;
+        }
+
+        boolean inserted = vendorRepository.insertIgnore(displayName(rawName), normalized) > 0;
+        // A locking read sees the latest committed row, which the snapshot of a
+        // REPEATABLE READ transaction may predate when another upload won the insert
+        Vendor vendor = vendorRepository.findForShareByNormalizedName(normalized)
+                .orElseThrow(() -> new IllegalStateException("Vendor not found after insert: " + normalized));
+        if (inserted) {
+            log.info("🏢 New vendor - Name: {}, Normalized: {}", vendor.getName(), normalized);
+            // Our row exists only if the upload commits
+            TransactionCallbacks.afterCommit(() -> cache(normalized, vendor));
+        } else {
+            cache(normalized, vendor);
+        }
+        return vendor;
+    }
+
+    private void cache(String normalized, Vendor vendor) {
+        synchronized (byNormalizedName) {
+            byNormalizedName.put(normalized, vendor);
+            Iterator<Map.Entry<String, Vendor>> eldest = byNormalizedName.entrySet().iterator();
+            while (byNormalizedName.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (byNormalizedName) {
+            return byNormalizedName.size();
+        }
+    }
+
+    /**
+     * Canonical form shared by spellings of one vendor: "The ACME, Inc." and
+     * "Acme Corp" are both "acme". A name that is only a legal form keeps it.
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(name, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replace("&", " and ");
+        List<String> words = new ArrayList<>(Arrays.stream(NON_WORD.split(folded))
+                .filter(word -> !word.isEmpty())
+                .toList());
+        while (words.size() > 1 && LEGAL_SUFFIXES.contains(words.get(words.size() - 1))) {
+            words.remove(words.size() - 1);
+        }
+        if (words.size() > 1 && words.get(0).equals("the")) {
+            words.remove(0);
+        }
+        return truncate(String.join(" ", words));
+    }
+
+    private static String displayName(String name) {
+        return truncate(SPACES.matcher(name).replaceAll(" ").strip());
+    }
+
+    private static String truncate(String value) {
+        return value.length() > MAX_NAME_LENGTH ? value.substring(0, MAX_NAME_LENGTH) : value;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.service.InvoiceDataVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of chatbot answers, so repeated dashboard questions skip
+ * both Gemini calls. Keyed by the asking user, the day (answers resolve
+ * "this month" against today) and the normalized question. Each entry keeps
+ * the {@link InvoiceDataVersion} of the user's scope it was answered at; once
+ * an invoice in that scope changes, the entry is stale and dropped on lookup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatAnswerCache {
+
+    private static final Pattern LONE_DOT = Pattern.compile("(?<!\\d)\\.|\\.(?!\\d)");
+    // Comparison operators, currency and sign change the answer, so they stay in the key
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}#.<>=$€£%-]+");
+    private static final Pattern SYMBOLS = Pattern.compile("[<>=$€£%]+");
+    private static final Pattern FILLER = Pattern.compile("\\b(please|pls|kindly|can you|could you|tell me)\\b");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final InvoiceDataVersion invoiceDataVersion;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.chat.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ai.chat.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${ai.chat.cache.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    private final Map<Key, CachedAnswer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Counter hits;
+    private Counter misses;
+    private Counter stale;
+    private Counter evictions;
+
+    private record Key(String username, LocalDate day, String question) {
+    }
+
+    private record CachedAnswer(String answer, long version, long expiresAt) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("ai.chat.cache.hits");
+        misses = meterRegistry.counter("ai.chat.cache.misses");
+        stale = meterRegistry.counter("ai.chat.cache.stale");
+        evictions = meterRegistry.counter("ai.chat.cache.evictions");
+        Gauge.builder("ai.chat.cache.size", this, ChatAnswerCache::size).register(meterRegistry);
+        Gauge.builder("ai.chat.cache.hit.ratio", this, ChatAnswerCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Data version to pass to {@link #put}. Read it before building the
+     * answer: a change that lands meanwhile then makes the stored entry stale
+     * instead of hiding behind it.
+     *
+     * @param scopeUserId uploader the asker is restricted to, or null for all invoices
+     */
+    public long version(String scopeUserId) {
+        return invoiceDataVersion.current(scopeUserId);
+    }
+
+    /**
+     * @return the cached answer, or null on a miss or when the scope's data changed since
+     */
+    public String get(String username, String scopeUserId, String query) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = key(username, query);
+        long current = invoiceDataVersion.current(scopeUserId);
+        synchronized (entries) {
+            CachedAnswer entry = entries.get(key);
+            if (entry != null && entry.version() != current) {
+                entries.remove(key);
+                stale.increment();
+                entry = null;
+            } else if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            log.debug("Chat answer cache hit - User: {}, Question: {}", username, key.question());
+            return entry.answer();
+        }
+    }
+
+    public void put(String username, String scopeUserId, String query, long version, String answer) {
+        if (!enabled || version != invoiceDataVersion.current(scopeUserId)) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + Duration.ofMinutes(ttlMinutes).toMillis();
+        synchronized (entries) {
+            entries.put(key(username, query), new CachedAnswer(answer, version, expiresAt));
+
+            Iterator<Map.Entry<Key, CachedAnswer>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups == 0 ? 0 : hits.count() / lookups;
+    }
+
+    private static Key key(String username, String query) {
+        return new Key(username, LocalDate.now(), normalize(query));
+    }
+
+    /**
+     * Folds differences that do not change the question: case, Unicode
+     * forms, punctuation, spacing and politeness words.
+     */
+    static String normalize(String query) {
+        String text = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = LONE_DOT.matcher(text).replaceAll(" ");
+        text = SEPARATORS.matcher(text).replaceAll(" ");
+        text = SYMBOLS.matcher(text).replaceAll(" $0 ");
+        text = FILLER.matcher(text).replaceAll(" ");
+        return SPACES.matcher(text).replaceAll(" ").strip();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Metric;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Second phase of a planned chatbot answer: runs a {@link ChatQueryPlan} as
+ * parameterized queries within the caller's scope and formats the few
+ * resulting rows for the answering prompt.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatQueryExecutor {
+
+    private final InvoiceRepository invoiceRepository;
+
+    @Value("${ai.chat.planner.max-groups:24}")
+    private int maxGroups = 24;
+
+    /**
+     * @param userId uploader the caller is restricted to, or null for SUPERUSER/AUDITOR
+     */
+    String execute(ChatQueryPlan plan, String userId) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== QUERY RESULT ===\n");
+        sb.append("Query: ").append(plan.describe()).append('\n');
+
+        Object[] totals = invoiceRepository.aggregateForPlan(userId, plan.uploader(), plan.startDate(),
+                plan.endDate(), plan.status(), plan.fileType(), plan.minAmount(), plan.maxAmount()).get(0);
+        long count = ((Number) totals[0]).longValue();
+        sb.append(String.format("Matching invoices: %d\n", count));
+        if (count == 0) {
+            return sb.toString();
+        }
+        sb.append(String.format("Total amount: $%.2f | Average: $%.2f | Smallest: $%.2f | Largest: $%.2f\n",
+                ((Number) totals[1]).doubleValue(), ((Number) totals[2]).doubleValue(),
+                ((Number) totals[3]).doubleValue(), ((Number) totals[4]).doubleValue()));
+
+        switch (plan.groupBy()) {
+            case NONE -> {
+            }
+            case MONTH -> appendGroups(sb, "month", invoiceRepository.aggregateForPlanByMonth(userId, plan.uploader(),
+                    plan.startDate(), plan.endDate(), plan.status(), plan.fileType(), plan.minAmount(),
+                    plan.maxAmount(), PageRequest.of(0, maxGroups)), 2);
+            case STATUS -> appendGroups(sb, "status", invoiceRepository.aggregateForPlanByStatus(userId,
+                    plan.uploader(), plan.startDate(), plan.endDate(), plan.status(), plan.fileType(),
+                    plan.minAmount(), plan.maxAmount()), 1);
+            case FILE_TYPE -> appendGroups(sb, "file type", invoiceRepository.aggregateForPlanByFileType(userId,
+                    plan.uploader(), plan.startDate(), plan.endDate(), plan.status(), plan.fileType(),
+                    plan.minAmount(), plan.maxAmount()), 1);
+            case UPLOADER -> appendGroups(sb, "uploader", invoiceRepository.aggregateForPlanByUploader(userId,
+                    plan.uploader(), plan.startDate(), plan.endDate(), plan.status(), plan.fileType(),
+                    plan.minAmount(), plan.maxAmount(), PageRequest.of(0, maxGroups)), 1);
+        }
+
+        if (plan.metric() == Metric.LIST) {
+            List<Invoice> invoices = invoiceRepository.findForPlan(userId, plan.uploader(), plan.startDate(),
+                    plan.endDate(), plan.status(), plan.fileType(), plan.minAmount(), plan.maxAmount(),
+                    listPage(plan));
+            sb.append(String.format("Invoices (%s first, %d of %d):\n",
+                    plan.order().name().toLowerCase(Locale.ROOT), invoices.size(), count));
+            invoices.forEach(invoice -> sb.append(String.format(
+                    "   • Invoice #%d | Date: %s | Type: %s | Amount: $%.2f | Status: %s | Uploaded by: %s\n",
+                    invoice.getInvoiceId(), invoice.getInvoiceDate(), invoice.getFileType(),
+                    invoice.getTotalAmount(), invoice.getStatus(), invoice.getUploadedByUser().getUsername())));
+        }
+        return sb.toString();
+    }
+
+    // Rows are [key..., count, sum, avg]; a month key is two columns (year, month)
+    private void appendGroups(StringBuilder sb, String heading, List<Object[]> rows, int keyColumns) {
+        sb.append("By ").append(heading).append(":\n");
+        for (Object[] row : rows) {
+            String key = keyColumns == 2
+                    ? Month.of(((Number) row[1]).intValue()).getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + row[0]
+                    : String.valueOf(row[0]);
+            sb.append(String.format("   %s: %d invoices, Total: $%.2f, Average: $%.2f\n", key,
+                    ((Number) row[keyColumns]).longValue(),
+                    ((Number) row[keyColumns + 1]).doubleValue(),
+                    ((Number) row[keyColumns + 2]).doubleValue()));
+        }
+        if (rows.size() == maxGroups) {
+            sb.append("   (only the first ").append(maxGroups).append(" groups are shown)\n");
+        }
+    }
+
+    private Pageable listPage(ChatQueryPlan plan) {
+        Sort sort = switch (plan.order()) {
+            case NEWEST -> Sort.by(Sort.Order.desc("invoiceDate"), Sort.Order.desc("invoiceId"));
+            case OLDEST -> Sort.by(Sort.Order.asc("invoiceDate"), Sort.Order.asc("invoiceId"));
+            case LARGEST -> Sort.by(Sort.Order.desc("totalAmount"), Sort.Order.desc("invoiceId"));
+            case SMALLEST -> Sort.by(Sort.Order.asc("totalAmount"), Sort.Order.asc("invoiceId"));
+        };
+        return PageRequest.of(0, plan.limit(), sort);
+    }
+}
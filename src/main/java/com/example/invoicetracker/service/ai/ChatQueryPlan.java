@@ -0,0 +1,61 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A chatbot question reduced to filters, a grouping and a metric. Only
+ * {@link ChatQueryPlanner} creates plans, after validating every field, so
+ * the executor can bind them as query parameters as they are.
+ */
+record ChatQueryPlan(Metric metric, GroupBy groupBy, LocalDate startDate, LocalDate endDate,
+                     InvoiceStatus status, FileType fileType, String uploader, Double minAmount, Double maxAmount,
+                     Order order, int limit) {
+
+    enum Metric { COUNT, SUM, AVERAGE, MIN, MAX, LIST }
+
+    enum GroupBy { NONE, MONTH, STATUS, FILE_TYPE, UPLOADER }
+
+    enum Order { NEWEST, OLDEST, LARGEST, SMALLEST }
+
+    /**
+     * One-line summary for the answering prompt, e.g.
+     * "sum of invoice amounts by month; dated 2026-01-01 to 2026-03-31; status APPROVED".
+     */
+    String describe() {
+        List<String> parts = new ArrayList<>();
+        String what = switch (metric) {
+            case COUNT -> "number of invoices";
+            case SUM -> "sum of invoice amounts";
+            case AVERAGE -> "average invoice amount";
+            case MIN -> "smallest invoice amount";
+            case MAX -> "largest invoice amount";
+            case LIST -> "list of invoices, " + order.name().toLowerCase(Locale.ROOT) + " first";
+        };
+        parts.add(groupBy == GroupBy.NONE ? what : what + " by " + groupBy.name().toLowerCase(Locale.ROOT).replace('_', ' '));
+        if (startDate != null || endDate != null) {
+            parts.add("dated " + (startDate == null ? "any time" : startDate) + " to " + (endDate == null ? "now" : endDate));
+        }
+        if (status != null) {
+            parts.add("status " + status);
+        }
+        if (fileType != null) {
+            parts.add("file type " + fileType);
+        }
+        if (uploader != null) {
+            parts.add("uploaded by " + uploader);
+        }
+        if (minAmount != null) {
+            parts.add(String.format("amount at least $%.2f", minAmount));
+        }
+        if (maxAmount != null) {
+            parts.add(String.format("amount at most $%.2f", maxAmount));
+        }
+        return String.join("; ", parts);
+    }
+}
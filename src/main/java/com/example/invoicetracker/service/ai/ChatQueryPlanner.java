@@ -0,0 +1,188 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.GroupBy;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Metric;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Order;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * First phase of a chatbot answer: asks Gemini to translate the question
+ * into a {@link ChatQueryPlan} instead of reading the data itself. The reply
+ * is untrusted (the question is user text), so every field is checked
+ * against a whitelist and the caller's scope is applied by the executor, not
+ * the plan. Questions the plan shape cannot express, and replies that do not
+ * validate, yield no plan and the caller falls back to the full context.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatQueryPlanner {
+
+    private final GeminiService geminiService;
+    private final Gson gson;
+
+    @Value("${ai.chat.planner.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ai.chat.planner.max-rows:20}")
+    private int maxRows = 20;
+
+    public Optional<ChatQueryPlan> plan(String question, boolean allUsers, LocalDate today) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            String reply = geminiService.generateJson(buildPlannerPrompt(question, allUsers, today));
+            Optional<ChatQueryPlan> plan = parse(reply, allUsers);
+            log.info("🧭 Chat query plan: {}", plan.map(ChatQueryPlan::describe).orElse("none - using full context"));
+            return plan;
+        } catch (IOException e) {
+            log.warn("⚠️ Chat query planning failed - using full context: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Validates the planner's JSON reply. Unknown values are rejected rather
+     * than dropped, since ignoring a filter would answer a broader question
+     * than the one asked.
+     */
+    Optional<ChatQueryPlan> parse(String reply, boolean allUsers) {
+        try {
+            JsonObject json = gson.fromJson(stripCodeFence(reply), JsonObject.class);
+            if (json == null || !json.has("answerable") || !json.get("answerable").getAsBoolean()) {
+                return Optional.empty();
+            }
+
+            Metric metric = parseEnum(Metric.class, string(json, "metric"), Metric.COUNT);
+            GroupBy groupBy = parseEnum(GroupBy.class, string(json, "groupBy"), GroupBy.NONE);
+            Order order = parseEnum(Order.class, string(json, "order"), Order.NEWEST);
+            LocalDate startDate = parseDate(string(json, "startDate"));
+            LocalDate endDate = parseDate(string(json, "endDate"));
+            if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+                throw new IllegalArgumentException("startDate after endDate");
+            }
+            InvoiceStatus status = parseEnum(InvoiceStatus.class, string(json, "status"), null);
+            FileType fileType = parseEnum(FileType.class, string(json, "fileType"), null);
+            // A USER only ever sees their own invoices, so an uploader filter means nothing there
+            String uploader = allUsers ? string(json, "uploader") : null;
+            if (!allUsers && groupBy == GroupBy.UPLOADER) {
+                groupBy = GroupBy.NONE;
+            }
+            Double minAmount = number(json, "minAmount");
+            Double maxAmount = number(json, "maxAmount");
+            Double limitValue = number(json, "limit");
+            int limit = limitValue == null ? 10 : (int) Math.max(1, Math.min(maxRows, limitValue));
+
+            return Optional.of(new ChatQueryPlan(metric, groupBy, startDate, endDate, status, fileType,
+                    uploader, minAmount, maxAmount, order, limit));
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Rejected chat query plan {}: {}", reply, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private String buildPlannerPrompt(String question, boolean allUsers, LocalDate today) {
+        return String.format("""
+            Translate a question about invoices into a query plan. Do not answer the question.
+            Today is %s (%s). Resolve relative dates ("last month", "this year", "in March") against today.
+
+            Reply with one JSON object and nothing else:
+            {
+              "answerable": true if the question can be answered from the fields below, else false,
+              "metric": one of %s,
+              "groupBy": one of %s,
+              "startDate": "YYYY-MM-DD" or null,
+              "endDate": "YYYY-MM-DD" or null (inclusive),
+              "status": one of %s or null,
+              "fileType": one of %s or null,%s
+              "minAmount": number or null,
+              "maxAmount": number or null,
+              "order": one of %s (for "list"),
+              "limit": how many invoices to list, 1 to %d
+            }
+
+            Use "list" when the question asks which invoices, for details of specific ones, or for the
+            largest/smallest/latest invoices. Anything about products, vendors or file contents is not answerable.
+
+            Question: %s
+            """,
+                today, today.getDayOfWeek().name().toLowerCase(Locale.ROOT),
+                values(Metric.class), values(GroupBy.class), values(InvoiceStatus.class), values(FileType.class),
+                allUsers ? "\n  \"uploader\": exact username or null," : "",
+                values(Order.class), maxRows, question);
+    }
+
+    private static String stripCodeFence(String reply) {
+        String trimmed = reply.strip();
+        if (trimmed.startsWith("```")) {
+            trimmed = trimmed.substring(trimmed.indexOf('\n') + 1);
+            if (trimmed.endsWith("```")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 3);
+            }
+        }
+        return trimmed;
+    }
+
+    private static String string(JsonObject json, String field) {
+        JsonElement element = json.get(field);
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        String value = element.getAsString().strip();
+        return value.isEmpty() || value.equalsIgnoreCase("null") ? null : value;
+    }
+
+    private static Double number(JsonObject json, String field) {
+        JsonElement element = json.get(field);
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        double value = element.getAsDouble();
+        if (!Double.isFinite(value) || value < 0) {
+            throw new IllegalArgumentException(field + " out of range: " + value);
+        }
+        return value;
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, E fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace(' ', '_'));
+    }
+
+    private static String values(Class<? extends Enum<?>> type) {
+        return Arrays.stream(type.getEnumConstants())
+                .map(constant -> "\"" + (type.getDeclaringClass() == ChatQueryPlan.class
+                        ? constant.name().toLowerCase(Locale.ROOT) : constant.name()) + "\"")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.service.util.Backoff;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for Gemini calls. A token bucket keeps the request rate
+ * under the project quota, and an adaptive concurrency limit (AIMD) grows
+ * slowly while calls come back fast and halves on a 429 or slow response.
+ * A 429 with Retry-After pauses every lane until the quota window reopens.
+ * Two lanes share the limit: interactive chat always goes first and has a
+ * slot bulk extraction cannot take, so month-end upload bursts queue behind
+ * the limiter instead of failing, without starving the chatbot.
+ * Published as gemini.limiter.* metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GeminiRateLimiter {
+
+    public enum Lane { INTERACTIVE, BULK }
+
+    public enum Outcome { SUCCESS, THROTTLED, FAILED }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gemini.limiter.requests-per-minute:60}")
+    private double requestsPerMinute = 60;
+
+    @Value("${gemini.limiter.burst:10}")
+    private int burst = 10;
+
+    @Value("${gemini.limiter.initial-concurrency:4}")
+    private int initialConcurrency = 4;
+
+    @Value("${gemini.limiter.min-concurrency:1}")
+    private int minConcurrency = 1;
+
+    @Value("${gemini.limiter.max-concurrency:16}")
+    private int maxConcurrency = 16;
+
+    // Responses slower than this count as congestion and shrink the limit
+    @Value("${gemini.limiter.latency-threshold-ms:20000}")
+    private long latencyThresholdMs = 20000;
+
+    @Value("${gemini.limiter.interactive-reserved:1}")
+    private int interactiveReserved = 1;
+
+    @Value("${gemini.limiter.interactive-max-wait-ms:15000}")
+    private long interactiveMaxWaitMs = 15000;
+
+    @Value("${gemini.limiter.bulk-max-wait-ms:300000}")
+    private long bulkMaxWaitMs = 300000;
+
+    @Value("${gemini.limiter.interactive-max-attempts:2}")
+    private int interactiveMaxAttempts = 2;
+
+    @Value("${gemini.limiter.bulk-max-attempts:5}")
+    private int bulkMaxAttempts = 5;
+
+    @Value("${gemini.limiter.backoff-initial-ms:1000}")
+    private long backoffInitialMs = 1000;
+
+    @Value("${gemini.limiter.backoff-max-ms:60000}")
+    private long backoffMaxMs = 60000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private final Map<Lane, Integer> waiting = new EnumMap<>(Lane.class);
+
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> rejected = new EnumMap<>(Lane.class);
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+
+    /**
+     * Thrown when a call could not get a slot within its lane's wait budget.
+     */
+    public static class QueueTimeoutException extends IOException {
+        public QueueTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A granted slot. Release it exactly once with the call's outcome.
+     */
+    public final class Permit {
+        private final Lane lane;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public void release(Outcome outcome, long retryAfterMs) {
+            if (released) {
+                return;
+            }
+            released = true;
+            onRelease(outcome, retryAfterMs, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        limit = initialConcurrency;
+        tokens = burst;
+        lastRefillNanos = System.nanoTime();
+        pausedUntilNanos = lastRefillNanos;
+
+        for (Lane lane : Lane.values()) {
+            waiting.put(lane, 0);
+            String tag = lane.name().toLowerCase();
+            waitTimers.put(lane, Timer.builder("gemini.limiter.wait").tag("lane", tag).register(meterRegistry));
+            rejected.put(lane, meterRegistry.counter("gemini.limiter.rejected", "lane", tag));
+            Gauge.builder("gemini.limiter.queued", this, limiter -> limiter.getWaiting(lane))
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, meterRegistry.counter("gemini.limiter.calls",
+                    "outcome", outcome.name().toLowerCase()));
+        }
+        Gauge.builder("gemini.limiter.limit", this, GeminiRateLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("gemini.limiter.in.flight", this, GeminiRateLimiter::getInFlight).register(meterRegistry);
+    }
+
+    // ==================== ADMISSION ====================
+
+    /**
+     * Blocks until the lane may start a call: a token is available, the
+     * concurrency limit has room, no 429 pause is in effect and (for bulk) no
+     * interactive call is waiting.
+     *
+     * @throws QueueTimeoutException if that takes longer than the lane's wait budget
+     */
+    public Permit acquire(Lane lane) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMs(lane));
+
+        lock.lock();
+        try {
+            waiting.merge(lane, 1, Integer::sum);
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                long waitNanos;
+                if (pausedUntilNanos - now > 0) {
+                    waitNanos = pausedUntilNanos - now;
+                } else if (!mayStart(lane)) {
+                    waitNanos = Long.MAX_VALUE;
+                } else if (tokens < 1) {
+                    waitNanos = (long) ((1 - tokens) / tokensPerNano());
+                } else {
+                    tokens -= 1;
+                    inFlight++;
+                    waitTimers.get(lane).record(now - start, TimeUnit.NANOSECONDS);
+                    return new Permit(lane);
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    rejected.get(lane).increment();
+                    throw new QueueTimeoutException("Gemini request queue full - waited "
+                            + TimeUnit.NANOSECONDS.toMillis(now - start) + " ms for a "
+                            + lane.name().toLowerCase() + " slot");
+                }
+                try {
+                    changed.awaitNanos(Math.min(waitNanos, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a Gemini slot");
+                }
+            }
+        } finally {
+            waiting.merge(lane, -1, Integer::sum);
+            lock.unlock();
+        }
+    }
+
+    private boolean mayStart(Lane lane) {
+        int allowed = (int) limit;
+        if (lane == Lane.BULK) {
+            if (waiting.get(Lane.INTERACTIVE) > 0) {
+                return false;
+            }
+            allowed = Math.max(1, allowed - interactiveReserved);
+        }
+        return inFlight < allowed;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano());
+        lastRefillNanos = now;
+    }
+
+    private double tokensPerNano() {
+        return requestsPerMinute / TimeUnit.MINUTES.toNanos(1);
+    }
+
+    // ==================== FEEDBACK ====================
+
+    private void onRelease(Outcome outcome, long retryAfterMs, long latencyMs) {
+        outcomes.get(outcome).increment();
+        lock.lock();
+        try {
+            inFlight--;
+            double previous = limit;
+            switch (outcome) {
+                case SUCCESS -> {
+                    if (latencyMs > latencyThresholdMs) {
+                        limit = Math.max(minConcurrency, limit * 0.9);
+                    } else {
+                        // About +1 per limit's worth of successful calls
+                        limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+                    }
+                }
+                case THROTTLED -> {
+                    limit = Math.max(minConcurrency, limit / 2);
+                    tokens = 0;
+                    long pauseMs = retryAfterMs > 0 ? retryAfterMs : backoffInitialMs;
+                    long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMs);
+                    if (until - pausedUntilNanos > 0) {
+                        pausedUntilNanos = until;
+                    }
+                }
+                case FAILED -> limit = Math.max(minConcurrency, limit * 0.9);
+            }
+            if ((int) previous != (int) limit) {
+                log.info("🚦 Gemini concurrency limit {} -> {} after {}", (int) previous, (int) limit, outcome);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== RETRY POLICY ====================
+
+    /**
+     * Whether a failed attempt should be retried after the given delay. A
+     * Retry-After longer than the lane's wait budget (e.g. a daily quota)
+     * fails now rather than holding the caller.
+     */
+    public boolean shouldRetry(Lane lane, int attempt, long delayMs) {
+        return attempt < maxAttempts(lane) && delayMs <= maxWaitMs(lane);
+    }
+
+    private int maxAttempts(Lane lane) {
+        return lane == Lane.INTERACTIVE ? interactiveMaxAttempts : bulkMaxAttempts;
+    }
+
+    private long maxWaitMs(Lane lane) {
+        return lane == Lane.INTERACTIVE ? interactiveMaxWaitMs : bulkMaxWaitMs;
+    }
+
+    /**
+     * Delay before the given retry: the server's Retry-After when it sent one,
+     * else exponential backoff, either way with up to 20% jitter so queued
+     * callers do not retry in lockstep.
+     */
+    public long retryDelayMs(int attempt, long retryAfterMs) {
+        long delay = retryAfterMs > 0 ? retryAfterMs : Backoff.exponential(attempt, backoffInitialMs, backoffMaxMs);
+        return Backoff.withJitter(delay, Math.max(backoffMaxMs, retryAfterMs));
+    }
+
+    // ==================== STATE ====================
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getWaiting(Lane lane) {
+        lock.lock();
+        try {
+            return waiting.get(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
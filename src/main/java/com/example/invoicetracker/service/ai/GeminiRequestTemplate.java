@@ -0,0 +1,134 @@
+package com.example.invoicetracker.service.ai;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Pre-serialized generateContent request for one generation config. The JSON
+ * around the prompt and the inline file is encoded to bytes once; a request
+ * only adds the escaped prompt (cached while the same prompt repeats, as the
+ * extraction prompt does) and the mime type, and the file is base64-encoded
+ * straight into the sink by InlineDataRequestBody.
+ */
+final class GeminiRequestTemplate {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // {"contents":[{"parts":[{"text":<prompt>},{"inline_data":{"mime_type":<mime>,"data":"<base64>"}}]}],"generationConfig":{..}}
+    private static final byte[] TEXT_OPEN = utf8("{\"contents\":[{\"parts\":[{\"text\":");
+    private static final byte[] INLINE_OPEN = utf8("},{\"inline_data\":{\"mime_type\":");
+    private static final byte[] DATA_OPEN = utf8(",\"data\":\"");
+    private static final byte[] DATA_CLOSE = utf8("\"}");
+
+    private final byte[] partsClose;
+    private final byte[] dataClose;
+
+    private volatile EncodedPrompt lastPrompt;
+
+    private record EncodedPrompt(String prompt, byte[] json) {
+    }
+
+    private GeminiRequestTemplate(JsonObject generationConfig) {
+        this.partsClose = utf8("}]}],\"generationConfig\":" + generationConfig + "}");
+        this.dataClose = concat(DATA_CLOSE, partsClose);
+    }
+
+    static GeminiRequestTemplate of(double temperature, int maxOutputTokens) {
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", temperature);
+        generationConfig.addProperty("maxOutputTokens", maxOutputTokens);
+        return new GeminiRequestTemplate(generationConfig);
+    }
+
+    static GeminiRequestTemplate of(double temperature, int maxOutputTokens, double topP, int topK) {
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", temperature);
+        generationConfig.addProperty("maxOutputTokens", maxOutputTokens);
+        generationConfig.addProperty("topP", topP);
+        generationConfig.addProperty("topK", topK);
+        return new GeminiRequestTemplate(generationConfig);
+    }
+
+    // Constrains the reply to a single JSON document
+    static GeminiRequestTemplate json(double temperature, int maxOutputTokens) {
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", temperature);
+        generationConfig.addProperty("maxOutputTokens", maxOutputTokens);
+        generationConfig.addProperty("responseMimeType", "application/json");
+        return new GeminiRequestTemplate(generationConfig);
+    }
+
+    RequestBody text(String prompt) {
+        return new SegmentsRequestBody(TEXT_OPEN, encodePrompt(prompt), partsClose);
+    }
+
+    RequestBody inlineData(String prompt, String mimeType, MultipartFile file) {
+        List<byte[]> prefix = List.of(TEXT_OPEN, encodePrompt(prompt), INLINE_OPEN, jsonString(mimeType), DATA_OPEN);
+        return new InlineDataRequestBody(prefix, file, dataClose);
+    }
+
+    private byte[] encodePrompt(String prompt) {
+        EncodedPrompt cached = lastPrompt;
+        if (cached != null && cached.prompt().equals(prompt)) {
+            return cached.json();
+        }
+        byte[] json = jsonString(prompt);
+        lastPrompt = new EncodedPrompt(prompt, json);
+        return json;
+    }
+
+    private static byte[] jsonString(String value) {
+        return utf8(new JsonPrimitive(value).toString());
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * Writes the pre-encoded pieces one after another without joining them.
+     */
+    private static final class SegmentsRequestBody extends RequestBody {
+        private final byte[][] segments;
+
+        private SegmentsRequestBody(byte[]... segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            long length = 0;
+            for (byte[] segment : segments) {
+                length += segment.length;
+            }
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            for (byte[] segment : segments) {
+                sink.write(segment);
+            }
+        }
+    }
+}
@@ -1,28 +1,50 @@
 package com.example.invoicetracker.service.ai;
 
 import com.example.invoicetracker.config.GeminiConfig;
+import com.example.invoicetracker.service.ai.GeminiRateLimiter.Lane;
+import com.example.invoicetracker.service.ai.GeminiRateLimiter.Outcome;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Base64;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GeminiService {
 
+    // Quota errors carry RetryInfo in the body, e.g. "retryDelay": "13s"
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+
+    // maxOutputTokens 2048 leaves room for larger invoices
+    private static final GeminiRequestTemplate VISION_REQUEST = GeminiRequestTemplate.of(0.1, 2048, 0.8, 40);
+    private static final GeminiRequestTemplate TEXT_REQUEST = GeminiRequestTemplate.of(0.1, 1000);
+    private static final GeminiRequestTemplate JSON_REQUEST = GeminiRequestTemplate.json(0.0, 1024);
+
+    // Returned in place of text when a response has none or cannot be read
+    private static final String NO_RESPONSE_TEXT = "No response text found";
+    private static final String PARSE_ERROR_TEXT = "Error parsing response";
+
     private final GeminiConfig geminiConfig;
     private final OkHttpClient httpClient;
     private final Gson gson;
+    private final GeminiRateLimiter rateLimiter;
 
-    
     public String analyzeImage(MultipartFile imageFile, String prompt) throws IOException {
         log.info("Analyzing image with Gemini Vision - File: {}, Size: {} bytes",
                 imageFile.getOriginalFilename(), imageFile.getSize());
@@ -31,31 +53,112 @@ public class GeminiService {
             throw new IOException("File size too large. Maximum 4MB allowed.");
         }
 
-        byte[] imageBytes = imageFile.getBytes();
-        String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-
         String mimeType = determineMimeType(imageFile.getContentType(), imageFile.getOriginalFilename());
 
-        String jsonRequest = buildVisionRequest(prompt, base64Image, mimeType);
-
         log.debug("Sending request to Gemini API...");
 
         Request httpRequest = new Request.Builder()
-                .url(geminiConfig.getApiEndpoint() + "?key=" + geminiConfig.getApiKey())
-                .post(RequestBody.create(jsonRequest, MediaType.parse("application/json")))
+                .url(geminiConfig.getRequestUrl())
+                .post(VISION_REQUEST.inlineData(prompt, mimeType, imageFile))
                 .build();
 
-        try (Response response = httpClient.newCall(httpRequest).execute()) {
-            String responseBody = response.body().string();
+        String responseBody = execute(httpRequest, Lane.BULK);
+        log.debug("Gemini API response received successfully");
+        return extractTextFromResponse(responseBody);
+    }
+
+    /**
+     * Sends the request through the rate limiter and returns the response
+     * body. 429/503 and other 5xx responses are retried with jittered backoff,
+     * honouring Retry-After; a 429 also pauses every other caller. Network
+     * errors are not retried, since a timed-out call has already used most of
+     * the caller's time budget.
+     */
+    private String execute(Request httpRequest, Lane lane) throws IOException {
+        try (Response response = send(httpRequest, lane, null)) {
+            return response.body().string();
+        }
+    }
+
+    /**
+     * Retry loop behind {@link #execute}. Returns the successful response
+     * with its body still unread so a stream can be consumed as it arrives;
+     * the caller must close it. The permit is released once the status is
+     * known, so a long stream does not hold a concurrency slot.
+     */
+    private Response send(Request httpRequest, Lane lane, Cancellation cancellation) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            GeminiRateLimiter.Permit permit = rateLimiter.acquire(lane);
+            int code;
+            String responseBody;
+            long retryAfterMs;
+            Response response = null;
+            try {
+                Call call = httpClient.newCall(httpRequest);
+                if (cancellation != null) {
+                    cancellation.attach(call);
+                }
+                response = call.execute();
+                code = response.code();
+                if (response.isSuccessful()) {
+                    permit.release(Outcome.SUCCESS, 0);
+                    return response;
+                }
+                responseBody = response.body().string();
+                retryAfterMs = code == 429 || code == 503 ? retryAfterMs(response, responseBody) : 0;
+            } catch (IOException | RuntimeException e) {
+                // Anything thrown before a status arrives must still give the slot back
+                permit.release(Outcome.FAILED, 0);
+                throw e;
+            } finally {
+                if (response != null && !response.isSuccessful()) {
+                    response.close();
+                }
+            }
+
+            if (code == 429 || code == 503) {
+                permit.release(Outcome.THROTTLED, retryAfterMs);
+            } else if (code >= 500) {
+                permit.release(Outcome.FAILED, 0);
+            } else {
+                // Any other answer, including a 4xx, means Gemini has capacity
+                permit.release(Outcome.SUCCESS, 0);
+                log.error("Gemini API error: {} - {}", code, responseBody);
+                throw new IOException("Gemini API error: " + code + " - " + responseBody);
+            }
 
-            if (!response.isSuccessful()) {
-                log.error("Gemini API error: {} - {}", response.code(), responseBody);
-                throw new IOException("Gemini API error: " + response.code() + " - " + responseBody);
+            long delayMs = rateLimiter.retryDelayMs(attempt, retryAfterMs);
+            if (!rateLimiter.shouldRetry(lane, attempt, delayMs)
+                    || (cancellation != null && cancellation.isCancelled())) {
+                log.error("Gemini API error: {} after {} attempts - {}", code, attempt, responseBody);
+                throw new IOException("Gemini API error: " + code + " - " + responseBody);
             }
+            log.warn("⏳ Gemini API returned {} - Retrying in {} ms (attempt {})", code, delayMs, attempt + 1);
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while backing off from Gemini");
+            }
+        }
+    }
 
-            log.debug("Gemini API response received successfully");
-            return extractTextFromResponse(responseBody);
+    private long retryAfterMs(Response response, String responseBody) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+                } catch (DateTimeParseException ignored) {
+                    // Fall through to the body
+                }
+            }
         }
+        Matcher matcher = RETRY_DELAY.matcher(responseBody);
+        return matcher.find() ? (long) (Double.parseDouble(matcher.group(1)) * 1000) : 0;
     }
     
     
@@ -77,14 +180,22 @@ public class GeminiService {
             }
 
             log.warn("No text found in Gemini response");
-            return "No response text found";
+            return NO_RESPONSE_TEXT;
 
         } catch (Exception e) {
             log.error("Error parsing Gemini response: {}", e.getMessage());
-            return "Error parsing response";
+            return PARSE_ERROR_TEXT;
         }
     }
 
+    /**
+     * Whether text returned by this service is a real answer rather than the
+     * placeholder for an empty or unreadable response, e.g. before caching it.
+     */
+    public static boolean isAnswer(String text) {
+        return text != null && !text.isBlank() && !NO_RESPONSE_TEXT.equals(text) && !PARSE_ERROR_TEXT.equals(text);
+    }
+
     private String determineMimeType(String contentType, String fileName) {
         if (contentType != null) return contentType;
 
@@ -98,101 +209,122 @@ public class GeminiService {
 
         return "image/jpeg"; 
     }
+
+    public String analyzeText(String prompt) throws IOException {
+        log.info("Analyzing text with Gemini API...");
+
+        Request httpRequest = new Request.Builder()
+                .url(geminiConfig.getRequestUrl())
+                .post(TEXT_REQUEST.text(prompt))
+                .build();
+
+        return extractTextFromResponse(execute(httpRequest, Lane.BULK));
+    }
+
+
     
-    
-    private String buildVisionRequest(String prompt, String base64Image, String mimeType) {
-        JsonObject request = new JsonObject();
 
-        JsonObject content = new JsonObject();
+    public String generateText(String prompt) throws IOException {
+        log.info("Generating text with prompt: {}", prompt.substring(0, Math.min(100, prompt.length())) + "...");
+
+        Request httpRequest = new Request.Builder()
+                .url(geminiConfig.getRequestUrl())
+                .post(TEXT_REQUEST.text(prompt))
+                .build();
 
-        JsonObject textPart = new JsonObject();
-        textPart.addProperty("text", prompt);
+        // Chat answers a waiting user, so it goes ahead of bulk extraction
+        return extractTextFromResponse(execute(httpRequest, Lane.INTERACTIVE));
+    }
 
-        JsonObject imagePart = new JsonObject();
-        JsonObject inlineData = new JsonObject();
-        inlineData.addProperty("mime_type", mimeType);
-        inlineData.addProperty("data", base64Image);
-        imagePart.add("inline_data", inlineData);
+    /**
+     * Like {@link #generateText} but asks Gemini for a JSON document only,
+     * deterministically, for replies the caller parses rather than shows.
+     */
+    public String generateJson(String prompt) throws IOException {
+        Request httpRequest = new Request.Builder()
+                .url(geminiConfig.getRequestUrl())
+                .post(JSON_REQUEST.text(prompt))
+                .build();
 
-        content.add("parts", gson.toJsonTree(List.of(textPart, imagePart)));
-        request.add("contents", gson.toJsonTree(List.of(content)));
+        return extractTextFromResponse(execute(httpRequest, Lane.INTERACTIVE));
+    }
 
-        JsonObject generationConfig = new JsonObject();
-        generationConfig.addProperty("temperature", 0.1);
-        generationConfig.addProperty("maxOutputTokens", 2048); // Increased for larger invoices
-        generationConfig.addProperty("topP", 0.8);
-        generationConfig.addProperty("topK", 40);
+    /**
+     * Streams the answer to a chat prompt through streamGenerateContent
+     * (alt=sse), handing each chunk of text to {@code onText} as soon as
+     * Gemini sends it. Cancelling aborts the HTTP call, which ends the read
+     * loop with an IOException.
+     */
+    public void streamText(String prompt, Consumer<String> onText, Cancellation cancellation) throws IOException {
+        log.info("Streaming text with prompt: {}", prompt.substring(0, Math.min(100, prompt.length())) + "...");
 
-        request.add("generationConfig", generationConfig);
+        Request httpRequest = new Request.Builder()
+                .url(geminiConfig.getStreamRequestUrl())
+                .post(TEXT_REQUEST.text(prompt))
+                .build();
 
-        return gson.toJson(request);
+        try (Response response = send(httpRequest, Lane.INTERACTIVE, cancellation)) {
+            BufferedSource source = response.body().source();
+            String line;
+            while (!cancellation.isCancelled() && (line = source.readUtf8Line()) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String text = extractChunkText(line.substring(5).trim());
+                if (!text.isEmpty()) {
+                    onText.accept(text);
+                }
+            }
+        }
     }
-    public String analyzeText(String prompt) throws IOException {
-    log.info("Analyzing text with Gemini API...");
-
-    JsonObject request = new JsonObject();
-    JsonObject content = new JsonObject();
-    JsonObject textPart = new JsonObject();
-    textPart.addProperty("text", prompt);
-    content.add("parts", gson.toJsonTree(List.of(textPart)));
-    request.add("contents", gson.toJsonTree(List.of(content)));
-
-    JsonObject generationConfig = new JsonObject();
-    generationConfig.addProperty("temperature", 0.1);
-    generationConfig.addProperty("maxOutputTokens", 1000);
-    request.add("generationConfig", generationConfig);
-
-    String jsonRequest = gson.toJson(request);
-
-    Request httpRequest = new Request.Builder()
-            .url(geminiConfig.getApiEndpoint() + "?key=" + geminiConfig.getApiKey())
-            .post(RequestBody.create(jsonRequest, MediaType.parse("application/json")))
-            .build();
-
-    try (Response response = httpClient.newCall(httpRequest).execute()) {
-        if (!response.isSuccessful()) {
-            throw new IOException("Gemini API error: " + response.code());
+
+    // A streamed chunk may split its text over several parts or carry none
+    // at all (e.g. the final chunk with only finishReason and usage)
+    private String extractChunkText(String chunk) {
+        JsonObject json = gson.fromJson(chunk, JsonObject.class);
+        if (json == null || !json.has("candidates") || json.getAsJsonArray("candidates").isEmpty()) {
+            return "";
         }
-        String responseBody = response.body().string();
-        return extractTextFromResponse(responseBody);
+        JsonObject candidate = json.getAsJsonArray("candidates").get(0).getAsJsonObject();
+        if (!candidate.has("content") || !candidate.getAsJsonObject("content").has("parts")) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (JsonElement part : candidate.getAsJsonObject("content").getAsJsonArray("parts")) {
+            JsonObject partObject = part.getAsJsonObject();
+            if (partObject.has("text")) {
+                text.append(partObject.get("text").getAsString());
+            }
+        }
+        return text.toString();
     }
-}
 
+    /**
+     * Lets the consumer of a stream abort it, e.g. when the SSE client
+     * disconnects. Cancelling closes the in-flight HTTP call so Gemini stops
+     * generating and the reading thread is freed.
+     */
+    public static final class Cancellation {
+        private volatile boolean cancelled;
+        private volatile Call call;
+
+        public void cancel() {
+            cancelled = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
 
-    
+        public boolean isCancelled() {
+            return cancelled;
+        }
 
-    public String generateText(String prompt) throws IOException {
-        log.info("Generating text with prompt: {}", prompt.substring(0, Math.min(100, prompt.length())) + "...");
-        
-        JsonObject request = new JsonObject();
-        
-        JsonObject content = new JsonObject();
-        JsonObject textPart = new JsonObject();
-        textPart.addProperty("text", prompt);
-        content.add("parts", gson.toJsonTree(List.of(textPart)));
-        
-        request.add("contents", gson.toJsonTree(List.of(content)));
-        
-        JsonObject generationConfig = new JsonObject();
-        generationConfig.addProperty("temperature", 0.1);
-        generationConfig.addProperty("maxOutputTokens", 1000);
-        
-        request.add("generationConfig", generationConfig);
-        
-        String jsonRequest = gson.toJson(request);
-        
-        Request httpRequest = new Request.Builder()
-                .url(geminiConfig.getApiEndpoint() + "?key=" + geminiConfig.getApiKey())
-                .post(RequestBody.create(jsonRequest, MediaType.parse("application/json")))
-                .build();
-        
-        try (Response response = httpClient.newCall(httpRequest).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Gemini API error: " + response.code());
+        void attach(Call call) {
+            this.call = call;
+            if (cancelled) {
+                call.cancel();
             }
-            
-            String responseBody = response.body().string();
-            return extractTextFromResponse(responseBody);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.example.invoicetracker.service.ai;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JSON request body with a file embedded as base64 inline data. The JSON
+ * around the file is serialized up front by GeminiRequestTemplate; the file
+ * itself is base64-encoded straight from its stream into the socket, so the
+ * encoded copy never exists on the heap.
+ */
+class InlineDataRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final List<byte[]> prefix;
+    private final byte[] suffix;
+    private final MultipartFile file;
+    private final long fileSize;
+
+    /**
+     * Body from pre-encoded pieces: everything before the base64 data (written
+     * in order), the file, and everything after it.
+     */
+    InlineDataRequestBody(List<byte[]> prefix, MultipartFile file, byte[] suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.file = file;
+        this.fileSize = file.getSize();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        long prefixLength = 0;
+        for (byte[] segment : prefix) {
+            prefixLength += segment.length;
+        }
+        return prefixLength + 4 * ((fileSize + 2) / 3) + suffix.length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        for (byte[] segment : prefix) {
+            sink.write(segment);
+        }
+
+        OutputStream sinkStream = new FilterOutputStream(sink.outputStream()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+
+        // Closing the encoder writes the final padding; the wrapper keeps it
+        // from closing the sink.
+        try (InputStream in = file.getInputStream();
+             OutputStream encoder = Base64.getEncoder().wrap(sinkStream)) {
+            in.transferTo(encoder);
+        }
+
+        sink.write(suffix);
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the invoice data section of the chatbot prompt. Totals and
+ * breakdowns come from GROUP BY queries, and only invoices relevant to the
+ * question are listed: the ones it names by id, else those in the period it
+ * mentions, else the most recent. Every section is capped, so the prompt size
+ * and the rows loaded stay the same however large the invoice table grows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceChatContextBuilder {
+
+    private static final Pattern INVOICE_ID = Pattern.compile("(?:#|\\binvoice\\s+(?:id\\s*)?#?)(\\d{1,18})\\b");
+    private static final Pattern YEAR = Pattern.compile("\\b(19\\d{2}|20\\d{2})\\b");
+    // "may" on its own is too common a word; it only counts with a year or after "in"
+    private static final Pattern MONTH = Pattern.compile(
+            "\\b(january|february|march|april|june|july|august|september|october|november|december"
+                    + "|jan|feb|mar|apr|jun|jul|aug|sept|sep|oct|nov|dec|in may|may(?=\\s+\\d{4}))\\b(?:\\s+(\\d{4}))?");
+
+    private final InvoiceRepository invoiceRepository;
+
+    @Value("${ai.chat.context.max-chars:16000}")
+    private int maxChars = 16000;
+
+    @Value("${ai.chat.context.max-months:24}")
+    private int maxMonths = 24;
+
+    @Value("${ai.chat.context.max-users:20}")
+    private int maxUsers = 20;
+
+    @Value("${ai.chat.context.max-invoices:50}")
+    private int maxInvoices = 50;
+
+    /**
+     * Period a question refers to, inclusive on both ends.
+     */
+    record DateRange(LocalDate start, LocalDate end, String label) {
+    }
+
+    /**
+     * @param query  the user's question, or null to list the most recent invoices
+     * @param userId uploader to restrict to, or null for every uploader (SUPERUSER/AUDITOR)
+     */
+    public String build(String query, String userId) {
+        return build(query, userId, LocalDate.now());
+    }
+
+    String build(String query, String userId, LocalDate today) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== INVOICE DATABASE ===\n\n");
+
+        Object[] summary = invoiceRepository.summarizeActive(userId).get(0);
+        long totalInvoices = ((Number) summary[0]).longValue();
+        if (totalInvoices == 0) {
+            sb.append("⚠️ NO INVOICES FOUND IN THE DATABASE\n");
+            return sb.toString();
+        }
+        double totalAmount = ((Number) summary[1]).doubleValue();
+
+        sb.append("📊 SUMMARY:\n");
+        sb.append(String.format("   Total Invoices: %d\n", totalInvoices));
+        sb.append(String.format("   Total Amount: $%.2f\n\n", totalAmount));
+
+        appendMonthlyBreakdown(sb, userId);
+        appendCountBreakdown(sb, "\n📁 FILE TYPE BREAKDOWN:\n", invoiceRepository.countActiveByFileType(userId), totalInvoices);
+        appendCountBreakdown(sb, "\n✅ STATUS BREAKDOWN:\n", invoiceRepository.countActiveByStatus(userId), totalInvoices);
+        if (userId == null) {
+            appendUserBreakdown(sb, totalInvoices, totalAmount);
+        }
+        appendRelevantInvoices(sb, query, userId, today);
+
+        log.debug("Chat context: {} chars for {} invoices", sb.length(), totalInvoices);
+        return sb.toString();
+    }
+
+    private void appendMonthlyBreakdown(StringBuilder sb, String userId) {
+        List<Object[]> months = invoiceRepository.summarizeActiveByMonth(userId);
+        sb.append("📅 MONTHLY BREAKDOWN (newest first):\n");
+        long olderCount = 0;
+        double olderAmount = 0;
+        for (int i = 0; i < months.size(); i++) {
+            Object[] row = months.get(i);
+            long count = ((Number) row[2]).longValue();
+            double amount = ((Number) row[3]).doubleValue();
+            if (i < maxMonths) {
+                YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+                sb.append(String.format("   %s: %d invoices, Total: $%.2f\n", monthLabel(month), count, amount));
+            } else {
+                olderCount += count;
+                olderAmount += amount;
+            }
+        }
+        if (months.size() > maxMonths) {
+            sb.append(String.format("   Earlier (%d months): %d invoices, Total: $%.2f\n",
+                    months.size() - maxMonths, olderCount, olderAmount));
+        }
+    }
+
+    private void appendCountBreakdown(StringBuilder sb, String heading, List<Object[]> rows, long totalInvoices) {
+        sb.append(heading);
+        for (Object[] row : rows) {
+            long count = ((Number) row[1]).longValue();
+            double percentage = (count * 100.0) / totalInvoices;
+            sb.append(String.format("   %s: %d invoices (%.1f%%)\n", row[0], count, percentage));
+        }
+    }
+
+    private void appendUserBreakdown(StringBuilder sb, long totalInvoices, double totalAmount) {
+        List<Object[]> users = invoiceRepository.summarizeActiveByUser(PageRequest.of(0, maxUsers));
+        if (users.size() <= 1) {
+            return;
+        }
+        sb.append("\n👥 INVOICES BY USER (most invoices first):\n");
+        long shownCount = 0;
+        double shownAmount = 0;
+        for (Object[] row : users) {
+            long count = ((Number) row[1]).longValue();
+            double amount = ((Number) row[2]).doubleValue();
+            shownCount += count;
+            shownAmount += amount;
+            sb.append(String.format("   %s: %d invoices, Total Amount: $%.2f\n", row[0], count, amount));
+        }
+        if (shownCount < totalInvoices) {
+            sb.append(String.format("   Other users: %d invoices, Total Amount: $%.2f\n",
+                    totalInvoices - shownCount, totalAmount - shownAmount));
+        }
+    }
+
+    private void appendRelevantInvoices(StringBuilder sb, String query, String userId, LocalDate today) {
+        String normalized = query == null ? "" : query.toLowerCase(Locale.ROOT);
+
+        Map<Long, Invoice> invoices = new LinkedHashMap<>();
+        Set<Long> mentionedIds = mentionedInvoiceIds(normalized);
+        if (!mentionedIds.isEmpty()) {
+            invoiceRepository.findActiveForChatByIds(userId, mentionedIds)
+                    .forEach(invoice -> invoices.put(invoice.getInvoiceId(), invoice));
+        }
+
+        DateRange range = resolveRange(normalized, today);
+        // One extra row tells whether the list was cut short
+        List<Invoice> matching = invoiceRepository.findActiveForChat(userId,
+                range == null ? null : range.start(), range == null ? null : range.end(),
+                PageRequest.of(0, maxInvoices + 1));
+        boolean more = matching.size() > maxInvoices;
+        matching.stream().limit(maxInvoices).forEach(invoice -> invoices.putIfAbsent(invoice.getInvoiceId(), invoice));
+
+        sb.append(range == null
+                ? "\n📋 MOST RECENT INVOICES (newest first):\n"
+                : "\n📋 INVOICES FROM " + range.label().toUpperCase(Locale.ROOT) + " (newest first):\n");
+        if (invoices.isEmpty()) {
+            sb.append("   (none)\n");
+            return;
+        }
+        int listed = 0;
+        for (Invoice invoice : invoices.values()) {
+            String line = formatInvoice(invoice);
+            if (sb.length() + line.length() > maxChars) {
+                more = true;
+                break;
+            }
+            sb.append(line);
+            listed++;
+        }
+        if (more || listed < invoices.size()) {
+            sb.append("   … more invoices match; use the breakdowns above for counts and totals\n");
+        }
+    }
+
+    private String formatInvoice(Invoice invoice) {
+        return String.format(
+                "   • Invoice #%d | Date: %s (%s) | Type: %s | Amount: $%.2f | Status: %s | Uploaded by: %s\n",
+                invoice.getInvoiceId(),
+                invoice.getInvoiceDate(),
+                monthLabel(YearMonth.from(invoice.getInvoiceDate())),
+                invoice.getFileType(),
+                invoice.getTotalAmount(),
+                invoice.getStatus(),
+                invoice.getUploadedByUser().getUsername());
+    }
+
+    // ==================== QUESTION PARSING ====================
+
+    static Set<Long> mentionedInvoiceIds(String normalizedQuery) {
+        Set<Long> ids = new LinkedHashSet<>();
+        Matcher matcher = INVOICE_ID.matcher(normalizedQuery);
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        return ids;
+    }
+
+    /**
+     * The period a question asks about, or null when it names none. Relative
+     * phrases win over month names, which win over a bare year; a month
+     * without a year means its latest occurrence up to today.
+     */
+    static DateRange resolveRange(String normalizedQuery, LocalDate today) {
+        YearMonth thisMonth = YearMonth.from(today);
+        if (normalizedQuery.contains("today")) {
+            return new DateRange(today, today, "today");
+        }
+        if (normalizedQuery.contains("this month") || normalizedQuery.contains("current month")) {
+            return monthRange(thisMonth);
+        }
+        if (normalizedQuery.contains("last month") || normalizedQuery.contains("previous month")) {
+            return monthRange(thisMonth.minusMonths(1));
+        }
+        if (normalizedQuery.contains("this year") || normalizedQuery.contains("current year")) {
+            return new DateRange(today.withDayOfYear(1), today, String.valueOf(today.getYear()));
+        }
+        if (normalizedQuery.contains("last year") || normalizedQuery.contains("previous year")) {
+            return yearRange(today.getYear() - 1);
+        }
+
+        Matcher month = MONTH.matcher(normalizedQuery);
+        if (month.find()) {
+            Month named = parseMonth(month.group(1));
+            YearMonth target;
+            if (month.group(2) != null) {
+                target = YearMonth.of(Integer.parseInt(month.group(2)), named);
+            } else {
+                target = YearMonth.of(today.getYear(), named);
+                if (target.isAfter(thisMonth)) {
+                    target = target.minusYears(1);
+                }
+            }
+            return monthRange(target);
+        }
+
+        Matcher year = YEAR.matcher(normalizedQuery);
+        if (year.find()) {
+            return yearRange(Integer.parseInt(year.group(1)));
+        }
+        return null;
+    }
+
+    private static Month parseMonth(String token) {
+        String name = token.startsWith("in ") ? token.substring(3) : token;
+        for (Month month : Month.values()) {
+            if (month.name().toLowerCase(Locale.ROOT).startsWith(name.substring(0, 3))) {
+                return month;
+            }
+        }
+        throw new IllegalArgumentException("Unknown month: " + token);
+    }
+
+    private static DateRange monthRange(YearMonth month) {
+        return new DateRange(month.atDay(1), month.atEndOfMonth(), monthLabel(month));
+    }
+
+    private static DateRange yearRange(int year) {
+        return new DateRange(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), String.valueOf(year));
+    }
+
+    private static String monthLabel(YearMonth month) {
+        return month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + month.getYear();
+    }
+}
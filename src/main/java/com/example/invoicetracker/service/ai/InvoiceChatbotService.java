@@ -1,16 +1,19 @@
 package com.example.invoicetracker.service.ai;
 
-import com.example.invoicetracker.model.entity.Invoice;
-import com.example.invoicetracker.repository.InvoiceRepository;
 import com.example.invoicetracker.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.time.format.TextStyle;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 
 @Slf4j
@@ -19,8 +22,27 @@ import java.util.Locale;
 public class InvoiceChatbotService {
 
     private final GeminiService geminiService;
-    private final InvoiceRepository invoiceRepository;
+    private final InvoiceChatContextBuilder contextBuilder;
+    private final ChatQueryPlanner queryPlanner;
+    private final ChatQueryExecutor queryExecutor;
+    private final ChatAnswerCache answerCache;
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Counter plannedCounter;
+    private Counter fallbackCounter;
+    private DistributionSummary plannedPromptSize;
+    private DistributionSummary contextPromptSize;
+
+    @PostConstruct
+    void registerMetrics() {
+        plannedCounter = meterRegistry.counter("ai.chat.plans", "result", "planned");
+        fallbackCounter = meterRegistry.counter("ai.chat.plans", "result", "fallback");
+        plannedPromptSize = DistributionSummary.builder("ai.chat.prompt.size")
+                .baseUnit("chars").tag("source", "plan").register(meterRegistry);
+        contextPromptSize = DistributionSummary.builder("ai.chat.prompt.size")
+                .baseUnit("chars").tag("source", "context").register(meterRegistry);
+    }
 
     /**
      * Processes a natural language query about invoices.
@@ -34,14 +56,22 @@ public class InvoiceChatbotService {
         try {
             log.info("Processing chat query: {} for user: {}", query, username);
             
-            // Step 1: Get user's invoice data
-            String invoiceData = collectInvoiceData(username, role);
-            
-            // Step 2: Build context-aware prompt
-            String prompt = buildChatPrompt(query, invoiceData, username);
+            // Step 0: Repeated questions are answered from the cache until the user's invoices change
+            String userId = scopeUserId(username, role);
+            long dataVersion = answerCache.version(userId);
+            String cached = answerCache.get(username, userId, query);
+            if (cached != null) {
+                return cached;
+            }
+
+            // Steps 1-2: Plan and run a query for the question (or collect the invoice data), then build the prompt
+            String prompt = buildPrompt(query, username, userId);
             
             // Step 3: Get AI response
             String response = geminiService.generateText(prompt);
+            if (GeminiService.isAnswer(response)) {
+                answerCache.put(username, userId, query, dataVersion, response);
+            }
             
             log.debug("Chat response: {}", response);
             return response;
@@ -52,6 +82,35 @@ public class InvoiceChatbotService {
         }
     }
 
+    /**
+     * Streaming variant of {@link #chat}: the same prompt, but the answer is
+     * handed to {@code onText} chunk by chunk as Gemini produces it. Errors
+     * are thrown rather than turned into an apology so the caller can signal
+     * them on the stream.
+     */
+    public void streamChat(String query, String username, String role,
+                           Consumer<String> onText, GeminiService.Cancellation cancellation) throws IOException {
+        log.info("Streaming chat query: {} for user: {}", query, username);
+
+        String userId = scopeUserId(username, role);
+        long dataVersion = answerCache.version(userId);
+        String cached = answerCache.get(username, userId, query);
+        if (cached != null) {
+            onText.accept(cached);
+            return;
+        }
+
+        String prompt = buildPrompt(query, username, userId);
+        StringBuilder answer = new StringBuilder();
+        geminiService.streamText(prompt, text -> {
+            answer.append(text);
+            onText.accept(text);
+        }, cancellation);
+        if (!cancellation.isCancelled() && !answer.isEmpty()) {
+            answerCache.put(username, userId, query, dataVersion, answer.toString());
+        }
+    }
+
     /**
      * Returns raw invoice data for debugging purposes.
      * 
@@ -60,145 +119,68 @@ public class InvoiceChatbotService {
      * @return 
      */
     public String getInvoiceDataForDebug(String username, String role) {
-        return collectInvoiceData(username, role);
+        return collectInvoiceData(null, username, role);
     }
 
     
     
-    private String collectInvoiceData(String username, String role) {
-        List<Invoice> invoices;
-        
-        if ("SUPERUSER".equals(role) || "AUDITOR".equals(role)) {
-            List<Invoice> allInvoices = invoiceRepository.findAll();
-            log.info("Total invoices in DB: {}", allInvoices.size());
-            
-            invoices = allInvoices.stream()
-                    .filter(Invoice::getIsActive)
-                    .collect(Collectors.toList());
-            
-            log.info("Active invoices for SUPERUSER/AUDITOR {}: {}", username, invoices.size());
+    /**
+     * Tries the query planner first: Gemini turns the question into a plan,
+     * the plan runs as SQL, and only its result goes into a short answering
+     * prompt. Questions the planner cannot express fall back to the full
+     * invoice context.
+     */
+    private String buildPrompt(String query, String username, String userId) {
+        Optional<ChatQueryPlan> plan = queryPlanner.plan(query, userId == null, LocalDate.now());
+
+        String prompt;
+        if (plan.isPresent()) {
+            String result = queryExecutor.execute(plan.get(), userId);
+            prompt = buildPlannedPrompt(query, result, username);
+            plannedCounter.increment();
+            plannedPromptSize.record(prompt.length());
         } else {
-            var user = userRepository.findByUsername(username).orElseThrow();
-            invoices = invoiceRepository.findAllByUploadedByUserAndIsActiveTrue(
-                    user, org.springframework.data.domain.PageRequest.of(0, 1000)).getContent();
-            
-            log.info("Active invoices for USER {}: {}", username, invoices.size());
+            prompt = buildChatPrompt(query, contextBuilder.build(query, userId), username);
+            fallbackCounter.increment();
+            contextPromptSize.record(prompt.length());
         }
-        
-        log.debug("Invoice IDs: {}", invoices.stream()
-                .map(Invoice::getInvoiceId)
-                .collect(Collectors.toList()));
-        
-        return formatInvoiceDataForAI(invoices);
+        return prompt;
     }
 
-    
-    
-    private String formatInvoiceDataForAI(List<Invoice> invoices) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== INVOICE DATABASE ===\n\n");
-        
-        // Check if empty
-        if (invoices.isEmpty()) {
-            sb.append("⚠️ NO INVOICES FOUND IN THE DATABASE\n");
-            return sb.toString();
-        }
+    private String collectInvoiceData(String query, String username, String role) {
+        return contextBuilder.build(query, scopeUserId(username, role));
+    }
 
-        int totalInvoices = invoices.size();
-        double totalAmount = invoices.stream()
-                .mapToDouble(Invoice::getTotalAmount)
-                .sum();
-        
-        sb.append(String.format("📊 SUMMARY:\n"));
-        sb.append(String.format("   Total Invoices: %d\n", totalInvoices));
-        sb.append(String.format("   Total Amount: $%.2f\n\n", totalAmount));
-        
-        // Monthly breakdown
-        Map<String, Double> monthlyTotals = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getInvoiceDate().getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) 
-                                + " " + inv.getInvoiceDate().getYear(),
-                        Collectors.summingDouble(Invoice::getTotalAmount)
-                ));
-        
-        Map<String, Long> monthlyCount = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getInvoiceDate().getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) 
-                                + " " + inv.getInvoiceDate().getYear(),
-                        Collectors.counting()
-                ));
-        
-        sb.append("📅 MONTHLY BREAKDOWN:\n");
-        monthlyTotals.forEach((month, amount) -> 
-                sb.append(String.format("   %s: %d invoices, Total: $%.2f\n", 
-                        month, monthlyCount.get(month), amount)));
-        
-        // File type breakdown
-        Map<String, Long> fileTypeCount = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getFileType().toString(),
-                        Collectors.counting()
-                ));
-        
-        sb.append("\n📁 FILE TYPE BREAKDOWN:\n");
-        fileTypeCount.forEach((type, count) -> {
-            double percentage = (count * 100.0) / totalInvoices;
-            sb.append(String.format("   %s: %d invoices (%.1f%%)\n", type, count, percentage));
-        });
-        
-        // Status breakdown
-        Map<String, Long> statusCount = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getStatus().toString(),
-                        Collectors.counting()
-                ));
-        
-        sb.append("\n✅ STATUS BREAKDOWN:\n");
-        statusCount.forEach((status, count) -> {
-            double percentage = (count * 100.0) / totalInvoices;
-            sb.append(String.format("   %s: %d invoices (%.1f%%)\n", status, count, percentage));
-        });
-        
-        // User breakdown (for SUPERUSER/AUDITOR)
-        Map<String, Long> userCount = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getUploadedByUser().getUsername(),
-                        Collectors.counting()
-                ));
-        
-        Map<String, Double> userTotalAmount = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getUploadedByUser().getUsername(),
-                        Collectors.summingDouble(Invoice::getTotalAmount)
-                ));
-        
-        if (userCount.size() > 1) {
-            sb.append("\n👥 INVOICES BY USER:\n");
-            userCount.forEach((user, count) -> {
-                double userTotal = userTotalAmount.get(user);
-                sb.append(String.format("   %s: %d invoices, Total Amount: $%.2f\n", user, count, userTotal));
-            });
+    // Null for SUPERUSER/AUDITOR, who see every uploader's invoices
+    private String scopeUserId(String username, String role) {
+        if ("SUPERUSER".equals(role) || "AUDITOR".equals(role)) {
+            log.info("Chat scope: all invoices for {} {}", role, username);
+            return null;
         }
-        
-        sb.append("\n📋 ALL INVOICES (sorted by date, newest first):\n");
-        invoices.stream()
-                .sorted((a, b) -> b.getInvoiceDate().compareTo(a.getInvoiceDate()))
-                .forEach(inv -> {
-                    String monthYear = inv.getInvoiceDate().getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) 
-                            + " " + inv.getInvoiceDate().getYear();
-                    sb.append(String.format(
-                            "   • Invoice #%d | Date: %s (%s) | Type: %s | Amount: $%.2f | Status: %s | Uploaded by: %s\n",
-                            inv.getInvoiceId(),
-                            inv.getInvoiceDate(),
-                            monthYear,
-                            inv.getFileType(),
-                            inv.getTotalAmount(),
-                            inv.getStatus(),
-                            inv.getUploadedByUser().getUsername()
-                    ));
-                });
-        
-        return sb.toString();
+        log.info("Chat scope: USER {}", username);
+        return userRepository.findByUsername(username).orElseThrow().getUserId();
+    }
+
+    private String buildPlannedPrompt(String userQuery, String queryResult, String username) {
+        return String.format("""
+            You are an intelligent invoice analytics assistant for user "%s".
+            Today's Date: %s
+
+            The user's question was translated into a database query. Its exact result is below.
+
+            %s
+
+            👤 User Question: %s
+
+            📋 Response Guidelines:
+            - Answer STRICTLY from the query result above; it already applies the question's filters
+            - Quote the counts and amounts exactly as given; do not recompute them
+            - If there are no matching invoices, say so clearly
+            - Format currency as $X.XX
+            - Use bullet points for clarity
+
+            Now provide your answer:
+            """, username, LocalDate.now(), queryResult, userQuery);
     }
 
     
@@ -223,16 +205,17 @@ public class InvoiceChatbotService {
             1. When the user asks about "this month" or "current month", they mean: %s
             2. When the user asks about "last month", they mean: %s
             3. Look at the invoice dates in the data below and match them to these months
-            4. The data below shows ALL invoices with their EXACT dates and months in parentheses
+            4. The invoice list below is only a selection (invoices named in the question, from the period it
+               asks about, or the most recent); the SUMMARY and BREAKDOWN sections cover ALL invoices
             
             📊 AVAILABLE DATA FIELDS:
             The invoice data below includes:
             - SUMMARY: Total count and amount
-            - MONTHLY BREAKDOWN: Invoices grouped by month with totals
+            - MONTHLY BREAKDOWN: Invoices grouped by month with totals (older months folded together)
             - FILE TYPE BREAKDOWN: Count and percentage of PDF vs IMAGE vs WEB_FORM invoices
             - STATUS BREAKDOWN: Count and percentage of PENDING, PAID, OVERDUE, etc.
             - INVOICES BY USER: Which user uploaded how many invoices (if multiple users exist)
-            - ALL INVOICES: Complete list with ID, Date, Month, Type, Amount, Status, and Uploader
+            - INVOICE LIST: Relevant invoices with ID, Date, Month, Type, Amount, Status, and Uploader
             
             %s
             
@@ -244,7 +227,8 @@ public class InvoiceChatbotService {
             - The data includes user information - use this for questions about specific users
             - The data includes monthly breakdowns - use this for date-range questions
             - If you see invoices with dates from %s in the data, that means there ARE invoices from this month
-            - Be precise with numbers - count the invoices carefully or use the summary statistics
+            - Be precise with numbers - take counts and totals from the summary and breakdowns, not by
+              counting the invoice list
             - Include specific invoice IDs, dates, and amounts when relevant
             - For percentage questions, use the provided breakdown statistics
             - For user comparisons, use the "INVOICES BY USER" section
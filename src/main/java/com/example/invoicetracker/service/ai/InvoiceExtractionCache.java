@@ -0,0 +1,170 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.dto.InvoiceExtractionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of successful AI extraction results keyed by the SHA-256
+ * of the file content. Entries expire after a TTL, and concurrent lookups for
+ * the same hash share a single Gemini call.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceExtractionCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${invoice.extraction.cache.max-entries:500}")
+    private int maxEntries = 500;
+
+    @Value("${invoice.extraction.cache.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    private final Map<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<InvoiceExtractionResult>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter collapsed;
+    private Counter evictions;
+
+    private record CachedResult(InvoiceExtractionResult result, long expiresAt) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("invoice.extraction.cache.hits");
+        misses = meterRegistry.counter("invoice.extraction.cache.misses");
+        collapsed = meterRegistry.counter("invoice.extraction.cache.collapsed");
+        evictions = meterRegistry.counter("invoice.extraction.cache.evictions");
+        Gauge.builder("invoice.extraction.cache.size", this, InvoiceExtractionCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached result for the hash, or runs the loader once for all
+     * concurrent callers. Only successful results are cached so transient
+     * failures are retried on the next upload.
+     */
+    public InvoiceExtractionResult get(String contentHash, Supplier<InvoiceExtractionResult> loader) {
+        InvoiceExtractionResult cached = lookup(contentHash);
+        if (cached != null) {
+            hits.increment();
+            log.debug("Extraction cache hit - Hash: {}", contentHash);
+            return cached;
+        }
+
+        CompletableFuture<InvoiceExtractionResult> pending = new CompletableFuture<>();
+        CompletableFuture<InvoiceExtractionResult> existing = inFlight.putIfAbsent(contentHash, pending);
+        if (existing != null) {
+            collapsed.increment();
+            log.debug("Extraction already in flight - Waiting for hash: {}", contentHash);
+            return awaitShared(existing);
+        }
+
+        try {
+            cached = lookup(contentHash);
+            if (cached != null) {
+                hits.increment();
+                pending.complete(cached);
+                return cached;
+            }
+
+            misses.increment();
+            InvoiceExtractionResult result = loader.get();
+            if (result != null && result.isSuccess()) {
+                put(contentHash, result);
+            }
+            pending.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors too: a follower must never wait on a load that is over
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(contentHash, pending);
+        }
+    }
+
+    public void invalidate(String contentHash) {
+        synchronized (entries) {
+            entries.remove(contentHash);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Waits for another caller's load. Extraction tasks are cancelled with an
+     * interrupt on timeout or duplicate rejection, so an interrupted follower
+     * gives its thread back instead of waiting for the leader.
+     */
+    private InvoiceExtractionResult awaitShared(CompletableFuture<InvoiceExtractionResult> shared) {
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a shared extraction");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private InvoiceExtractionResult lookup(String contentHash) {
+        synchronized (entries) {
+            CachedResult entry = entries.get(contentHash);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(contentHash);
+                evictions.increment();
+                return null;
+            }
+            return entry.result();
+        }
+    }
+
+    private void put(String contentHash, InvoiceExtractionResult result) {
+        long expiresAt = System.currentTimeMillis() + Duration.ofMinutes(ttlMinutes).toMillis();
+        synchronized (entries) {
+            entries.put(contentHash, new CachedResult(result, expiresAt));
+
+            Iterator<Map.Entry<String, CachedResult>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
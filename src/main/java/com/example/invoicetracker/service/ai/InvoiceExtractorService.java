@@ -1,6 +1,7 @@
 package com.example.invoicetracker.service.ai;
 
 import com.example.invoicetracker.dto.InvoiceExtractionResult;
+import com.example.invoicetracker.service.FileStorageService;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -24,6 +25,8 @@ public class InvoiceExtractorService {
 
     private final GeminiService geminiService;
     private final Gson gson;
+    private final InvoiceExtractionCache extractionCache;
+    private final FileStorageService fileStorageService;
 
     // ==================== MAIN EXTRACTION METHOD ====================
     public InvoiceExtractionResult extractInvoiceData(MultipartFile file) {
@@ -36,6 +39,21 @@ public class InvoiceExtractorService {
             if (file.getSize() > 4 * 1024 * 1024)
                 return buildErrorResult("File too large. Maximum 4MB allowed.");
 
+            String contentHash = hashOrNull(file);
+            if (contentHash == null) {
+                return extractFromGemini(file);
+            }
+
+            return extractionCache.get(contentHash, () -> extractFromGemini(file));
+
+        } catch (Exception e) {
+            log.error("Error extracting invoice data: {}", e.getMessage(), e);
+            return buildErrorResult("Extraction failed: " + e.getMessage());
+        }
+    }
+
+    private InvoiceExtractionResult extractFromGemini(MultipartFile file) {
+        try {
             String prompt = buildExtractionPrompt();
 
             String aiResponse = geminiService.analyzeImage(file, prompt);
@@ -48,6 +66,15 @@ public class InvoiceExtractorService {
         }
     }
 
+    private String hashOrNull(MultipartFile file) {
+        try {
+            return fileStorageService.calculateFileHash(file);
+        } catch (Exception e) {
+            log.warn("⚠️ Could not hash file for extraction cache, skipping cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
     // ==================== PROMPT BUILDER ====================
     private String buildExtractionPrompt() {
         return """
@@ -0,0 +1,8 @@
+package com.example.invoicetracker.service.chart;
+
+/**
+ * A rendered chart. The ETag is derived from the image bytes, so it stays
+ * valid across restarts and instances, unlike the in-memory data versions.
+ */
+public record ChartImage(byte[] png, String etag) {
+}
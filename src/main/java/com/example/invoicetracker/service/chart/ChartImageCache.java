@@ -0,0 +1,141 @@
+package com.example.invoicetracker.service.chart;
+
+import com.example.invoicetracker.service.InvoiceDataVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of rendered chart PNGs, bounded by their total size in bytes.
+ * Keyed by chart type, scope (an uploader, or all invoices) and day, since
+ * the monthly chart's window moves with the date. Each image keeps the
+ * {@link InvoiceDataVersion} of its scope it was rendered at; once an
+ * invoice in that scope changes, the image is stale and dropped on lookup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChartImageCache {
+
+    private static final String ALL_SCOPE = "*";
+
+    private final InvoiceDataVersion invoiceDataVersion;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${invoice.chart.cache.max-bytes:33554432}")
+    private long maxBytes = 33554432;
+
+    private final Map<Key, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter stale;
+    private Counter evictions;
+
+    private record Key(ChartType type, String scope, LocalDate day) {
+    }
+
+    private record CachedImage(ChartImage image, long version) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("invoice.chart.cache.hits");
+        misses = meterRegistry.counter("invoice.chart.cache.misses");
+        stale = meterRegistry.counter("invoice.chart.cache.stale");
+        evictions = meterRegistry.counter("invoice.chart.cache.evictions");
+        Gauge.builder("invoice.chart.cache.size", this, ChartImageCache::size).register(meterRegistry);
+        Gauge.builder("invoice.chart.cache.bytes", this, ChartImageCache::bytes).register(meterRegistry);
+    }
+
+    /**
+     * Data version to pass to {@link #put}. Read it before loading the chart
+     * data: a change that lands meanwhile then makes the stored image stale
+     * instead of hiding behind it.
+     *
+     * @param scopeUserId uploader the chart is restricted to, or null for all invoices
+     */
+    public long version(String scopeUserId) {
+        return invoiceDataVersion.current(scopeUserId);
+    }
+
+    /**
+     * @return the cached image, or null on a miss or when the scope's data changed since
+     */
+    public ChartImage get(ChartType type, String scopeUserId) {
+        Key key = key(type, scopeUserId);
+        long current = invoiceDataVersion.current(scopeUserId);
+        synchronized (entries) {
+            CachedImage entry = entries.get(key);
+            if (entry != null && entry.version() != current) {
+                remove(key);
+                stale.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.image();
+        }
+    }
+
+    public void put(ChartType type, String scopeUserId, long version, ChartImage image) {
+        if (version != invoiceDataVersion.current(scopeUserId)) {
+            return;
+        }
+        if (image.png().length > maxBytes) {
+            log.warn("⚠️ Chart {} is {} bytes, over the whole cache budget - Not cached", type, image.png().length);
+            return;
+        }
+        Key key = key(type, scopeUserId);
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, new CachedImage(image, version));
+            bytes += image.png().length;
+
+            Iterator<Map.Entry<Key, CachedImage>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().image().png().length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    // Caller holds the entries lock
+    private void remove(Key key) {
+        CachedImage removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.image().png().length;
+        }
+    }
+
+    private static Key key(ChartType type, String scopeUserId) {
+        return new Key(type, scopeUserId != null ? scopeUserId : ALL_SCOPE, LocalDate.now());
+    }
+}
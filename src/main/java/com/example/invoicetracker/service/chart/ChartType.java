@@ -0,0 +1,30 @@
+package com.example.invoicetracker.service.chart;
+
+import java.util.Arrays;
+
+/**
+ * Charts served as /invoices/charts/{path}.png.
+ */
+public enum ChartType {
+    MONTHLY_TOTALS("monthly-totals"),
+    STATUS_MIX("status-mix"),
+    USER_VOLUME("user-volume");
+
+    private final String path;
+
+    ChartType(String path) {
+        this.path = path;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public static ChartType fromPath(String path) {
+        return Arrays.stream(values())
+                .filter(type -> type.path.equalsIgnoreCase(path))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown chart: " + path
+                        + " (use monthly-totals, status-mix or user-volume)"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.invoicetracker.service.chart;
+
+import com.example.invoicetracker.dto.InvoiceAnalyticsResponse;
+import org.knowm.xchart.BitmapEncoder;
+import org.knowm.xchart.CategoryChart;
+import org.knowm.xchart.CategoryChartBuilder;
+import org.knowm.xchart.PieChart;
+import org.knowm.xchart.PieChartBuilder;
+import org.knowm.xchart.internal.chartpart.Chart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws the invoice charts with xchart and encodes them as PNG. Data comes
+ * in the row shapes of the queries that load it; nothing here touches the
+ * database.
+ */
+@Component
+public class InvoiceChartRenderer {
+
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final String NO_INVOICES = "No invoices";
+
+    @Value("${invoice.chart.width:800}")
+    private int width = 800;
+
+    @Value("${invoice.chart.height:450}")
+    private int height = 450;
+
+    public byte[] monthlyTotals(List<InvoiceAnalyticsResponse.Bucket> series) {
+        CategoryChart chart = new CategoryChartBuilder()
+                .width(width).height(height)
+                .title("Invoice totals by month")
+                .xAxisTitle("Month").yAxisTitle("Total amount")
+                .build();
+        chart.getStyler().setLegendVisible(false);
+        chart.getStyler().setXAxisLabelRotation(45);
+
+        List<String> months = new ArrayList<>();
+        List<Double> amounts = new ArrayList<>();
+        for (InvoiceAnalyticsResponse.Bucket bucket : series) {
+            months.add(bucket.getBucketStart().format(MONTH_LABEL));
+            amounts.add(bucket.getTotalAmount());
+        }
+        chart.addSeries("Total amount", months, amounts);
+        return encode(chart);
+    }
+
+    /**
+     * @param rows [status, count]
+     */
+    public byte[] statusMix(List<Object[]> rows) {
+        PieChart chart = new PieChartBuilder()
+                .width(width).height(height)
+                .title("Invoices by status")
+                .build();
+        for (Object[] row : rows) {
+            chart.addSeries(String.valueOf(row[0]), (Number) row[1]);
+        }
+        if (rows.isEmpty()) {
+            chart.addSeries(NO_INVOICES, 0);
+        }
+        return encode(chart);
+    }
+
+    /**
+     * @param rows [username, count, amount], in the order to draw them
+     */
+    public byte[] userVolume(List<Object[]> rows) {
+        CategoryChart chart = new CategoryChartBuilder()
+                .width(width).height(height)
+                .title("Invoices per uploader")
+                .xAxisTitle("Uploader").yAxisTitle("Invoices")
+                .build();
+        chart.getStyler().setLegendVisible(false);
+        chart.getStyler().setXAxisLabelRotation(45);
+
+        List<String> users = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        for (Object[] row : rows) {
+            users.add((String) row[0]);
+            counts.add(((Number) row[1]).longValue());
+        }
+        // xchart refuses an empty series; draw a single empty bar instead
+        if (users.isEmpty()) {
+            users.add(NO_INVOICES);
+            counts.add(0L);
+        }
+        chart.addSeries("Invoices", users, counts);
+        return encode(chart);
+    }
+
+    private static byte[] encode(Chart<?, ?> chart) {
+        try {
+            return BitmapEncoder.getBitmapBytes(chart, BitmapEncoder.BitmapFormat.PNG);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode chart", e);
+        }
+    }
+}
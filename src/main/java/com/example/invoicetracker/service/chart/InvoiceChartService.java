@@ -0,0 +1,112 @@
+package com.example.invoicetracker.service.chart;
+
+import com.example.invoicetracker.dto.InvoiceAnalyticsRequest;
+import com.example.invoicetracker.exception.ResourceNotFoundException;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.InvoiceStatsTotalRepository;
+import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.stats.InvoiceAnalyticsService;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Server-rendered invoice charts for dashboards on thin clients. Data comes
+ * from the stats rollup (or the invoice table while it is first built) and
+ * the analytics series; loading and drawing run on the chartRenderExecutor,
+ * never on the request thread. Images are cached per chart, scope and data
+ * version, and concurrent requests for the same missing image share one
+ * render.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceChartService {
+
+    private final InvoiceAnalyticsService invoiceAnalyticsService;
+    private final InvoiceStatsRollup invoiceStatsRollup;
+    private final InvoiceStatsDailyRepository dailyRepository;
+    private final InvoiceStatsTotalRepository totalRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final UserRepository userRepository;
+    private final InvoiceChartRenderer renderer;
+    private final ChartImageCache imageCache;
+
+    @Qualifier("chartRenderExecutor")
+    private final Executor chartRenderExecutor;
+
+    @Value("${invoice.chart.top-users:10}")
+    private int topUsers = 10;
+
+    private final ConcurrentHashMap<RenderKey, CompletableFuture<ChartImage>> inFlight = new ConcurrentHashMap<>();
+
+    private record RenderKey(ChartType type, String scopeUserId, long version) {
+    }
+
+    /**
+     * Users see charts of their own invoices; SUPERUSER and AUDITOR see all
+     * invoices and the per-user volume chart.
+     *
+     * @throws RejectedExecutionException when the render pool and its queue are full
+     */
+    public CompletableFuture<ChartImage> getChart(ChartType type, String username, String role) {
+        String scopeUserId = resolveScope(type, username, role);
+        long version = imageCache.version(scopeUserId);
+
+        ChartImage cached = imageCache.get(type, scopeUserId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        RenderKey key = new RenderKey(type, scopeUserId, version);
+        CompletableFuture<ChartImage> render = inFlight.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(
+                () -> render(type, username, role, scopeUserId, version), chartRenderExecutor));
+        render.whenComplete((image, error) -> inFlight.remove(key, render));
+        return render;
+    }
+
+    private ChartImage render(ChartType type, String username, String role, String scopeUserId, long version) {
+        long startedAt = System.currentTimeMillis();
+        byte[] png = switch (type) {
+            case MONTHLY_TOTALS -> renderer.monthlyTotals(
+                    invoiceAnalyticsService.getAnalytics(new InvoiceAnalyticsRequest(), username, role).getSeries());
+            case STATUS_MIX -> renderer.statusMix(invoiceStatsRollup.isBuilt()
+                    ? dailyRepository.countByStatus(scopeUserId != null ? scopeUserId : InvoiceStatsRollup.ALL_SCOPE)
+                    : invoiceRepository.countActiveByStatus(scopeUserId));
+            case USER_VOLUME -> renderer.userVolume(invoiceStatsRollup.isBuilt()
+                    ? totalRepository.findTopUploaderRows(PageRequest.of(0, topUsers))
+                    : invoiceRepository.summarizeActiveByUser(PageRequest.of(0, topUsers)));
+        };
+        ChartImage image = new ChartImage(png, "\"" + DigestUtils.md5DigestAsHex(png) + "\"");
+        imageCache.put(type, scopeUserId, version, image);
+
+        log.debug("📊 Chart rendered - Type: {}, Scope: {}, Bytes: {}, Took: {} ms",
+                type, scopeUserId != null ? scopeUserId : "all", png.length, System.currentTimeMillis() - startedAt);
+        return image;
+    }
+
+    // Null means all invoices
+    private String resolveScope(ChartType type, String username, String role) {
+        if (!role.equals("USER")) {
+            return null;
+        }
+        if (type == ChartType.USER_VOLUME) {
+            throw new AccessDeniedException("Only SUPERUSER and AUDITOR can view per-user volume");
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username))
+                .getUserId();
+    }
+}
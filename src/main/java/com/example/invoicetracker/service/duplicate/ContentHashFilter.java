@@ -0,0 +1,334 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the SHA-256 content hashes of saved invoices, so an
+ * upload can be ruled out as a byte-identical re-upload without touching
+ * the database or the duplicate-check service. A miss is definite; a hit
+ * only means "look it up" (Invoice.contentHash is indexed).
+ * Hashes are added once the saving transaction commits. The filter is
+ * written to disk periodically and on shutdown, together with the ids it
+ * holds above a floor. At startup it is read back and every invoice above the
+ * floor that it does not hold is added, so ids that committed out of order
+ * or were saved by another instance are not skipped. It is rebuilt from the
+ * invoice table when the file is missing or was sized differently. Until
+ * then every lookup answers "maybe".
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentHashFilter {
+
+    private static final int FILE_MAGIC = 0x42484632; // "BHF2"
+
+    private final InvoiceRepository invoiceRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${duplicate.check.filter.expected-insertions:1000000}")
+    private long expectedInsertions = 1_000_000;
+
+    @Value("${duplicate.check.filter.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    @Value("${duplicate.check.filter.path:./data/content-hash.bloom}")
+    private String filterPath = "./data/content-hash.bloom";
+
+    @Value("${duplicate.check.filter.load-page-size:5000}")
+    private int loadPageSize = 5000;
+
+    // Ids remembered below the newest; an id missing further back is taken to be a rollback
+    @Value("${duplicate.check.filter.gap-window:10000}")
+    private long gapWindow = 10_000;
+
+    private long numBits;
+    private int numHashes;
+    private AtomicLongArray bits;
+
+    private final AtomicLong insertions = new AtomicLong();
+    // Every id up to the floor is in the filter (or never committed); above it,
+    // recentIds lists what is, and the startup catch-up adds the gaps
+    private volatile long floor;
+    private final ConcurrentSkipListSet<Long> recentIds = new ConcurrentSkipListSet<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean ready;
+
+    private Counter definiteMisses;
+    private Counter maybeHits;
+
+    @PostConstruct
+    void init() {
+        // Standard sizing: m = -n ln p / (ln 2)^2, k = m/n ln 2
+        numBits = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate)
+                / (Math.log(2) * Math.log(2))));
+        numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+
+        definiteMisses = meterRegistry.counter("duplicate.check.filter.lookups", "result", "miss");
+        maybeHits = meterRegistry.counter("duplicate.check.filter.lookups", "result", "maybe");
+        Gauge.builder("duplicate.check.filter.insertions", insertions, AtomicLong::get)
+                .register(meterRegistry);
+
+        log.info("Content hash filter - Bits: {}, Hashes: {}, Size: {} KB",
+                numBits, numHashes, bits.length() * 8L / 1024);
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * False means no saved invoice has this content. True means one might.
+     */
+    public boolean mightContain(String contentHash) {
+        if (!ready) {
+            maybeHits.increment();
+            return true;
+        }
+        long[] h = baseHashes(contentHash);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = bitIndex(h, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                definiteMisses.increment();
+                return false;
+            }
+        }
+        maybeHits.increment();
+        return true;
+    }
+
+    /**
+     * Adds the hash once the current transaction commits, or right away
+     * outside a transaction; a rolled-back save leaves no trace.
+     */
+    public void addAfterCommit(String contentHash, Long invoiceId) {
+        if (contentHash == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> add(contentHash, invoiceId));
+    }
+
+    void add(String contentHash, Long invoiceId) {
+        if (contentHash == null) {
+            return;
+        }
+        long[] h = baseHashes(contentHash);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = bitIndex(h, i);
+            long mask = 1L << bit;
+            bits.getAndAccumulate((int) (bit >>> 6), mask, (current, m) -> current | m);
+        }
+        insertions.incrementAndGet();
+        // After the bits: a listed id is always in the filter
+        if (invoiceId != null && invoiceId > floor) {
+            recentIds.add(invoiceId);
+        }
+        dirty.set(true);
+    }
+
+    // The hash is already uniformly distributed: use its first 16 bytes as the
+    // two base hashes for double hashing (h1 + i * h2)
+    private static long[] baseHashes(String contentHash) {
+        byte[] digest = HexFormat.of().parseHex(contentHash.substring(0, 32));
+        long h1 = 0;
+        long h2 = 0;
+        for (int i = 0; i < 8; i++) {
+            h1 = (h1 << 8) | (digest[i] & 0xff);
+            h2 = (h2 << 8) | (digest[i + 8] & 0xff);
+        }
+        return new long[]{h1, h2 | 1L};
+    }
+
+    private long bitIndex(long[] h, int i) {
+        return Math.floorMod(h[0] + i * h[1], numBits);
+    }
+
+    // ==================== STARTUP ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(this::load, "content-hash-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        try {
+            boolean restored = readFromDisk();
+            long added = addFromDatabase(restored ? floor : 0L);
+            ready = true;
+            log.info("🔎 Content hash filter ready - {} {} entries, added {} from database, Time: {}ms",
+                    restored ? "Restored" : "Rebuilt", insertions.get(), added, System.currentTimeMillis() - start);
+            if (insertions.get() > expectedInsertions) {
+                log.warn("⚠️ Content hash filter holds {} entries (sized for {}); raise " +
+                        "duplicate.check.filter.expected-insertions to keep lookups selective",
+                        insertions.get(), expectedInsertions);
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to load content hash filter, lookups fall through to the database: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    private long addFromDatabase(long afterId) {
+        long added = 0;
+        while (true) {
+            List<Object[]> rows = invoiceRepository.findContentHashRows(afterId, PageRequest.of(0, loadPageSize));
+            for (Object[] row : rows) {
+                Long invoiceId = (Long) row[0];
+                if (!recentIds.contains(invoiceId)) {
+                    add((String) row[1], invoiceId);
+                    added++;
+                }
+            }
+            advanceFloor();
+            if (rows.size() < loadPageSize) {
+                return added;
+            }
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Forgets ids more than gapWindow below the newest one. A hole that old
+     * belongs to a transaction that rolled back, not one still running.
+     */
+    private synchronized void advanceFloor() {
+        Long newest = recentIds.floor(Long.MAX_VALUE);
+        if (newest != null && newest - gapWindow > floor) {
+            floor = newest - gapWindow;
+            recentIds.headSet(floor, true).clear();
+        }
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    @Scheduled(fixedDelayString = "${duplicate.check.filter.persist-interval-ms:300000}",
+               initialDelayString = "${duplicate.check.filter.persist-interval-ms:300000}")
+    public void persistIfDirty() {
+        if (ready && dirty.compareAndSet(true, false)) {
+            try {
+                writeToDisk();
+            } catch (IOException e) {
+                dirty.set(true);
+                log.warn("⚠️ Could not persist content hash filter: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void persistOnShutdown() {
+        persistIfDirty();
+    }
+
+    void writeToDisk() throws IOException {
+        Path target = Paths.get(filterPath).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        // Ids before bits: every id written must already be in the bits written
+        advanceFloor();
+        long savedFloor = floor;
+        List<Long> savedIds = new ArrayList<>(recentIds.tailSet(savedFloor, false));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(numBits);
+            out.writeInt(numHashes);
+            out.writeLong(insertions.get());
+            out.writeLong(savedFloor);
+            out.writeInt(savedIds.size());
+            for (Long id : savedIds) {
+                out.writeLong(id);
+            }
+            for (int i = 0; i < bits.length(); i++) {
+                out.writeLong(bits.get(i));
+            }
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        log.debug("Content hash filter persisted - Entries: {}", insertions.get());
+    }
+
+    /**
+     * Restores bits saved with the same sizing. Returns false (and leaves the
+     * filter empty for a rebuild) when there is no usable file.
+     */
+    boolean readFromDisk() {
+        Path source = Paths.get(filterPath).toAbsolutePath();
+        if (!Files.exists(source)) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != FILE_MAGIC || in.readLong() != numBits || in.readInt() != numHashes) {
+                log.info("Content hash filter file {} has a different format or sizing - Rebuilding", source);
+                return false;
+            }
+            long savedInsertions = in.readLong();
+            long savedFloor = in.readLong();
+            int savedIdCount = in.readInt();
+            if (savedIdCount < 0 || savedIdCount > savedInsertions) {
+                log.warn("⚠️ Content hash filter file {} is damaged - Rebuilding", source);
+                return false;
+            }
+            long[] savedIds = new long[savedIdCount];
+            for (int i = 0; i < savedIds.length; i++) {
+                savedIds[i] = in.readLong();
+            }
+            // Read everything before touching the bits so a truncated file leaves them empty
+            long[] words = new long[bits.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                bits.getAndAccumulate(i, word, (current, w) -> current | w);
+            }
+            insertions.addAndGet(savedInsertions);
+            floor = savedFloor;
+            for (long id : savedIds) {
+                recentIds.add(id);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("⚠️ Could not read content hash filter file {} - Rebuilding: {}", source, e.getMessage());
+            return false;
+        }
+    }
+}
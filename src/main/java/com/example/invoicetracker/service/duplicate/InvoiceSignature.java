@@ -0,0 +1,119 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.model.entity.ExtractedLineItem;
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceProduct;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * What the local duplicate index keeps per invoice: similarity signatures
+ * over its description and line items, catalog products and extracted items
+ * alike, plus its extracted vendor. Built the same way for an upload being
+ * checked and for a saved invoice, so the two compare directly.
+ */
+@Getter
+public final class InvoiceSignature {
+
+    // Names the invoice factories generate when none was given carry no information
+    private static final Pattern GENERATED_NAME = Pattern.compile("(webform_.+|invoice)_\\d{10,}");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final Long invoiceId;
+    private final String ownerId;
+    private final LocalDate invoiceDate;
+    private final Double totalAmount;
+    // Null when there is no extracted vendor / descriptive text / line items to compare
+    private final Long vendorId;
+    private final Long simHash;
+    private final int[] minHash;
+
+    private InvoiceSignature(Long invoiceId, String ownerId, LocalDate invoiceDate, Double totalAmount,
+                             Long vendorId, String description, List<String> itemTokens) {
+        this.invoiceId = invoiceId;
+        this.ownerId = ownerId;
+        this.invoiceDate = invoiceDate;
+        this.totalAmount = totalAmount != null && totalAmount > 0 ? totalAmount : null;
+        this.vendorId = vendorId;
+        this.simHash = description.isBlank() ? null : SimilaritySignatures.simHash(description);
+        this.minHash = SimilaritySignatures.minHash(itemTokens);
+    }
+
+    /**
+     * Signature of an upload that has not been saved or extracted yet.
+     */
+    public static InvoiceSignature forUpload(String ownerId, LocalDate invoiceDate, Double totalAmount,
+                                             String originalFilename, String fileName,
+                                             Map<Long, Double> productQuantities) {
+        List<String> items = new ArrayList<>();
+        if (productQuantities != null) {
+            productQuantities.forEach((productId, quantity) -> items.add(itemToken(productId, quantity)));
+        }
+        return new InvoiceSignature(null, ownerId, invoiceDate, totalAmount, null,
+                describe(originalFilename, fileName), items);
+    }
+
+    /**
+     * Signature of an invoice, saved or built and extracted but not saved yet.
+     */
+    public static InvoiceSignature of(Invoice invoice) {
+        List<String> items = new ArrayList<>();
+        if (invoice.getInvoiceProduct() != null) {
+            for (InvoiceProduct ip : invoice.getInvoiceProduct()) {
+                items.add(itemToken(ip.getProduct().getProductId(), ip.getQuantity()));
+            }
+        }
+        if (invoice.getExtractedItems() != null) {
+            for (ExtractedLineItem item : invoice.getExtractedItems()) {
+                items.add(extractedItemToken(item.getName(), item.getQuantity()));
+            }
+        }
+        return of(invoice.getInvoiceId(), invoice.getUploadedByUser().getUserId(), invoice.getInvoiceDate(),
+                invoice.getTotalAmount(), invoice.getOriginalFileName(), invoice.getFileName(),
+                invoice.getVendor() != null ? invoice.getVendor().getVendorId() : null, items);
+    }
+
+    /**
+     * Signature of a saved invoice from its column values, as read by the
+     * startup load.
+     */
+    static InvoiceSignature of(Long invoiceId, String ownerId, LocalDate invoiceDate,
+                               Double totalAmount, String originalFilename, String fileName,
+                               Long vendorId, List<String> itemTokens) {
+        return new InvoiceSignature(invoiceId, ownerId, invoiceDate, totalAmount, vendorId,
+                describe(originalFilename, fileName), itemTokens);
+    }
+
+    static String itemToken(Long productId, Double quantity) {
+        return productId + ":" + quantityToken(quantity);
+    }
+
+    // Free-text items from the extraction; case and spacing differ between reads of one file
+    static String extractedItemToken(String name, Double quantity) {
+        String normalized = SPACES.matcher(name.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return "item:" + normalized + ":" + quantityToken(quantity);
+    }
+
+    private static String quantityToken(Double quantity) {
+        return BigDecimal.valueOf(quantity == null ? 0 : quantity).stripTrailingZeros().toPlainString();
+    }
+
+    private static String describe(String originalFilename, String fileName) {
+        StringBuilder text = new StringBuilder();
+        if (originalFilename != null) {
+            int dotIndex = originalFilename.lastIndexOf('.');
+            text.append(dotIndex > 0 ? originalFilename.substring(0, dotIndex) : originalFilename);
+        }
+        if (fileName != null && !fileName.equals(originalFilename) && !GENERATED_NAME.matcher(fileName).matches()) {
+            text.append(' ').append(fileName);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.dto.DuplicateCheckResponse;
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process near-duplicate detection over the owner's saved invoices.
+ * Signatures are bucketed by owner and amount, so a check only scores the
+ * invoices whose totals are within the amount tolerance of the upload, on any
+ * date; invoices without an amount are bucketed by date instead. Candidates
+ * are scored on description (SimHash), line items (MinHash), extracted vendor
+ * and amount, and one dated differently is at most reported as similar.
+ * Filled from the invoice table in the background at startup and kept
+ * current as invoices are saved, updated and deleted. InvoiceService uses it
+ * in place of the duplicate-check service when that is disabled or
+ * unavailable, once with the upload as received and again after extraction;
+ * exact re-uploads are caught earlier by ContentHashFilter.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalDuplicateIndex {
+
+    public static final String SIMILARITY_METHOD = "LOCAL_SIMILARITY";
+
+    private static final double TEXT_WEIGHT = 0.3;
+    private static final double ITEMS_WEIGHT = 0.4;
+    private static final double AMOUNT_WEIGHT = 0.3;
+    private static final double VENDOR_WEIGHT = 0.2;
+    private static final int MAX_SIMILAR = 5;
+    // Totals this far apart (relative to the larger) no longer score on amount
+    private static final double AMOUNT_TOLERANCE = 0.1;
+    // Bucket width: any two amounts within the tolerance share a bucket or are neighbours
+    private static final double AMOUNT_BUCKET_LOG = -Math.log(1.0 - AMOUNT_TOLERANCE);
+
+    private final InvoiceRepository invoiceRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${duplicate.check.local.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${duplicate.check.local.duplicate-threshold:0.8}")
+    private double duplicateThreshold = 0.8;
+
+    @Value("${duplicate.check.local.similar-threshold:0.5}")
+    private double similarThreshold = 0.5;
+
+    // A single matching signal (e.g. only the description) is never enough to block
+    @Value("${duplicate.check.local.single-signal-cap:0.6}")
+    private double singleSignalCap = 0.6;
+
+    // Another date is a typo or a recurring invoice: worth a review, never blocked
+    @Value("${duplicate.check.local.other-date-cap:0.7}")
+    private double otherDateCap = 0.7;
+
+    @Value("${duplicate.check.local.load-page-size:1000}")
+    private int loadPageSize = 1000;
+
+    private final Map<Long, InvoiceSignature> byInvoiceId = new ConcurrentHashMap<>();
+    private final Map<String, List<InvoiceSignature>> byBucket = new ConcurrentHashMap<>();
+
+    private Counter similarHits;
+
+    @PostConstruct
+    void registerMetrics() {
+        similarHits = meterRegistry.counter("duplicate.check.local.hits", "method", "similarity");
+        Gauge.builder("duplicate.check.local.size", byInvoiceId, Map::size)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== CHECK ====================
+
+    public DuplicateCheckResponse check(InvoiceSignature upload) {
+        List<DuplicateCheckResponse.SimilarInvoice> similar = new ArrayList<>();
+        double best = 0.0;
+        for (String key : lookupKeys(upload)) {
+            for (InvoiceSignature candidate : byBucket.getOrDefault(key, List.of())) {
+                boolean sameDate = upload.getInvoiceDate() != null
+                        && upload.getInvoiceDate().equals(candidate.getInvoiceDate());
+                double score = sameDate ? score(upload, candidate) : Math.min(score(upload, candidate), otherDateCap);
+                if (score >= similarThreshold) {
+                    similar.add(similar(candidate, score, sameDate
+                            ? "Same date with similar description, items or amount"
+                            : "Similar description, items and amount on another date"));
+                }
+                best = Math.max(best, score);
+            }
+        }
+        similar.sort(Comparator.comparing(DuplicateCheckResponse.SimilarInvoice::getSimilarityScore).reversed());
+        if (similar.size() > MAX_SIMILAR) {
+            similar = new ArrayList<>(similar.subList(0, MAX_SIMILAR));
+        }
+
+        boolean duplicate = best >= duplicateThreshold;
+        if (duplicate) {
+            similarHits.increment();
+        }
+        return DuplicateCheckResponse.builder()
+                .duplicate(duplicate)
+                .confidenceScore(round(best))
+                .checkMethod(SIMILARITY_METHOD)
+                .similarInvoices(similar)
+                .recommendation(duplicate
+                        ? "Very similar to an existing invoice on the same date."
+                        : similar.isEmpty() ? "No similar invoices found." : "Similar invoices exist; review before approving.")
+                .build();
+    }
+
+    /**
+     * Weighted average of the signals both sides have. With only one signal
+     * available the score is capped below the duplicate threshold.
+     */
+    double score(InvoiceSignature a, InvoiceSignature b) {
+        double total = 0.0;
+        double weights = 0.0;
+        int signals = 0;
+
+        if (a.getSimHash() != null && b.getSimHash() != null) {
+            total += TEXT_WEIGHT * SimilaritySignatures.simHashSimilarity(a.getSimHash(), b.getSimHash());
+            weights += TEXT_WEIGHT;
+            signals++;
+        }
+        if (a.getMinHash() != null && b.getMinHash() != null) {
+            total += ITEMS_WEIGHT * SimilaritySignatures.minHashSimilarity(a.getMinHash(), b.getMinHash());
+            weights += ITEMS_WEIGHT;
+            signals++;
+        }
+        if (a.getVendorId() != null && b.getVendorId() != null) {
+            total += VENDOR_WEIGHT * (a.getVendorId().equals(b.getVendorId()) ? 1.0 : 0.0);
+            weights += VENDOR_WEIGHT;
+            signals++;
+        }
+        if (a.getTotalAmount() != null && b.getTotalAmount() != null) {
+            double larger = Math.max(Math.abs(a.getTotalAmount()), Math.abs(b.getTotalAmount()));
+            double relativeDiff = larger == 0.0 ? 0.0 : Math.abs(a.getTotalAmount() - b.getTotalAmount()) / larger;
+            // 0% apart scores 1, AMOUNT_TOLERANCE or more apart scores 0
+            total += AMOUNT_WEIGHT * Math.max(0.0, 1.0 - relativeDiff / AMOUNT_TOLERANCE);
+            weights += AMOUNT_WEIGHT;
+            signals++;
+        }
+
+        if (signals == 0) {
+            return 0.0;
+        }
+        double score = total / weights;
+        return signals == 1 ? Math.min(score, singleSignalCap) : score;
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Indexes the invoice once the current transaction commits, or right away
+     * outside a transaction. The signature is taken now, while the entity and
+     * its line items are loaded.
+     */
+    public void indexAfterCommit(Invoice invoice) {
+        if (!enabled || invoice.getInvoiceId() == null) {
+            return;
+        }
+        InvoiceSignature signature = InvoiceSignature.of(invoice);
+        TransactionCallbacks.afterCommit(() -> put(signature));
+    }
+
+    public void removeAfterCommit(Long invoiceId) {
+        if (!enabled) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> remove(invoiceId));
+    }
+
+    // Writes are serialized (they happen once per save); checks read without locking
+    synchronized void put(InvoiceSignature signature) {
+        remove(signature.getInvoiceId());
+        add(signature);
+    }
+
+    private synchronized void putIfAbsent(InvoiceSignature signature) {
+        if (!byInvoiceId.containsKey(signature.getInvoiceId())) {
+            add(signature);
+        }
+    }
+
+    private void add(InvoiceSignature signature) {
+        byInvoiceId.put(signature.getInvoiceId(), signature);
+        for (String key : filedKeys(signature)) {
+            byBucket.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(signature);
+        }
+    }
+
+    synchronized void remove(Long invoiceId) {
+        InvoiceSignature existing = byInvoiceId.remove(invoiceId);
+        if (existing == null) {
+            return;
+        }
+        for (String key : filedKeys(existing)) {
+            byBucket.computeIfPresent(key, (k, list) -> {
+                list.removeIf(s -> s.getInvoiceId().equals(invoiceId));
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    // ==================== STARTUP LOAD ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "duplicate-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Reads active invoices in id order, one page of columns plus one query
+     * each for that page's product and extracted line items at a time. Invoices indexed live while the
+     * load runs are newer and are not overwritten.
+     */
+    void load() {
+        long start = System.currentTimeMillis();
+        long afterId = 0L;
+        int total = 0;
+        try {
+            while (true) {
+                List<Object[]> rows = invoiceRepository.findSignatureRows(afterId, PageRequest.of(0, loadPageSize));
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    ids.add((Long) row[0]);
+                }
+                Map<Long, List<String>> items = new HashMap<>();
+                for (Object[] item : invoiceRepository.findLineItemRows(ids)) {
+                    items.computeIfAbsent((Long) item[0], id -> new ArrayList<>())
+                            .add(InvoiceSignature.itemToken((Long) item[1], (Double) item[2]));
+                }
+                for (Object[] item : invoiceRepository.findExtractedItemRows(ids)) {
+                    items.computeIfAbsent((Long) item[0], id -> new ArrayList<>())
+                            .add(InvoiceSignature.extractedItemToken((String) item[1], (Double) item[2]));
+                }
+
+                for (Object[] row : rows) {
+                    Long invoiceId = (Long) row[0];
+                    putIfAbsent(InvoiceSignature.of(invoiceId, (String) row[1], (LocalDate) row[2],
+                            (Double) row[3], (String) row[4], (String) row[5], (Long) row[6],
+                            items.get(invoiceId)));
+                }
+                total += rows.size();
+                afterId = ids.get(ids.size() - 1);
+                if (rows.size() < loadPageSize) {
+                    break;
+                }
+            }
+            log.info("🔎 Local duplicate index loaded - Invoices: {}, Time: {}ms",
+                    total, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("❌ Failed to load local duplicate index after {} invoices: {}", total, e.getMessage(), e);
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * Buckets a saved signature is filed under: its amount bucket when it has
+     * an amount, its date (all of them, for checks made before the amount is
+     * known) and, without an amount, its date among the unpriced ones.
+     */
+    private static List<String> filedKeys(InvoiceSignature signature) {
+        List<String> keys = new ArrayList<>(2);
+        if (signature.getTotalAmount() != null) {
+            keys.add(amountKey(signature.getOwnerId(), signature.getTotalAmount(), 0));
+        }
+        if (signature.getInvoiceDate() != null) {
+            keys.add(dayKey(signature.getOwnerId(), signature.getInvoiceDate()));
+            if (signature.getTotalAmount() == null) {
+                keys.add(unpricedDayKey(signature.getOwnerId(), signature.getInvoiceDate()));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Buckets a check scans; they never overlap, so no candidate is scored twice.
+     * With an amount: its bucket and both neighbours, plus the same day's
+     * unpriced invoices. Without one: every invoice on the same day.
+     */
+    private static List<String> lookupKeys(InvoiceSignature upload) {
+        List<String> keys = new ArrayList<>(4);
+        if (upload.getTotalAmount() != null) {
+            for (int offset = -1; offset <= 1; offset++) {
+                String key = amountKey(upload.getOwnerId(), upload.getTotalAmount(), offset);
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+            if (upload.getInvoiceDate() != null) {
+                keys.add(unpricedDayKey(upload.getOwnerId(), upload.getInvoiceDate()));
+            }
+        } else if (upload.getInvoiceDate() != null) {
+            keys.add(dayKey(upload.getOwnerId(), upload.getInvoiceDate()));
+        }
+        return keys;
+    }
+
+    // Log-scale buckets, mirrored for credit notes; zero has no neighbours
+    private static String amountKey(String ownerId, double amount, int offset) {
+        if (amount == 0.0) {
+            return ownerId + "|a0";
+        }
+        long bucket = (long) Math.floor(Math.log(Math.abs(amount)) / AMOUNT_BUCKET_LOG) + offset;
+        return ownerId + (amount > 0 ? "|a+" : "|a-") + bucket;
+    }
+
+    private static String dayKey(String ownerId, LocalDate invoiceDate) {
+        return ownerId + "|d" + invoiceDate;
+    }
+
+    private static String unpricedDayKey(String ownerId, LocalDate invoiceDate) {
+        return ownerId + "|u" + invoiceDate;
+    }
+
+    private static DuplicateCheckResponse.SimilarInvoice similar(InvoiceSignature signature, double score,
+                                                                 String reason) {
+        return DuplicateCheckResponse.SimilarInvoice.builder()
+                .invoiceId(signature.getInvoiceId())
+                .uploadDate(signature.getInvoiceDate())
+                .totalAmount(signature.getTotalAmount() != null ? BigDecimal.valueOf(signature.getTotalAmount()) : null)
+                .similarityScore(round(score))
+                .matchReason(reason)
+                .build();
+    }
+
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.invoicetracker.service.duplicate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Locality-sensitive signatures used by the local duplicate index:
+ * a 64-bit SimHash over character trigrams of short descriptive text, and a
+ * MinHash sketch over sets of line-item tokens.
+ */
+final class SimilaritySignatures {
+
+    static final int MINHASH_SIZE = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimilaritySignatures() {
+    }
+
+    /**
+     * SimHash over the lowercase alphanumeric trigrams of the text. Similar
+     * strings differ in few bits. Returns 0 for blank text.
+     */
+    static long simHash(String text) {
+        Set<String> shingles = shingles(text);
+        if (shingles.isEmpty()) {
+            return 0L;
+        }
+
+        int[] weights = new int[64];
+        for (String shingle : shingles) {
+            long hash = hash64(shingle, 0);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+            }
+        }
+
+        long simHash = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    static double simHashSimilarity(long a, long b) {
+        return 1.0 - Long.bitCount(a ^ b) / 64.0;
+    }
+
+    /**
+     * MinHash sketch of the token set, or null for an empty set.
+     */
+    static int[] minHash(Collection<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            return null;
+        }
+
+        int[] sketch = new int[MINHASH_SIZE];
+        Arrays.fill(sketch, Integer.MAX_VALUE);
+        for (String token : tokens) {
+            for (int i = 0; i < MINHASH_SIZE; i++) {
+                int value = (int) (hash64(token, i + 1) >>> 33);
+                if (value < sketch[i]) {
+                    sketch[i] = value;
+                }
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the sets behind two sketches.
+     */
+    static double minHashSimilarity(int[] a, int[] b) {
+        int matches = 0;
+        for (int i = 0; i < MINHASH_SIZE; i++) {
+            if (a[i] == b[i]) {
+                matches++;
+            }
+        }
+        return (double) matches / MINHASH_SIZE;
+    }
+
+    private static Set<String> shingles(String text) {
+        Set<String> shingles = new HashSet<>();
+        if (text == null) {
+            return shingles;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{Alnum}]+", " ").trim();
+        if (normalized.isEmpty()) {
+            return shingles;
+        }
+        if (normalized.length() < 3) {
+            shingles.add(normalized);
+            return shingles;
+        }
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            shingles.add(normalized.substring(i, i + 3));
+        }
+        return shingles;
+    }
+
+    // FNV-1a with a seed, finished with a murmur-style mix for better bit spread
+    private static long hash64(String value, int seed) {
+        long hash = FNV_OFFSET ^ (seed * 0x9e3779b97f4a7c15L);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
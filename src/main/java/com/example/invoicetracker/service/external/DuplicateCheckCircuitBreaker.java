@@ -0,0 +1,215 @@
+package com.example.invoicetracker.service.external;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and bulkhead for calls to the duplicate-check service.
+ * The breaker opens when the failure rate over the last calls crosses the
+ * threshold, rejects calls immediately while open, and after a cool-down lets
+ * a few probe calls through (half-open) to decide whether to close again.
+ * The bulkhead caps concurrent calls so a slow service cannot tie up every
+ * upload thread.
+ * State and transitions are published as duplicate.check.circuit.* metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DuplicateCheckCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${duplicate.check.circuit.window-size:20}")
+    private int windowSize = 20;
+
+    @Value("${duplicate.check.circuit.minimum-calls:10}")
+    private int minimumCalls = 10;
+
+    @Value("${duplicate.check.circuit.failure-rate-threshold:50}")
+    private int failureRateThreshold = 50;
+
+    @Value("${duplicate.check.circuit.open-duration-ms:30000}")
+    private long openDurationMs = 30000;
+
+    @Value("${duplicate.check.circuit.half-open-calls:3}")
+    private int halfOpenCalls = 3;
+
+    @Value("${duplicate.check.bulkhead.max-concurrent-calls:20}")
+    private int maxConcurrentCalls = 20;
+
+    @Value("${duplicate.check.bulkhead.max-wait-ms:100}")
+    private long bulkheadMaxWaitMs = 100;
+
+    private Semaphore bulkhead;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private int halfOpenIssued;
+    private int halfOpenSucceeded;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private Counter rejectedOpen;
+    private Counter rejectedBulkhead;
+
+    /**
+     * Thrown instead of calling the service when the breaker is open or the
+     * bulkhead is full. Callers treat it like any other failure and fall back.
+     */
+    public static class CallNotPermittedException extends RuntimeException {
+        public CallNotPermittedException(String message) {
+            super(message);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        window = new boolean[windowSize];
+
+        for (State target : State.values()) {
+            transitions.put(target, meterRegistry.counter("duplicate.check.circuit.transitions",
+                    "to", target.name()));
+        }
+        rejectedOpen = meterRegistry.counter("duplicate.check.circuit.rejected", "reason", "open");
+        rejectedBulkhead = meterRegistry.counter("duplicate.check.circuit.rejected", "reason", "bulkhead");
+        Gauge.builder("duplicate.check.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+        Gauge.builder("duplicate.check.bulkhead.available", this, breaker -> breaker.bulkhead.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Runs the call if the breaker and bulkhead allow it and records the
+     * outcome. 4xx responses mean the service is up, so they do not count
+     * as failures.
+     */
+    public <T> T call(Supplier<T> remoteCall) {
+        if (!acquireBulkhead()) {
+            rejectedBulkhead.increment();
+            throw new CallNotPermittedException("Duplicate-check bulkhead full");
+        }
+        try {
+            if (!acquirePermission()) {
+                rejectedOpen.increment();
+                throw new CallNotPermittedException("Duplicate-check circuit open");
+            }
+            boolean success = false;
+            try {
+                T result = remoteCall.get();
+                success = true;
+                return result;
+            } catch (HttpClientErrorException e) {
+                success = true;
+                throw e;
+            } finally {
+                onResult(success);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenIssued >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenIssued++;
+        }
+        return true;
+    }
+
+    private synchronized void onResult(boolean success) {
+        switch (state) {
+            case CLOSED -> {
+                record(success);
+                if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    transitionTo(State.OPEN);
+                }
+            }
+            case HALF_OPEN -> {
+                if (!success) {
+                    transitionTo(State.OPEN);
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+                // A call that started before the breaker opened; nothing to decide
+            }
+        }
+    }
+
+    private void record(boolean success) {
+        if (windowCount == windowSize) {
+            if (!window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = success;
+        if (!success) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    private void transitionTo(State target) {
+        log.warn("⚡ Duplicate-check circuit {} -> {}", state, target);
+        state = target;
+        transitions.get(target).increment();
+        switch (target) {
+            case OPEN -> openedAt = System.currentTimeMillis();
+            case HALF_OPEN -> {
+                halfOpenIssued = 0;
+                halfOpenSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.example.invoicetracker.service.external;
 
 import com.example.invoicetracker.dto.DuplicateCheckResponse;
-import com.example.invoicetracker.model.entity.InvoiceProduct;
+import com.example.invoicetracker.model.entity.FingerprintOutbox;
+import com.example.invoicetracker.service.external.DuplicateCheckCircuitBreaker.CallNotPermittedException;
 
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
@@ -18,6 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,64 +30,17 @@ public class DuplicateCheckClient {
     
     @Value("${duplicate.check.service.url:http://duplicate-check-service:8081}")
     private String duplicateCheckServiceUrl;
+
+    // Whether the service has the check-and-reserve, release and commit-batch
+    // endpoints; without them uploads use the plain check and save-fingerprint
+    @Value("${duplicate.check.reserve-enabled:false}")
+    private boolean reserveEnabled = false;
     
+    @Qualifier("duplicateCheckRestTemplate")
     private final RestTemplate restTemplate;
 
-    
-    public void saveFingerprint(Long invoiceId, LocalDate invoiceDate,
-                           BigDecimal totalAmount, String vendor,
-                           String textContent, String username, String role) {
-    
-    log.info("🎯 SAVING FINGERPRINT - Invoice ID: {}", invoiceId);
-    
-    try {
-        Map<String, Object> request = new HashMap<>();
-        request.put("invoiceId", invoiceId);
-        request.put("invoiceDate", invoiceDate.toString());
-        request.put("totalAmount", totalAmount.toString());
-        request.put("vendor", vendor);
-        request.put("textContent", textContent);
-        request.put("username", username);
-        request.put("role", role);
-        
-        String url = duplicateCheckServiceUrl + "/api/duplicate-check/save-fingerprint";
-        log.info("🌐 Calling URL: {}", url);
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(request, headers);
-        
-        log.info("📤 Request Body: {}", request);
-        
-        ResponseEntity<Void> response = restTemplate.postForEntity(
-            url, 
-            requestEntity, 
-            Void.class
-        );
-        
-        if (response.getStatusCode().is2xxSuccessful()) {
-            log.info("✅ Fingerprint saved successfully for invoice: {}", invoiceId);
-        } else {
-            log.error("❌ Failed to save fingerprint. Status: {}", response.getStatusCode());
-        }
-        
-    } catch (Exception e) {
-        log.error("❌ Error saving fingerprint for invoice {}: {}", invoiceId, e.getMessage());
-        log.error("Stack trace:", e);
-    }
-}
-    @Data
-    private static class DuplicateCheckRequest {
-        private Long invoiceId;
-        private LocalDate invoiceDate;
-        private BigDecimal totalAmount;
-        private String vendor;
-        private String textContent;
-        private String username;
-        private String role;
-    }
-    
+    private final DuplicateCheckCircuitBreaker circuitBreaker;
+
     private DuplicateCheckResponse createDefaultResponse(String error) {
         DuplicateCheckResponse defaultResponse = new DuplicateCheckResponse();
         defaultResponse.setDuplicate(false);
@@ -99,150 +53,157 @@ public class DuplicateCheckClient {
 
 
 
-    public void saveTemporaryFingerprint(Long temporaryId, LocalDate invoiceDate,
-                                   BigDecimal totalAmount, String vendor,
-                                   String textContent, String username, String role) {
-    
-    log.info("💾 SAVING TEMPORARY FINGERPRINT - Temp ID: {}", temporaryId);
-    
-    try {
-        Map<String, Object> request = new HashMap<>();
-        request.put("invoiceId", temporaryId);
-        request.put("invoiceDate", invoiceDate.toString());
-        request.put("totalAmount", totalAmount.toString());
-        request.put("vendor", vendor);
-        request.put("textContent", textContent);
-        request.put("username", username);
-        request.put("role", role);
-        request.put("isTemporary", true);
-        
-        String url = duplicateCheckServiceUrl + "/api/duplicate-check/save-temporary";
-        log.info("🌐 Calling URL: {}", url);
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(request, headers);
-        
-        log.info("📤 Request Body: {}", request);
-        
-        ResponseEntity<Void> response = restTemplate.postForEntity(
-            url, 
-            requestEntity, 
-            Void.class
-        );
-        
-        if (response.getStatusCode().is2xxSuccessful()) {
-            log.info("✅ Temporary fingerprint saved: {}", temporaryId);
-        } else {
-            log.warn("⚠️ Failed to save temporary fingerprint. Status: {}", response.getStatusCode());
+    /**
+     * Checks the upload and, when it is not a duplicate, reserves its
+     * fingerprint under the given reservation id in the same round trip, so
+     * concurrent uploads of the same invoice see each other. The reservation
+     * is made permanent later by {@link #commitFingerprints}.
+     * When the service has no reservation endpoints, this is the plain check
+     * and nothing is reserved.
+     */
+    public DuplicateCheckResponse checkAndReserve(MultipartFile file,
+                                                  LocalDate invoiceDate,
+                                                  BigDecimal totalAmount,
+                                                  String vendor,
+                                                  String username,
+                                                  String role,
+                                                  String reservationId,
+                                                  String fileName) {
+
+        log.info("🎯 CHECK AND RESERVE - Reservation: {}", reserveEnabled ? reservationId : "none");
+
+        try {
+            MultiValueMap<String, Object> body = buildCheckBody(
+                    file, invoiceDate, totalAmount, vendor, username, role, fileName);
+            String url;
+            if (reserveEnabled) {
+                body.add("reservationId", reservationId);
+                url = duplicateCheckServiceUrl + "/api/duplicate-check/check-and-reserve";
+            } else {
+                body.add("invoiceId", "0");
+                body.add("isTemporary", "false");
+                url = duplicateCheckServiceUrl + "/api/duplicate-check/check";
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+
+            ResponseEntity<DuplicateCheckResponse> responseEntity = circuitBreaker.call(() -> restTemplate.exchange(
+                url,
+                HttpMethod.POST,
+                requestEntity,
+                DuplicateCheckResponse.class
+            ));
+
+            return responseEntity.getBody();
+
+        } catch (CallNotPermittedException e) {
+            log.warn("⚠️ Duplicate check skipped: {}", e.getMessage());
+            return createDefaultResponse(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error in check-and-reserve: {}", e.getMessage());
+            return createDefaultResponse("Service error: " + e.getMessage());
         }
-        
-    } catch (Exception e) {
-        log.warn("⚠️ Could not save temporary fingerprint for {}: {}", temporaryId, e.getMessage());
     }
-}
 
+    /**
+     * Drops a reservation taken by {@link #checkAndReserve} for an upload that
+     * was not saved, so a retry of the same file is not reported as a
+     * duplicate of its own earlier attempt. Releasing is idempotent on the
+     * service; failures are logged and not thrown, since the upload has
+     * already failed for another reason.
+     */
+    public void releaseReservation(String reservationId) {
+        if (!reserveEnabled) {
+            return;
+        }
+        try {
+            String url = duplicateCheckServiceUrl + "/api/duplicate-check/release";
 
-public void replaceTemporaryWithFinal(Long temporaryId, Long finalInvoiceId,
-                                    LocalDate invoiceDate, BigDecimal totalAmount,
-                                    String vendor, List<InvoiceProduct> products,
-                                    String username, String role) {
-    
-    log.info("🔄 REPLACING TEMPORARY WITH FINAL - Temp: {}, Final: {}", 
-             temporaryId, finalInvoiceId);
-    
-    try {
-        StringBuilder textContentBuilder = new StringBuilder();
-        
-        textContentBuilder.append(String.format(
-            "InvoiceID:%d|Vendor:%s|Date:%s|Amount:%.2f",
-            finalInvoiceId,
-            vendor != null ? vendor : "Unknown",
-            invoiceDate,
-            totalAmount
-        ));
-        
-        if (products != null && !products.isEmpty()) {
-            textContentBuilder.append("|Products:");
-            for (InvoiceProduct ip : products) {
-                textContentBuilder.append(String.format("%s(%.1f),",
-                    ip.getProduct().getProductName(),
-                    ip.getQuantity()
-                ));
-            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<Map<String, Object>> requestEntity =
+                    new HttpEntity<>(Map.of("reservationId", reservationId), headers);
+
+            circuitBreaker.call(() -> restTemplate.postForEntity(url, requestEntity, Void.class));
+            log.info("↩️ Released reservation {}", reservationId);
+        } catch (CallNotPermittedException e) {
+            log.warn("⚠️ Could not release reservation {}: {}", reservationId, e.getMessage());
+        } catch (Exception e) {
+            log.error("❌ Error releasing reservation {}: {}", reservationId, e.getMessage());
         }
-        
-        textContentBuilder.append("|User:").append(username);
-        
-        String textContent = textContentBuilder.toString();
-        
-        Map<String, Object> request = new HashMap<>();
-        request.put("temporaryId", temporaryId);
-        request.put("finalInvoiceId", finalInvoiceId);
-        request.put("invoiceDate", invoiceDate.toString());
-        request.put("totalAmount", totalAmount.toString());
-        request.put("vendor", vendor != null ? vendor : "Unknown");
-        request.put("textContent", textContent);
-        request.put("username", username);
-        request.put("role", role);
-        
-        String url = duplicateCheckServiceUrl + "/api/duplicate-check/replace-temporary";
-        
+    }
+
+    /**
+     * Commits a batch of final fingerprints, replacing their reservations.
+     * The service treats each entry idempotently by reservation id, so a batch
+     * may safely be sent again after a failure. Failures are thrown to the
+     * caller, which owns the retry.
+     * Without the reservation endpoints each fingerprint is saved on its own;
+     * a retried batch may then save the entries before the failed one again.
+     */
+    public void commitFingerprints(List<FingerprintOutbox> entries) {
+        if (!reserveEnabled) {
+            saveFingerprints(entries);
+            return;
+        }
+
+        List<Map<String, Object>> payload = new ArrayList<>(entries.size());
+        for (FingerprintOutbox entry : entries) {
+            Map<String, Object> item = fingerprint(entry);
+            item.put("reservationId", entry.getReservationId());
+            payload.add(item);
+        }
+
+        String url = duplicateCheckServiceUrl + "/api/duplicate-check/commit-batch";
+
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(request, headers);
-        
-        ResponseEntity<Void> response = restTemplate.postForEntity(
-            url,
-            requestEntity,
-            Void.class
-        );
-        
-        if (response.getStatusCode().is2xxSuccessful()) {
-            log.info("✅ Successfully replaced temporary {} with final {}", 
-                     temporaryId, finalInvoiceId);
-        } else {
-            log.error("❌ Failed to replace temporary fingerprint. Status: {}", 
-                     response.getStatusCode());
-        }
-        
-    } catch (Exception e) {
-        log.error("❌ Error replacing fingerprint: {}", e.getMessage());
-        log.error("Stack trace:", e);
+
+        HttpEntity<List<Map<String, Object>>> requestEntity = new HttpEntity<>(payload, headers);
+
+        circuitBreaker.call(() -> restTemplate.postForEntity(url, requestEntity, Void.class));
+        log.info("✅ Committed {} fingerprints", entries.size());
     }
-}
 
+    private void saveFingerprints(List<FingerprintOutbox> entries) {
+        String url = duplicateCheckServiceUrl + "/api/duplicate-check/save-fingerprint";
 
-public DuplicateCheckResponse checkForDuplicates(MultipartFile file,
-                                                LocalDate invoiceDate,
-                                                BigDecimal totalAmount,
-                                                String vendor,
-                                                String username,
-                                                String role,
-                                                Long invoiceId,  
-                                                String fileName) {
-    
-    log.info("🎯 DUPLICATE CHECK CLIENT - Invoice/Temp ID: {}", invoiceId);
-    log.info("📞 Target URL: {}", duplicateCheckServiceUrl);
-    
-    try {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        for (FingerprintOutbox entry : entries) {
+            HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(fingerprint(entry), headers);
+            circuitBreaker.call(() -> restTemplate.postForEntity(url, requestEntity, Void.class));
+        }
+        log.info("✅ Saved {} fingerprints", entries.size());
+    }
+
+    private Map<String, Object> fingerprint(FingerprintOutbox entry) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("invoiceId", entry.getInvoiceId());
+        item.put("invoiceDate", entry.getInvoiceDate() != null ? entry.getInvoiceDate().toString() : null);
+        item.put("totalAmount", entry.getTotalAmount() != null ? entry.getTotalAmount().toString() : null);
+        item.put("vendor", entry.getVendor());
+        item.put("textContent", entry.getTextContent());
+        item.put("username", entry.getUsername());
+        item.put("role", entry.getRole());
+        return item;
+    }
+
+    private MultiValueMap<String, Object> buildCheckBody(MultipartFile file, LocalDate invoiceDate,
+                                                         BigDecimal totalAmount, String vendor,
+                                                         String username, String role, String fileName) {
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        
+
         if (file != null && !file.isEmpty()) {
-            ByteArrayResource fileResource = new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            };
-            body.add("file", fileResource);
+            // Streamed into the multipart body instead of copied into a byte[]
+            body.add("file", file.getResource());
         }
-        
+
         body.add("invoiceDate", invoiceDate.toString());
         body.add("totalAmount", totalAmount != null ? totalAmount.toString() : "0");
         if (vendor != null) {
@@ -250,32 +211,9 @@ public DuplicateCheckResponse checkForDuplicates(MultipartFile file,
         }
         body.add("username", username);
         body.add("role", role);
-        body.add("invoiceId", invoiceId != null ? invoiceId.toString() : "0");
         if (fileName != null) {
             body.add("fileName", fileName);
         }
-        
-        boolean isTemporary = invoiceId != null && invoiceId > 100000000L; 
-        body.add("isTemporary", String.valueOf(isTemporary));
-        
-        String url = duplicateCheckServiceUrl + "/api/duplicate-check/check";
-        log.info("🌐 Calling URL: {}", url);
-        
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = 
-            new HttpEntity<>(body, headers);
-        
-        ResponseEntity<DuplicateCheckResponse> responseEntity = restTemplate.exchange(
-            url,
-            HttpMethod.POST,
-            requestEntity,
-            DuplicateCheckResponse.class
-        );
-        
-        return responseEntity.getBody();
-        
-    } catch (Exception e) {
-        log.error("Error in duplicate check: {}", e.getMessage());
-        return createDefaultResponse("Service error: " + e.getMessage());
+        return body;
     }
 }
-}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.invoicetracker.service.external;
+
+import com.example.invoicetracker.model.entity.FingerprintOutbox;
+import com.example.invoicetracker.repository.FingerprintOutboxRepository;
+import com.example.invoicetracker.service.util.Backoff;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivers final fingerprints from the fingerprint_outbox table to the
+ * duplicate-check service in batches. Rows are leased with a conditional
+ * update so several app instances can drain the same outbox; a failed batch
+ * is retried with backoff and never dropped. Nothing is sent while the
+ * duplicate check is disabled; rows queued before that wait for it to return.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FingerprintOutboxDispatcher {
+
+    private final FingerprintOutboxRepository outboxRepository;
+    private final DuplicateCheckClient duplicateCheckClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${duplicate.check.enabled:true}")
+    private boolean duplicateCheckEnabled = true;
+
+    @Value("${duplicate.check.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${duplicate.check.outbox.lease-ms:60000}")
+    private long leaseMs = 60000;
+
+    @Value("${duplicate.check.outbox.backoff-initial-ms:2000}")
+    private long backoffInitialMs = 2000;
+
+    @Value("${duplicate.check.outbox.backoff-max-ms:300000}")
+    private long backoffMaxMs = 300000;
+
+    private Counter committed;
+    private Counter failedBatches;
+
+    @PostConstruct
+    void registerMetrics() {
+        committed = meterRegistry.counter("duplicate.check.outbox.committed");
+        failedBatches = meterRegistry.counter("duplicate.check.outbox.failed.batches");
+    }
+
+    @Scheduled(fixedDelayString = "${duplicate.check.outbox.poll-interval-ms:2000}",
+               initialDelayString = "${duplicate.check.outbox.poll-interval-ms:2000}")
+    public void poll() {
+        if (!duplicateCheckEnabled) {
+            return;
+        }
+        // Keep draining while batches come back full
+        while (dispatchBatch() == batchSize) {
+            log.debug("Outbox batch full - Dispatching next batch");
+        }
+    }
+
+    /**
+     * Claims and sends one batch of due fingerprints.
+     *
+     * @return number of fingerprints committed
+     */
+    int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = outboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) {
+            return 0;
+        }
+
+        String token = UUID.randomUUID().toString();
+        if (outboxRepository.claim(dueIds, token, now, now.plusNanos(leaseMs * 1_000_000L)) == 0) {
+            return 0;
+        }
+        List<FingerprintOutbox> batch = outboxRepository.findByClaimTokenOrderByOutboxIdAsc(token);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            duplicateCheckClient.commitFingerprints(batch);
+        } catch (RuntimeException e) {
+            scheduleRetry(batch, e.getMessage());
+            return 0;
+        }
+
+        outboxRepository.deleteAllInBatch(batch);
+        committed.increment(batch.size());
+        return batch.size();
+    }
+
+    private void scheduleRetry(List<FingerprintOutbox> batch, String errorMessage) {
+        failedBatches.increment();
+        LocalDateTime now = LocalDateTime.now();
+        for (FingerprintOutbox entry : batch) {
+            entry.setAttempts(entry.getAttempts() + 1);
+            entry.setNextAttemptAt(now.plusNanos(Backoff.exponentialWithJitter(entry.getAttempts(), backoffInitialMs, backoffMaxMs) * 1_000_000L));
+            entry.setClaimToken(null);
+            entry.setLastError(errorMessage);
+        }
+        outboxRepository.saveAll(batch);
+
+        log.warn("⚠️ Could not commit {} fingerprints (attempt {}), will retry: {}",
+                batch.size(), batch.get(0).getAttempts(), errorMessage);
+    }
+}
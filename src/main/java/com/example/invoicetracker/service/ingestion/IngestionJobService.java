@@ -0,0 +1,227 @@
+package com.example.invoicetracker.service.ingestion;
+
+import com.example.invoicetracker.config.FileValidator;
+import com.example.invoicetracker.dto.IngestionJobResponse;
+import com.example.invoicetracker.dto.InvoiceRequest;
+import com.example.invoicetracker.dto.InvoiceResponse;
+import com.example.invoicetracker.exception.DuplicateInvoiceException;
+import com.example.invoicetracker.exception.ResourceNotFoundException;
+import com.example.invoicetracker.model.entity.IngestionJob;
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import com.example.invoicetracker.repository.IngestionJobRepository;
+import com.example.invoicetracker.service.FileStorageService;
+import com.example.invoicetracker.service.InvoiceService;
+import com.example.invoicetracker.service.util.Backoff;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accepts invoice uploads into the persistent ingestion queue and runs queued
+ * jobs through the regular {@link InvoiceService#createInvoice} path.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobService {
+
+    private final IngestionJobRepository jobRepository;
+    private final InvoiceService invoiceService;
+    private final FileStorageService fileStorageService;
+    private final FileValidator fileValidator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${invoice.ingestion.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${invoice.ingestion.backoff-initial-ms:2000}")
+    private long backoffInitialMs = 2000;
+
+    @Value("${invoice.ingestion.backoff-max-ms:300000}")
+    private long backoffMaxMs = 300000;
+
+    // ==================== SUBMIT ====================
+
+    public IngestionJobResponse submit(InvoiceRequest request, String username, String role) {
+        MultipartFile file = request.getFile();
+        fileValidator.validateFile(file);
+
+        String stagedFileName;
+        try {
+            stagedFileName = fileStorageService.storeFile(file);
+        } catch (IOException e) {
+            log.error("Failed to stage upload for async ingestion: {}", e.getMessage());
+            throw new RuntimeException("Failed to store uploaded file: " + e.getMessage());
+        }
+
+        IngestionJob job = IngestionJob.builder()
+                .status(IngestionJobStatus.QUEUED)
+                .username(username)
+                .role(role)
+                .stagedFileName(stagedFileName)
+                .originalFileName(file.getOriginalFilename())
+                .contentType(file.getContentType())
+                .fileSize(file.getSize())
+                .invoiceDate(request.getInvoiceDate())
+                .fileName(request.getFileName())
+                .targetUserId(request.getUserId())
+                .productQuantities(toJsonMap(request.getProductQuantities()))
+                .attempts(0)
+                .maxAttempts(maxAttempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+
+        IngestionJob saved = jobRepository.save(job);
+        log.info("📥 Queued ingestion job {} - File: {}, User: {}",
+                saved.getJobId(), saved.getOriginalFileName(), username);
+
+        return toResponse(saved);
+    }
+
+    // ==================== STATUS ====================
+
+    public IngestionJobResponse getJob(Long jobId, String username, String role) {
+        IngestionJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ingestion job not found with id: " + jobId));
+
+        if (!role.equals("SUPERUSER") && !role.equals("AUDITOR") && !job.getUsername().equals(username)) {
+            throw new AccessDeniedException("You cannot access this ingestion job");
+        }
+
+        return toResponse(job);
+    }
+
+    // ==================== PROCESSING ====================
+
+    /**
+     * Processes a job already claimed by the worker. The invoice and the job's
+     * COMPLETED link commit in one transaction, so a job is never requeued for
+     * an invoice that exists; failures are recorded outside it, after the
+     * rollback. The invoice takes over the staged file instead of a copy.
+     */
+    public void process(Long jobId) {
+        IngestionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            log.warn("Ingestion job {} disappeared before processing", jobId);
+            return;
+        }
+
+        log.info("⚙️ Processing ingestion job {} (attempt {}/{})", jobId, job.getAttempts(), job.getMaxAttempts());
+
+        InvoiceResponse invoice;
+        try {
+            InvoiceRequest request = toInvoiceRequest(job);
+            invoice = transactionTemplate.execute(status -> {
+                InvoiceResponse created = invoiceService.createInvoice(request, job.getUsername(), job.getRole());
+                jobRepository.markCompleted(jobId, created.getInvoiceId(), LocalDateTime.now());
+                return created;
+            });
+        } catch (DuplicateInvoiceException | IllegalArgumentException
+                | AccessDeniedException | ResourceNotFoundException e) {
+            // Rejected input, file and form validation included, fails once; anything else may be transient
+            markFailed(job, e.getMessage());
+            return;
+        } catch (Exception e) {
+            retryOrFail(job, e);
+            return;
+        }
+
+        log.info("✅ Ingestion job {} completed - Invoice ID: {}", jobId, invoice.getInvoiceId());
+    }
+
+    private void retryOrFail(IngestionJob job, Exception e) {
+        if (job.getAttempts() >= job.getMaxAttempts()) {
+            markFailed(job, "Giving up after " + job.getAttempts() + " attempts: " + e.getMessage());
+            return;
+        }
+
+        long delayMs = Backoff.exponentialWithJitter(job.getAttempts(), backoffInitialMs, backoffMaxMs);
+        job.setStatus(IngestionJobStatus.QUEUED);
+        job.setLockedAt(null);
+        job.setErrorMessage(e.getMessage());
+        job.setNextAttemptAt(LocalDateTime.now().plusNanos(delayMs * 1_000_000L));
+        jobRepository.save(job);
+
+        log.warn("🔁 Ingestion job {} failed (attempt {}/{}), retrying in {} ms: {}",
+                job.getJobId(), job.getAttempts(), job.getMaxAttempts(), delayMs, e.getMessage());
+    }
+
+    private void markFailed(IngestionJob job, String errorMessage) {
+        job.setStatus(IngestionJobStatus.FAILED);
+        job.setLockedAt(null);
+        job.setErrorMessage(errorMessage);
+        jobRepository.save(job);
+        deleteStagedFile(job);
+
+        log.error("❌ Ingestion job {} failed permanently: {}", job.getJobId(), errorMessage);
+    }
+
+    private void deleteStagedFile(IngestionJob job) {
+        try {
+            fileStorageService.deleteFile(job.getStagedFileName());
+        } catch (IOException e) {
+            log.warn("⚠️ Could not delete staged file {}: {}", job.getStagedFileName(), e.getMessage());
+        }
+    }
+
+    // ==================== MAPPING ====================
+
+    // Carries the staged name and hash, so ingest keeps the staged file instead of copying it
+    private InvoiceRequest toInvoiceRequest(IngestionJob job) throws IOException {
+        InvoiceRequest request = new InvoiceRequest();
+        request.setFile(new StoredMultipartFile(
+                fileStorageService.getFilePath(job.getStagedFileName()),
+                job.getOriginalFileName(),
+                job.getContentType(),
+                job.getStagedFileName(),
+                fileStorageService.getContentHash(job.getStagedFileName())));
+        request.setInvoiceDate(job.getInvoiceDate());
+        request.setFileName(job.getFileName());
+        request.setUserId(job.getTargetUserId());
+        request.setProductQuantities(fromJsonMap(job.getProductQuantities()));
+        return request;
+    }
+
+    private Map<String, Object> toJsonMap(Map<Long, Double> productQuantities) {
+        if (productQuantities == null || productQuantities.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> json = new HashMap<>();
+        productQuantities.forEach((productId, quantity) -> json.put(productId.toString(), quantity));
+        return json;
+    }
+
+    private Map<Long, Double> fromJsonMap(Map<String, Object> json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        Map<Long, Double> productQuantities = new HashMap<>();
+        json.forEach((productId, quantity) ->
+                productQuantities.put(Long.valueOf(productId), ((Number) quantity).doubleValue()));
+        return productQuantities;
+    }
+
+    private IngestionJobResponse toResponse(IngestionJob job) {
+        return IngestionJobResponse.builder()
+                .jobId(job.getJobId())
+                .status(job.getStatus())
+                .originalFileName(job.getOriginalFileName())
+                .attempts(job.getAttempts())
+                .maxAttempts(job.getMaxAttempts())
+                .invoiceId(job.getInvoiceId())
+                .errorMessage(job.getErrorMessage())
+                .nextAttemptAt(job.getStatus() == IngestionJobStatus.QUEUED ? job.getNextAttemptAt() : null)
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+}
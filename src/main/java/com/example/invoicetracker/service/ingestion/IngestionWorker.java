@@ -0,0 +1,86 @@
+package com.example.invoicetracker.service.ingestion;
+
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import com.example.invoicetracker.repository.IngestionJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the ingestion_job table and hands due jobs to the worker pool. Jobs are
+ * claimed with a conditional update, so several app instances can share the
+ * same queue.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestionWorker {
+
+    private final IngestionJobRepository jobRepository;
+    private final IngestionJobService ingestionJobService;
+    @Qualifier("ingestionWorkerExecutor")
+    private final Executor ingestionWorkerExecutor;
+
+    @Value("${invoice.ingestion.worker-threads:4}")
+    private int workerThreads = 4;
+
+    @Value("${invoice.ingestion.stale-timeout-ms:600000}")
+    private long staleTimeoutMs = 600000;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Scheduled(fixedDelayString = "${invoice.ingestion.poll-interval-ms:1000}",
+               initialDelayString = "${invoice.ingestion.poll-interval-ms:1000}")
+    public void poll() {
+        LocalDateTime now = LocalDateTime.now();
+
+        int requeued = jobRepository.requeueStale(now.minusNanos(staleTimeoutMs * 1_000_000L), now);
+        if (requeued > 0) {
+            log.warn("🔁 Re-queued {} stale ingestion jobs", requeued);
+        }
+
+        int freeSlots = workerThreads - inFlight.get();
+        if (freeSlots <= 0) {
+            return;
+        }
+
+        List<Long> dueJobIds = jobRepository.findDueJobIds(
+                IngestionJobStatus.QUEUED, now, PageRequest.of(0, freeSlots));
+
+        for (Long jobId : dueJobIds) {
+            if (jobRepository.claim(jobId, LocalDateTime.now()) != 1) {
+                continue;
+            }
+            dispatch(jobId);
+        }
+    }
+
+    private void dispatch(Long jobId) {
+        inFlight.incrementAndGet();
+        try {
+            ingestionWorkerExecutor.execute(() -> {
+                try {
+                    ingestionJobService.process(jobId);
+                } catch (Exception e) {
+                    log.error("❌ Unexpected error processing ingestion job {}: {}", jobId, e.getMessage(), e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.decrementAndGet();
+            log.warn("⚠️ Worker pool rejected ingestion job {}, it will be re-queued as stale: {}",
+                    jobId, e.getMessage());
+        }
+    }
+}
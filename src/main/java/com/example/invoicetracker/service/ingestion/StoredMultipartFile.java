@@ -0,0 +1,97 @@
+package com.example.invoicetracker.service.ingestion;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Exposes a file already persisted on disk as a MultipartFile, so queued and
+ * batch uploads can go through the same factory/extraction path as
+ * synchronous ones.
+ * Files produced by FileStorageService#ingest also carry their stored name and
+ * content hash, which lets later pipeline stages skip copying and re-hashing.
+ */
+public class StoredMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String originalFilename;
+    private final String contentType;
+    private final String storedFileName;
+    private final String contentHash;
+
+    public StoredMultipartFile(Path path, String originalFilename, String contentType) {
+        this(path, originalFilename, contentType, null, null);
+    }
+
+    public StoredMultipartFile(Path path, String originalFilename, String contentType,
+                               String storedFileName, String contentHash) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.storedFileName = storedFileName;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Name in the upload directory when this file is already stored there, else null.
+     */
+    public String getStoredFileName() {
+        return storedFileName;
+    }
+
+    /**
+     * SHA-256 computed while the file was written, or null when unknown.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.invoicetracker.service.search;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceProduct;
+import com.example.invoicetracker.model.entity.Product;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceSearchDocumentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the search document of every invoice (InvoiceSearchDocument) in step
+ * with the invoice, in the transaction that changes it: file names, the
+ * uploader's username, the extracted vendor, line item product names and
+ * extracted line item names. Searches run in the database against the
+ * document's MySQL FULLTEXT index (see InvoiceRepository.matchListRows), so
+ * every instance sees every commit and nothing is rebuilt at startup.
+ * <p>
+ * Every word of a search must start a word of the document, in any order:
+ * "lap off" finds "Office laptop stand". Text inside a word does not match,
+ * so "voice" no longer finds "invoice" as the original substring LIKE did.
+ * With MySQL's defaults, words shorter than innodb_ft_min_token_size (3) or
+ * on its stopword list are not indexed and are left out of the search;
+ * docker-compose starts MySQL with both relaxed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceSearchIndex {
+
+    public static final String FULLTEXT_INDEX = "ft_invoice_search_text";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceSearchDocumentRepository documentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${invoice.search.backfill-page-size:1000}")
+    private int backfillPageSize = 1000;
+
+    // ==================== SEARCH ====================
+
+    /**
+     * The search as a boolean-mode full-text query requiring a word that
+     * starts with each of its words, or null when it has no words.
+     */
+    public static String booleanQuery(String search) {
+        List<String> words = tokenize(search);
+        if (words.isEmpty()) {
+            return null;
+        }
+        // tokenize leaves letters and digits only, so no word can carry an operator
+        return words.stream().map(word -> "+" + word + "*").collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Lower-cased, accent-folded words. "INV-2024_03.pdf" is inv, 2024, 03, pdf.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(NON_WORD.split(folded)).filter(word -> !word.isEmpty()).distinct().toList();
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Writes the invoice's search document in the current transaction, so it
+     * commits or rolls back with the invoice. The invoice must have its id.
+     * Documents of deleted invoices are kept; searches only return active ones.
+     */
+    public void index(Invoice invoice) {
+        List<String> itemNames = new ArrayList<>();
+        if (invoice.getInvoiceProduct() != null) {
+            invoice.getInvoiceProduct().stream()
+                    .map(InvoiceProduct::getProduct)
+                    .filter(Objects::nonNull)
+                    .map(Product::getProductName)
+                    .forEach(itemNames::add);
+        }
+        if (invoice.getExtractedItems() != null) {
+            invoice.getExtractedItems().forEach(item -> itemNames.add(item.getName()));
+        }
+        documentRepository.upsert(invoice.getInvoiceId(), document(invoice.getFileName(),
+                invoice.getOriginalFileName(), invoice.getUploadedByUser().getUsername(),
+                invoice.getVendor() != null ? invoice.getVendor().getName() : null, itemNames));
+    }
+
+    /**
+     * Rewrites the documents of every invoice with a line of the product, in
+     * the transaction that renames it.
+     */
+    public void reindexProduct(Long productId) {
+        reindex(invoiceRepository.findInvoiceIdsByProductId(productId));
+    }
+
+    /**
+     * Rewrites the documents of every invoice the user uploaded, in the
+     * transaction that renames them.
+     */
+    public void reindexUploader(String userId) {
+        reindex(invoiceRepository.findInvoiceIdsByUploaderId(userId));
+    }
+
+    private void reindex(List<Long> invoiceIds) {
+        for (int from = 0; from < invoiceIds.size(); from += backfillPageSize) {
+            writeDocuments(invoiceIds.subList(from, Math.min(from + backfillPageSize, invoiceIds.size())));
+        }
+        if (!invoiceIds.isEmpty()) {
+            log.info("🔎 Rewrote {} invoice search documents after a rename", invoiceIds.size());
+        }
+    }
+
+    // One query each for the page's columns, product names and extracted item names
+    private void writeDocuments(List<Long> invoiceIds) {
+        Map<Long, List<String>> itemNames = new HashMap<>();
+        for (Object[] item : invoiceRepository.findProductNameRows(invoiceIds)) {
+            itemNames.computeIfAbsent((Long) item[0], id -> new ArrayList<>()).add((String) item[1]);
+        }
+        for (Object[] item : invoiceRepository.findExtractedItemNameRows(invoiceIds)) {
+            itemNames.computeIfAbsent((Long) item[0], id -> new ArrayList<>()).add((String) item[1]);
+        }
+        for (Object[] row : invoiceRepository.findSearchDocumentRows(invoiceIds)) {
+            Long invoiceId = (Long) row[0];
+            documentRepository.upsert(invoiceId, document((String) row[1], (String) row[2], (String) row[3],
+                    (String) row[4], itemNames.getOrDefault(invoiceId, List.of())));
+        }
+    }
+
+    static String document(String fileName, String originalFileName, String username, String vendorName,
+                           Collection<String> itemNames) {
+        Set<String> words = new LinkedHashSet<>();
+        words.addAll(tokenize(fileName));
+        words.addAll(tokenize(originalFileName));
+        words.addAll(tokenize(username));
+        words.addAll(tokenize(vendorName));
+        itemNames.forEach(name -> words.addAll(tokenize(name)));
+        return String.join(" ", words);
+    }
+
+    // ==================== STARTUP ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareInBackground() {
+        Thread preparer = new Thread(this::prepare, "search-document-backfill");
+        preparer.setDaemon(true);
+        preparer.start();
+    }
+
+    /**
+     * Creates the FULLTEXT index if it is missing, then writes documents for
+     * invoices saved before they existed. Both only do work once per
+     * database; later startups find nothing to do.
+     */
+    void prepare() {
+        try {
+            createFullTextIndex();
+            backfill();
+        } catch (Exception e) {
+            log.error("❌ Failed to prepare invoice search documents: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createFullTextIndex() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equalsIgnoreCase(product)) {
+            return;
+        }
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'invoice_search_document' AND index_name = ?",
+                Integer.class, FULLTEXT_INDEX);
+        if (existing == null || existing == 0) {
+            jdbcTemplate.execute("ALTER TABLE invoice_search_document ADD FULLTEXT INDEX " + FULLTEXT_INDEX
+                    + " (search_text)");
+            log.info("🔎 Created FULLTEXT index {} on invoice_search_document", FULLTEXT_INDEX);
+        }
+    }
+
+    void backfill() {
+        long start = System.currentTimeMillis();
+        long afterId = 0L;
+        int total = 0;
+        while (true) {
+            List<Long> ids = documentRepository.findUndocumentedInvoiceIds(afterId,
+                    PageRequest.of(0, backfillPageSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> writeDocuments(ids));
+            total += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        if (total > 0) {
+            log.info("🔎 Wrote search documents for {} existing invoices, Time: {}ms",
+                    total, System.currentTimeMillis() - start);
+        }
+    }
+}
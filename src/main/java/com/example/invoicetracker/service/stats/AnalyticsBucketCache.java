@@ -0,0 +1,166 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.service.util.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Totals of closed analytics buckets (periods that ended before today), per
+ * filter. Invoices can still be back-dated, edited or deleted into a closed
+ * period, so InvoiceStatsRollup evicts the day, week and month of every
+ * invoice date it records once the write commits, and ProductService clears
+ * everything when a product moves to another category. Each bucket carries a
+ * generation that eviction bumps; a total computed before an eviction is
+ * not stored after it. Entries also expire after a TTL, which bounds how
+ * long another instance's writes can go unseen.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalyticsBucketCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${invoice.analytics.cache.max-entries:50000}")
+    private int maxEntries = 50000;
+
+    @Value("${invoice.analytics.cache.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    private final ConcurrentHashMap<BucketId, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    /**
+     * What selects the invoices of a series; null fields are not filtered on.
+     */
+    public record Filter(String userId, InvoiceStatus status, FileType fileType, Long categoryId) {
+    }
+
+    public record Totals(long invoiceCount, double totalAmount) {
+        public static final Totals ZERO = new Totals(0, 0.0);
+
+        Totals plus(long count, double amount) {
+            return new Totals(invoiceCount + count, totalAmount + amount);
+        }
+    }
+
+    private record BucketId(AnalyticsGranularity granularity, LocalDate start) {
+    }
+
+    private record CachedTotals(Totals totals, long expiresAt) {
+    }
+
+    private static final class Slot {
+        final AtomicLong generation = new AtomicLong();
+        final ConcurrentHashMap<Filter, CachedTotals> entries = new ConcurrentHashMap<>();
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("invoice.analytics.cache.hits");
+        misses = meterRegistry.counter("invoice.analytics.cache.misses");
+        evictions = meterRegistry.counter("invoice.analytics.cache.evictions");
+        Gauge.builder("invoice.analytics.cache.size", size, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public Totals get(Filter filter, AnalyticsGranularity granularity, LocalDate bucketStart) {
+        Slot slot = slots.get(new BucketId(granularity, bucketStart));
+        CachedTotals cached = slot == null ? null : slot.entries.get(filter);
+        if (cached == null || cached.expiresAt() < System.currentTimeMillis()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.totals();
+    }
+
+    /**
+     * Read before computing a bucket and pass to {@link #put}.
+     */
+    public long generation(AnalyticsGranularity granularity, LocalDate bucketStart) {
+        return slot(new BucketId(granularity, bucketStart)).generation.get();
+    }
+
+    public void put(Filter filter, AnalyticsGranularity granularity, LocalDate bucketStart, Totals totals,
+                    long generation) {
+        Slot slot = slot(new BucketId(granularity, bucketStart));
+        if (slot.generation.get() != generation) {
+            return;
+        }
+        if (size.get() >= maxEntries) {
+            log.info("📈 Analytics bucket cache full ({} entries) - Starting over", size.get());
+            // the entries are still correct, so generations stay and in-flight puts still land
+            slots.values().forEach(this::remove);
+        }
+        long expiresAt = System.currentTimeMillis() + Duration.ofMinutes(ttlMinutes).toMillis();
+        if (slot.entries.put(filter, new CachedTotals(totals, expiresAt)) == null) {
+            size.incrementAndGet();
+        }
+        // evicted while storing: the total may predate the change
+        if (slot.generation.get() != generation) {
+            remove(slot);
+        }
+    }
+
+    /**
+     * Drops the buckets containing these invoice dates, at every granularity,
+     * once the current transaction commits (right away outside one).
+     */
+    public void evictAfterCommit(Collection<LocalDate> invoiceDates) {
+        Set<LocalDate> days = Set.copyOf(invoiceDates);
+        TransactionCallbacks.afterCommit(() -> days.forEach(day -> {
+            for (AnalyticsGranularity granularity : AnalyticsGranularity.values()) {
+                Slot slot = slots.get(new BucketId(granularity, granularity.start(day)));
+                if (slot != null) {
+                    slot.generation.incrementAndGet();
+                    remove(slot);
+                }
+            }
+        }));
+    }
+
+    public void clearAfterCommit() {
+        TransactionCallbacks.afterCommit(() -> slots.values().forEach(slot -> {
+            slot.generation.incrementAndGet();
+            remove(slot);
+        }));
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void remove(Slot slot) {
+        for (Filter filter : slot.entries.keySet()) {
+            if (slot.entries.remove(filter) != null) {
+                size.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    // Slots are kept once created (a few per period queried) so their generation survives eviction
+    private Slot slot(BucketId id) {
+        return slots.computeIfAbsent(id, key -> new Slot());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.invoicetracker.service.stats;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bucket size of an analytics time series. Weeks start on Monday (ISO);
+ * every bucket is identified by its first day.
+ */
+public enum AnalyticsGranularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    public LocalDate start(LocalDate day) {
+        return switch (this) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * @param bucketStart first day of a bucket
+     * @return first day of the following bucket
+     */
+    public LocalDate next(LocalDate bucketStart) {
+        return switch (this) {
+            case DAY -> bucketStart.plusDays(1);
+            case WEEK -> bucketStart.plusWeeks(1);
+            case MONTH -> bucketStart.plusMonths(1);
+        };
+    }
+
+    public LocalDate minus(LocalDate bucketStart, long buckets) {
+        return switch (this) {
+            case DAY -> bucketStart.minusDays(buckets);
+            case WEEK -> bucketStart.minusWeeks(buckets);
+            case MONTH -> bucketStart.minusMonths(buckets);
+        };
+    }
+}
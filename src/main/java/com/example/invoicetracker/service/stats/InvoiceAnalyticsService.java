@@ -0,0 +1,160 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.dto.InvoiceAnalyticsRequest;
+import com.example.invoicetracker.dto.InvoiceAnalyticsResponse;
+import com.example.invoicetracker.exception.ResourceNotFoundException;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache.Filter;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache.Totals;
+import com.example.invoicetracker.service.util.FilterValues;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Invoice count and amount time series by invoice date, bucketed by day,
+ * week or month. Buckets are summed in SQL per day, from the
+ * invoice_stats_daily rollup, or from the invoice table when filtering by
+ * category (or while the rollup is first being built), and folded into
+ * buckets here. Closed buckets come from AnalyticsBucketCache, so a repeated
+ * request usually only queries the current period.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceAnalyticsService {
+
+    private static final int DEFAULT_BUCKETS = 12;
+
+    private final InvoiceStatsDailyRepository dailyRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final UserRepository userRepository;
+    private final InvoiceStatsRollup invoiceStatsRollup;
+    private final AnalyticsBucketCache bucketCache;
+
+    @Value("${invoice.analytics.max-buckets:400}")
+    private int maxBuckets = 400;
+
+    @Transactional(readOnly = true)
+    public InvoiceAnalyticsResponse getAnalytics(InvoiceAnalyticsRequest request, String username, String role) {
+        AnalyticsGranularity granularity = parseGranularity(request.getGranularity());
+        LocalDate today = LocalDate.now();
+
+        LocalDate lastBucket = granularity.start(request.getEndDate() != null ? request.getEndDate() : today);
+        LocalDate firstBucket = request.getStartDate() != null
+                ? granularity.start(request.getStartDate())
+                : granularity.minus(lastBucket, DEFAULT_BUCKETS - 1);
+        if (firstBucket.isAfter(lastBucket)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+
+        List<LocalDate> bucketStarts = new ArrayList<>();
+        for (LocalDate start = firstBucket; !start.isAfter(lastBucket); start = granularity.next(start)) {
+            if (bucketStarts.size() == maxBuckets) {
+                throw new IllegalArgumentException("Range spans more than " + maxBuckets + " "
+                        + granularity.name().toLowerCase() + " buckets; narrow it or use a coarser granularity");
+            }
+            bucketStarts.add(start);
+        }
+
+        Filter filter = new Filter(resolveUserId(request.getUsername(), username, role),
+                FilterValues.invoiceStatus(request.getStatus()), FilterValues.fileType(request.getFileType()),
+                request.getCategoryId());
+
+        Map<LocalDate, Totals> totals = new HashMap<>();
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate start : bucketStarts) {
+            Totals cached = isClosed(granularity, start, today) ? bucketCache.get(filter, granularity, start) : null;
+            if (cached != null) {
+                totals.put(start, cached);
+            } else {
+                missing.add(start);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<LocalDate, Long> generations = new HashMap<>();
+            for (LocalDate start : missing) {
+                generations.put(start, bucketCache.generation(granularity, start));
+            }
+            // One query from the first to the last missing bucket; usually that is only the current one
+            Map<LocalDate, Totals> computed = sumByBucket(filter, granularity, missing.get(0),
+                    granularity.next(missing.get(missing.size() - 1)));
+            for (LocalDate start : missing) {
+                Totals bucket = computed.getOrDefault(start, Totals.ZERO);
+                totals.put(start, bucket);
+                if (isClosed(granularity, start, today)) {
+                    bucketCache.put(filter, granularity, start, bucket, generations.get(start));
+                }
+            }
+        }
+
+        log.debug("📈 Analytics - Granularity: {}, Buckets: {}, Computed: {}, Filter: {}",
+                granularity, bucketStarts.size(), missing.size(), filter);
+
+        return InvoiceAnalyticsResponse.builder()
+                .granularity(granularity.name())
+                .startDate(firstBucket)
+                .endDate(granularity.next(lastBucket).minusDays(1))
+                .series(bucketStarts.stream()
+                        .map(start -> InvoiceAnalyticsResponse.Bucket.builder()
+                                .bucketStart(start)
+                                .invoiceCount(totals.get(start).invoiceCount())
+                                .totalAmount(totals.get(start).totalAmount())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    // A bucket is closed once its last day is before today; later buckets can still receive invoices
+    private static boolean isClosed(AnalyticsGranularity granularity, LocalDate bucketStart, LocalDate today) {
+        return !granularity.next(bucketStart).isAfter(today);
+    }
+
+    private Map<LocalDate, Totals> sumByBucket(Filter filter, AnalyticsGranularity granularity,
+                                               LocalDate start, LocalDate end) {
+        List<Object[]> rows = filter.categoryId() == null && invoiceStatsRollup.isBuilt()
+                ? dailyRepository.sumByDay(filter.userId() != null ? filter.userId() : InvoiceStatsRollup.ALL_SCOPE,
+                        filter.status(), filter.fileType(), start, end)
+                : invoiceRepository.sumActiveByDay(filter.userId(), filter.status(), filter.fileType(),
+                        filter.categoryId(), start, end);
+
+        Map<LocalDate, Totals> buckets = new HashMap<>();
+        for (Object[] row : rows) {
+            long count = ((Number) row[1]).longValue();
+            double amount = row[2] != null ? ((Number) row[2]).doubleValue() : 0.0;
+            buckets.merge(granularity.start((LocalDate) row[0]), Totals.ZERO.plus(count, amount),
+                    (a, b) -> a.plus(b.invoiceCount(), b.totalAmount()));
+        }
+        return buckets;
+    }
+
+    // Users only ever see their own invoices; others may narrow to one uploader
+    private String resolveUserId(String requestedUsername, String username, String role) {
+        String uploader = role.equals("USER") ? username : requestedUsername;
+        if (uploader == null || uploader.isBlank()) {
+            return null;
+        }
+        return userRepository.findByUsername(uploader)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + uploader))
+                .getUserId();
+    }
+
+    private static AnalyticsGranularity parseGranularity(String granularity) {
+        if (granularity == null || granularity.isBlank()) {
+            return AnalyticsGranularity.MONTH;
+        }
+        try {
+            return AnalyticsGranularity.valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid granularity: " + granularity + " (use DAY, WEEK or MONTH)");
+        }
+    }
+}
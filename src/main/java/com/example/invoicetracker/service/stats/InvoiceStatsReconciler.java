@@ -0,0 +1,53 @@
+package com.example.invoicetracker.service.stats;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the invoice stats rollup from the invoice table: once at startup
+ * when it has never been built (first deploy), and on a schedule to correct
+ * any drift, such as invoices changed by hand in the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceStatsReconciler {
+
+    private final InvoiceStatsRollup invoiceStatsRollup;
+
+    @Value("${invoice.stats.rollup.reconcile-enabled:true}")
+    private boolean enabled = true;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(() -> {
+            if (!invoiceStatsRollup.isBuilt()) {
+                log.info("📊 Invoice stats rollup was never built - Building from invoices");
+                reconcile();
+            }
+        }, "stats-rollup-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @Scheduled(cron = "${invoice.stats.rollup.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            invoiceStatsRollup.rebuild();
+        } catch (Exception e) {
+            log.error("❌ Failed to rebuild invoice stats rollup - keeping incremental counts: {}",
+                    e.getMessage(), e);
+        }
+    }
+}
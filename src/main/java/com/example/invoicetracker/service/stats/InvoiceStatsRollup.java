@@ -0,0 +1,291 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceStatsTotal;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.InvoiceStatsTotalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Invoice counts and amounts kept in rollup tables, per uploader and for
+ * everyone (scope {@link #ALL_SCOPE}): all-time totals in invoice_stats_total
+ * and a breakdown by invoice date, status and file type in
+ * invoice_stats_daily. InvoiceService applies each change as a delta in the
+ * same transaction as the invoice write, so the rollup commits or rolls back
+ * with it. {@link #rebuild} recomputes both tables from the invoice table, one
+ * scope per transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceStatsRollup {
+
+    public static final String ALL_SCOPE = "*";
+
+    // Row written only by rebuild: deltas recorded before the first rebuild create the
+    // other rows, so their presence does not mean the rollup covers older invoices
+    static final String BUILT_MARKER = "#built";
+
+    // Uploader rows before the everyone row, so a writer waiting on an uploader's rows
+    // (during that scope's rebuild) does not hold the row every other writer needs
+    private static final Comparator<String> SCOPE_ORDER =
+            Comparator.comparing((String scope) -> scope.equals(ALL_SCOPE))
+                    .thenComparing(Comparator.<String>naturalOrder());
+
+    private static final Comparator<DailyKey> DAILY_KEY_ORDER = Comparator.comparing(DailyKey::scope, SCOPE_ORDER)
+            .thenComparing(DailyKey::statDate)
+            .thenComparing(DailyKey::status)
+            .thenComparing(DailyKey::fileType);
+
+    private final InvoiceStatsTotalRepository totalRepository;
+    private final InvoiceStatsDailyRepository dailyRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final AnalyticsBucketCache bucketCache;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    private Counter corrections;
+
+    /**
+     * What one active invoice adds to the rollup. Taken before a change and
+     * again after it, the difference is the delta to apply.
+     */
+    public record Contribution(String userId, LocalDate statDate, InvoiceStatus status, FileType fileType,
+                               double amount) {
+
+        /**
+         * @return the invoice's contribution, or null for a deleted invoice
+         */
+        public static Contribution of(Invoice invoice) {
+            if (!Boolean.TRUE.equals(invoice.getIsActive())) {
+                return null;
+            }
+            return new Contribution(invoice.getUploadedByUser().getUserId(), invoice.getInvoiceDate(),
+                    invoice.getStatus(), invoice.getFileType(),
+                    invoice.getTotalAmount() != null ? invoice.getTotalAmount() : 0.0);
+        }
+    }
+
+    private record DailyKey(String scope, LocalDate statDate, InvoiceStatus status, FileType fileType) {
+    }
+
+    private static final class Delta {
+        long count;
+        double amount;
+
+        void add(long count, double amount) {
+            this.count += count;
+            this.amount += amount;
+        }
+
+        boolean isZero() {
+            return count == 0 && amount == 0.0;
+        }
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        corrections = meterRegistry.counter("invoice.stats.rollup.corrections");
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * @param before the invoice's contribution before the change, null if it is new
+     * @param after its contribution now, null if it was deleted
+     */
+    public void record(Contribution before, Contribution after) {
+        record(before, after, false);
+    }
+
+    /**
+     * @param lineItemsChanged the edit replaced the invoice's line items, which can move it
+     *                         between category-filtered buckets even when its count and amount
+     *                         stay put
+     */
+    public void record(Contribution before, Contribution after, boolean lineItemsChanged) {
+        record(before == null ? List.of() : List.of(before), after == null ? List.of() : List.of(after),
+                lineItemsChanged);
+    }
+
+    public void record(Collection<Contribution> removed, Collection<Contribution> added) {
+        record(removed, added, false);
+    }
+
+    /**
+     * Applies the difference between the contributions the changed invoices
+     * had and the ones they have now. Must run in the invoice write's
+     * transaction. Deltas are merged per row first, so a batch touches each
+     * row once and an edit that moves nothing (a renamed file) locks nothing;
+     * rows are written in key order, everyone's last, so concurrent writers
+     * cannot deadlock.
+     * The analytics buckets of the changed dates are evicted after commit, and
+     * of every date involved when line items changed.
+     */
+    @Transactional
+    public void record(Collection<Contribution> removed, Collection<Contribution> added, boolean lineItemsChanged) {
+        Map<String, Delta> totals = new TreeMap<>(SCOPE_ORDER);
+        Map<DailyKey, Delta> daily = new TreeMap<>(DAILY_KEY_ORDER);
+        removed.forEach(c -> merge(totals, daily, c.userId(), c.statDate(), c.status(), c.fileType(), -1, -c.amount()));
+        added.forEach(c -> merge(totals, daily, c.userId(), c.statDate(), c.status(), c.fileType(), 1, c.amount()));
+        write(totals, daily);
+
+        List<LocalDate> changedDates = new ArrayList<>();
+        daily.forEach((key, delta) -> {
+            if (lineItemsChanged || !delta.isZero()) {
+                changedDates.add(key.statDate());
+            }
+        });
+        if (!changedDates.isEmpty()) {
+            bucketCache.evictAfterCommit(changedDates);
+        }
+    }
+
+    private static void merge(Map<String, Delta> totals, Map<DailyKey, Delta> daily, String userId,
+                              LocalDate statDate, InvoiceStatus status, FileType fileType, long count, double amount) {
+        for (String scope : List.of(userId, ALL_SCOPE)) {
+            mergeScope(totals, daily, scope, statDate, status, fileType, count, amount);
+        }
+    }
+
+    private static void mergeScope(Map<String, Delta> totals, Map<DailyKey, Delta> daily, String scope,
+                                   LocalDate statDate, InvoiceStatus status, FileType fileType,
+                                   long count, double amount) {
+        totals.computeIfAbsent(scope, s -> new Delta()).add(count, amount);
+        daily.computeIfAbsent(new DailyKey(scope, statDate, status, fileType), k -> new Delta()).add(count, amount);
+    }
+
+    private void write(Map<String, Delta> totals, Map<DailyKey, Delta> daily) {
+        totals.forEach((scope, delta) -> {
+            if (!delta.isZero()) {
+                totalRepository.addDelta(scope, delta.count, delta.amount);
+            }
+        });
+        daily.forEach((key, delta) -> {
+            if (!delta.isZero()) {
+                dailyRepository.addDelta(key.scope(), key.statDate(), key.status().name(), key.fileType().name(),
+                        delta.count, delta.amount);
+            }
+        });
+    }
+
+    // ==================== READ ====================
+
+    /**
+     * @param scope uploader's user id, or {@link #ALL_SCOPE}
+     */
+    @Transactional(readOnly = true)
+    public InvoiceStatsTotal totals(String scope) {
+        return totalRepository.findById(scope)
+                .orElseGet(() -> InvoiceStatsTotal.builder().scope(scope).build());
+    }
+
+    // True once a rebuild has committed, whatever deltas were recorded before it
+    public boolean isBuilt() {
+        return totalRepository.existsById(BUILT_MARKER);
+    }
+
+    // ==================== REBUILD ====================
+
+    /**
+     * Replaces both tables with aggregates of the active invoices and returns
+     * the number of scopes whose totals were wrong.
+     * Each uploader is rebuilt in its own transaction, and everyone's rows
+     * last, from the uploader rows. Only the scope being rebuilt is locked, so
+     * writes for other uploaders carry on meanwhile.
+     */
+    public int rebuild() {
+        long start = System.currentTimeMillis();
+        Set<String> scopes = new TreeSet<>(invoiceRepository.findActiveUploaderIds());
+        scopes.addAll(totalRepository.findAllScopes());
+        scopes.remove(ALL_SCOPE);
+        scopes.remove(BUILT_MARKER);
+
+        int corrected = 0;
+        int dailyRows = 0;
+        for (String scope : scopes) {
+            ScopeRebuild result = transactionTemplate.execute(status -> rebuildScope(scope));
+            corrected += result.corrected() ? 1 : 0;
+            dailyRows += result.dailyRows();
+        }
+        ScopeRebuild everyone = transactionTemplate.execute(status -> rebuildAllScope());
+        corrected += everyone.corrected() ? 1 : 0;
+        dailyRows += everyone.dailyRows();
+        corrections.increment(corrected);
+
+        if (corrected > 0) {
+            log.warn("⚠️ Invoice stats rollup rebuilt - corrected {} of {} scopes, Daily rows: {}, Time: {}ms",
+                    corrected, scopes.size() + 1, dailyRows, System.currentTimeMillis() - start);
+        } else {
+            log.info("📊 Invoice stats rollup rebuilt - Scopes: {}, Daily rows: {}, Time: {}ms",
+                    scopes.size() + 1, dailyRows, System.currentTimeMillis() - start);
+        }
+        return corrected;
+    }
+
+    private record ScopeRebuild(boolean corrected, int dailyRows) {
+    }
+
+    /**
+     * The scope's total row is locked before its rows are deleted and its
+     * invoices read: a writer that already changed the scope commits before
+     * the read (its invoice is counted), and one that hasn't yet waits for
+     * this transaction and applies its delta on top.
+     */
+    private ScopeRebuild rebuildScope(String userId) {
+        InvoiceStatsTotal before = lockAndDelete(userId);
+
+        Map<String, Delta> totals = new TreeMap<>(SCOPE_ORDER);
+        Map<DailyKey, Delta> daily = new TreeMap<>(DAILY_KEY_ORDER);
+        for (Object[] row : invoiceRepository.aggregateActiveStatsRows(userId)) {
+            mergeScope(totals, daily, userId, (LocalDate) row[0], (InvoiceStatus) row[1], (FileType) row[2],
+                    ((Number) row[3]).longValue(), row[4] != null ? ((Number) row[4]).doubleValue() : 0.0);
+        }
+        write(totals, daily);
+        return new ScopeRebuild(isCorrection(before, totals.get(userId)), daily.size());
+    }
+
+    // Everyone's rows are the uploader rows summed, which the scope rebuilds just made exact
+    private ScopeRebuild rebuildAllScope() {
+        InvoiceStatsTotal before = lockAndDelete(ALL_SCOPE);
+
+        Map<String, Delta> totals = new TreeMap<>(SCOPE_ORDER);
+        Map<DailyKey, Delta> daily = new TreeMap<>(DAILY_KEY_ORDER);
+        for (Object[] row : dailyRepository.sumUploaderRows(ALL_SCOPE)) {
+            mergeScope(totals, daily, ALL_SCOPE, (LocalDate) row[0], (InvoiceStatus) row[1], (FileType) row[2],
+                    ((Number) row[3]).longValue(), ((Number) row[4]).doubleValue());
+        }
+        write(totals, daily);
+        totalRepository.addDelta(BUILT_MARKER, 0, 0.0);
+        bucketCache.clearAfterCommit();
+        return new ScopeRebuild(isCorrection(before, totals.get(ALL_SCOPE)), daily.size());
+    }
+
+    private InvoiceStatsTotal lockAndDelete(String scope) {
+        InvoiceStatsTotal before = totalRepository.findForUpdate(scope)
+                .orElseGet(() -> new InvoiceStatsTotal(scope, 0, 0.0));
+        dailyRepository.deleteScope(scope);
+        totalRepository.deleteScope(scope);
+        return before;
+    }
+
+    private static boolean isCorrection(InvoiceStatsTotal before, Delta after) {
+        long count = after != null ? after.count : 0;
+        double amount = after != null ? after.amount : 0.0;
+        // Sums of doubles in a different order differ in the last bits; only cents count
+        return before.getInvoiceCount() != count || Math.abs(before.getTotalAmount() - amount) >= 0.005;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.invoicetracker.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stores each distinct content once, named by its SHA-256 and sharded by the
+ * first two byte pairs ({@code ab/cd/abcd...pdf}) so no directory grows past a
+ * few thousand entries. Writing content that already exists just replaces the
+ * identical file.
+ * Legacy flat keys (UUID names at the root) still resolve, so existing
+ * invoices keep working.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "content-addressable", matchIfMissing = true)
+public class ContentAddressableStorageBackend extends FileSystemStorageBackend {
+
+    public ContentAddressableStorageBackend(@Value("${file.upload-dir}") String rootDir) {
+        super(rootDir);
+    }
+
+    @Override
+    protected String keyFor(String contentHash, String extension) {
+        return contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4) + "/" + contentHash + extension;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        super.delete(key);
+        pruneEmptyShards(resolve(key).getParent());
+    }
+
+    private void pruneEmptyShards(Path dir) {
+        for (int depth = 0; depth < 2 && dir != null && !dir.equals(root); depth++) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                return; // not empty, or already gone
+            }
+            dir = dir.getParent();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.invoicetracker.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Local-disk backend base. Content is written to a temporary file under
+ * {@code .tmp} inside the upload directory and renamed into place, so readers
+ * never see a partially written file.
+ */
+@Slf4j
+public abstract class FileSystemStorageBackend implements StorageBackend {
+
+    private static final String TEMP_DIR = ".tmp";
+
+    protected final Path root;
+
+    protected FileSystemStorageBackend(String rootDir) {
+        this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Key for content with the given SHA-256 and (lowercase) extension.
+     */
+    protected abstract String keyFor(String contentHash, String extension);
+
+    @Override
+    public StoredObject write(InputStream content, String extension) throws IOException {
+        Path tempDir = root.resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path tempFile = tempDir.resolve(UUID.randomUUID() + ".part");
+
+        MessageDigest digest = newSha256Digest();
+        long size;
+        try (InputStream in = new DigestInputStream(content, digest)) {
+            size = Files.copy(in, tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        String key = keyFor(contentHash, extension == null ? "" : extension.toLowerCase(Locale.ROOT));
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        try {
+            moveIntoPlace(tempFile, target);
+        } catch (NoSuchFileException e) {
+            // An empty shard directory was pruned by a concurrent delete
+            Files.createDirectories(target.getParent());
+            moveIntoPlace(tempFile, target);
+        }
+        return new StoredObject(key, contentHash, size);
+    }
+
+    private void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Atomic move not supported for {}, falling back to plain move", target);
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid stored file name: " + key);
+        }
+        return path;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.invoicetracker.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Previous layout: every upload under a random UUID name directly in the
+ * upload directory, without deduplication.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "flat")
+public class FlatStorageBackend extends FileSystemStorageBackend {
+
+    public FlatStorageBackend(@Value("${file.upload-dir}") String rootDir) {
+        super(rootDir);
+    }
+
+    @Override
+    protected String keyFor(String contentHash, String extension) {
+        return UUID.randomUUID() + extension;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.invoicetracker.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Where stored invoice files live. Keys are the values kept in
+ * Invoice.storedFileName and are resolved relative to the upload directory.
+ */
+public interface StorageBackend {
+
+    /**
+     * Writes the content (hashing it on the way) and makes it visible under its
+     * key only once it is complete.
+     */
+    StoredObject write(InputStream content, String extension) throws IOException;
+
+    Path resolve(String key);
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,12 @@
+package com.example.invoicetracker.service.storage;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class StoredObject {
+    private final String key;
+    private final String contentHash;
+    private final long size;
+}
@@ -0,0 +1,41 @@
+package com.example.invoicetracker.service.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry delays shared by the ingestion queue, the fingerprint outbox and the
+ * Gemini limiter: exponential growth from an initial delay, plus up to 20%
+ * jitter so callers that failed together do not retry in lockstep.
+ */
+public final class Backoff {
+
+    private static final int MAX_EXPONENT = 20;
+
+    private Backoff() {
+    }
+
+    /**
+     * @param attempt 1 for the first retry
+     * @return initialMs doubled per earlier attempt, at most maxMs, with jitter
+     */
+    public static long exponentialWithJitter(int attempt, long initialMs, long maxMs) {
+        return withJitter(exponential(attempt, initialMs, maxMs), maxMs);
+    }
+
+    /**
+     * @param attempt 1 for the first retry
+     * @return initialMs doubled per earlier attempt, at most maxMs
+     */
+    public static long exponential(int attempt, long initialMs, long maxMs) {
+        int exponent = Math.max(0, Math.min(attempt - 1, MAX_EXPONENT));
+        return Math.min(maxMs, initialMs << exponent);
+    }
+
+    /**
+     * @return delayMs plus up to 20% of it, at most capMs
+     */
+    public static long withJitter(long delayMs, long capMs) {
+        long jitter = delayMs / 5 > 0 ? ThreadLocalRandom.current().nextLong(delayMs / 5) : 0;
+        return Math.min(capMs, delayMs + jitter);
+    }
+}
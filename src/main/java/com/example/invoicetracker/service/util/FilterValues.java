@@ -0,0 +1,48 @@
+package com.example.invoicetracker.service.util;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Parses the optional status and file type filters of the invoice search and
+ * analytics endpoints. An absent value means "no filter"; an unknown one is
+ * rejected, since silently dropping it would answer with unfiltered data.
+ */
+public final class FilterValues {
+
+    private FilterValues() {
+    }
+
+    /**
+     * @return the file type, or null when no filter was given
+     * @throws IllegalArgumentException when the value names no file type
+     */
+    public static FileType fileType(String value) {
+        return parse(FileType.class, "fileType", value);
+    }
+
+    /**
+     * @return the status, or null when no filter was given
+     * @throws IllegalArgumentException when the value names no status
+     */
+    public static InvoiceStatus invoiceStatus(String value) {
+        return parse(InvoiceStatus.class, "status", value);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            String allowed = Arrays.stream(type.getEnumConstants())
+                    .map(Enum::name)
+                    .collect(Collectors.joining(", "));
+            throw new IllegalArgumentException("Invalid " + name + ": " + value + " (use one of " + allowed + ")");
+        }
+    }
+}
@@ -1,39 +1,59 @@
 package com.example.invoicetracker.service;
 
 import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.repository.IngestionJobRepository;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+import com.example.invoicetracker.service.storage.ContentAddressableStorageBackend;
+import com.example.invoicetracker.service.storage.StoredObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class FileStorageServiceTest {
 
     private FileStorageService fileStorageService;
+    private InvoiceRepository invoiceRepository;
+    private IngestionJobRepository ingestionJobRepository;
 
     @TempDir
     Path tempDir;
 
     @BeforeEach
-    void setUp() throws Exception {
-        fileStorageService = new FileStorageService();
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        ingestionJobRepository = mock(IngestionJobRepository.class);
+        fileStorageService = newService(tempDir);
+    }
 
-        Field uploadDirField = FileStorageService.class.getDeclaredField("uploadDir");
-        uploadDirField.setAccessible(true);
-        uploadDirField.set(fileStorageService, tempDir.toString());
+    private FileStorageService newService(Path uploadDir) {
+        return new FileStorageService(
+                new ContentAddressableStorageBackend(uploadDir.toString()),
+                invoiceRepository,
+                ingestionJobRepository);
     }
 
     @Nested
@@ -100,54 +120,61 @@ class FileStorageServiceTest {
 
     @Nested
     class FileResponseTests {
+        private Path write(String name, byte[] content) throws IOException {
+            Path file = tempDir.resolve(name);
+            Files.write(file, content);
+            return file;
+        }
+
         @Test
-        void createFileResponse_success() {
+        void createFileResponse_success() throws IOException {
             // Given
             byte[] content = "Hello World".getBytes();
-            String fileName = "test.txt";
+            Path file = write("test.txt", content);
             String contentType = "text/plain";
 
             // When
-            ResponseEntity<byte[]> response = fileStorageService.createFileResponse(content, contentType, fileName);
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    file, contentType, "test.txt", "hash");
 
             // Then
-            assertEquals(200, response.getStatusCodeValue());
-            assertArrayEquals(content, response.getBody());
+            assertEquals(200, response.getStatusCode().value());
+            assertArrayEquals(content, response.getBody().getContentAsByteArray());
             assertEquals(contentType, response.getHeaders().getContentType().toString());
             assertEquals("attachment; filename=\"test.txt\"",
                     response.getHeaders().getContentDisposition().toString());
         }
 
         @Test
-        void createFileResponse_withDifferentContentTypes() {
+        void createFileResponse_withDifferentContentTypes() throws IOException {
             // Given
-            byte[] content = "test".getBytes();
+            Path file = write("test.bin", "test".getBytes());
 
             // When & Then for PDF
-            ResponseEntity<byte[]> pdfResponse = fileStorageService.createFileResponse(
-                    content, "application/pdf", "document.pdf");
+            ResponseEntity<Resource> pdfResponse = fileStorageService.createFileResponse(
+                    file, "application/pdf", "document.pdf", "hash");
             assertEquals("application/pdf", pdfResponse.getHeaders().getContentType().toString());
 
             // When & Then for Image
-            ResponseEntity<byte[]> imageResponse = fileStorageService.createFileResponse(
-                    content, "image/jpeg", "photo.jpg");
+            ResponseEntity<Resource> imageResponse = fileStorageService.createFileResponse(
+                    file, "image/jpeg", "photo.jpg", "hash");
             assertEquals("image/jpeg", imageResponse.getHeaders().getContentType().toString());
 
             // When & Then for Octet Stream
-            ResponseEntity<byte[]> streamResponse = fileStorageService.createFileResponse(
-                    content, "application/octet-stream", "file.bin");
+            ResponseEntity<Resource> streamResponse = fileStorageService.createFileResponse(
+                    file, "application/octet-stream", "file.bin", "hash");
             assertEquals("application/octet-stream", streamResponse.getHeaders().getContentType().toString());
-}
+        }
 
         @Test
-        void createFileResponse_withSpecialCharactersInFileName() {
+        void createFileResponse_withSpecialCharactersInFileName() throws IOException {
             // Given
-            byte[] content = "content".getBytes();
+            Path file = write("special.txt", "content".getBytes());
             String fileName = "file with spaces and (special) chars.txt";
-            String contentType = "text/plain";
 
             // When
-            ResponseEntity<byte[]> response = fileStorageService.createFileResponse(content, contentType, fileName);
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    file, "text/plain", fileName, "hash");
 
             // Then
             assertTrue(response.getHeaders().getContentDisposition().getFilename()
@@ -155,19 +182,17 @@ class FileStorageServiceTest {
         }
 
         @Test
-        void createFileResponse_withEmptyContent() {
+        void createFileResponse_withEmptyContent() throws IOException {
             // Given
-            byte[] content = new byte[0];
-            String fileName = "empty.txt";
-            String contentType = "text/plain";
+            Path file = write("empty.txt", new byte[0]);
 
             // When
-            ResponseEntity<byte[]> response = fileStorageService.createFileResponse(content, contentType, fileName);
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    file, "text/plain", "empty.txt", "hash");
 
             // Then
-            assertEquals(200, response.getStatusCodeValue());
-            assertArrayEquals(content, response.getBody());
-            assertEquals(0, response.getBody().length);
+            assertEquals(200, response.getStatusCode().value());
+            assertEquals(0, response.getBody().contentLength());
         }
     }
 
@@ -185,7 +210,7 @@ class FileStorageServiceTest {
             // Then
             assertNotNull(fileName);
             assertTrue(fileName.endsWith(".txt"));
-            assertTrue(fileName.length() > 10); // UUID + extension
+            assertTrue(fileName.length() > 10); // hash path + extension
 
             // Verify file was actually created
             Path filePath = tempDir.resolve(fileName);
@@ -215,13 +240,10 @@ class FileStorageServiceTest {
         }
 
         @Test
-        void storeFile_createsDirectoryIfNotExists() throws IOException, NoSuchFieldException, SecurityException,
-                IllegalArgumentException, IllegalAccessException {
+        void storeFile_createsDirectoryIfNotExists() throws IOException {
             // Given 
             Path newDir = tempDir.resolve("new-subdir");
-            Field uploadDirField = FileStorageService.class.getDeclaredField("uploadDir");
-            uploadDirField.setAccessible(true);
-            uploadDirField.set(fileStorageService, newDir.toString());
+            fileStorageService = newService(newDir);
 
             MockMultipartFile mockFile = new MockMultipartFile(
                     "file", "test.txt", "text/plain", "content".getBytes());
@@ -253,24 +275,24 @@ class FileStorageServiceTest {
         }
 
         @Test
-        void loadFile_success() throws IOException {
+        void getFilePath_resolvesStoredFile() throws IOException {
             // Given
             String content = "file content to load";
             Path testFile = tempDir.resolve("test-load.txt");
             Files.write(testFile, content.getBytes());
 
             // When
-            byte[] loadedContent = fileStorageService.loadFile("test-load.txt");
+            Path resolved = fileStorageService.getFilePath("test-load.txt");
 
             // Then
-            assertArrayEquals(content.getBytes(), loadedContent);
+            assertArrayEquals(content.getBytes(), Files.readAllBytes(resolved));
         }
 
         @Test
-        void loadFile_fileNotFound() {
+        void getContentHash_fileNotFound() {
             // When & Then
             IOException exception = assertThrows(IOException.class,
-                    () -> fileStorageService.loadFile("nonexistent-file.txt"));
+                    () -> fileStorageService.getContentHash("nonexistent-file.txt"));
             assertTrue(exception.getMessage().contains("nonexistent-file.txt"));
         }
 
@@ -295,19 +317,180 @@ class FileStorageServiceTest {
         }
 
         @Test
-        void deleteFile_afterLoad() throws IOException {
+        void deleteFile_afterDownload() throws IOException {
             // Given
             Path testFile = tempDir.resolve("test-cycle.txt");
             Files.write(testFile, "content".getBytes());
 
-            byte[] content = fileStorageService.loadFile("test-cycle.txt");
-            assertNotNull(content);
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    testFile, "text/plain", "test-cycle.txt", "hash");
+            assertNotNull(response.getBody());
 
             // When
             fileStorageService.deleteFile("test-cycle.txt");
 
             // Then
-            assertThrows(IOException.class, () -> fileStorageService.loadFile("test-cycle.txt"));
+            assertThrows(NoSuchFileException.class, () -> fileStorageService.createFileResponse(
+                    testFile, "text/plain", "test-cycle.txt", "hash"));
+        }
+    }
+
+    @Nested
+    class FileHashTests {
+        @Test
+        void calculateFileHash_returnsSha256Hex() throws IOException {
+            // Given
+            MockMultipartFile file = new MockMultipartFile(
+                    "file", "hash.txt", "text/plain", "abc".getBytes());
+
+            // When
+            String hash = fileStorageService.calculateFileHash(file);
+
+            // Then
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hash);
+        }
+
+        @Test
+        void calculateFileHash_sameContentDifferentName_sameHash() throws IOException {
+            MockMultipartFile first = new MockMultipartFile("file", "a.pdf", "application/pdf", "same".getBytes());
+            MockMultipartFile second = new MockMultipartFile("file", "b.pdf", "application/pdf", "same".getBytes());
+
+            assertEquals(fileStorageService.calculateFileHash(first), fileStorageService.calculateFileHash(second));
+        }
+    }
+
+    @Nested
+    class IngestTests {
+        @Test
+        void ingest_storesAndHashesInOnePass() throws IOException {
+            MockMultipartFile upload = new MockMultipartFile("file", "invoice.pdf", "application/pdf", "abc".getBytes());
+
+            MultipartFile ingested = fileStorageService.ingest(upload);
+
+            StoredMultipartFile stored = assertInstanceOf(StoredMultipartFile.class, ingested);
+            assertTrue(stored.getStoredFileName().endsWith(".pdf"));
+            assertArrayEquals("abc".getBytes(), Files.readAllBytes(tempDir.resolve(stored.getStoredFileName())));
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", stored.getContentHash());
+            assertEquals("invoice.pdf", stored.getOriginalFilename());
+            assertEquals("application/pdf", stored.getContentType());
+        }
+
+        @Test
+        void ingestedFile_isNotCopiedOrHashedAgain() throws IOException {
+            MultipartFile ingested = fileStorageService.ingest(
+                    new MockMultipartFile("file", "invoice.pdf", "application/pdf", "abc".getBytes()));
+            String storedName = ((StoredMultipartFile) ingested).getStoredFileName();
+
+            assertEquals(storedName, fileStorageService.storeFile(ingested));
+            assertSame(ingested, fileStorageService.ingest(ingested));
+            assertEquals(((StoredMultipartFile) ingested).getContentHash(), fileStorageService.calculateFileHash(ingested));
+            try (var files = Files.walk(tempDir)) {
+                assertEquals(1, files.filter(Files::isRegularFile).count());
+            }
+        }
+    }
+
+    @Nested
+    class ReferenceTests {
+        @Test
+        void deleteFile_skipsWhenInvoiceStillReferencesIt() throws IOException {
+            String key = fileStorageService.storeFile(
+                    new MockMultipartFile("file", "a.pdf", "application/pdf", "shared".getBytes()));
+            when(invoiceRepository.existsByStoredFileName(key)).thenReturn(true);
+
+            fileStorageService.deleteFile(key);
+
+            assertTrue(Files.exists(tempDir.resolve(key)));
+        }
+
+        @Test
+        void deleteFile_skipsWhenActiveJobReferencesIt() throws IOException {
+            String key = fileStorageService.storeFile(
+                    new MockMultipartFile("file", "a.pdf", "application/pdf", "queued".getBytes()));
+            when(ingestionJobRepository.existsByStagedFileNameAndStatusIn(eq(key), any())).thenReturn(true);
+
+            fileStorageService.deleteFile(key);
+
+            assertTrue(Files.exists(tempDir.resolve(key)));
+        }
+
+        @Test
+        void deleteFile_skipsWhilePinnedByInFlightUpload() throws IOException {
+            StoredMultipartFile first = (StoredMultipartFile) fileStorageService.ingest(
+                    new MockMultipartFile("file", "a.pdf", "application/pdf", "same".getBytes()));
+            StoredMultipartFile second = (StoredMultipartFile) fileStorageService.ingest(
+                    new MockMultipartFile("file", "b.pdf", "application/pdf", "same".getBytes()));
+            assertEquals(first.getStoredFileName(), second.getStoredFileName());
+
+            fileStorageService.discard(first.getStoredFileName());
+            assertTrue(Files.exists(tempDir.resolve(second.getStoredFileName())));
+
+            fileStorageService.discard(second.getStoredFileName());
+            assertFalse(Files.exists(tempDir.resolve(second.getStoredFileName())));
+        }
+
+        @Test
+        void ingest_contentDeletedBeforePin_isWrittenAgain() throws IOException {
+            AtomicBoolean deleteOnWrite = new AtomicBoolean(true);
+            FileStorageService[] service = new FileStorageService[1];
+            service[0] = new FileStorageService(new ContentAddressableStorageBackend(tempDir.toString()) {
+                @Override
+                public StoredObject write(InputStream content, String extension) throws IOException {
+                    StoredObject stored = super.write(content, extension);
+                    if (deleteOnWrite.getAndSet(false)) {
+                        // An unreferenced copy of the same content being cleaned up meanwhile
+                        service[0].deleteFile(stored.getKey());
+                    }
+                    return stored;
+                }
+            }, invoiceRepository, ingestionJobRepository);
+
+            StoredMultipartFile ingested = (StoredMultipartFile) service[0].ingest(
+                    new MockMultipartFile("file", "a.pdf", "application/pdf", "raced".getBytes()));
+
+            assertEquals("raced", Files.readString(tempDir.resolve(ingested.getStoredFileName())));
+            service[0].deleteFile(ingested.getStoredFileName());
+            assertTrue(Files.exists(tempDir.resolve(ingested.getStoredFileName())));
+        }
+    }
+
+    @Nested
+    class StreamingDownloadTests {
+        @Test
+        void createFileResponse_streamsFromDiskWithEtag() throws IOException {
+            Path stored = tempDir.resolve("stored.pdf");
+            Files.write(stored, "pdf-bytes".getBytes());
+
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    stored, "application/pdf", "invoice.pdf", "abc123");
+
+            assertEquals(200, response.getStatusCode().value());
+            assertInstanceOf(FileSystemResource.class, response.getBody());
+            assertEquals(stored, ((FileSystemResource) response.getBody()).getFile().toPath());
+            assertEquals("\"abc123\"", response.getHeaders().getETag());
+            assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+            assertTrue(response.getHeaders().getLastModified() > 0);
+            assertEquals(-1, response.getHeaders().getContentLength());
+        }
+
+        @Test
+        void createFileResponse_missingFile_throwsNoSuchFile() {
+            assertThrows(NoSuchFileException.class, () -> fileStorageService.createFileResponse(
+                    tempDir.resolve("missing.pdf"), "application/pdf", "invoice.pdf", "abc123"));
+        }
+
+        @Test
+        void getContentHash_matchesUploadHashAndTracksChanges() throws IOException {
+            Path stored = tempDir.resolve("hashed.txt");
+            Files.write(stored, "abc".getBytes());
+
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    fileStorageService.getContentHash("hashed.txt"));
+
+            Files.write(stored, "abcd".getBytes());
+
+            assertNotEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    fileStorageService.getContentHash("hashed.txt"));
         }
     }
 
@@ -347,7 +530,7 @@ class FileStorageServiceTest {
 
             // Then
             assertNotNull(fileName);
-            assertTrue(fileName.matches("[a-f0-9-]+\\.txt"));
+            assertTrue(fileName.matches("[a-f0-9]{2}/[a-f0-9]{2}/[a-f0-9]{64}\\.txt"));
         }
 
         @Test
@@ -362,7 +545,7 @@ class FileStorageServiceTest {
             // Then
             assertNotNull(fileName);
             assertTrue(fileName.endsWith(".txt"));
-            assertTrue(fileName.matches("[a-f0-9-]+\\.txt"));
+            assertTrue(fileName.matches("[a-f0-9]{2}/[a-f0-9]{2}/[a-f0-9]{64}\\.txt"));
         }
     }
 
@@ -375,18 +558,16 @@ class FileStorageServiceTest {
                     "file", "lifecycle.txt", "text/plain", "lifecycle content".getBytes());
             String fileName = fileStorageService.storeFile(originalFile);
 
-            // Load
-            byte[] loadedContent = fileStorageService.loadFile(fileName);
-            assertEquals("lifecycle content", new String(loadedContent));
-
             // Create Response
-            ResponseEntity<byte[]> response = fileStorageService.createFileResponse(
-                    loadedContent, "text/plain", "downloaded.txt");
-            assertEquals(200, response.getStatusCodeValue());
+            Path filePath = fileStorageService.getFilePath(fileName);
+            ResponseEntity<Resource> response = fileStorageService.createFileResponse(
+                    filePath, "text/plain", "downloaded.txt", fileStorageService.getContentHash(fileName));
+            assertEquals(200, response.getStatusCode().value());
+            assertEquals("lifecycle content", response.getBody().getContentAsString(StandardCharsets.UTF_8));
 
             // Delete
             fileStorageService.deleteFile(fileName);
-            assertThrows(IOException.class, () -> fileStorageService.loadFile(fileName));
+            assertFalse(Files.exists(filePath));
         }
 
         @Test
@@ -399,17 +580,17 @@ class FileStorageServiceTest {
             String name2 = fileStorageService.storeFile(file2);
 
             // Verify both exist
-            assertArrayEquals("content1".getBytes(), fileStorageService.loadFile(name1));
-            assertArrayEquals("content2".getBytes(), fileStorageService.loadFile(name2));
+            assertArrayEquals("content1".getBytes(), Files.readAllBytes(fileStorageService.getFilePath(name1)));
+            assertArrayEquals("content2".getBytes(), Files.readAllBytes(fileStorageService.getFilePath(name2)));
 
             // Delete one
             fileStorageService.deleteFile(name1);
-            assertThrows(IOException.class, () -> fileStorageService.loadFile(name1));
-            assertDoesNotThrow(() -> fileStorageService.loadFile(name2));
+            assertFalse(Files.exists(fileStorageService.getFilePath(name1)));
+            assertTrue(Files.exists(fileStorageService.getFilePath(name2)));
 
             // Delete the other
             fileStorageService.deleteFile(name2);
-            assertThrows(IOException.class, () -> fileStorageService.loadFile(name2));
+            assertFalse(Files.exists(fileStorageService.getFilePath(name2)));
         }
     }
 }
\ No newline at end of file
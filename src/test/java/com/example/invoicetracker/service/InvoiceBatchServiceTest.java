@@ -0,0 +1,209 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.config.FileValidator;
+import com.example.invoicetracker.dto.BatchUploadResponse;
+import com.example.invoicetracker.dto.BatchUploadResponse.FileStatus;
+import com.example.invoicetracker.dto.InvoiceRequest;
+import com.example.invoicetracker.dto.InvoiceResponse;
+import com.example.invoicetracker.exception.DuplicateInvoiceException;
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.service.InvoiceService.PreparedInvoice;
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceBatchServiceTest {
+
+    private InvoiceService invoiceService;
+    private FileValidator fileValidator;
+    private FileStorageService fileStorageService;
+    private InvoiceBatchService batchService;
+    private AtomicLong nextInvoiceId;
+    private List<Integer> savedChunkSizes;
+
+    @BeforeEach
+    void setUp() {
+        invoiceService = mock(InvoiceService.class);
+        fileValidator = mock(FileValidator.class);
+        fileStorageService = mock(FileStorageService.class);
+        batchService = new InvoiceBatchService(invoiceService, fileValidator, fileStorageService, Runnable::run);
+        nextInvoiceId = new AtomicLong(1);
+        savedChunkSizes = new ArrayList<>();
+
+        when(invoiceService.prepareInvoice(any(InvoiceRequest.class), eq("john"), eq("USER")))
+                .thenAnswer(inv -> {
+                    InvoiceRequest request = inv.getArgument(0);
+                    Invoice invoice = Invoice.builder()
+                            .fileName(request.getFile().getOriginalFilename())
+                            .storedFileName("stored-" + request.getFile().getOriginalFilename())
+                            .totalAmount(10.0)
+                            .build();
+                    return new PreparedInvoice(invoice, null, "john", "USER", "reservation-1");
+                });
+        when(invoiceService.saveInvoiceBatch(anyList())).thenAnswer(inv -> {
+            List<PreparedInvoice> chunk = inv.getArgument(0);
+            savedChunkSizes.add(chunk.size());
+            List<InvoiceResponse> responses = new ArrayList<>();
+            for (PreparedInvoice prepared : chunk) {
+                responses.add(InvoiceResponse.builder()
+                        .invoiceId(nextInvoiceId.getAndIncrement())
+                        .fileName(prepared.getInvoice().getFileName())
+                        .totalAmount(prepared.getInvoice().getTotalAmount())
+                        .build());
+            }
+            return responses;
+        });
+    }
+
+    private MockMultipartFile pdf(String name) {
+        return new MockMultipartFile("files", name, "application/pdf", ("content of " + name).getBytes());
+    }
+
+    private MockMultipartFile zip(String name, String... entryNames) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String entryName : entryNames) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(("content of " + entryName).getBytes());
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("files", name, "application/zip", bytes.toByteArray());
+    }
+
+    @Nested
+    class ExpansionTests {
+
+        @Test
+        void uploadBatch_zipArchive_createsInvoicePerEntry() throws Exception {
+            MockMultipartFile archive = zip("march.zip", "a.pdf", "scans/b.png", "scans/", "__MACOSX/._a.pdf");
+
+            BatchUploadResponse response = batchService.uploadBatch(
+                    List.of(archive), "2024-03-31", null, "john", "USER");
+
+            assertEquals(2, response.getTotalFiles());
+            assertEquals(2, response.getCreated());
+            assertEquals("march.zip!/a.pdf", response.getResults().get(0).getFileName());
+            assertEquals("march.zip!/scans/b.png", response.getResults().get(1).getFileName());
+
+            verify(invoiceService, times(2)).prepareInvoice(argThat(request ->
+                    request.getInvoiceDate().equals(LocalDate.of(2024, 3, 31))
+                            && request.getFile().getContentType() != null
+                            && !request.getFile().getContentType().equals("application/zip")),
+                    eq("john"), eq("USER"));
+        }
+
+        @Test
+        void uploadBatch_tooManyFiles_throwsIllegalArgument() {
+            ReflectionTestUtils.setField(batchService, "maxFiles", 2);
+            List<MultipartFile> files = List.of(pdf("1.pdf"), pdf("2.pdf"), pdf("3.pdf"));
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> batchService.uploadBatch(files, null, null, "john", "USER"));
+            verifyNoInteractions(invoiceService);
+        }
+
+        @Test
+        void uploadBatch_invalidDate_throwsIllegalArgument() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> batchService.uploadBatch(List.of(pdf("1.pdf")), "31/03/2024", null, "john", "USER"));
+        }
+    }
+
+    @Nested
+    class ReportTests {
+
+        @Test
+        void uploadBatch_mixedOutcomes_reportsEachFileInOrder() {
+            MockMultipartFile ok = pdf("ok.pdf");
+            MockMultipartFile duplicate = pdf("dup.pdf");
+            MockMultipartFile invalid = new MockMultipartFile("files", "notes.txt", "text/plain", "x".getBytes());
+
+            doThrow(new IllegalArgumentException("Only JPEG, PNG, GIF images and PDF files are allowed"))
+                    .when(fileValidator).validateFile(invalid);
+            when(invoiceService.prepareInvoice(argThat(r -> r != null && r.getFile() == duplicate), eq("john"), eq("USER")))
+                    .thenThrow(new DuplicateInvoiceException("Duplicate invoice detected"));
+
+            BatchUploadResponse response = batchService.uploadBatch(
+                    List.of(ok, duplicate, invalid), null, null, "john", "USER");
+
+            assertEquals(3, response.getTotalFiles());
+            assertEquals(1, response.getCreated());
+            assertEquals(1, response.getDuplicates());
+            assertEquals(1, response.getFailed());
+            assertEquals(FileStatus.CREATED, response.getResults().get(0).getStatus());
+            assertEquals(1L, response.getResults().get(0).getInvoiceId());
+            assertEquals(FileStatus.DUPLICATE, response.getResults().get(1).getStatus());
+            assertEquals(FileStatus.FAILED, response.getResults().get(2).getStatus());
+        }
+
+        @Test
+        void uploadBatch_repeatedContent_rejectsRepeatsBeforePreparing() throws Exception {
+            when(fileStorageService.calculateFileHash(any())).thenAnswer(inv -> {
+                MultipartFile file = inv.getArgument(0);
+                return file instanceof StoredMultipartFile stored
+                        ? stored.getContentHash()
+                        : HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(file.getBytes()));
+            });
+            MockMultipartFile first = pdf("a.pdf");
+            MockMultipartFile copy = new MockMultipartFile("files", "a-copy.pdf", "application/pdf", first.getBytes());
+            MockMultipartFile archive = zip("march.zip", "a.pdf");
+
+            BatchUploadResponse response = batchService.uploadBatch(
+                    List.of(first, copy, archive, pdf("b.pdf")), null, null, "john", "USER");
+
+            assertEquals(2, response.getCreated());
+            assertEquals(2, response.getDuplicates());
+            assertEquals(FileStatus.CREATED, response.getResults().get(0).getStatus());
+            assertEquals(FileStatus.DUPLICATE, response.getResults().get(1).getStatus());
+            assertTrue(response.getResults().get(1).getErrorMessage().contains("a.pdf"));
+            assertTrue(response.getResults().get(1).getErrorMessage().contains(InvoiceService.EXACT_HASH_METHOD));
+            assertEquals(FileStatus.DUPLICATE, response.getResults().get(2).getStatus());
+            assertEquals(FileStatus.CREATED, response.getResults().get(3).getStatus());
+            verify(invoiceService, times(2)).prepareInvoice(any(), eq("john"), eq("USER"));
+        }
+
+        @Test
+        void uploadBatch_savesInChunks() {
+            ReflectionTestUtils.setField(batchService, "insertChunkSize", 2);
+            List<MultipartFile> files = List.of(pdf("1.pdf"), pdf("2.pdf"), pdf("3.pdf"), pdf("4.pdf"), pdf("5.pdf"));
+
+            BatchUploadResponse response = batchService.uploadBatch(files, null, null, "john", "USER");
+
+            assertEquals(5, response.getCreated());
+            assertEquals(List.of(2, 2, 1), savedChunkSizes);
+            verify(invoiceService, never()).createInvoice(any(), any(), any());
+        }
+
+        @Test
+        void uploadBatch_chunkSaveFails_marksChunkFailedAndDeletesFiles() throws Exception {
+            when(invoiceService.saveInvoiceBatch(anyList())).thenThrow(new RuntimeException("connection lost"));
+
+            BatchUploadResponse response = batchService.uploadBatch(
+                    List.of(pdf("1.pdf"), pdf("2.pdf")), null, null, "john", "USER");
+
+            assertEquals(2, response.getFailed());
+            verify(fileStorageService).deleteFile("stored-1.pdf");
+            verify(fileStorageService).deleteFile("stored-2.pdf");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.dto.InvoiceCursorPageResponse;
+import com.example.invoicetracker.dto.InvoiceResponse;
+import com.example.invoicetracker.dto.InvoiceSearchRequest;
+import com.example.invoicetracker.factory.InvoiceFactory;
+import com.example.invoicetracker.model.entity.*;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.FingerprintOutboxRepository;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceSearchDocumentRepository;
+import com.example.invoicetracker.repository.ProductRepository;
+import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.ai.InvoiceExtractorService;
+import com.example.invoicetracker.service.duplicate.ContentHashFilter;
+import com.example.invoicetracker.service.duplicate.LocalDuplicateIndex;
+import com.example.invoicetracker.service.external.DuplicateCheckClient;
+import com.example.invoicetracker.service.search.H2FullText;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the list and search pages against a real schema and counts the SQL
+ * statements they issue, so a mapping change that loads line items,
+ * products or categories per invoice shows up as a failure here.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:invoicelist;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class InvoiceListQueryCountTest {
+
+    private static final int INVOICES = 60;
+    private static final int PAGE_SIZE = 20;
+
+    // the page, its count query and one query for the page's product and category names
+    private static final long QUERIES_PER_PAGE = 3;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InvoiceSearchDocumentRepository invoiceSearchDocumentRepository;
+
+    private InvoiceService invoiceService;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // H2 has no MATCH ... AGAINST; fulltext_match renders as this function instead
+        entityManager.createNativeQuery(H2FullText.CREATE_ALIAS).executeUpdate();
+        InvoiceSearchIndex invoiceSearchIndex = new InvoiceSearchIndex(invoiceRepository,
+                invoiceSearchDocumentRepository, mock(JdbcTemplate.class), mock(TransactionTemplate.class));
+        invoiceService = new InvoiceService(
+                mock(InvoiceExtractorService.class),
+                invoiceRepository,
+                userRepository,
+                mock(ProductRepository.class),
+                mock(InvoiceFactory.class),
+                mock(FileStorageService.class),
+                mock(AuditLogService.class),
+                mock(DuplicateCheckClient.class),
+                mock(FingerprintOutboxRepository.class),
+                mock(LocalDuplicateIndex.class),
+                mock(ContentHashFilter.class),
+                invoiceSearchIndex,
+                mock(VendorResolver.class),
+                mock(InvoiceStatsRollup.class),
+                new InvoiceDataVersion(),
+                Runnable::run);
+
+        List<User> users = List.of(persistUser("u1", "alice"), persistUser("u2", "bob"));
+        List<Category> categories = List.of(persistCategory("ELEC", "Electronics"),
+                persistCategory("ACC", "Accessories"));
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // lettered, so product names share no words with the numbered file names
+            products.add(persistProduct("P" + i, "Product " + (char) ('A' + i), categories.get(i % 2)));
+        }
+
+        for (int i = 0; i < INVOICES; i++) {
+            Invoice invoice = Invoice.builder()
+                    .uploadedByUser(users.get(i % 2))
+                    .invoiceDate(LocalDate.of(2024, 1, 1).plusDays(i))
+                    .fileType(FileType.WEB_FORM)
+                    .fileName("invoice-" + i)
+                    .totalAmount(10.0 * (i + 1))
+                    .status(InvoiceStatus.PENDING)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(invoice);
+            for (int p = 0; p < 3; p++) {
+                entityManager.persist(InvoiceProduct.builder()
+                        .invoice(invoice)
+                        .product(products.get((i + p) % products.size()))
+                        .quantity(1.0)
+                        .unitPrice(BigDecimal.TEN)
+                        .subtotal(BigDecimal.TEN)
+                        .build());
+            }
+        }
+        entityManager.flush();
+        users.forEach(user -> invoiceSearchIndex.reindexUploader(user.getUserId()));
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllInvoices_issuesFixedQueriesPerPage() {
+        for (int page = 0; page < INVOICES / PAGE_SIZE; page++) {
+            statistics.clear();
+
+            Page<InvoiceResponse> result = invoiceService.getAllInvoices(
+                    PageRequest.of(page, PAGE_SIZE, Sort.by("invoiceId")));
+
+            assertEquals(PAGE_SIZE, result.getNumberOfElements());
+            assertEquals(INVOICES, result.getTotalElements());
+            assertTrue(statistics.getPrepareStatementCount() <= QUERIES_PER_PAGE,
+                    "page " + page + " issued " + statistics.getPrepareStatementCount() + " statements");
+        }
+    }
+
+    @Test
+    void getAllInvoices_mapsProductNamesAndDistinctCategories() {
+        InvoiceResponse first = invoiceService.getAllInvoices(PageRequest.of(0, 1, Sort.by("invoiceId")))
+                .getContent().get(0);
+
+        assertEquals("alice", first.getUploadedByUser());
+        assertEquals("invoice-0", first.getFileName());
+        assertEquals(List.of("Product A", "Product B", "Product C"), first.getProductNames());
+        assertEquals(List.of("Electronics", "Accessories"), first.getCategories());
+    }
+
+    @Test
+    void searchInvoices_userRole_issuesFixedQueriesPerPage() {
+        InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
+        searchRequest.setPage(1);
+        searchRequest.setSize(PAGE_SIZE / 2);
+        searchRequest.setSortBy("invoiceDate");
+        searchRequest.setDirection("DESC");
+        searchRequest.setSearch("invoice");
+        searchRequest.setStatus("PENDING");
+
+        Page<InvoiceResponse> result = invoiceService.searchInvoices(searchRequest, "bob", "USER");
+
+        assertEquals(INVOICES / 2, result.getTotalElements());
+        assertEquals(PAGE_SIZE / 2, result.getNumberOfElements());
+        assertTrue(result.getContent().stream().allMatch(invoice -> invoice.getUploadedByUser().equals("bob")));
+        assertTrue(result.getContent().stream().allMatch(invoice -> invoice.getProductNames().size() == 3));
+        // plus looking up the asking user and their eagerly loaded roles
+        assertTrue(statistics.getPrepareStatementCount() <= QUERIES_PER_PAGE + 2,
+                "search issued " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void getAllInvoicesByCursor_walksEveryInvoiceOnceNewestFirst() {
+        InvoiceSearchRequest pageRequest = cursorRequest("", "DESC");
+        List<Long> seen = new ArrayList<>();
+        int pages = 0;
+
+        InvoiceCursorPageResponse page;
+        do {
+            statistics.clear();
+            page = invoiceService.getAllInvoicesByCursor(pageRequest);
+
+            // the page and its product and category names; no count unless includeTotal
+            assertTrue(statistics.getPrepareStatementCount() <= QUERIES_PER_PAGE - 1,
+                    "cursor page issued " + statistics.getPrepareStatementCount() + " statements");
+            assertNull(page.getTotalElements());
+            page.getContent().forEach(invoice -> seen.add(invoice.getInvoiceId()));
+            pageRequest.setCursor(page.getNextCursor());
+            pages++;
+        } while (page.isHasNext());
+
+        assertEquals(INVOICES / PAGE_SIZE, pages);
+        assertNull(page.getNextCursor());
+        assertEquals(INVOICES, seen.size());
+        assertEquals(INVOICES, seen.stream().distinct().count());
+        // invoices were created in id order, so newest first is descending ids
+        List<Long> expected = new ArrayList<>(seen);
+        expected.sort(Comparator.reverseOrder());
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void searchInvoicesByCursor_userRole_filtersAscendingAndCountsWhenAsked() {
+        InvoiceSearchRequest searchRequest = cursorRequest("", "ASC");
+        searchRequest.setSize(4);
+        searchRequest.setSearch("invoice-1");
+        searchRequest.setIncludeTotal(true);
+
+        InvoiceCursorPageResponse first = invoiceService.searchInvoicesByCursor(searchRequest, "bob", "USER");
+        searchRequest.setCursor(first.getNextCursor());
+        InvoiceCursorPageResponse second = invoiceService.searchInvoicesByCursor(searchRequest, "bob", "USER");
+
+        // bob uploaded the odd invoices; "invoice-1" matches invoice-1 and invoice-11 to invoice-19
+        assertEquals(6L, first.getTotalElements());
+        assertTrue(first.isHasNext());
+        assertFalse(second.isHasNext());
+        List<String> fileNames = new ArrayList<>();
+        first.getContent().forEach(invoice -> fileNames.add(invoice.getFileName()));
+        second.getContent().forEach(invoice -> fileNames.add(invoice.getFileName()));
+        assertEquals(List.of("invoice-1", "invoice-11", "invoice-13", "invoice-15", "invoice-17", "invoice-19"),
+                fileNames);
+    }
+
+    @Test
+    void searchInvoices_fullText_matchesWordPrefixes() {
+        InvoiceSearchRequest searchRequest = cursorRequest("", "DESC");
+        searchRequest.setIncludeTotal(true);
+
+        // "invoice 1" and "INVOICE_1" are the words invoice and 1, as in the document
+        for (String search : List.of("invoice-1", "invoice 1", "INVOICE_1")) {
+            searchRequest.setSearch(search);
+            assertEquals(11L, invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR")
+                    .getTotalElements(), search);
+        }
+
+        // a word's prefix matches, text inside a word does not
+        searchRequest.setSearch("bo");
+        assertEquals(30L, invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR").getTotalElements());
+        searchRequest.setSearch("nvoice");
+        assertEquals(0L, invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR").getTotalElements());
+        searchRequest.setSearch("ob");
+        assertEquals(0L, invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR").getTotalElements());
+        // product names are in the document too
+        searchRequest.setSearch("product d");
+        assertEquals(45L, invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR").getTotalElements());
+    }
+
+    @Test
+    void searchInvoices_fullText_appliesCriteriaInTheSameQuery() {
+        InvoiceSearchRequest searchRequest = cursorRequest("", "DESC");
+        searchRequest.setSearch("bob");
+        searchRequest.setEndDate(LocalDate.of(2024, 1, 10));
+        searchRequest.setIncludeTotal(true);
+        statistics.clear();
+
+        InvoiceCursorPageResponse cursorPage = invoiceService.searchInvoicesByCursor(searchRequest, "admin", "AUDITOR");
+        searchRequest.setCursor(null);
+        Page<InvoiceResponse> offsetPage = invoiceService.searchInvoices(searchRequest, "admin", "AUDITOR");
+
+        // bob uploaded every second invoice; five of them fall on or before January 10
+        assertEquals(5L, cursorPage.getTotalElements());
+        assertEquals(5, offsetPage.getTotalElements());
+        assertTrue(cursorPage.getContent().stream().allMatch(invoice -> invoice.getUploadedByUser().equals("bob")));
+        assertEquals(cursorPage.getContent().stream().map(InvoiceResponse::getInvoiceId).sorted().toList(),
+                offsetPage.getContent().stream().map(InvoiceResponse::getInvoiceId).sorted().toList());
+        // cursor page, its count and names; offset page, its count and names
+        assertTrue(statistics.getPrepareStatementCount() <= 2 * QUERIES_PER_PAGE,
+                "full-text searches issued " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void getAllInvoicesByCursor_rejectsForeignOrReversedCursor() {
+        InvoiceCursorPageResponse first = invoiceService.getAllInvoicesByCursor(cursorRequest("", "DESC"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> invoiceService.getAllInvoicesByCursor(cursorRequest(first.getNextCursor(), "ASC")));
+        assertThrows(IllegalArgumentException.class,
+                () -> invoiceService.getAllInvoicesByCursor(cursorRequest("not-a-cursor", "DESC")));
+    }
+
+    private InvoiceSearchRequest cursorRequest(String cursor, String direction) {
+        InvoiceSearchRequest request = new InvoiceSearchRequest();
+        request.setCursor(cursor);
+        request.setSize(PAGE_SIZE);
+        request.setDirection(direction);
+        return request;
+    }
+
+    private User persistUser(String userId, String username) {
+        User user = User.builder()
+                .userId(userId)
+                .username(username)
+                .password("secret")
+                .email(username + "@example.com")
+                .isActive(true)
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Category persistCategory(String code, String name) {
+        Category category = Category.builder()
+                .categoryCode(code)
+                .categoryName(name)
+                .isActive(true)
+                .build();
+        entityManager.persist(category);
+        return category;
+    }
+
+    private Product persistProduct(String code, String name, Category category) {
+        Product product = Product.builder()
+                .productCode(code)
+                .productName(name)
+                .category(category)
+                .unitPrice(10.0)
+                .isActive(true)
+                .build();
+        entityManager.persist(product);
+        return product;
+    }
+}
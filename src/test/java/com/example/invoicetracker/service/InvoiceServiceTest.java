@@ -8,20 +8,31 @@ import com.example.invoicetracker.model.entity.*;
 import com.example.invoicetracker.model.enums.ActionType;
 import com.example.invoicetracker.model.enums.FileType;
 import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.FingerprintOutboxRepository;
 import com.example.invoicetracker.repository.InvoiceRepository;
 import com.example.invoicetracker.repository.ProductRepository;
 import com.example.invoicetracker.repository.UserRepository;
 import com.example.invoicetracker.service.ai.InvoiceExtractorService;
+import com.example.invoicetracker.service.duplicate.ContentHashFilter;
+import com.example.invoicetracker.service.duplicate.InvoiceSignature;
+import com.example.invoicetracker.service.duplicate.LocalDuplicateIndex;
 import com.example.invoicetracker.service.external.DuplicateCheckClient;
+import com.example.invoicetracker.service.ingestion.StoredMultipartFile;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
@@ -44,10 +55,18 @@ class InvoiceServiceTest {
     private FileStorageService fileStorageService;
     private AuditLogService auditLogService;
     private DuplicateCheckClient duplicateCheckClient;
+    private FingerprintOutboxRepository fingerprintOutboxRepository;
+    private LocalDuplicateIndex localDuplicateIndex;
+    private ContentHashFilter contentHashFilter;
+    private InvoiceSearchIndex invoiceSearchIndex;
+    private VendorResolver vendorResolver;
+    private InvoiceStatsRollup invoiceStatsRollup;
+    private InvoiceDataVersion invoiceDataVersion;
+    private List<Runnable> pipelineTasks;
     private InvoiceService invoiceService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         invoiceExtractorService = mock(InvoiceExtractorService.class);
         invoiceRepository = mock(InvoiceRepository.class);
         userRepository = mock(UserRepository.class);
@@ -56,6 +75,14 @@ class InvoiceServiceTest {
         fileStorageService = mock(FileStorageService.class);
         auditLogService = mock(AuditLogService.class);
         duplicateCheckClient = mock(DuplicateCheckClient.class);
+        fingerprintOutboxRepository = mock(FingerprintOutboxRepository.class);
+        localDuplicateIndex = mock(LocalDuplicateIndex.class);
+        contentHashFilter = mock(ContentHashFilter.class);
+        invoiceSearchIndex = mock(InvoiceSearchIndex.class);
+        vendorResolver = mock(VendorResolver.class);
+        invoiceStatsRollup = mock(InvoiceStatsRollup.class);
+        invoiceDataVersion = new InvoiceDataVersion();
+        pipelineTasks = new ArrayList<>();
 
         invoiceService = new InvoiceService(
                 invoiceExtractorService,
@@ -65,7 +92,21 @@ class InvoiceServiceTest {
                 invoiceFactory,
                 fileStorageService,
                 auditLogService,
-                duplicateCheckClient);
+                duplicateCheckClient,
+                fingerprintOutboxRepository,
+                localDuplicateIndex,
+                contentHashFilter,
+                invoiceSearchIndex,
+                vendorResolver,
+                invoiceStatsRollup,
+                invoiceDataVersion,
+                task -> {
+                    pipelineTasks.add(task);
+                    task.run();
+                });
+
+        // Ingestion is covered in FileStorageServiceTest; here uploads pass through unchanged
+        lenient().when(fileStorageService.ingest(any())).thenAnswer(inv -> inv.getArgument(0));
     }
 
     @Nested
@@ -92,7 +133,7 @@ class InvoiceServiceTest {
             DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
             duplicateCheckResponse.setDuplicate(false);
             duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.3));
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenReturn(duplicateCheckResponse);
 
@@ -120,8 +161,85 @@ class InvoiceServiceTest {
             assertEquals(150.0, response.getTotalAmount());
             assertEquals(1L, response.getInvoiceId());
             verify(auditLogService).logInvoiceAction(invoice, user, ActionType.CREATE, null, null);
-            verify(duplicateCheckClient).checkForDuplicates(
-                    any(), any(), any(), any(), any(), any(), any(), any());
+            ArgumentCaptor<String> reservationId = ArgumentCaptor.forClass(String.class);
+            verify(duplicateCheckClient).checkAndReserve(
+                    any(), any(), any(), any(), any(), any(), reservationId.capture(), any());
+
+            // Final fingerprint is queued in the outbox under the same reservation, not sent inline
+            ArgumentCaptor<FingerprintOutbox> outbox = ArgumentCaptor.forClass(FingerprintOutbox.class);
+            verify(fingerprintOutboxRepository).save(outbox.capture());
+            assertEquals(reservationId.getValue(), outbox.getValue().getReservationId());
+            assertEquals(1L, outbox.getValue().getInvoiceId());
+            assertEquals("user1", outbox.getValue().getUsername());
+            verify(duplicateCheckClient, never()).commitFingerprints(any());
+        }
+
+        @Test
+        void createInvoice_withAISuccess_recordsVendorAndExtractedItems() throws Exception {
+            // Arrange
+            User user = User.builder().username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+            when(file.getContentType()).thenReturn("application/pdf");
+            when(file.getOriginalFilename()).thenReturn("invoice.pdf");
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.now());
+
+            DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
+            duplicateCheckResponse.setDuplicate(false);
+            when(duplicateCheckClient.checkAndReserve(
+                    any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(duplicateCheckResponse);
+
+            InvoiceExtractionResult extractionResult = new InvoiceExtractionResult();
+            extractionResult.setSuccess(true);
+            extractionResult.setTotalAmount(42.5);
+            extractionResult.setVendor("ACME, Inc.");
+            extractionResult.setExtractedItems(List.of(
+                    new InvoiceExtractionResult.ExtractedItem("Paper", 2.0, 10.125, 20.25),
+                    new InvoiceExtractionResult.ExtractedItem(" ", 1.0, 1.0, 1.0),
+                    new InvoiceExtractionResult.ExtractedItem("Toner", 1.0, 22.25, Double.NaN)));
+            when(invoiceExtractorService.extractInvoiceData(file)).thenReturn(extractionResult);
+
+            Vendor acme = Vendor.builder().vendorId(7L).name("ACME, Inc.").normalizedName("acme").build();
+            when(vendorResolver.resolve("ACME, Inc.")).thenReturn(acme);
+
+            Invoice invoice = Invoice.builder()
+                    .invoiceId(1L)
+                    .uploadedByUser(user)
+                    .isActive(true)
+                    .fileName("invoice.pdf")
+                    .invoiceDate(LocalDate.now())
+                    .invoiceProduct(new ArrayList<>())
+                    .build();
+            when(invoiceFactory.createInvoice(request, user)).thenReturn(invoice);
+            when(invoiceRepository.save(invoice)).thenReturn(invoice);
+
+            // Act
+            invoiceService.createInvoice(request, "user1", "USER");
+
+            // Assert
+            assertSame(acme, invoice.getVendor());
+            assertEquals(2, invoice.getExtractedItems().size());
+            ExtractedLineItem paper = invoice.getExtractedItems().get(0);
+            assertEquals(1, paper.getLineNumber());
+            assertEquals("Paper", paper.getName());
+            assertEquals(new BigDecimal("10.13"), paper.getUnitPrice());
+            assertEquals(new BigDecimal("20.25"), paper.getSubtotal());
+            assertSame(invoice, paper.getInvoice());
+            ExtractedLineItem toner = invoice.getExtractedItems().get(1);
+            assertEquals(2, toner.getLineNumber());
+            assertNull(toner.getSubtotal());
+
+            // the fingerprint names the extracted vendor, not the file
+            ArgumentCaptor<FingerprintOutbox> outbox = ArgumentCaptor.forClass(FingerprintOutbox.class);
+            verify(fingerprintOutboxRepository).save(outbox.capture());
+            assertEquals("ACME, Inc.", outbox.getValue().getVendor());
+            assertTrue(outbox.getValue().getTextContent().contains("|Vendor:ACME, Inc.|"));
         }
 
         // @Test
@@ -153,7 +271,7 @@ class InvoiceServiceTest {
             
         //     duplicateCheckResponse.setSimilarInvoices(List.of(similarInvoice));
             
-        //     when(duplicateCheckClient.checkForDuplicates(
+        //     when(duplicateCheckClient.checkAndReserve(
         //             any(), any(), any(), any(), any(), any(), any(), any()))
         //             .thenReturn(duplicateCheckResponse);
 
@@ -162,7 +280,7 @@ class InvoiceServiceTest {
         //             () -> invoiceService.createInvoice(request, "user1", "USER"));
 
         //     assertTrue(exception.getMessage().contains("Duplicate invoice detected"));
-        //     verify(duplicateCheckClient).checkForDuplicates(
+        //     verify(duplicateCheckClient).checkAndReserve(
         //             any(), any(), any(), any(), any(), any(), any(), any());
         //     verify(invoiceRepository, never()).save(any());
         // }
@@ -189,7 +307,7 @@ class InvoiceServiceTest {
             DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
             duplicateCheckResponse.setDuplicate(false);
             duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.2));
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenReturn(duplicateCheckResponse);
 
@@ -224,7 +342,7 @@ class InvoiceServiceTest {
             request.setInvoiceDate(LocalDate.now());
 
             // Mock duplicate check to throw exception (service unavailable)
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenThrow(new RuntimeException("Service unavailable"));
 
@@ -276,7 +394,7 @@ class InvoiceServiceTest {
             DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
             duplicateCheckResponse.setDuplicate(false);
             duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.1));
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenReturn(duplicateCheckResponse);
 
@@ -344,7 +462,7 @@ class InvoiceServiceTest {
             DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
             duplicateCheckResponse.setDuplicate(false);
             duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.2));
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenReturn(duplicateCheckResponse);
 
@@ -409,6 +527,32 @@ class InvoiceServiceTest {
             assertThrows(AccessDeniedException.class,
                     () -> invoiceService.createInvoice(request, "user1", "GUEST"));
         }
+
+        @Test
+        void createInvoice_factoryRejectsInput_surfacesIllegalArgument() throws Exception {
+            // Arrange
+            User user = User.builder().username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setProductQuantities(Map.of(1L, 2.0));
+            request.setInvoiceDate(LocalDate.now());
+
+            DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
+            duplicateCheckResponse.setDuplicate(false);
+            when(duplicateCheckClient.checkAndReserve(
+                    any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(duplicateCheckResponse);
+            when(invoiceFactory.createInvoice(request, user))
+                    .thenThrow(new IllegalArgumentException("Product information is required for web form invoices"));
+
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> invoiceService.createInvoice(request, "user1", "USER"));
+
+            assertEquals("Product information is required for web form invoices", exception.getMessage());
+            verify(invoiceRepository, never()).save(any());
+        }
     }
 
     @Nested
@@ -417,13 +561,15 @@ class InvoiceServiceTest {
         @Test
         void updateInvoice_superuser_canChangeStatus() {
             // Arrange
-            User user = User.builder().username("admin").isActive(true).build();
+            User user = User.builder().userId("a1").username("admin").isActive(true).build();
             when(userRepository.findByUsername("admin")).thenReturn(Optional.of(user));
 
             Invoice invoice = Invoice.builder()
                     .invoiceId(1L)
                     .uploadedByUser(user)
                     .isActive(true)
+                    .invoiceDate(LocalDate.of(2024, 3, 1))
+                    .fileType(FileType.PDF)
                     .status(InvoiceStatus.PENDING)
                     .totalAmount(100.0)
                     .invoiceProduct(new ArrayList<>())
@@ -441,6 +587,13 @@ class InvoiceServiceTest {
             // Assert
             assertEquals(InvoiceStatus.APPROVED, response.getStatus());
             verify(auditLogService).logInvoiceAction(any(), any(), eq(ActionType.UPDATE), any(), any());
+            // the rollup moves the invoice from PENDING to APPROVED in the same transaction
+            verify(invoiceStatsRollup).record(
+                    eq(new InvoiceStatsRollup.Contribution("a1", LocalDate.of(2024, 3, 1), InvoiceStatus.PENDING,
+                            FileType.PDF, 100.0)),
+                    eq(new InvoiceStatsRollup.Contribution("a1", LocalDate.of(2024, 3, 1), InvoiceStatus.APPROVED,
+                            FileType.PDF, 100.0)),
+                    eq(false));
         }
 
         @Test
@@ -512,6 +665,9 @@ class InvoiceServiceTest {
 
             // Assert
             assertEquals(150.0, response.getTotalAmount());
+            // new line items can change the invoice's categories, so its dates are evicted either way
+            verify(invoiceStatsRollup).record(
+                    any(InvoiceStatsRollup.Contribution.class), any(InvoiceStatsRollup.Contribution.class), eq(true));
         }
 
         @Test
@@ -571,13 +727,17 @@ class InvoiceServiceTest {
         @Test
         void deleteInvoice_setsIsActiveFalse() {
             // Arrange
-            User user = User.builder().username("user1").isActive(true).build();
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
             when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
 
             Invoice invoice = Invoice.builder()
                     .invoiceId(1L)
                     .uploadedByUser(user)
                     .isActive(true)
+                    .invoiceDate(LocalDate.of(2024, 3, 1))
+                    .fileType(FileType.IMAGE)
+                    .status(InvoiceStatus.PENDING)
+                    .totalAmount(40.0)
                     .build();
             when(invoiceRepository.findById(1L)).thenReturn(Optional.of(invoice));
             when(invoiceRepository.save(invoice)).thenReturn(invoice);
@@ -587,7 +747,11 @@ class InvoiceServiceTest {
 
             // Assert
             assertFalse(invoice.getIsActive());
+            verify(invoiceStatsRollup).record(new InvoiceStatsRollup.Contribution("u1", LocalDate.of(2024, 3, 1),
+                    InvoiceStatus.PENDING, FileType.IMAGE, 40.0), null);
             verify(auditLogService).logInvoiceAction(invoice, user, ActionType.DELETE, null, null);
+            assertEquals(1, invoiceDataVersion.current("u1"));
+            assertEquals(1, invoiceDataVersion.current(null));
         }
 
         @Test
@@ -608,6 +772,7 @@ class InvoiceServiceTest {
             // Act & Assert
             assertThrows(AccessDeniedException.class,
                     () -> invoiceService.deleteInvoice(1L, "other", "USER"));
+            assertEquals(0, invoiceDataVersion.current(null));
         }
     }
 
@@ -722,21 +887,15 @@ class InvoiceServiceTest {
         @Test
         void getAllInvoices_returnsPage() {
             // Arrange
-            User user = User.builder().username("user1").build();
-            Invoice invoice = Invoice.builder()
-                    .invoiceId(1L)
-                    .uploadedByUser(user)
-                    .isActive(true)
-                    .fileType(FileType.PDF)
-                    .fileName("invoice.pdf")
-                    .totalAmount(100.0)
-                    .status(InvoiceStatus.PENDING)
-                    .invoiceDate(LocalDate.now())
-                    .invoiceProduct(new ArrayList<>())
-                    .build();
+            InvoiceListRow row = new InvoiceListRow(1L, "user1", LocalDate.now(), FileType.PDF,
+                    "invoice.pdf", 100.0, InvoiceStatus.PENDING, LocalDateTime.now());
 
-            Page<Invoice> invoicePage = new PageImpl<>(List.of(invoice));
-            when(invoiceRepository.findAllByIsActiveTrue(any(Pageable.class))).thenReturn(invoicePage);
+            Page<InvoiceListRow> rowPage = new PageImpl<>(List.of(row));
+            when(invoiceRepository.findActiveListRows(any(Pageable.class))).thenReturn(rowPage);
+            when(invoiceRepository.findProductNameRows(List.of(1L))).thenReturn(List.of(
+                    new Object[] { 1L, "Laptop", "Electronics" },
+                    new Object[] { 1L, "Monitor", "Electronics" },
+                    new Object[] { 1L, "Mouse", "Accessories" }));
 
             // Act
             Page<InvoiceResponse> result = invoiceService.getAllInvoices(PageRequest.of(0, 10));
@@ -744,6 +903,8 @@ class InvoiceServiceTest {
             // Assert
             assertNotNull(result);
             assertEquals(1, result.getTotalElements());
+            assertEquals(List.of("Laptop", "Monitor", "Mouse"), result.getContent().get(0).getProductNames());
+            assertEquals(List.of("Electronics", "Accessories"), result.getContent().get(0).getCategories());
         }
 
         @Test
@@ -752,21 +913,12 @@ class InvoiceServiceTest {
             User user = User.builder().username("user1").isActive(true).build();
             when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user)); 
 
-            Invoice invoice = Invoice.builder()
-                    .invoiceId(1L)
-                    .uploadedByUser(user)
-                    .isActive(true)
-                    .fileType(FileType.PDF)
-                    .fileName("invoice.pdf")
-                    .totalAmount(100.0)
-                    .status(InvoiceStatus.PENDING)
-                    .invoiceDate(LocalDate.now())
-                    .invoiceProduct(new ArrayList<>())
-                    .build();
+            InvoiceListRow row = new InvoiceListRow(1L, "user1", LocalDate.now(), FileType.PDF,
+                    "invoice.pdf", 100.0, InvoiceStatus.PENDING, LocalDateTime.now());
 
-            Page<Invoice> invoicePage = new PageImpl<>(List.of(invoice));
-            when(invoiceRepository.findAllByUploadedByUserAndIsActiveTrue(eq(user), any(Pageable.class)))
-                    .thenReturn(invoicePage);
+            Page<InvoiceListRow> rowPage = new PageImpl<>(List.of(row));
+            when(invoiceRepository.findActiveListRowsByUser(eq(user), any(Pageable.class)))
+                    .thenReturn(rowPage);
 
             // Act
             Page<InvoiceResponse> result = invoiceService.getUserInvoices("user1", PageRequest.of(0, 10));
@@ -786,8 +938,8 @@ class InvoiceServiceTest {
             User user = User.builder().username("user1").isActive(true).build();
             when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
 
-            Page<Invoice> emptyPage = new PageImpl<>(List.of());
-            when(invoiceRepository.findAllByUploadedByUserAndIsActiveTrue(eq(user), any(Pageable.class)))
+            Page<InvoiceListRow> emptyPage = new PageImpl<>(List.of());
+            when(invoiceRepository.findActiveListRowsByUser(eq(user), any(Pageable.class)))
                     .thenReturn(emptyPage);
 
             InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
@@ -802,29 +954,19 @@ class InvoiceServiceTest {
             // Assert
             assertNotNull(result);
             assertEquals(0, result.getTotalElements());
+            verify(invoiceRepository, never()).findProductNameRows(any());
         }
 
         @Test
-        void searchInvoices_withCriteria_superuser_callsSearchRepository() {
+        void searchInvoices_withCriteria_superuser_matchesFullText() {
             // Arrange
-           
+            InvoiceListRow row = new InvoiceListRow(1L, "admin", LocalDate.now(), FileType.PDF,
+                    "invoice.pdf", 100.0, InvoiceStatus.PENDING, LocalDateTime.now());
 
-            Invoice invoice = Invoice.builder()
-                    .invoiceId(1L)
-                    .uploadedByUser(User.builder().username("admin").build())
-                    .isActive(true)
-                    .fileType(FileType.PDF)
-                    .fileName("invoice.pdf")
-                    .totalAmount(100.0)
-                    .status(InvoiceStatus.PENDING)
-                    .invoiceDate(LocalDate.now())
-                    .invoiceProduct(new ArrayList<>())
-                    .build();
-
-            Page<Invoice> invoicePage = new PageImpl<>(List.of(invoice));
-            when(invoiceRepository.searchAllInvoices(
-                    any(), any(), any(), any(), any(), any(Pageable.class)))
-                    .thenReturn(invoicePage);
+            Page<InvoiceListRow> rowPage = new PageImpl<>(List.of(row));
+            when(invoiceRepository.matchListRows(isNull(), eq("+invoice*"), any(), any(), eq(FileType.PDF),
+                    eq(InvoiceStatus.PENDING), any(Pageable.class)))
+                    .thenReturn(rowPage);
 
             InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
             searchRequest.setPage(0);
@@ -841,31 +983,38 @@ class InvoiceServiceTest {
             // Assert
             assertNotNull(result);
             assertEquals(1, result.getTotalElements());
-            verify(invoiceRepository).searchAllInvoices(any(), any(), any(), any(), any(), any(Pageable.class));
+            verify(invoiceRepository, never()).searchAllInvoices(any(), any(), any(), any(), any(Pageable.class));
         }
 
         @Test
-        void searchInvoices_withCriteria_userRole_callsUserSearchRepository() {
+        void searchInvoices_unknownStatus_throwsInsteadOfIgnoringTheFilter() {
+            InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
+            searchRequest.setPage(0);
+            searchRequest.setSize(10);
+            searchRequest.setSortBy("invoiceId");
+            searchRequest.setDirection("ASC");
+            searchRequest.setStatus("APROVED");
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> invoiceService.searchInvoices(searchRequest, "admin", "SUPERUSER"));
+
+            assertTrue(e.getMessage().contains("APROVED"));
+            verify(invoiceRepository, never()).searchAllInvoices(any(), any(), any(), any(), any(Pageable.class));
+        }
+
+        @Test
+        void searchInvoices_withCriteria_userRole_matchesOnlyTheirInvoices() {
             // Arrange
-            User user = User.builder().username("user1").isActive(true).build();
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
             when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
 
-            Invoice invoice = Invoice.builder()
-                    .invoiceId(1L)
-                    .uploadedByUser(user)
-                    .isActive(true)
-                    .fileType(FileType.PDF)
-                    .fileName("invoice.pdf")
-                    .totalAmount(100.0)
-                    .status(InvoiceStatus.PENDING)
-                    .invoiceDate(LocalDate.now())
-                    .invoiceProduct(new ArrayList<>())
-                    .build();
+            InvoiceListRow row = new InvoiceListRow(1L, "user1", LocalDate.now(), FileType.PDF,
+                    "invoice.pdf", 100.0, InvoiceStatus.PENDING, LocalDateTime.now());
 
-            Page<Invoice> invoicePage = new PageImpl<>(List.of(invoice));
-            when(invoiceRepository.searchUserInvoices(
-                    eq(user), any(), any(), any(), any(), any(), any(Pageable.class)))
-                    .thenReturn(invoicePage);
+            Page<InvoiceListRow> rowPage = new PageImpl<>(List.of(row));
+            when(invoiceRepository.matchListRows(
+                    eq("u1"), eq("+invoice*"), any(), any(), any(), any(), any(Pageable.class)))
+                    .thenReturn(rowPage);
 
             InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
             searchRequest.setPage(0);
@@ -883,6 +1032,28 @@ class InvoiceServiceTest {
             assertNotNull(result);
             assertEquals(1, result.getTotalElements());
         }
+
+        @Test
+        void searchInvoices_filtersWithoutText_skipFullText() {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+            when(invoiceRepository.searchUserInvoices(eq(user), any(), any(), isNull(), eq(InvoiceStatus.APPROVED),
+                    any(Pageable.class))).thenReturn(new PageImpl<>(List.of()));
+
+            InvoiceSearchRequest searchRequest = new InvoiceSearchRequest();
+            searchRequest.setSortBy("invoiceId");
+            // punctuation only: no words to match
+            searchRequest.setSearch(" -- ");
+            searchRequest.setStatus("approved");
+
+            // Act
+            Page<InvoiceResponse> result = invoiceService.searchInvoices(searchRequest, "user1", "USER");
+
+            // Assert
+            assertEquals(0, result.getTotalElements());
+            verify(invoiceRepository, never()).matchListRows(any(), any(), any(), any(), any(), any(), any());
+        }
     }
 
     @Nested
@@ -958,11 +1129,11 @@ class InvoiceServiceTest {
         @Test
         void getInvoiceStats_userRole_returnsUserStats() {
             // Arrange
-            User user = User.builder().username("user1").isActive(true).build();
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
             when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
 
-            when(invoiceRepository.countByUploadedByUserAndIsActiveTrue(user)).thenReturn(2L);
-            when(invoiceRepository.sumTotalAmountByUserAndIsActiveTrue(user)).thenReturn(200.0);
+            when(invoiceStatsRollup.isBuilt()).thenReturn(true);
+            when(invoiceStatsRollup.totals("u1")).thenReturn(new InvoiceStatsTotal("u1", 2L, 200.0));
 
             // Act
             Map<String, Object> stats = invoiceService.getInvoiceStats("user1", "USER");
@@ -979,8 +1150,9 @@ class InvoiceServiceTest {
             User superuser = User.builder().username("superuser").isActive(true).build();
             when(userRepository.findByUsername("superuser")).thenReturn(Optional.of(superuser));
 
-            when(invoiceRepository.countByIsActiveTrue()).thenReturn(10L);
-            when(invoiceRepository.sumTotalAmountByIsActiveTrue()).thenReturn(1000.0);
+            when(invoiceStatsRollup.isBuilt()).thenReturn(true);
+            when(invoiceStatsRollup.totals(InvoiceStatsRollup.ALL_SCOPE))
+                    .thenReturn(new InvoiceStatsTotal(InvoiceStatsRollup.ALL_SCOPE, 10L, 1000.0));
             when(userRepository.countByIsActiveTrue()).thenReturn(5L);
 
             // Act
@@ -991,6 +1163,36 @@ class InvoiceServiceTest {
             assertEquals(1000.0, stats.get("totalAmount"));
             assertEquals(5L, stats.get("totalUsers"));
         }
+
+        @Test
+        void getInvoiceStats_beforeAnyInvoice_returnsZeros() {
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+            when(invoiceStatsRollup.isBuilt()).thenReturn(true);
+            when(invoiceStatsRollup.totals("u1")).thenReturn(InvoiceStatsTotal.builder().scope("u1").build());
+
+            Map<String, Object> stats = invoiceService.getInvoiceStats("user1", "USER");
+
+            assertEquals(0L, stats.get("totalInvoices"));
+            assertEquals(0.0, stats.get("totalAmount"));
+            assertEquals(0.0, stats.get("averageAmount"));
+        }
+
+        @Test
+        void getInvoiceStats_rollupNotBuilt_aggregatesInvoices() {
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+            when(invoiceStatsRollup.isBuilt()).thenReturn(false);
+            when(invoiceRepository.countByUploadedByUserAndIsActiveTrue(user)).thenReturn(4L);
+            when(invoiceRepository.sumTotalAmountByUserAndIsActiveTrue(user)).thenReturn(400.0);
+
+            Map<String, Object> stats = invoiceService.getInvoiceStats("user1", "USER");
+
+            assertEquals(4L, stats.get("totalInvoices"));
+            assertEquals(400.0, stats.get("totalAmount"));
+            assertEquals(100.0, stats.get("averageAmount"));
+            verify(invoiceStatsRollup, never()).totals(any());
+        }
     }
 
     @Nested
@@ -1021,7 +1223,7 @@ class InvoiceServiceTest {
             
         //     duplicateCheckResponse.setSimilarInvoices(List.of(similarInvoice));
             
-        //     when(duplicateCheckClient.checkForDuplicates(
+        //     when(duplicateCheckClient.checkAndReserve(
         //             any(), any(), any(), any(), any(), any(), any(), any()))
         //             .thenReturn(duplicateCheckResponse);
 
@@ -1055,7 +1257,7 @@ class InvoiceServiceTest {
             DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
             duplicateCheckResponse.setDuplicate(true); // But low confidence
             duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.7)); // Below 0.8 threshold
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenReturn(duplicateCheckResponse);
 
@@ -1099,7 +1301,7 @@ class InvoiceServiceTest {
             request.setInvoiceDate(LocalDate.now());
 
             // Mock duplicate check to throw exception
-            when(duplicateCheckClient.checkForDuplicates(
+            when(duplicateCheckClient.checkAndReserve(
                     any(), any(), any(), any(), any(), any(), any(), any()))
                     .thenThrow(new RuntimeException("Duplicate check service down"));
 
@@ -1124,6 +1326,418 @@ class InvoiceServiceTest {
         }
     }
 
+    @Nested
+    class DuplicateCheckDisabledTests {
+
+        @Test
+        void createInvoice_duplicateCheckDisabled_queuesNoFingerprint() throws Exception {
+            // Arrange
+            ReflectionTestUtils.setField(invoiceService, "duplicateCheckEnabled", false);
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setProductQuantities(Map.of(1L, 2.0));
+            request.setTotalAmount(100.0);
+            request.setInvoiceDate(LocalDate.now());
+
+            Invoice invoice = Invoice.builder().invoiceId(1L).uploadedByUser(user).isActive(true)
+                    .invoiceProduct(new ArrayList<>()).build();
+            when(invoiceFactory.createInvoice(request, user)).thenReturn(invoice);
+            when(invoiceRepository.save(invoice)).thenReturn(invoice);
+            when(productRepository.findAllByIdAndIsActiveTrue(Set.of(1L))).thenReturn(List.of(Product.builder()
+                    .productId(1L).productName("Product1").unitPrice(50.0)
+                    .category(Category.builder().categoryName("Cat1").build()).isActive(true).build()));
+
+            // Act
+            invoiceService.createInvoice(request, "user1", "USER");
+
+            // Assert
+            verifyNoInteractions(duplicateCheckClient, fingerprintOutboxRepository);
+        }
+    }
+
+    @Nested
+    class UploadPipelineTests {
+
+        @Test
+        void createInvoice_withFile_runsExtractionOnPipelineExecutor() throws Exception {
+            // Arrange
+            User user = User.builder().username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+            when(file.getContentType()).thenReturn("image/png");
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.now());
+
+            DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
+            duplicateCheckResponse.setDuplicate(false);
+            duplicateCheckResponse.setConfidenceScore(BigDecimal.ZERO);
+            when(duplicateCheckClient.checkAndReserve(
+                    any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(duplicateCheckResponse);
+
+            InvoiceExtractionResult extractionResult = new InvoiceExtractionResult();
+            extractionResult.setSuccess(true);
+            extractionResult.setTotalAmount(75.0);
+            when(invoiceExtractorService.extractInvoiceData(file)).thenReturn(extractionResult);
+
+            Invoice invoice = Invoice.builder()
+                    .invoiceId(1L)
+                    .uploadedByUser(user)
+                    .isActive(true)
+                    .totalAmount(0.0)
+                    .invoiceProduct(new ArrayList<>())
+                    .build();
+            when(invoiceFactory.createInvoice(request, user)).thenReturn(invoice);
+            when(invoiceRepository.save(invoice)).thenReturn(invoice);
+
+            // Act
+            InvoiceResponse response = invoiceService.createInvoice(request, "user1", "USER");
+
+            // Assert - extraction submitted once and not repeated for the duplicate check
+            assertEquals(75.0, response.getTotalAmount());
+            assertEquals(1, pipelineTasks.size());
+            verify(invoiceExtractorService, times(1)).extractInvoiceData(file);
+        }
+
+        @Test
+        void createInvoice_duplicateRejected_cancelsPendingExtraction() throws Exception {
+            // Arrange - executor queues the extraction without running it
+            List<Runnable> queued = new ArrayList<>();
+            InvoiceService pipelineService = new InvoiceService(
+                    invoiceExtractorService,
+                    invoiceRepository,
+                    userRepository,
+                    productRepository,
+                    invoiceFactory,
+                    fileStorageService,
+                    auditLogService,
+                    duplicateCheckClient,
+                    fingerprintOutboxRepository,
+                    localDuplicateIndex,
+                    contentHashFilter,
+                    invoiceSearchIndex,
+                    vendorResolver,
+                    invoiceStatsRollup,
+                    invoiceDataVersion,
+                    queued::add);
+
+            User user = User.builder().username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.now());
+
+            DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
+            duplicateCheckResponse.setDuplicate(true);
+            duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.95));
+            duplicateCheckResponse.setSimilarInvoices(new ArrayList<>());
+            when(duplicateCheckClient.checkAndReserve(
+                    any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(duplicateCheckResponse);
+
+            // Act & Assert
+            assertThrows(DuplicateInvoiceException.class,
+                    () -> pipelineService.createInvoice(request, "user1", "USER"));
+
+            assertEquals(1, queued.size());
+            assertTrue(((java.util.concurrent.Future<?>) queued.get(0)).isCancelled());
+            verify(invoiceExtractorService, never()).extractInvoiceData(any());
+            verify(invoiceFactory, never()).createInvoice(any(), any());
+            verify(invoiceRepository, never()).save(any());
+        }
+
+        @Test
+        void createInvoice_duplicateRejected_deletesIngestedFile() throws Exception {
+            // Arrange
+            User user = User.builder().username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile upload = mock(MultipartFile.class);
+            when(upload.isEmpty()).thenReturn(false);
+            StoredMultipartFile ingested = new StoredMultipartFile(
+                    java.nio.file.Path.of("stored.pdf"), "invoice.pdf", "application/pdf", "stored.pdf", "abc");
+            when(fileStorageService.ingest(upload)).thenReturn(ingested);
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(upload);
+            request.setInvoiceDate(LocalDate.now());
+
+            DuplicateCheckResponse duplicateCheckResponse = new DuplicateCheckResponse();
+            duplicateCheckResponse.setDuplicate(true);
+            duplicateCheckResponse.setConfidenceScore(BigDecimal.valueOf(0.95));
+            duplicateCheckResponse.setSimilarInvoices(new ArrayList<>());
+            when(duplicateCheckClient.checkAndReserve(
+                    eq(ingested), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(duplicateCheckResponse);
+
+            // Act & Assert
+            assertThrows(DuplicateInvoiceException.class,
+                    () -> invoiceService.createInvoice(request, "user1", "USER"));
+
+            verify(fileStorageService).discard("stored.pdf");
+        }
+
+        @Test
+        void createInvoice_exactContentDuplicate_skipsRemoteCheck() throws Exception {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile upload = mock(MultipartFile.class);
+            when(upload.isEmpty()).thenReturn(false);
+            StoredMultipartFile ingested = new StoredMultipartFile(
+                    java.nio.file.Path.of("stored.pdf"), "invoice.pdf", "application/pdf", "stored.pdf", "abc");
+            when(fileStorageService.ingest(upload)).thenReturn(ingested);
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(upload);
+            request.setInvoiceDate(LocalDate.now());
+
+            Invoice existing = Invoice.builder().invoiceId(7L).invoiceDate(LocalDate.now()).totalAmount(50.0).build();
+            when(contentHashFilter.mightContain("abc")).thenReturn(true);
+            when(invoiceRepository.findFirstByUploadedByUserAndContentHashAndIsActiveTrueOrderByInvoiceIdAsc(user, "abc"))
+                    .thenReturn(Optional.of(existing));
+
+            // Act & Assert
+            DuplicateInvoiceException exception = assertThrows(DuplicateInvoiceException.class,
+                    () -> invoiceService.createInvoice(request, "user1", "USER"));
+
+            assertTrue(exception.getMessage().contains("100%"));
+            verifyNoInteractions(duplicateCheckClient);
+            verifyNoInteractions(localDuplicateIndex);
+            verify(fileStorageService).discard("stored.pdf");
+        }
+
+        @Test
+        void createInvoice_contentHashFilterMiss_skipsExactLookupAndRecordsHash() throws Exception {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile upload = mock(MultipartFile.class);
+            when(upload.isEmpty()).thenReturn(false);
+            StoredMultipartFile ingested = new StoredMultipartFile(
+                    java.nio.file.Path.of("stored.pdf"), "invoice.pdf", "application/pdf", "stored.pdf", "abc");
+            when(fileStorageService.ingest(upload)).thenReturn(ingested);
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(upload);
+            request.setInvoiceDate(LocalDate.now());
+            request.setTotalAmount(80.0);
+
+            DuplicateCheckResponse notDuplicate = new DuplicateCheckResponse();
+            notDuplicate.setDuplicate(false);
+            when(duplicateCheckClient.checkAndReserve(any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(notDuplicate);
+
+            Invoice invoice = Invoice.builder().uploadedByUser(user).fileName("invoice")
+                    .fileType(FileType.PDF).invoiceDate(LocalDate.now()).storedFileName("stored.pdf").build();
+            when(invoiceFactory.createInvoice(request, user)).thenReturn(invoice);
+            when(invoiceRepository.save(any(Invoice.class))).thenAnswer(inv -> {
+                Invoice saved = inv.getArgument(0);
+                saved.setInvoiceId(12L);
+                return saved;
+            });
+
+            // Act
+            invoiceService.createInvoice(request, "user1", "USER");
+
+            // Assert
+            verify(contentHashFilter).mightContain("abc");
+            verify(invoiceRepository, never())
+                    .findFirstByUploadedByUserAndContentHashAndIsActiveTrueOrderByInvoiceIdAsc(any(), any());
+            assertEquals("abc", invoice.getContentHash());
+            verify(contentHashFilter).addAfterCommit("abc", 12L);
+        }
+
+        @Test
+        void createInvoice_serviceUnavailable_usesLocalSimilarityResult() throws Exception {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setProductQuantities(Map.of(1L, 2.0));
+            request.setTotalAmount(200.0);
+            request.setInvoiceDate(LocalDate.now());
+
+            when(localDuplicateIndex.isEnabled()).thenReturn(true);
+            when(localDuplicateIndex.check(any())).thenReturn(DuplicateCheckResponse.builder()
+                    .duplicate(true)
+                    .confidenceScore(new BigDecimal("0.92"))
+                    .checkMethod(LocalDuplicateIndex.SIMILARITY_METHOD)
+                    .similarInvoices(new ArrayList<>())
+                    .build());
+            DuplicateCheckResponse unavailable = new DuplicateCheckResponse();
+            unavailable.setCheckMethod("SERVICE_UNAVAILABLE");
+            when(duplicateCheckClient.checkAndReserve(any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(unavailable);
+
+            // Act & Assert
+            DuplicateInvoiceException exception = assertThrows(DuplicateInvoiceException.class,
+                    () -> invoiceService.createInvoice(request, "user1", "USER"));
+            assertTrue(exception.getMessage().contains("92%"));
+            verify(invoiceRepository, never()).save(any());
+        }
+
+        @Test
+        void createInvoice_checkedLocally_reChecksAfterExtraction() throws Exception {
+            // Arrange
+            ReflectionTestUtils.setField(invoiceService, "duplicateCheckEnabled", false);
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+            when(file.getContentType()).thenReturn("application/pdf");
+            when(file.getOriginalFilename()).thenReturn("scan_0042.pdf");
+
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.now());
+
+            InvoiceExtractionResult extractionResult = new InvoiceExtractionResult();
+            extractionResult.setSuccess(true);
+            extractionResult.setTotalAmount(250.0);
+            extractionResult.setVendor("ACME, Inc.");
+            when(invoiceExtractorService.extractInvoiceData(file)).thenReturn(extractionResult);
+            Vendor acme = Vendor.builder().vendorId(7L).name("ACME, Inc.").normalizedName("acme").build();
+            when(vendorResolver.resolve("ACME, Inc.")).thenReturn(acme);
+
+            Invoice invoice = Invoice.builder().uploadedByUser(user).invoiceDate(LocalDate.now())
+                    .isActive(true).invoiceProduct(new ArrayList<>()).build();
+            when(invoiceFactory.createInvoice(request, user)).thenReturn(invoice);
+
+            // only the file name could be compared at upload time, so the first check is capped
+            when(localDuplicateIndex.isEnabled()).thenReturn(true);
+            when(localDuplicateIndex.check(any()))
+                    .thenReturn(DuplicateCheckResponse.builder()
+                            .duplicate(false)
+                            .confidenceScore(new BigDecimal("0.60"))
+                            .checkMethod(LocalDuplicateIndex.SIMILARITY_METHOD)
+                            .similarInvoices(new ArrayList<>())
+                            .build())
+                    .thenReturn(DuplicateCheckResponse.builder()
+                            .duplicate(true)
+                            .confidenceScore(new BigDecimal("0.91"))
+                            .checkMethod(LocalDuplicateIndex.SIMILARITY_METHOD)
+                            .similarInvoices(new ArrayList<>())
+                            .build());
+
+            // Act & Assert
+            DuplicateInvoiceException exception = assertThrows(DuplicateInvoiceException.class,
+                    () -> invoiceService.createInvoice(request, "user1", "USER"));
+            assertTrue(exception.getMessage().contains("91%"));
+
+            ArgumentCaptor<InvoiceSignature> signatures = ArgumentCaptor.forClass(InvoiceSignature.class);
+            verify(localDuplicateIndex, times(2)).check(signatures.capture());
+            assertNull(signatures.getAllValues().get(0).getVendorId());
+            assertEquals(7L, signatures.getAllValues().get(1).getVendorId());
+            assertEquals(250.0, signatures.getAllValues().get(1).getTotalAmount());
+            verify(invoiceRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    class ReservationReleaseTests {
+
+        private final Map<MultipartFile, String> reservations = new HashMap<>();
+
+        // Stands in for the duplicate-check service: an upload is a duplicate of any reservation on the same file
+        @BeforeEach
+        void fakeReservingService() {
+            when(duplicateCheckClient.checkAndReserve(any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenAnswer(inv -> {
+                        MultipartFile file = inv.getArgument(0);
+                        DuplicateCheckResponse response = new DuplicateCheckResponse();
+                        response.setConfidenceScore(BigDecimal.ZERO);
+                        response.setSimilarInvoices(new ArrayList<>());
+                        if (reservations.containsKey(file)) {
+                            response.setDuplicate(true);
+                            response.setConfidenceScore(BigDecimal.ONE);
+                        } else {
+                            reservations.put(file, inv.getArgument(6));
+                        }
+                        return response;
+                    });
+            lenient().doAnswer(inv -> reservations.values().remove(inv.<String>getArgument(0)))
+                    .when(duplicateCheckClient).releaseReservation(anyString());
+        }
+
+        private InvoiceRequest upload(MultipartFile file) {
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.now());
+            request.setTotalAmount(40.0);
+            return request;
+        }
+
+        @Test
+        void createInvoice_factoryFailsThenRetried_retrySucceeds() throws Exception {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+
+            Invoice invoice = Invoice.builder().uploadedByUser(user).invoiceDate(LocalDate.now())
+                    .isActive(true).invoiceProduct(new ArrayList<>()).build();
+            when(invoiceFactory.createInvoice(any(), eq(user)))
+                    .thenThrow(new IllegalStateException("storage hiccup"))
+                    .thenReturn(invoice);
+            when(invoiceRepository.save(invoice)).thenReturn(invoice);
+
+            // Act
+            assertThrows(RuntimeException.class, () -> invoiceService.createInvoice(upload(file), "user1", "USER"));
+            InvoiceResponse retried = invoiceService.createInvoice(upload(file), "user1", "USER");
+
+            // Assert
+            assertNotNull(retried);
+            verify(duplicateCheckClient, times(1)).releaseReservation(anyString());
+            verify(invoiceRepository, times(1)).save(invoice);
+        }
+
+        @Test
+        void createInvoice_saveRolledBack_releasesReservation() throws Exception {
+            // Arrange
+            User user = User.builder().userId("u1").username("user1").isActive(true).build();
+            when(userRepository.findByUsername("user1")).thenReturn(Optional.of(user));
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.isEmpty()).thenReturn(false);
+
+            Invoice invoice = Invoice.builder().uploadedByUser(user).invoiceDate(LocalDate.now())
+                    .isActive(true).invoiceProduct(new ArrayList<>()).build();
+            when(invoiceFactory.createInvoice(any(), eq(user))).thenReturn(invoice);
+            when(invoiceRepository.save(invoice)).thenThrow(new IllegalStateException("deadlock"));
+
+            // Act - inside a transaction that then rolls back
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                assertThrows(IllegalStateException.class,
+                        () -> invoiceService.createInvoice(upload(file), "user1", "USER"));
+                verify(duplicateCheckClient, never()).releaseReservation(anyString());
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            // Assert
+            verify(duplicateCheckClient).releaseReservation(anyString());
+            assertTrue(reservations.isEmpty());
+        }
+    }
+
     @Nested
     class HelperMethodTests {
 
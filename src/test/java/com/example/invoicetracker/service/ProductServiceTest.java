@@ -9,6 +9,8 @@ import com.example.invoicetracker.model.entity.Category;
 import com.example.invoicetracker.model.entity.Product;
 import com.example.invoicetracker.repository.CategoryRepository;
 import com.example.invoicetracker.repository.ProductRepository;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -36,6 +38,12 @@ class ProductServiceTest {
         @Mock
         private CategoryRepository categoryRepository;
 
+        @Mock
+        private AnalyticsBucketCache analyticsBucketCache;
+
+        @Mock
+        private InvoiceSearchIndex invoiceSearchIndex;
+
         @InjectMocks
         private ProductService productService;
 
@@ -326,6 +334,34 @@ class ProductServiceTest {
                         assertEquals("Updated Gaming Laptop", updatedProduct.getProductName());
                         assertEquals("Updated description", updatedProduct.getDescription());
                         assertEquals(1099.0, updatedProduct.getUnitPrice());
+                        verifyNoInteractions(analyticsBucketCache);
+                        // renamed, so invoices with a line of it are re-indexed under the new name
+                        verify(invoiceSearchIndex).reindexProduct(1L);
+                }
+
+                @Test
+                void updateProduct_newCategory_clearsAnalyticsBuckets() {
+                        // Given
+                        Category office = Category.builder()
+                                        .categoryId(2L)
+                                        .categoryName("Office")
+                                        .build();
+                        productRequest.setCategoryId(2L);
+
+                        when(productRepository.findById(1L))
+                                        .thenReturn(Optional.of(product));
+
+                        when(categoryRepository.findById(2L))
+                                        .thenReturn(Optional.of(office));
+
+                        when(productRepository.save(any(Product.class)))
+                                        .thenAnswer(invocation -> invocation.getArgument(0));
+
+                        // When
+                        productService.updateProduct(1L, productRequest);
+
+                        // Then
+                        verify(analyticsBucketCache).clearAfterCommit();
                 }
 
                 @Test
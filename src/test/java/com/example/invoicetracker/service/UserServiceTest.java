@@ -7,6 +7,7 @@ import com.example.invoicetracker.model.entity.Role;
 import com.example.invoicetracker.model.entity.User;
 import com.example.invoicetracker.repository.RoleRepository;
 import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.search.InvoiceSearchIndex;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -39,6 +40,9 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private InvoiceSearchIndex invoiceSearchIndex;
+
     @InjectMocks
     private UserService userService;
 
@@ -461,6 +465,7 @@ class UserServiceTest {
             assertEquals("newusername", updatedUser.getUsername());
             assertEquals("new@example.com", updatedUser.getEmail());
             assertFalse(updatedUser.getIsActive());
+            verify(invoiceSearchIndex).reindexUploader("U1");
         }
 
         @Test
@@ -483,6 +488,7 @@ class UserServiceTest {
             assertEquals("testuser", response.getUsername());
             assertEquals("new@example.com", response.getEmail());
             assertTrue(response.getIsActive()); 
+            verifyNoInteractions(invoiceSearchIndex);
         }
 
         @Test
@@ -0,0 +1,171 @@
+package com.example.invoicetracker.service;
+
+import com.example.invoicetracker.model.entity.Vendor;
+import com.example.invoicetracker.repository.VendorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Resolves vendors against a real vendor table, so the INSERT IGNORE upsert
+ * and the unique canonical name are exercised, not just the cache. Tests
+ * commit or roll back their own transactions instead of running in a
+ * rolled-back one, and the table is emptied before each.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:vendors;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        // Unlike InnoDB, H2 keeps a REPEATABLE READ snapshot even for locking
+        // reads, so the race is exercised at READ COMMITTED
+        "spring.datasource.hikari.transaction-isolation=TRANSACTION_READ_COMMITTED"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VendorResolverTest {
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private VendorResolver vendorResolver;
+
+    @BeforeEach
+    void setUp() {
+        vendorRepository.deleteAll();
+        meterRegistry = new SimpleMeterRegistry();
+        vendorResolver = new VendorResolver(vendorRepository, meterRegistry);
+        vendorResolver.registerMetrics();
+    }
+
+    @Nested
+    class ResolveTests {
+
+        @Test
+        void resolve_spellingsOfOneVendor_shareOneRow() {
+            Vendor first = vendorResolver.resolve("The ACME, Inc.");
+            Vendor second = vendorResolver.resolve("acme corp");
+
+            assertEquals(first.getVendorId(), second.getVendorId());
+            assertEquals("The ACME, Inc.", first.getName());
+            assertEquals("acme", first.getNormalizedName());
+            assertEquals(1, vendorRepository.count());
+        }
+
+        @Test
+        void resolve_knownVendor_isServedFromCache() {
+            vendorResolver.resolve("Globex");
+            vendorResolver.resolve("GLOBEX");
+
+            assertEquals(1.0, meterRegistry.get("invoice.vendor.cache.hits").counter().count());
+            assertEquals(1.0, meterRegistry.get("invoice.vendor.cache.misses").counter().count());
+        }
+
+        @Test
+        void resolve_rowInsertedElsewhere_isFoundNotDuplicated() {
+            // another instance saw the vendor first
+            assertEquals(1, vendorRepository.insertIgnore("Initech LLC", "initech"));
+            assertEquals(0, vendorRepository.insertIgnore("Initech", "initech"));
+
+            Vendor vendor = vendorResolver.resolve("Initech");
+
+            assertEquals("Initech LLC", vendor.getName());
+            assertEquals(1, vendorRepository.count());
+        }
+
+        @Test
+        void resolve_rowCommittedByConcurrentUpload_isFoundNotFailed() {
+            Vendor vendor = new TransactionTemplate(transactionManager).execute(status -> {
+                // another upload commits the vendor after this upload's transaction has started
+                assertEquals(0, vendorRepository.count());
+                Thread other = new Thread(() -> vendorRepository.insertIgnore("Umbrella Corp", "umbrella"));
+                other.start();
+                try {
+                    other.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return vendorResolver.resolve("Umbrella");
+            });
+
+            assertEquals("Umbrella Corp", vendor.getName());
+            assertEquals(1, vendorRepository.count());
+        }
+
+        @Test
+        void resolve_newVendorRolledBack_isNeitherKeptNorCached() {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.executeWithoutResult(status -> {
+                vendorResolver.resolve("Hooli");
+                // the upload fails after resolving its vendor
+                status.setRollbackOnly();
+            });
+
+            assertEquals(0, vendorRepository.count());
+            assertEquals(0, vendorResolver.size());
+
+            Vendor vendor = transaction.execute(status -> vendorResolver.resolve("Hooli"));
+
+            assertEquals("Hooli", vendor.getName());
+            assertEquals(1, vendorRepository.count());
+            assertEquals(1, vendorResolver.size());
+        }
+
+        @Test
+        void resolve_punctuationOnly_returnsNull() {
+            assertNull(vendorResolver.resolve(" -- "));
+            assertEquals(0, vendorRepository.count());
+        }
+
+        @Test
+        void resolve_beyondMaxEntries_evictsLeastRecentlyUsed() {
+            ReflectionTestUtils.setField(vendorResolver, "maxEntries", 2);
+
+            vendorResolver.resolve("Alpha");
+            vendorResolver.resolve("Beta");
+            vendorResolver.resolve("Alpha");
+            vendorResolver.resolve("Gamma");
+            vendorResolver.resolve("Alpha");
+
+            assertEquals(2, vendorResolver.size());
+            assertEquals(2.0, meterRegistry.get("invoice.vendor.cache.hits").counter().count());
+        }
+    }
+
+    @Nested
+    class NormalizeTests {
+
+        @Test
+        void normalize_foldsCaseAccentsAndPunctuation() {
+            assertEquals("cafe du monde", VendorResolver.normalize("Café  du Monde!"));
+            assertEquals("johnson and johnson", VendorResolver.normalize("Johnson & Johnson"));
+        }
+
+        @Test
+        void normalize_dropsLegalSuffixesAndLeadingThe() {
+            assertEquals("home depot", VendorResolver.normalize("The Home Depot, Inc."));
+            assertEquals("siemens", VendorResolver.normalize("Siemens AG"));
+            assertEquals("acme", VendorResolver.normalize("ACME Co. Ltd"));
+        }
+
+        @Test
+        void normalize_keepsNameThatIsOnlyALegalForm() {
+            assertEquals("company", VendorResolver.normalize("Company"));
+            assertEquals("the", VendorResolver.normalize("The"));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.service.InvoiceDataVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatAnswerCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvoiceDataVersion invoiceDataVersion;
+    private ChatAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        invoiceDataVersion = new InvoiceDataVersion();
+        cache = new ChatAnswerCache(invoiceDataVersion, meterRegistry);
+        cache.registerMetrics();
+    }
+
+    private void answer(String username, String scopeUserId, String query, String answer) {
+        cache.put(username, scopeUserId, query, cache.version(scopeUserId), answer);
+    }
+
+    @Nested
+    class HitMissTests {
+
+        @Test
+        void get_sameQuestionDifferentlyWritten_hits() {
+            answer("alice", "u1", "How many invoices did I upload last month?", "Three.");
+
+            assertEquals("Three.", cache.get("alice", "u1", "  how many INVOICES did i upload last month "));
+            assertEquals("Three.", cache.get("alice", "u1", "Please, how many invoices did I upload last month?!"));
+            assertEquals(1.0, meterRegistry.get("ai.chat.cache.hit.ratio").gauge().value());
+        }
+
+        @Test
+        void get_isPerUser() {
+            answer("alice", "u1", "total spend", "$10.00");
+
+            assertNull(cache.get("bob", "u2", "total spend"));
+            assertEquals(1.0, meterRegistry.counter("ai.chat.cache.misses").count());
+        }
+
+        @Test
+        void normalize_keepsAmountsAndInvoiceNumbers() {
+            assertEquals("is invoice #42 over 10.50", ChatAnswerCache.normalize("Is invoice #42 over 10.50?"));
+        }
+
+        @Test
+        void get_operatorsAndCurrenciesAreNotFolded() {
+            answer("alice", "u1", "invoices > 100", "Seven.");
+            answer("alice", "u1", "total in $", "$10.00");
+
+            assertEquals("Seven.", cache.get("alice", "u1", "Invoices>100?"));
+            assertNull(cache.get("alice", "u1", "invoices < 100"));
+            assertNull(cache.get("alice", "u1", "invoices >= 100"));
+            assertNull(cache.get("alice", "u1", "invoices 100"));
+            assertNull(cache.get("alice", "u1", "total in €"));
+            assertEquals("invoices <= -5 %", ChatAnswerCache.normalize("Invoices <= -5%"));
+        }
+    }
+
+    @Nested
+    class InvalidationTests {
+
+        @Test
+        void get_afterUsersDataChanged_isStale() {
+            answer("alice", "u1", "total spend", "$10.00");
+
+            invoiceDataVersion.bump("u1");
+
+            assertNull(cache.get("alice", "u1", "total spend"));
+            assertEquals(1.0, meterRegistry.counter("ai.chat.cache.stale").count());
+            assertEquals(0, cache.size());
+        }
+
+        @Test
+        void get_allInvoicesScope_isInvalidatedByAnyUploader() {
+            answer("admin", null, "total spend", "$99.00");
+            answer("alice", "u1", "total spend", "$10.00");
+
+            invoiceDataVersion.bump("u2");
+
+            assertNull(cache.get("admin", null, "total spend"));
+            assertEquals("$10.00", cache.get("alice", "u1", "total spend"));
+        }
+
+        @Test
+        void put_afterConcurrentChange_isNotStored() {
+            long version = cache.version("u1");
+            invoiceDataVersion.bump("u1");
+
+            cache.put("alice", "u1", "total spend", version, "$10.00");
+
+            assertEquals(0, cache.size());
+        }
+
+        @Test
+        void put_beyondMaxEntries_evictsLeastRecentlyUsed() {
+            ReflectionTestUtils.setField(cache, "maxEntries", 2);
+            answer("alice", "u1", "first", "1");
+            answer("alice", "u1", "second", "2");
+            cache.get("alice", "u1", "first");
+
+            answer("alice", "u1", "third", "3");
+
+            assertEquals("1", cache.get("alice", "u1", "first"));
+            assertNull(cache.get("alice", "u1", "second"));
+            assertEquals(1.0, meterRegistry.counter("ai.chat.cache.evictions").count());
+        }
+    }
+}
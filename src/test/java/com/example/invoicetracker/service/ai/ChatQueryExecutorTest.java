@@ -0,0 +1,97 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.GroupBy;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Metric;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatQueryExecutorTest {
+
+    private static final LocalDate FEB_1 = LocalDate.of(2026, 2, 1);
+    private static final LocalDate FEB_28 = LocalDate.of(2026, 2, 28);
+
+    private InvoiceRepository invoiceRepository;
+    private ChatQueryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        executor = new ChatQueryExecutor(invoiceRepository);
+    }
+
+    private ChatQueryPlan plan(Metric metric, GroupBy groupBy, Order order) {
+        return new ChatQueryPlan(metric, groupBy, FEB_1, FEB_28, InvoiceStatus.APPROVED, null, null,
+                null, null, order, 3);
+    }
+
+    @Test
+    void execute_bindsPlanAndScope_andGroupsByMonth() {
+        when(invoiceRepository.aggregateForPlan("u1", null, FEB_1, FEB_28, InvoiceStatus.APPROVED, null, null, null))
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 30.0, 15.0, 10.0, 20.0}));
+        when(invoiceRepository.aggregateForPlanByMonth(eq("u1"), isNull(), eq(FEB_1), eq(FEB_28),
+                eq(InvoiceStatus.APPROVED), isNull(), isNull(), isNull(), any(Pageable.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{2026, 2, 2L, 30.0, 15.0}));
+
+        String result = executor.execute(plan(Metric.SUM, GroupBy.MONTH, Order.NEWEST), "u1");
+
+        assertTrue(result.contains("Matching invoices: 2"));
+        assertTrue(result.contains("Total amount: $30.00 | Average: $15.00 | Smallest: $10.00 | Largest: $20.00"));
+        assertTrue(result.contains("February 2026: 2 invoices, Total: $30.00, Average: $15.00"));
+        verify(invoiceRepository, never()).findForPlan(any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_noMatches_skipsFurtherQueries() {
+        when(invoiceRepository.aggregateForPlan(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{0L, 0.0, null, null, null}));
+
+        String result = executor.execute(plan(Metric.LIST, GroupBy.STATUS, Order.NEWEST), null);
+
+        assertTrue(result.contains("Matching invoices: 0"));
+        verify(invoiceRepository, never()).aggregateForPlanByStatus(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(invoiceRepository, never()).findForPlan(any(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_list_usesPlanOrderAndLimit() {
+        User user = new User();
+        user.setUsername("alice");
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceId(9L);
+        invoice.setInvoiceDate(FEB_1);
+        invoice.setFileType(FileType.PDF);
+        invoice.setTotalAmount(20.0);
+        invoice.setStatus(InvoiceStatus.APPROVED);
+        invoice.setUploadedByUser(user);
+        when(invoiceRepository.aggregateForPlan(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 20.0, 20.0, 20.0, 20.0}));
+        when(invoiceRepository.findForPlan(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(invoice));
+
+        String result = executor.execute(plan(Metric.LIST, GroupBy.NONE, Order.LARGEST), null);
+
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(invoiceRepository).findForPlan(isNull(), isNull(), eq(FEB_1), eq(FEB_28), eq(InvoiceStatus.APPROVED),
+                isNull(), isNull(), isNull(), page.capture());
+        assertEquals(3, page.getValue().getPageSize());
+        assertEquals(Sort.Direction.DESC, page.getValue().getSort().getOrderFor("totalAmount").getDirection());
+        assertTrue(result.contains("Invoices (largest first, 1 of 1):"));
+        assertTrue(result.contains("Invoice #9 | Date: 2026-02-01"));
+    }
+}
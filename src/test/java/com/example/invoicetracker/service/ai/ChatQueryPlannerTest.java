@@ -0,0 +1,99 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.GroupBy;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Metric;
+import com.example.invoicetracker.service.ai.ChatQueryPlan.Order;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatQueryPlannerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    private GeminiService geminiService;
+    private ChatQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        geminiService = mock(GeminiService.class);
+        planner = new ChatQueryPlanner(geminiService, new Gson());
+    }
+
+    @Nested
+    class ParseTests {
+
+        @Test
+        void parse_validPlan_bindsEveryField() {
+            Optional<ChatQueryPlan> plan = planner.parse("""
+                    {"answerable": true, "metric": "sum", "groupBy": "file_type",
+                     "startDate": "2026-02-01", "endDate": "2026-02-28", "status": "approved",
+                     "fileType": "PDF", "uploader": "bob", "minAmount": 100, "maxAmount": null,
+                     "order": "largest", "limit": 5}
+                    """, true);
+
+            assertEquals(Optional.of(new ChatQueryPlan(Metric.SUM, GroupBy.FILE_TYPE, LocalDate.of(2026, 2, 1),
+                    LocalDate.of(2026, 2, 28), InvoiceStatus.APPROVED, FileType.PDF, "bob", 100.0, null,
+                    Order.LARGEST, 5)), plan);
+        }
+
+        @Test
+        void parse_codeFenceAndDefaults() {
+            ChatQueryPlan plan = planner.parse("```json\n{\"answerable\": true}\n```", true).orElseThrow();
+
+            assertEquals(Metric.COUNT, plan.metric());
+            assertEquals(GroupBy.NONE, plan.groupBy());
+            assertEquals(10, plan.limit());
+        }
+
+        @Test
+        void parse_rejectsUnknownValuesAndUnanswerable() {
+            assertTrue(planner.parse("{\"answerable\": true, \"status\": \"PAID\"}", true).isEmpty());
+            assertTrue(planner.parse("{\"answerable\": true, \"metric\": \"median\"}", true).isEmpty());
+            assertTrue(planner.parse("{\"answerable\": true, \"startDate\": \"2026-03-01\", "
+                    + "\"endDate\": \"2026-02-01\"}", true).isEmpty());
+            assertTrue(planner.parse("{\"answerable\": true, \"minAmount\": -5}", true).isEmpty());
+            assertTrue(planner.parse("{\"answerable\": false}", true).isEmpty());
+            assertTrue(planner.parse("I cannot help with that", true).isEmpty());
+        }
+
+        @Test
+        void parse_forUser_ignoresUploaderAndClampsLimit() {
+            ChatQueryPlan plan = planner.parse("{\"answerable\": true, \"groupBy\": \"uploader\", "
+                    + "\"uploader\": \"someone-else\", \"limit\": 500}", false).orElseThrow();
+
+            assertNull(plan.uploader());
+            assertEquals(GroupBy.NONE, plan.groupBy());
+            assertEquals(20, plan.limit());
+        }
+    }
+
+    @Test
+    void plan_geminiFailure_fallsBack() throws IOException {
+        when(geminiService.generateJson(anyString())).thenThrow(new IOException("quota"));
+
+        assertTrue(planner.plan("how many invoices?", false, TODAY).isEmpty());
+    }
+
+    @Test
+    void plan_promptCarriesTodayAndQuestion() throws IOException {
+        when(geminiService.generateJson(anyString())).thenReturn("{\"answerable\": true}");
+
+        assertTrue(planner.plan("how many invoices last month?", false, TODAY).isPresent());
+
+        verify(geminiService).generateJson(argThat(prompt -> prompt.contains("Today is 2026-03-15")
+                && prompt.contains("how many invoices last month?")
+                && !prompt.contains("exact username")));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.service.ai.GeminiRateLimiter.Lane;
+import com.example.invoicetracker.service.ai.GeminiRateLimiter.Outcome;
+import com.example.invoicetracker.service.ai.GeminiRateLimiter.Permit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiRateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private GeminiRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = newLimiter(4, 6000, 100);
+    }
+
+    private GeminiRateLimiter newLimiter(int initialConcurrency, double requestsPerMinute, int burst) {
+        GeminiRateLimiter created = new GeminiRateLimiter(meterRegistry);
+        ReflectionTestUtils.setField(created, "initialConcurrency", initialConcurrency);
+        ReflectionTestUtils.setField(created, "requestsPerMinute", requestsPerMinute);
+        ReflectionTestUtils.setField(created, "burst", burst);
+        ReflectionTestUtils.setField(created, "interactiveMaxWaitMs", 200L);
+        ReflectionTestUtils.setField(created, "bulkMaxWaitMs", 200L);
+        created.init();
+        return created;
+    }
+
+    @Nested
+    class ConcurrencyLimitTests {
+        @Test
+        void fastSuccesses_growLimitAdditively() throws Exception {
+            for (int i = 0; i < 8; i++) {
+                limiter.acquire(Lane.INTERACTIVE).release(Outcome.SUCCESS, 0);
+            }
+
+            assertEquals(5, limiter.getLimit());
+            assertEquals(0, limiter.getInFlight());
+        }
+
+        @Test
+        void throttled_halvesLimit_andPausesEveryLane() throws Exception {
+            limiter.acquire(Lane.BULK).release(Outcome.THROTTLED, 150);
+
+            assertEquals(2, limiter.getLimit());
+            long start = System.nanoTime();
+            limiter.acquire(Lane.INTERACTIVE).release(Outcome.SUCCESS, 0);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+            assertEquals(1.0, meterRegistry.get("gemini.limiter.calls").tag("outcome", "throttled").counter().count());
+        }
+
+        @Test
+        void limitNeverDropsBelowMinimum() throws Exception {
+            for (int i = 0; i < 5; i++) {
+                limiter.acquire(Lane.BULK).release(Outcome.FAILED, 0);
+            }
+            limiter.acquire(Lane.BULK).release(Outcome.THROTTLED, 1);
+            limiter.acquire(Lane.BULK).release(Outcome.THROTTLED, 1);
+
+            assertEquals(1, limiter.getLimit());
+        }
+    }
+
+    @Nested
+    class AdmissionTests {
+        @Test
+        void bulk_leavesReservedSlotForInteractive() throws Exception {
+            List<Permit> held = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                held.add(limiter.acquire(Lane.BULK));
+            }
+
+            assertThrows(GeminiRateLimiter.QueueTimeoutException.class, () -> limiter.acquire(Lane.BULK));
+            Permit interactive = limiter.acquire(Lane.INTERACTIVE);
+
+            assertEquals(4, limiter.getInFlight());
+            interactive.release(Outcome.SUCCESS, 0);
+            held.forEach(permit -> permit.release(Outcome.SUCCESS, 0));
+            assertEquals(1.0, meterRegistry.get("gemini.limiter.rejected").tag("lane", "bulk").counter().count());
+        }
+
+        @Test
+        void waitingInteractive_goesBeforeWaitingBulk() throws Exception {
+            limiter = newLimiter(1, 6000, 100);
+            ReflectionTestUtils.setField(limiter, "interactiveMaxWaitMs", 5000L);
+            ReflectionTestUtils.setField(limiter, "bulkMaxWaitMs", 5000L);
+            Permit held = limiter.acquire(Lane.INTERACTIVE);
+
+            List<Lane> order = new ArrayList<>();
+            CountDownLatch bulkWaiting = new CountDownLatch(1);
+            CompletableFuture<Void> bulk = CompletableFuture.runAsync(() -> {
+                bulkWaiting.countDown();
+                acquireAndRecord(Lane.BULK, order);
+            });
+            bulkWaiting.await();
+            awaitQueued(Lane.BULK);
+            CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> acquireAndRecord(Lane.INTERACTIVE, order));
+            awaitQueued(Lane.INTERACTIVE);
+
+            held.release(Outcome.SUCCESS, 0);
+            CompletableFuture.allOf(bulk, interactive).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of(Lane.INTERACTIVE, Lane.BULK), order);
+        }
+
+        @Test
+        void emptyTokenBucket_delaysUntilRefill() throws Exception {
+            // One request per 100 ms, no burst beyond a single token
+            limiter = newLimiter(4, 600, 1);
+
+            limiter.acquire(Lane.BULK).release(Outcome.SUCCESS, 0);
+            long start = System.nanoTime();
+            limiter.acquire(Lane.BULK).release(Outcome.SUCCESS, 0);
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        }
+
+        private void acquireAndRecord(Lane lane, List<Lane> order) {
+            try {
+                Permit permit = limiter.acquire(lane);
+                synchronized (order) {
+                    order.add(lane);
+                }
+                Thread.sleep(20);
+                permit.release(Outcome.SUCCESS, 0);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void awaitQueued(Lane lane) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (limiter.getWaiting(lane) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, limiter.getWaiting(lane));
+        }
+    }
+
+    @Test
+    void retryPolicy_honoursRetryAfterAndLaneBudget() {
+        assertTrue(limiter.retryDelayMs(1, 0) >= 1000 && limiter.retryDelayMs(1, 0) < 1200);
+        assertTrue(limiter.retryDelayMs(3, 0) >= 4000);
+        assertTrue(limiter.retryDelayMs(1, 30_000) >= 30_000);
+
+        assertTrue(limiter.shouldRetry(Lane.BULK, 1, 100));
+        assertFalse(limiter.shouldRetry(Lane.BULK, 1, 60_000));
+        assertFalse(limiter.shouldRetry(Lane.INTERACTIVE, 2, 100));
+    }
+}
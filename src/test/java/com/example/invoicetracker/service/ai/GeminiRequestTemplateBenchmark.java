@@ -0,0 +1,156 @@
+package com.example.invoicetracker.service.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per Gemini request body: the Gson-tree request built per call
+ * before {@link GeminiRequestTemplate} against the pre-encoded template, each
+ * built and written to a discarding sink. Read {@code gc.alloc.rate.norm}
+ * (bytes per op) from the GC profiler, which {@link #main} adds; from the
+ * command line, run
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main GeminiRequestTemplateBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiRequestTemplateBenchmark {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final int PROMPT_LENGTH = 1536;
+    private static final int FILE_SIZE = 32 * 1024;
+    private static final String DATA_PLACEHOLDER = "__INLINE_DATA__";
+
+    // The generation configs GeminiService uses
+    private static final GeminiRequestTemplate VISION_REQUEST = GeminiRequestTemplate.of(0.1, 2048, 0.8, 40);
+    private static final GeminiRequestTemplate TEXT_REQUEST = GeminiRequestTemplate.of(0.1, 1000);
+
+    private final Gson gson = new Gson();
+
+    private String prompt;
+    private MockMultipartFile file;
+    private BufferedSink sink;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder(PROMPT_LENGTH);
+        while (text.length() < PROMPT_LENGTH) {
+            text.append("Extract the \"total\" and line items.\n");
+        }
+        prompt = text.toString();
+
+        byte[] content = new byte[FILE_SIZE];
+        random.nextBytes(content);
+        file = new MockMultipartFile("file", "invoice.png", "image/png", content);
+
+        sink = Okio.buffer(Okio.blackhole());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+    }
+
+    @Benchmark
+    public long vision_gsonTree() throws IOException {
+        String json = buildVisionRequest(prompt, DATA_PLACEHOLDER, "image/png");
+        int index = json.lastIndexOf(DATA_PLACEHOLDER);
+        return write(new InlineDataRequestBody(
+                List.of(json.substring(0, index).getBytes(StandardCharsets.UTF_8)), file,
+                json.substring(index + DATA_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public long vision_template() throws IOException {
+        return write(VISION_REQUEST.inlineData(prompt, "image/png", file));
+    }
+
+    @Benchmark
+    public long text_gsonTree() throws IOException {
+        return write(RequestBody.create(buildTextRequest(prompt), JSON));
+    }
+
+    @Benchmark
+    public long text_template() throws IOException {
+        return write(TEXT_REQUEST.text(prompt));
+    }
+
+    private long write(RequestBody body) throws IOException {
+        body.writeTo(sink);
+        sink.flush();
+        return body.contentLength();
+    }
+
+    // The per-call request building GeminiService did before the templates,
+    // split around a placeholder for the data
+    private String buildVisionRequest(String prompt, String base64Image, String mimeType) {
+        JsonObject request = new JsonObject();
+
+        JsonObject content = new JsonObject();
+
+        JsonObject textPart = new JsonObject();
+        textPart.addProperty("text", prompt);
+
+        JsonObject imagePart = new JsonObject();
+        JsonObject inlineData = new JsonObject();
+        inlineData.addProperty("mime_type", mimeType);
+        inlineData.addProperty("data", base64Image);
+        imagePart.add("inline_data", inlineData);
+
+        content.add("parts", gson.toJsonTree(List.of(textPart, imagePart)));
+        request.add("contents", gson.toJsonTree(List.of(content)));
+
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", 0.1);
+        generationConfig.addProperty("maxOutputTokens", 2048);
+        generationConfig.addProperty("topP", 0.8);
+        generationConfig.addProperty("topK", 40);
+
+        request.add("generationConfig", generationConfig);
+
+        return gson.toJson(request);
+    }
+
+    private String buildTextRequest(String prompt) {
+        JsonObject request = new JsonObject();
+        JsonObject content = new JsonObject();
+        JsonObject textPart = new JsonObject();
+        textPart.addProperty("text", prompt);
+        content.add("parts", gson.toJsonTree(List.of(textPart)));
+        request.add("contents", gson.toJsonTree(List.of(content)));
+
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", 0.1);
+        generationConfig.addProperty("maxOutputTokens", 1000);
+        request.add("generationConfig", generationConfig);
+
+        return gson.toJson(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GeminiRequestTemplateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.invoicetracker.service.ai;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiRequestTemplateTest {
+
+    private static final String PROMPT = "Extract the \"total\" from:\n\tline <1> & ünïcödé";
+
+    private static JsonElement write(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertEquals(body.contentLength(), buffer.size());
+        return JsonParser.parseString(buffer.readString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void text_writesPromptAndGenerationConfig() throws IOException {
+        GeminiRequestTemplate template = GeminiRequestTemplate.of(0.1, 1000);
+
+        JsonElement json = write(template.text(PROMPT));
+
+        assertEquals(JsonParser.parseString("""
+                {"contents":[{"parts":[{"text":"Extract the \\"total\\" from:\\n\\tline <1> & ünïcödé"}]}],
+                 "generationConfig":{"temperature":0.1,"maxOutputTokens":1000}}
+                """), json);
+    }
+
+    @Test
+    void json_requestsJsonResponse() throws IOException {
+        JsonElement json = write(GeminiRequestTemplate.json(0.0, 256).text("plan"));
+
+        assertEquals(JsonParser.parseString("""
+                {"contents":[{"parts":[{"text":"plan"}]}],
+                 "generationConfig":{"temperature":0.0,"maxOutputTokens":256,"responseMimeType":"application/json"}}
+                """), json);
+    }
+
+    @Test
+    void inlineData_embedsMimeTypeAndBase64File() throws IOException {
+        GeminiRequestTemplate template = GeminiRequestTemplate.of(0.1, 2048, 0.8, 40);
+        byte[] content = "invoice-bytes".getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png", content);
+
+        JsonElement json = write(template.inlineData(PROMPT, "image/png", file));
+
+        assertEquals(JsonParser.parseString("""
+                {"contents":[{"parts":[{"text":"Extract the \\"total\\" from:\\n\\tline <1> & ünïcödé"},
+                 {"inline_data":{"mime_type":"image/png","data":"%s"}}]}],
+                 "generationConfig":{"temperature":0.1,"maxOutputTokens":2048,"topP":0.8,"topK":40}}
+                """.formatted(Base64.getEncoder().encodeToString(content))), json);
+    }
+
+    @Test
+    void changingPrompt_isNotServedFromCache() throws IOException {
+        GeminiRequestTemplate template = GeminiRequestTemplate.of(0.1, 1000);
+        template.text("first");
+
+        JsonElement json = write(template.text("second"));
+
+        assertEquals("second", json.getAsJsonObject().getAsJsonArray("contents").get(0).getAsJsonObject()
+                .getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString());
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.config.GeminiConfig;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiServiceTest {
+
+    private static final String OK_BODY =
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"hello\"}]}}]}";
+
+    private HttpServer server;
+    private final Queue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String lastRequestUri;
+    private SimpleMeterRegistry meterRegistry;
+    private GeminiConfig geminiConfig;
+    private GeminiRateLimiter rateLimiter;
+    private GeminiService geminiService;
+
+    private record StubResponse(int status, String retryAfter, String body) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            lastRequestUri = exchange.getRequestURI().toString();
+            StubResponse stub = responses.poll();
+            if (stub == null) {
+                stub = new StubResponse(200, null, OK_BODY);
+            }
+            if (stub.retryAfter() != null) {
+                exchange.getResponseHeaders().add("Retry-After", stub.retryAfter());
+            }
+            byte[] body = stub.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(stub.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        geminiConfig = new GeminiConfig();
+        ReflectionTestUtils.setField(geminiConfig, "apiKey", "test-key");
+        ReflectionTestUtils.setField(geminiConfig, "modelName", "test-model");
+        ReflectionTestUtils.setField(geminiConfig, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.invokeMethod(geminiConfig, "init");
+
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new GeminiRateLimiter(meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "backoffInitialMs", 10L);
+        rateLimiter.init();
+
+        geminiService = new GeminiService(geminiConfig, new OkHttpClient(), new Gson(), rateLimiter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void quotaError_isRetriedAfterRetryAfter() throws IOException {
+        responses.add(new StubResponse(429, "0", "{\"error\":{\"code\":429}}"));
+
+        assertEquals("hello", geminiService.generateText("prompt"));
+        assertEquals(2, requests.get());
+        assertEquals(1.0, meterRegistry.get("gemini.limiter.calls").tag("outcome", "throttled").counter().count());
+    }
+
+    @Test
+    void quotaError_readsRetryDelayFromBody() throws IOException {
+        responses.add(new StubResponse(429, null,
+                "{\"error\":{\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.RetryInfo\","
+                        + "\"retryDelay\": \"0.05s\"}]}}"));
+
+        long start = System.nanoTime();
+        assertEquals("hello", geminiService.analyzeText("prompt"));
+
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 50);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void interactiveLane_givesUpAfterItsAttempts() {
+        for (int i = 0; i < 3; i++) {
+            responses.add(new StubResponse(503, null, "overloaded"));
+        }
+
+        IOException exception = assertThrows(IOException.class, () -> geminiService.generateText("prompt"));
+
+        assertTrue(exception.getMessage().contains("503"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void clientError_isNotRetried() {
+        responses.add(new StubResponse(400, null, "bad request"));
+
+        assertThrows(IOException.class, () -> geminiService.generateText("prompt"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void runtimeFailureBeforeStatus_releasesPermit() {
+        OkHttpClient failingClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    throw new IllegalStateException("interceptor failed");
+                })
+                .build();
+        GeminiService failingService = new GeminiService(geminiConfig, failingClient, new Gson(), rateLimiter);
+
+        assertThrows(IllegalStateException.class, () -> failingService.generateText("prompt"));
+
+        assertEquals(0, rateLimiter.getInFlight());
+        assertEquals(1.0, meterRegistry.get("gemini.limiter.calls").tag("outcome", "failed").counter().count());
+    }
+
+    @Nested
+    class StreamTests {
+        private static final String STREAM_BODY =
+                "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hel\"}]}}]}\n\n"
+                        + "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"lo\"},{\"text\":\" there\"}]}}]}\n\n"
+                        + "data: {\"candidates\":[{\"finishReason\":\"STOP\"}],\"usageMetadata\":{}}\n\n";
+
+        @Test
+        void streamText_deliversEachChunkInOrder() throws IOException {
+            responses.add(new StubResponse(200, null, STREAM_BODY));
+            List<String> chunks = new ArrayList<>();
+
+            geminiService.streamText("prompt", chunks::add, new GeminiService.Cancellation());
+
+            assertEquals(List.of("Hel", "lo there"), chunks);
+            assertTrue(lastRequestUri.contains(":streamGenerateContent"));
+            assertTrue(lastRequestUri.contains("alt=sse"));
+        }
+
+        @Test
+        void streamText_stopsReadingOnceCancelled() throws IOException {
+            responses.add(new StubResponse(200, null, STREAM_BODY));
+            GeminiService.Cancellation cancellation = new GeminiService.Cancellation();
+            List<String> chunks = new ArrayList<>();
+
+            geminiService.streamText("prompt", text -> {
+                chunks.add(text);
+                cancellation.cancel();
+            }, cancellation);
+
+            assertEquals(List.of("Hel"), chunks);
+        }
+
+        @Test
+        void streamText_cancelledBeforeStart_abortsCall() {
+            GeminiService.Cancellation cancellation = new GeminiService.Cancellation();
+            cancellation.cancel();
+
+            assertThrows(IOException.class, () -> geminiService.streamText("prompt", text -> fail(), cancellation));
+            assertEquals(0, meterRegistry.get("gemini.limiter.in.flight").gauge().value());
+        }
+
+        @Test
+        void streamText_retriesQuotaErrorBeforeStreaming() throws IOException {
+            responses.add(new StubResponse(429, "0", "{\"error\":{\"code\":429}}"));
+            responses.add(new StubResponse(200, null, STREAM_BODY));
+            List<String> chunks = new ArrayList<>();
+
+            geminiService.streamText("prompt", chunks::add, new GeminiService.Cancellation());
+
+            assertEquals(List.of("Hel", "lo there"), chunks);
+            assertEquals(2, requests.get());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.invoicetracker.service.ai;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InlineDataRequestBodyTest {
+
+    private static final String OPEN = "{\"parts\":[{\"text\":\"prompt\"},";
+    private static final String DATA_OPEN = "{\"inline_data\":{\"data\":\"";
+    private static final String CLOSE = "\"}}]}";
+
+    private String write(byte[] content) throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png", content);
+        InlineDataRequestBody body = new InlineDataRequestBody(
+                List.of(OPEN.getBytes(StandardCharsets.UTF_8), DATA_OPEN.getBytes(StandardCharsets.UTF_8)),
+                file, CLOSE.getBytes(StandardCharsets.UTF_8));
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertEquals(body.contentLength(), buffer.size());
+        return buffer.readString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void writeTo_embedsBase64OfFileBetweenSegments() throws IOException {
+        byte[] content = "invoice-bytes".getBytes();
+
+        String json = write(content);
+
+        assertEquals(OPEN + DATA_OPEN + Base64.getEncoder().encodeToString(content) + CLOSE, json);
+    }
+
+    @Test
+    void contentLength_matchesForAllPaddingLengths() throws IOException {
+        write(new byte[0]);
+        write(new byte[1]);
+        write(new byte[2]);
+        write(new byte[3]);
+        write(new byte[100_000]);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.service.ai.InvoiceChatContextBuilder.DateRange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceChatContextBuilderTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 15);
+
+    private InvoiceRepository invoiceRepository;
+    private InvoiceChatContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        builder = new InvoiceChatContextBuilder(invoiceRepository);
+        when(invoiceRepository.summarizeActive(any())).thenReturn(List.<Object[]>of(new Object[]{3L, 60.0}));
+        when(invoiceRepository.summarizeActiveByMonth(any())).thenReturn(List.<Object[]>of(
+                new Object[]{2026, 3, 2L, 40.0},
+                new Object[]{2026, 2, 1L, 20.0}));
+        when(invoiceRepository.countActiveByFileType(any())).thenReturn(List.<Object[]>of(new Object[]{FileType.PDF, 3L}));
+        when(invoiceRepository.countActiveByStatus(any())).thenReturn(List.<Object[]>of(new Object[]{InvoiceStatus.APPROVED, 3L}));
+        when(invoiceRepository.summarizeActiveByUser(any(Pageable.class))).thenReturn(List.of());
+        when(invoiceRepository.findActiveForChat(any(), any(), any(), any(Pageable.class))).thenReturn(List.of());
+    }
+
+    private Invoice invoice(long id, LocalDate date) {
+        User user = new User();
+        user.setUsername("alice");
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceId(id);
+        invoice.setInvoiceDate(date);
+        invoice.setFileType(FileType.PDF);
+        invoice.setTotalAmount(20.0);
+        invoice.setStatus(InvoiceStatus.APPROVED);
+        invoice.setUploadedByUser(user);
+        return invoice;
+    }
+
+    @Nested
+    class ContextTests {
+
+        @Test
+        void build_usesGroupedQueries_andListsOnlyTheAskedPeriod() {
+            when(invoiceRepository.findActiveForChat(eq("u1"), eq(LocalDate.of(2026, 2, 1)),
+                    eq(LocalDate.of(2026, 2, 28)), any(Pageable.class)))
+                    .thenReturn(List.of(invoice(7, LocalDate.of(2026, 2, 10))));
+
+            String context = builder.build("What did I spend last month?", "u1", TODAY);
+
+            assertTrue(context.contains("Total Invoices: 3"));
+            assertTrue(context.contains("March 2026: 2 invoices, Total: $40.00"));
+            assertTrue(context.contains("INVOICES FROM FEBRUARY 2026"));
+            assertTrue(context.contains("Invoice #7 | Date: 2026-02-10 (February 2026)"));
+            verify(invoiceRepository, never()).findAll();
+            verify(invoiceRepository, never()).summarizeActiveByUser(any(Pageable.class));
+        }
+
+        @Test
+        void build_namedInvoiceIds_areLookedUpWithinScope() {
+            when(invoiceRepository.findActiveForChatByIds("u1", Set.of(42L)))
+                    .thenReturn(List.of(invoice(42, LocalDate.of(2025, 1, 5))));
+
+            String context = builder.build("Is invoice #42 paid?", "u1", TODAY);
+
+            assertTrue(context.contains("Invoice #42"));
+            assertTrue(context.contains("MOST RECENT INVOICES"));
+        }
+
+        @Test
+        void build_emptyScope_saysSo() {
+            when(invoiceRepository.summarizeActive("u1")).thenReturn(List.<Object[]>of(new Object[]{0L, 0.0}));
+
+            String context = builder.build("anything", "u1", TODAY);
+
+            assertTrue(context.contains("NO INVOICES FOUND"));
+            verify(invoiceRepository, never()).findActiveForChat(any(), any(), any(), any(Pageable.class));
+        }
+
+        @Test
+        void build_staysWithinCharacterBudget() {
+            ReflectionTestUtils.setField(builder, "maxChars", 1200);
+            List<Invoice> many = new ArrayList<>();
+            IntStream.range(0, 50).forEach(i -> many.add(invoice(1000 + i, TODAY)));
+            when(invoiceRepository.findActiveForChat(any(), any(), any(), any(Pageable.class))).thenReturn(many);
+
+            String context = builder.build(null, "u1", TODAY);
+
+            assertTrue(context.length() < 1200 + 120);
+            assertTrue(context.contains("more invoices match"));
+        }
+
+        @Test
+        void build_foldsOldMonths_andOtherUsers() {
+            ReflectionTestUtils.setField(builder, "maxMonths", 1);
+            ReflectionTestUtils.setField(builder, "maxUsers", 2);
+            when(invoiceRepository.summarizeActiveByUser(any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{"alice", 1L, 10.0},
+                    new Object[]{"bob", 1L, 15.0}));
+
+            String context = builder.build(null, null, TODAY);
+
+            assertTrue(context.contains("Earlier (1 months): 1 invoices, Total: $20.00"));
+            assertTrue(context.contains("bob: 1 invoices"));
+            assertTrue(context.contains("Other users: 1 invoices, Total Amount: $35.00"));
+        }
+    }
+
+    @Nested
+    class QuestionParsingTests {
+
+        @Test
+        void resolveRange_relativePhrases() {
+            assertEquals(new DateRange(LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31), "March 2026"),
+                    InvoiceChatContextBuilder.resolveRange("how much this month", TODAY));
+            assertEquals(LocalDate.of(2025, 1, 1),
+                    InvoiceChatContextBuilder.resolveRange("totals for last year", TODAY).start());
+        }
+
+        @Test
+        void resolveRange_monthWithoutYear_meansLatestPastOccurrence() {
+            assertEquals(LocalDate.of(2025, 11, 1),
+                    InvoiceChatContextBuilder.resolveRange("invoices from november", TODAY).start());
+            assertEquals(LocalDate.of(2026, 1, 1),
+                    InvoiceChatContextBuilder.resolveRange("jan spending", TODAY).start());
+            assertEquals(LocalDate.of(2024, 5, 1),
+                    InvoiceChatContextBuilder.resolveRange("what about may 2024", TODAY).start());
+        }
+
+        @Test
+        void resolveRange_ignoresOrdinaryWords() {
+            assertNull(InvoiceChatContextBuilder.resolveRange("may i see my pending invoices? decide for me", TODAY));
+            assertEquals(LocalDate.of(2023, 1, 1),
+                    InvoiceChatContextBuilder.resolveRange("totals in 2023", TODAY).start());
+        }
+
+        @Test
+        void mentionedInvoiceIds_acceptsHashAndWord() {
+            assertEquals(Set.of(12L, 34L),
+                    InvoiceChatContextBuilder.mentionedInvoiceIds("compare #12 with invoice 34 from 2024"));
+        }
+    }
+}
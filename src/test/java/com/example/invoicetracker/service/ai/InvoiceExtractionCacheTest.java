@@ -0,0 +1,265 @@
+package com.example.invoicetracker.service.ai;
+
+import com.example.invoicetracker.dto.InvoiceExtractionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvoiceExtractionCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvoiceExtractionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new InvoiceExtractionCache(meterRegistry);
+        cache.registerMetrics();
+    }
+
+    private InvoiceExtractionResult success(double amount) {
+        return InvoiceExtractionResult.builder().success(true).totalAmount(amount).build();
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = InvoiceExtractionCache.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(cache, value);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    @Nested
+    class HitMissTests {
+
+        @Test
+        void get_sameHashTwice_callsLoaderOnce() {
+            AtomicInteger calls = new AtomicInteger();
+
+            InvoiceExtractionResult first = cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return success(10.0);
+            });
+            InvoiceExtractionResult second = cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return success(99.0);
+            });
+
+            assertEquals(1, calls.get());
+            assertSame(first, second);
+            assertEquals(1.0, counter("invoice.extraction.cache.hits"));
+            assertEquals(1.0, counter("invoice.extraction.cache.misses"));
+        }
+
+        @Test
+        void get_failedResult_isNotCached() {
+            AtomicInteger calls = new AtomicInteger();
+            InvoiceExtractionResult failure = InvoiceExtractionResult.builder()
+                    .success(false).errorMessage("quota").build();
+
+            cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return failure;
+            });
+            InvoiceExtractionResult retried = cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return success(10.0);
+            });
+
+            assertEquals(2, calls.get());
+            assertTrue(retried.isSuccess());
+        }
+
+        @Test
+        void invalidate_removesEntry() {
+            cache.get("hash1", () -> success(10.0));
+            cache.invalidate("hash1");
+
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Nested
+    class EvictionTests {
+
+        @Test
+        void get_overMaxEntries_evictsLeastRecentlyUsed() throws Exception {
+            setField("maxEntries", 2);
+
+            cache.get("a", () -> success(1.0));
+            cache.get("b", () -> success(2.0));
+            cache.get("a", () -> success(-1.0));
+            cache.get("c", () -> success(3.0));
+
+            AtomicInteger calls = new AtomicInteger();
+            cache.get("a", () -> {
+                calls.incrementAndGet();
+                return success(-1.0);
+            });
+            cache.get("b", () -> {
+                calls.incrementAndGet();
+                return success(2.0);
+            });
+
+            assertEquals(1, calls.get(), "only the least recently used entry should have been evicted");
+            assertEquals(2, cache.size());
+        }
+
+        @Test
+        void get_expiredEntry_reloads() throws Exception {
+            setField("ttlMinutes", 0L);
+            AtomicInteger calls = new AtomicInteger();
+
+            cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return success(1.0);
+            });
+            cache.get("hash1", () -> {
+                calls.incrementAndGet();
+                return success(1.0);
+            });
+
+            assertEquals(2, calls.get());
+            assertTrue(counter("invoice.extraction.cache.evictions") >= 1.0);
+        }
+    }
+
+    @Nested
+    class ConcurrencyTests {
+
+        @Test
+        void get_concurrentSameHash_collapsesIntoOneLoad() throws Exception {
+            AtomicInteger calls = new AtomicInteger();
+            CountDownLatch loaderStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+
+            try {
+                Future<InvoiceExtractionResult> first = executor.submit(() -> cache.get("hash1", () -> {
+                    calls.incrementAndGet();
+                    loaderStarted.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return success(42.0);
+                }));
+
+                assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+                Future<InvoiceExtractionResult> second = executor.submit(() -> cache.get("hash1", () -> {
+                    calls.incrementAndGet();
+                    return success(0.0);
+                }));
+
+                while (counter("invoice.extraction.cache.collapsed") < 1.0) {
+                    Thread.sleep(5);
+                }
+                release.countDown();
+
+                assertEquals(42.0, first.get(5, TimeUnit.SECONDS).getTotalAmount());
+                assertEquals(42.0, second.get(5, TimeUnit.SECONDS).getTotalAmount());
+                assertEquals(1, calls.get());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        void get_interruptedFollower_stopsWaiting() throws Exception {
+            CountDownLatch loaderStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+
+            try {
+                Future<InvoiceExtractionResult> leader = executor.submit(() -> cache.get("hash1", () -> {
+                    loaderStarted.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return success(42.0);
+                }));
+
+                assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+                AtomicBoolean interruptRestored = new AtomicBoolean();
+                CountDownLatch followerDone = new CountDownLatch(1);
+                Future<?> follower = executor.submit(() -> {
+                    try {
+                        cache.get("hash1", () -> success(0.0));
+                    } catch (CancellationException e) {
+                        interruptRestored.set(Thread.currentThread().isInterrupted());
+                    } finally {
+                        followerDone.countDown();
+                    }
+                });
+
+                while (counter("invoice.extraction.cache.collapsed") < 1.0) {
+                    Thread.sleep(5);
+                }
+                // as InvoiceService cancels a timed-out extraction
+                follower.cancel(true);
+
+                assertTrue(followerDone.await(5, TimeUnit.SECONDS));
+                assertTrue(interruptRestored.get());
+                release.countDown();
+                assertEquals(42.0, leader.get(5, TimeUnit.SECONDS).getTotalAmount());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        void get_loaderThrowsError_releasesFollowers() throws Exception {
+            CountDownLatch loaderStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+
+            try {
+                Future<InvoiceExtractionResult> leader = executor.submit(() -> cache.get("hash1", () -> {
+                    loaderStarted.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new StackOverflowError();
+                }));
+
+                assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+                Future<InvoiceExtractionResult> follower = executor.submit(() -> cache.get("hash1", () -> success(0.0)));
+
+                while (counter("invoice.extraction.cache.collapsed") < 1.0) {
+                    Thread.sleep(5);
+                }
+                release.countDown();
+
+                ExecutionException leaderFailure = assertThrows(ExecutionException.class,
+                        () -> leader.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(StackOverflowError.class, leaderFailure.getCause());
+                ExecutionException followerFailure = assertThrows(ExecutionException.class,
+                        () -> follower.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(StackOverflowError.class, followerFailure.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
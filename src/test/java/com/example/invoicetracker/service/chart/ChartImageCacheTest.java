@@ -0,0 +1,100 @@
+package com.example.invoicetracker.service.chart;
+
+import com.example.invoicetracker.service.InvoiceDataVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChartImageCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvoiceDataVersion invoiceDataVersion;
+    private ChartImageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        invoiceDataVersion = new InvoiceDataVersion();
+        cache = new ChartImageCache(invoiceDataVersion, meterRegistry);
+        cache.registerMetrics();
+    }
+
+    private static ChartImage image(int bytes) {
+        return new ChartImage(new byte[bytes], "\"" + bytes + "\"");
+    }
+
+    private void put(ChartType type, String scopeUserId, ChartImage image) {
+        cache.put(type, scopeUserId, cache.version(scopeUserId), image);
+    }
+
+    @Test
+    void get_isPerChartAndScope() {
+        ChartImage mine = image(10);
+        put(ChartType.STATUS_MIX, "u1", mine);
+
+        assertSame(mine, cache.get(ChartType.STATUS_MIX, "u1"));
+        assertNull(cache.get(ChartType.STATUS_MIX, null));
+        assertNull(cache.get(ChartType.MONTHLY_TOTALS, "u1"));
+    }
+
+    @Test
+    void get_afterScopeDataChanged_isStale() {
+        put(ChartType.STATUS_MIX, "u1", image(10));
+        put(ChartType.STATUS_MIX, null, image(20));
+
+        invoiceDataVersion.bump("u2");
+
+        assertNotNull(cache.get(ChartType.STATUS_MIX, "u1"));
+        assertNull(cache.get(ChartType.STATUS_MIX, null));
+        assertEquals(1.0, meterRegistry.counter("invoice.chart.cache.stale").count());
+        assertEquals(10, cache.bytes());
+    }
+
+    @Test
+    void put_renderedBeforeAChange_isNotStored() {
+        long version = cache.version("u1");
+        invoiceDataVersion.bump("u1");
+
+        cache.put(ChartType.STATUS_MIX, "u1", version, image(10));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void put_overByteBudget_evictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 100L);
+        put(ChartType.STATUS_MIX, "u1", image(40));
+        put(ChartType.STATUS_MIX, "u2", image(40));
+        cache.get(ChartType.STATUS_MIX, "u1");
+
+        put(ChartType.STATUS_MIX, "u3", image(40));
+
+        assertNotNull(cache.get(ChartType.STATUS_MIX, "u1"));
+        assertNull(cache.get(ChartType.STATUS_MIX, "u2"));
+        assertEquals(80, cache.bytes());
+        assertEquals(1.0, meterRegistry.counter("invoice.chart.cache.evictions").count());
+    }
+
+    @Test
+    void put_imageLargerThanBudget_isNotStored() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 100L);
+        put(ChartType.STATUS_MIX, "u1", image(40));
+
+        put(ChartType.USER_VOLUME, null, image(101));
+
+        assertNull(cache.get(ChartType.USER_VOLUME, null));
+        assertNotNull(cache.get(ChartType.STATUS_MIX, "u1"));
+    }
+
+    @Test
+    void put_sameKey_replacesAndKeepsByteCount() {
+        put(ChartType.STATUS_MIX, "u1", image(40));
+        put(ChartType.STATUS_MIX, "u1", image(30));
+
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.bytes());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.invoicetracker.service.chart;
+
+import com.example.invoicetracker.dto.InvoiceAnalyticsRequest;
+import com.example.invoicetracker.dto.InvoiceAnalyticsResponse;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.InvoiceStatsTotalRepository;
+import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.InvoiceDataVersion;
+import com.example.invoicetracker.service.stats.InvoiceAnalyticsService;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceChartServiceTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private InvoiceAnalyticsService analyticsService;
+    private InvoiceStatsRollup rollup;
+    private InvoiceStatsDailyRepository dailyRepository;
+    private InvoiceStatsTotalRepository totalRepository;
+    private InvoiceRepository invoiceRepository;
+    private UserRepository userRepository;
+    private InvoiceDataVersion invoiceDataVersion;
+    private ChartImageCache imageCache;
+    private List<Runnable> queued;
+    private InvoiceChartService chartService;
+
+    @BeforeEach
+    void setUp() {
+        analyticsService = mock(InvoiceAnalyticsService.class);
+        rollup = mock(InvoiceStatsRollup.class);
+        dailyRepository = mock(InvoiceStatsDailyRepository.class);
+        totalRepository = mock(InvoiceStatsTotalRepository.class);
+        invoiceRepository = mock(InvoiceRepository.class);
+        userRepository = mock(UserRepository.class);
+        invoiceDataVersion = new InvoiceDataVersion();
+        imageCache = new ChartImageCache(invoiceDataVersion, new SimpleMeterRegistry());
+        imageCache.registerMetrics();
+        queued = new ArrayList<>();
+        chartService = new InvoiceChartService(analyticsService, rollup, dailyRepository, totalRepository,
+                invoiceRepository, userRepository, new InvoiceChartRenderer(), imageCache, queued::add);
+
+        when(rollup.isBuilt()).thenReturn(true);
+        when(userRepository.findByUsername("alice"))
+                .thenReturn(Optional.of(User.builder().userId("u1").username("alice").build()));
+        when(dailyRepository.countByStatus(anyString())).thenReturn(List.<Object[]>of(
+                new Object[]{InvoiceStatus.PENDING, 3L}, new Object[]{InvoiceStatus.APPROVED, 5L}));
+    }
+
+    // Runs the queued renders on the test thread, as the render pool would
+    private void runRenders() {
+        List<Runnable> tasks = new ArrayList<>(queued);
+        queued.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private static void assertPng(ChartImage image) {
+        assertArrayEquals(PNG_SIGNATURE, Arrays.copyOf(image.png(), 4));
+        assertNotNull(image.etag());
+    }
+
+    @Nested
+    class RenderTests {
+
+        @Test
+        void statusMix_forUser_readsOwnRollupScope() {
+            CompletableFuture<ChartImage> chart = chartService.getChart(ChartType.STATUS_MIX, "alice", "USER");
+            runRenders();
+
+            assertPng(chart.join());
+            verify(dailyRepository).countByStatus("u1");
+        }
+
+        @Test
+        void statusMix_beforeRollupIsBuilt_readsInvoices() {
+            when(rollup.isBuilt()).thenReturn(false);
+            when(invoiceRepository.countActiveByStatus(null)).thenReturn(List.of());
+
+            CompletableFuture<ChartImage> chart = chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER");
+            runRenders();
+
+            assertPng(chart.join());
+            verify(dailyRepository, never()).countByStatus(anyString());
+        }
+
+        @Test
+        void monthlyTotals_drawsTheAnalyticsSeries() {
+            when(analyticsService.getAnalytics(any(InvoiceAnalyticsRequest.class), eq("admin"), eq("AUDITOR")))
+                    .thenReturn(InvoiceAnalyticsResponse.builder()
+                            .series(List.of(InvoiceAnalyticsResponse.Bucket.builder()
+                                    .bucketStart(LocalDate.of(2024, 3, 1)).invoiceCount(2).totalAmount(30.0)
+                                    .build()))
+                            .build());
+
+            CompletableFuture<ChartImage> chart = chartService.getChart(ChartType.MONTHLY_TOTALS, "admin", "AUDITOR");
+            runRenders();
+
+            assertPng(chart.join());
+        }
+
+        @Test
+        void userVolume_withNoInvoices_stillRenders() {
+            when(totalRepository.findTopUploaderRows(any(Pageable.class))).thenReturn(List.of());
+
+            CompletableFuture<ChartImage> chart = chartService.getChart(ChartType.USER_VOLUME, "admin", "SUPERUSER");
+            runRenders();
+
+            assertPng(chart.join());
+        }
+
+        @Test
+        void userVolume_forUser_isDenied() {
+            assertThrows(AccessDeniedException.class,
+                    () -> chartService.getChart(ChartType.USER_VOLUME, "alice", "USER"));
+            assertTrue(queued.isEmpty());
+        }
+    }
+
+    @Nested
+    class CacheTests {
+
+        @Test
+        void getChart_concurrentRequests_shareOneRender() {
+            CompletableFuture<ChartImage> first = chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER");
+            CompletableFuture<ChartImage> second = chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER");
+
+            assertSame(first, second);
+            assertEquals(1, queued.size());
+        }
+
+        @Test
+        void getChart_afterRender_isServedFromCacheUntilDataChanges() {
+            chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER");
+            runRenders();
+
+            CompletableFuture<ChartImage> cached = chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER");
+            assertTrue(cached.isDone());
+            assertTrue(queued.isEmpty());
+
+            invoiceDataVersion.bump("u2");
+
+            assertFalse(chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER").isDone());
+            assertEquals(1, queued.size());
+            verify(dailyRepository).countByStatus(InvoiceStatsRollup.ALL_SCOPE);
+        }
+
+        @Test
+        void getChart_whenRenderPoolIsFull_isRejected() {
+            chartService = new InvoiceChartService(analyticsService, rollup, dailyRepository, totalRepository,
+                    invoiceRepository, userRepository, new InvoiceChartRenderer(), imageCache, task -> {
+                        throw new RejectedExecutionException("full");
+                    });
+
+            assertThrows(RejectedExecutionException.class,
+                    () -> chartService.getChart(ChartType.STATUS_MIX, "admin", "SUPERUSER"));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.repository.InvoiceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lookup throughput of {@link ContentHashFilter#mightContain} at the default
+ * sizing (1M expected hashes, 1% false positives), half full. Run with
+ * {@code mvn test-compile} and then this class's main method, or
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ContentHashFilterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentHashFilterBenchmark {
+
+    private static final int EXPECTED_INSERTIONS = 1_000_000;
+    private static final int ADDED = EXPECTED_INSERTIONS / 2;
+    private static final int PROBES = 4096;
+
+    private ContentHashFilter filter;
+    private String[] added;
+    private String[] absent;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+        when(invoiceRepository.findContentHashRows(anyLong(), any(Pageable.class))).thenReturn(List.of());
+
+        Path dir = Files.createTempDirectory("content-hash-benchmark");
+        filter = new ContentHashFilter(invoiceRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "expectedInsertions", (long) EXPECTED_INSERTIONS);
+        ReflectionTestUtils.setField(filter, "filterPath", dir.resolve("content-hash.bloom").toString());
+        filter.init();
+        filter.load();
+
+        SplittableRandom random = new SplittableRandom(42);
+        added = new String[PROBES];
+        for (int i = 0; i < ADDED; i++) {
+            String hash = randomSha256(random);
+            filter.add(hash, (long) i + 1);
+            if (i < PROBES) {
+                added[i] = hash;
+            }
+        }
+        absent = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            absent[i] = randomSha256(random);
+        }
+    }
+
+    private static String randomSha256(SplittableRandom random) {
+        byte[] digest = new byte[32];
+        random.nextBytes(digest);
+        return HexFormat.of().formatHex(digest);
+    }
+
+    // A byte-identical re-upload: every probe bit is set
+    @Benchmark
+    public boolean mightContain_added(Cursor cursor) {
+        return filter.mightContain(added[cursor.next++ & (PROBES - 1)]);
+    }
+
+    // A new upload: the common case, usually settled by the first unset bit
+    @Benchmark
+    public boolean mightContain_absent(Cursor cursor) {
+        return filter.mightContain(absent[cursor.next++ & (PROBES - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ContentHashFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.repository.InvoiceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ContentHashFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InvoiceRepository invoiceRepository;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        when(invoiceRepository.findContentHashRows(anyLong(), any(Pageable.class))).thenReturn(List.of());
+    }
+
+    private ContentHashFilter newFilter(long expectedInsertions) {
+        ContentHashFilter filter = new ContentHashFilter(invoiceRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "expectedInsertions", expectedInsertions);
+        ReflectionTestUtils.setField(filter, "filterPath", tempDir.resolve("content-hash.bloom").toString());
+        ReflectionTestUtils.setField(filter, "loadPageSize", 2);
+        filter.init();
+        return filter;
+    }
+
+    private static String sha256(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void beforeLoad_everyLookupIsAMaybe() {
+        ContentHashFilter filter = newFilter(1000);
+
+        assertTrue(filter.mightContain(sha256("never added")));
+    }
+
+    @Test
+    void addedHashes_areAlwaysFound_andFalsePositivesStayNearConfiguredRate() {
+        ContentHashFilter filter = newFilter(10_000);
+        filter.load();
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(sha256("invoice-" + i), (long) i + 1);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(sha256("invoice-" + i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(sha256("other-" + i))) {
+                falsePositives++;
+            }
+        }
+        // Configured for 1%; allow for sampling noise
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+
+    @Nested
+    class LoadTests {
+        @Test
+        void missingFile_rebuildsFromDatabaseInPages() {
+            when(invoiceRepository.findContentHashRows(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                    new Object[]{1L, sha256("a")},
+                    new Object[]{4L, sha256("b")}));
+            when(invoiceRepository.findContentHashRows(eq(4L), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{9L, sha256("c")}));
+            ContentHashFilter filter = newFilter(1000);
+
+            filter.load();
+
+            assertTrue(filter.mightContain(sha256("a")));
+            assertTrue(filter.mightContain(sha256("c")));
+            assertFalse(filter.mightContain(sha256("d")));
+        }
+
+        @Test
+        void persistedFile_isRestoredAndCaughtUpFromItsFloor() throws Exception {
+            ContentHashFilter first = newFilter(1000);
+            ReflectionTestUtils.setField(first, "gapWindow", 2L);
+            first.load();
+            for (long id = 1; id <= 5; id++) {
+                first.add(sha256("invoice-" + id), id);
+            }
+            first.persistIfDirty();
+            assertTrue(Files.exists(tempDir.resolve("content-hash.bloom")));
+            clearInvocations(invoiceRepository);
+
+            // ids 4 and 5 are already held; only 6 is new
+            when(invoiceRepository.findContentHashRows(eq(3L), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{4L, sha256("invoice-4")},
+                    new Object[]{5L, sha256("invoice-5")}));
+            when(invoiceRepository.findContentHashRows(eq(5L), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{6L, sha256("invoice-6")}));
+            ContentHashFilter restarted = newFilter(1000);
+            ReflectionTestUtils.setField(restarted, "gapWindow", 2L);
+
+            restarted.load();
+
+            assertTrue(restarted.mightContain(sha256("invoice-1")));
+            assertTrue(restarted.mightContain(sha256("invoice-6")));
+            assertEquals(6L, ((AtomicLong) ReflectionTestUtils.getField(restarted, "insertions")).get());
+            verify(invoiceRepository, never()).findContentHashRows(eq(0L), any(Pageable.class));
+        }
+
+        @Test
+        void idCommittedOutOfOrder_isCaughtUpFromTheGap() throws Exception {
+            // 7 was still committing when 8 was added and the filter persisted
+            ContentHashFilter first = newFilter(1000);
+            first.load();
+            first.add(sha256("invoice-8"), 8L);
+            first.writeToDisk();
+
+            when(invoiceRepository.findContentHashRows(eq(0L), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{7L, sha256("invoice-7")},
+                    new Object[]{8L, sha256("invoice-8")}));
+            ContentHashFilter restarted = newFilter(1000);
+
+            restarted.load();
+
+            assertTrue(restarted.mightContain(sha256("invoice-7")));
+        }
+
+        @Test
+        void addAfterCommit_rolledBackSave_isNotAdded() {
+            ContentHashFilter filter = newFilter(1000);
+            filter.load();
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                filter.addAfterCommit(sha256("rolled back"), 3L);
+                assertFalse(filter.mightContain(sha256("rolled back")));
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            assertFalse(filter.mightContain(sha256("rolled back")));
+        }
+
+        @Test
+        void fileSizedDifferently_isIgnoredAndRebuilt() throws Exception {
+            ContentHashFilter first = newFilter(1000);
+            first.load();
+            first.add(sha256("a"), 3L);
+            first.writeToDisk();
+
+            ContentHashFilter resized = newFilter(50_000);
+
+            assertFalse(resized.readFromDisk());
+            resized.load();
+            verify(invoiceRepository, times(2)).findContentHashRows(eq(0L), any(Pageable.class));
+            assertFalse(resized.mightContain(sha256("a")));
+        }
+
+        @Test
+        void corruptFile_isIgnoredAndRebuilt() throws Exception {
+            Files.writeString(tempDir.resolve("content-hash.bloom"), "not a filter");
+            ContentHashFilter filter = newFilter(1000);
+
+            assertFalse(filter.readFromDisk());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.invoicetracker.service.duplicate;
+
+import com.example.invoicetracker.dto.DuplicateCheckResponse;
+import com.example.invoicetracker.model.entity.ExtractedLineItem;
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceProduct;
+import com.example.invoicetracker.model.entity.Product;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.entity.Vendor;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LocalDuplicateIndexTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 14);
+
+    private InvoiceRepository invoiceRepository;
+    private LocalDuplicateIndex index;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        index = new LocalDuplicateIndex(invoiceRepository, new SimpleMeterRegistry());
+        index.registerMetrics();
+    }
+
+    private Invoice invoice(long id, String ownerId, double amount, String originalName, Map<Long, Double> items) {
+        Invoice invoice = Invoice.builder()
+                .invoiceId(id)
+                .uploadedByUser(User.builder().userId(ownerId).build())
+                .originalFileName(originalName)
+                .fileName(originalName)
+                .invoiceDate(DATE)
+                .totalAmount(amount)
+                .invoiceProduct(new ArrayList<>())
+                .build();
+        items.forEach((productId, quantity) -> invoice.getInvoiceProduct().add(InvoiceProduct.builder()
+                .product(Product.builder().productId(productId).build())
+                .quantity(quantity)
+                .build()));
+        return invoice;
+    }
+
+    // A file upload after extraction: vendor and free-text items, no catalog products
+    private Invoice extracted(Long id, String originalName, double amount, long vendorId, String... itemNames) {
+        Invoice invoice = invoice(id == null ? 0L : id, "u1", amount, originalName, Map.of());
+        invoice.setInvoiceId(id);
+        invoice.setVendor(Vendor.builder().vendorId(vendorId).build());
+        List<ExtractedLineItem> items = new ArrayList<>();
+        for (String name : itemNames) {
+            items.add(ExtractedLineItem.builder().name(name).quantity(1.0).build());
+        }
+        invoice.setExtractedItems(items);
+        return invoice;
+    }
+
+    private InvoiceSignature upload(String ownerId, Double amount, String originalName, Map<Long, Double> items) {
+        return InvoiceSignature.forUpload(ownerId, DATE, amount, originalName, null, items);
+    }
+
+    @Nested
+    class SimilarityTests {
+        @Test
+        void sameItemsAmountAndVendor_isNearDuplicate() {
+            index.indexAfterCommit(invoice(1L, "u1", 250.0, "acme_march.pdf", Map.of(1L, 2.0, 2L, 1.5)));
+
+            DuplicateCheckResponse response = index.check(
+                    upload("u1", 250.0, "acme_march.pdf", Map.of(1L, 2.0, 2L, 1.5)));
+
+            assertTrue(response.isDuplicate());
+            assertEquals(LocalDuplicateIndex.SIMILARITY_METHOD, response.getCheckMethod());
+            assertTrue(response.getConfidenceScore().doubleValue() >= 0.95);
+        }
+
+        @Test
+        void differentItemsAndAmount_isNotDuplicate() {
+            index.indexAfterCommit(invoice(1L, "u1", 250.0, "acme_march.pdf", Map.of(1L, 2.0, 2L, 1.5)));
+
+            DuplicateCheckResponse response = index.check(
+                    upload("u1", 900.0, "globex.pdf", Map.of(7L, 10.0)));
+
+            assertFalse(response.isDuplicate());
+            assertTrue(response.getSimilarInvoices().isEmpty());
+        }
+
+        @Test
+        void singleMatchingSignal_isCappedBelowThreshold() {
+            index.indexAfterCommit(invoice(1L, "u1", 250.0, "acme_march.pdf", Map.of()));
+
+            // Only the description can be compared: no items, amount unknown at upload time
+            DuplicateCheckResponse response = index.check(upload("u1", null, "acme_march.pdf", null));
+
+            assertFalse(response.isDuplicate());
+            assertEquals(0, new BigDecimal("0.60").compareTo(response.getConfidenceScore()));
+            assertEquals(1, response.getSimilarInvoices().size());
+        }
+
+        @Test
+        void extractedFileUpload_matchesOnVendorItemsAndAmount() {
+            index.indexAfterCommit(extracted(1L, "scan_0041.pdf", 250.0, 7L, "Paper A4", "Toner"));
+
+            // the file alone is capped below the threshold
+            assertFalse(index.check(upload("u1", null, "scan_0042.pdf", null)).isDuplicate());
+
+            // re-checked after extraction, a re-scan under another name is caught
+            DuplicateCheckResponse response = index.check(
+                    InvoiceSignature.of(extracted(null, "scan_0042.pdf", 250.0, 7L, "paper  a4", "TONER")));
+
+            assertTrue(response.isDuplicate());
+            assertEquals(1L, response.getSimilarInvoices().get(0).getInvoiceId());
+        }
+
+        @Test
+        void extractedSameVendorOtherItemsAndAmount_isNotDuplicate() {
+            index.indexAfterCommit(extracted(1L, "scan_0041.pdf", 250.0, 7L, "Paper A4", "Toner"));
+
+            DuplicateCheckResponse response = index.check(
+                    InvoiceSignature.of(extracted(null, "scan_0042.pdf", 980.0, 7L, "Desk chair")));
+
+            assertFalse(response.isDuplicate());
+        }
+
+        @Test
+        void otherDate_isSimilarButNotDuplicate() {
+            index.indexAfterCommit(invoice(1L, "u1", 250.0, "acme.pdf", Map.of(1L, 2.0)));
+
+            // the same invoice keyed in with a typo in the date, or next month's recurring one
+            InvoiceSignature nextDay = InvoiceSignature.forUpload("u1", DATE.plusDays(1), 250.0,
+                    "acme.pdf", null, Map.of(1L, 2.0));
+
+            DuplicateCheckResponse response = index.check(nextDay);
+            assertFalse(response.isDuplicate());
+            assertEquals(0, new BigDecimal("0.70").compareTo(response.getConfidenceScore()));
+            assertEquals(1L, response.getSimilarInvoices().get(0).getInvoiceId());
+        }
+
+        @Test
+        void neighbouringAmounts_areCandidatesAndDistantOnesAreNot() {
+            for (long id = 1; id <= 40; id++) {
+                // a busy day: only the totals within 10% of the upload are scored
+                index.indexAfterCommit(invoice(id, "u1", 100.0 * id, "acme.pdf", Map.of(1L, 2.0)));
+            }
+
+            DuplicateCheckResponse response = index.check(upload("u1", 1030.0, "acme.pdf", Map.of(1L, 2.0)));
+
+            assertTrue(response.isDuplicate());
+            assertEquals(List.of(10L, 11L, 9L), response.getSimilarInvoices().stream()
+                    .map(DuplicateCheckResponse.SimilarInvoice::getInvoiceId).toList());
+        }
+
+        @Test
+        void amountWithinTolerance_isFoundAcrossBucketBoundaries() {
+            for (double amount = 1.0; amount < 10_000.0; amount *= 1.07) {
+                LocalDuplicateIndex fresh = new LocalDuplicateIndex(invoiceRepository, new SimpleMeterRegistry());
+                fresh.registerMetrics();
+                fresh.indexAfterCommit(invoice(1L, "u1", amount, "acme.pdf", Map.of(1L, 2.0)));
+
+                double higher = amount * 1.09;
+                assertEquals(1, fresh.check(upload("u1", higher, "acme.pdf", Map.of(1L, 2.0)))
+                        .getSimilarInvoices().size(), () -> "missed " + higher);
+            }
+        }
+
+        @Test
+        void unpricedInvoice_isStillFoundByDate() {
+            index.indexAfterCommit(invoice(1L, "u1", 0.0, "acme.pdf", Map.of(1L, 2.0)));
+            Invoice unpriced = invoice(2L, "u1", 0.0, "globex.pdf", Map.of(3L, 1.0));
+            unpriced.setTotalAmount(null);
+            index.indexAfterCommit(unpriced);
+
+            DuplicateCheckResponse response = index.check(upload("u1", 480.0, "globex.pdf", Map.of(3L, 1.0)));
+
+            assertTrue(response.isDuplicate());
+            assertEquals(2L, response.getSimilarInvoices().get(0).getInvoiceId());
+        }
+
+        @Test
+        void updatedInvoice_isReindexedUnderNewDate() {
+            Invoice invoice = invoice(1L, "u1", 250.0, "acme.pdf", Map.of(1L, 2.0));
+            index.indexAfterCommit(invoice);
+
+            invoice.setInvoiceDate(DATE.plusDays(1));
+            index.indexAfterCommit(invoice);
+
+            assertFalse(index.check(upload("u1", 250.0, "acme.pdf", Map.of(1L, 2.0))).isDuplicate());
+            InvoiceSignature nextDay = InvoiceSignature.forUpload("u1", DATE.plusDays(1), 250.0,
+                    "acme.pdf", null, Map.of(1L, 2.0));
+            assertTrue(index.check(nextDay).isDuplicate());
+        }
+    }
+
+    @Test
+    void removedInvoice_noLongerMatches() {
+        index.indexAfterCommit(invoice(1L, "u1", 250.0, "acme.pdf", Map.of(1L, 2.0)));
+
+        index.removeAfterCommit(1L);
+
+        DuplicateCheckResponse response = index.check(upload("u1", 250.0, "acme.pdf", Map.of(1L, 2.0)));
+        assertFalse(response.isDuplicate());
+        assertTrue(response.getSimilarInvoices().isEmpty());
+    }
+
+    @Nested
+    class LoadTests {
+        @Test
+        void load_readsPagesWithLineItemsAndKeepsLiveEntries() {
+            index = new LocalDuplicateIndex(invoiceRepository, new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(index, "loadPageSize", 2);
+            index.registerMetrics();
+
+            // Indexed live while the load is running; the stale row must not replace it
+            index.indexAfterCommit(invoice(2L, "u1", 300.0, "live.pdf", Map.of()));
+
+            when(invoiceRepository.findSignatureRows(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                    new Object[]{1L, "u1", DATE, 100.0, "acme.pdf", "acme.pdf", null},
+                    new Object[]{2L, "u1", DATE, 999.0, "stale.pdf", "stale.pdf", null}));
+            when(invoiceRepository.findSignatureRows(eq(2L), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                    new Object[]{5L, "u2", DATE, 50.0, "other.pdf", "other.pdf", 7L}));
+            when(invoiceRepository.findLineItemRows(List.of(1L, 2L))).thenReturn(
+                    List.<Object[]>of(new Object[]{1L, 3L, 1.0}));
+            when(invoiceRepository.findExtractedItemRows(List.of(5L))).thenReturn(
+                    List.<Object[]>of(new Object[]{5L, "Paper A4", 1.0}));
+
+            index.load();
+
+            verify(invoiceRepository, times(2)).findSignatureRows(anyLong(), any(Pageable.class));
+            assertTrue(index.check(upload("u1", 100.0, "acme.pdf", Map.of(3L, 1.0))).isDuplicate());
+            assertTrue(index.check(upload("u1", 300.0, "live.pdf", null)).getConfidenceScore()
+                    .doubleValue() >= 0.95);
+            assertTrue(index.check(upload("u2", 50.0, "other.pdf", null)).isDuplicate());
+            // vendor and extracted items were loaded: they outweigh an unrelated file name
+            Invoice rescan = extracted(null, "scan_9.pdf", 50.0, 7L, "Paper A4");
+            rescan.setUploadedByUser(User.builder().userId("u2").build());
+            assertTrue(index.check(InvoiceSignature.of(rescan)).isDuplicate());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.invoicetracker.service.external;
+
+import com.example.invoicetracker.service.external.DuplicateCheckCircuitBreaker.CallNotPermittedException;
+import com.example.invoicetracker.service.external.DuplicateCheckCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateCheckCircuitBreakerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DuplicateCheckCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new DuplicateCheckCircuitBreaker(meterRegistry);
+        ReflectionTestUtils.setField(breaker, "windowSize", 4);
+        ReflectionTestUtils.setField(breaker, "minimumCalls", 4);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(breaker, "openDurationMs", 50L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        ReflectionTestUtils.setField(breaker, "maxConcurrentCalls", 1);
+        ReflectionTestUtils.setField(breaker, "bulkheadMaxWaitMs", 0L);
+        breaker.init();
+    }
+
+    private String fail() {
+        throw new ResourceAccessException("Connection refused");
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 2; i++) {
+            breaker.call(() -> "ok");
+            assertThrows(ResourceAccessException.class, () -> breaker.call(this::fail));
+        }
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        tripOpen();
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(1.0, meterRegistry.get("duplicate.check.circuit.state").gauge().value());
+        assertEquals(1.0, meterRegistry.get("duplicate.check.circuit.transitions").tag("to", "OPEN").counter().count());
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        assertThrows(ResourceAccessException.class, () -> breaker.call(this::fail));
+        assertThrows(ResourceAccessException.class, () -> breaker.call(this::fail));
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void clientErrorsDoNotCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpClientErrorException.class, () -> breaker.call(() -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }));
+        }
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void openBreakerRejectsWithoutCallingService() {
+        tripOpen();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(CallNotPermittedException.class, () -> breaker.call(calls::incrementAndGet));
+
+        assertEquals(0, calls.get());
+        assertEquals(1.0, meterRegistry.get("duplicate.check.circuit.rejected").tag("reason", "open").counter().count());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulProbes() throws InterruptedException {
+        tripOpen();
+        Thread.sleep(60);
+
+        breaker.call(() -> "probe");
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.call(() -> "probe");
+
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenReopensOnFailedProbe() throws InterruptedException {
+        tripOpen();
+        Thread.sleep(60);
+
+        assertThrows(ResourceAccessException.class, () -> breaker.call(this::fail));
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertThrows(CallNotPermittedException.class, () -> breaker.call(() -> "too soon"));
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondConcurrencyLimit() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> breaker.call(() -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(CallNotPermittedException.class, () -> breaker.call(() -> "second"));
+            assertEquals(1.0, meterRegistry.get("duplicate.check.circuit.rejected").tag("reason", "bulkhead").counter().count());
+
+            release.countDown();
+            assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+            assertEquals("again", breaker.call(() -> "again"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
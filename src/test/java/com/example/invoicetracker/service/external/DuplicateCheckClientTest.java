@@ -0,0 +1,236 @@
+package com.example.invoicetracker.service.external;
+
+import com.example.invoicetracker.config.RestTemplateConfig;
+import com.example.invoicetracker.dto.DuplicateCheckResponse;
+import com.example.invoicetracker.model.entity.FingerprintOutbox;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateCheckClientTest {
+
+    private HttpServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private DuplicateCheckClient client;
+    private final Map<String, String> reservations = new ConcurrentHashMap<>();
+    private final List<String> committed = new CopyOnWriteArrayList<>();
+    private final AtomicInteger commitRequests = new AtomicInteger();
+    private final List<String> plainChecks = new CopyOnWriteArrayList<>();
+    private final List<String> savedFingerprints = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Stand-in for the check-and-reserve protocol: one reservation per date/amount/vendor
+        server.createContext("/api/duplicate-check/check-and-reserve", exchange -> {
+            Map<String, String> fields = formFields(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8));
+            String key = fields.get("invoiceDate") + "|" + fields.get("totalAmount") + "|" + fields.get("vendor");
+            String existing = reservations.putIfAbsent(key, fields.get("reservationId"));
+            boolean duplicate = existing != null && !existing.equals(fields.get("reservationId"));
+            respondJson(exchange, 200, "{\"duplicate\":" + duplicate + ",\"checkMethod\":\"RESERVATION\"}");
+        });
+        server.createContext("/api/duplicate-check/commit-batch", exchange -> {
+            JsonArray entries = JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8)).getAsJsonArray();
+            entries.forEach(entry -> committed.add(entry.getAsJsonObject().get("reservationId").getAsString()));
+            commitRequests.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        // The endpoints a service without reservations has
+        server.createContext("/api/duplicate-check/check", exchange -> {
+            Map<String, String> fields = formFields(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8));
+            plainChecks.add(fields.get("invoiceDate") + "|" + fields.get("reservationId"));
+            respondJson(exchange, 200, "{\"duplicate\":false,\"checkMethod\":\"SIMILARITY\"}");
+        });
+        server.createContext("/api/duplicate-check/save-fingerprint", exchange -> {
+            savedFingerprints.add(JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8)).getAsJsonObject().get("invoiceId").getAsString());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/down/api/duplicate-check/commit-batch", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respondJson(exchange, 503, "{}");
+        });
+        server.createContext("/slow/api/duplicate-check/check-and-reserve", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "duplicateCheckTimeoutMs", 300L);
+        ReflectionTestUtils.setField(config, "duplicateCheckConnectTimeoutMs", 300L);
+        ReflectionTestUtils.setField(config, "duplicateCheckMaxTotal", 4);
+        ReflectionTestUtils.setField(config, "duplicateCheckMaxPerRoute", 2);
+        ReflectionTestUtils.setField(config, "duplicateCheckAcquireTimeoutMs", 300L);
+        ReflectionTestUtils.setField(config, "duplicateCheckIdleEvictionMs", 30000L);
+        ReflectionTestUtils.setField(config, "duplicateCheckTimeToLiveMs", 300000L);
+
+        meterRegistry = new SimpleMeterRegistry();
+        connectionManager = config.duplicateCheckConnectionManager(meterRegistry);
+        httpClient = config.duplicateCheckHttpClient(connectionManager);
+        DuplicateCheckCircuitBreaker circuitBreaker = new DuplicateCheckCircuitBreaker(meterRegistry);
+        circuitBreaker.init();
+        client = new DuplicateCheckClient(config.duplicateCheckRestTemplate(httpClient), circuitBreaker);
+        ReflectionTestUtils.setField(client, "reserveEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private static void respondJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> formFields(String multipartBody) {
+        Map<String, String> fields = new HashMap<>();
+        Matcher matcher = Pattern.compile("name=\"(\\w+)\"\r\n(?:[^\r\n]+\r\n)*\r\n([^\r]*)")
+                .matcher(multipartBody);
+        while (matcher.find()) {
+            fields.put(matcher.group(1), matcher.group(2));
+        }
+        return fields;
+    }
+
+    private DuplicateCheckResponse reserve(String reservationId) {
+        return client.checkAndReserve(null, LocalDate.of(2025, 1, 1), BigDecimal.TEN,
+                "Vendor", "alice", "USER", reservationId, "invoice.pdf");
+    }
+
+    private FingerprintOutbox outboxEntry(long invoiceId, String reservationId) {
+        return FingerprintOutbox.builder()
+                .outboxId(invoiceId)
+                .invoiceId(invoiceId)
+                .reservationId(reservationId)
+                .invoiceDate(LocalDate.of(2025, 1, 1))
+                .totalAmount(BigDecimal.TEN)
+                .username("alice")
+                .role("USER")
+                .build();
+    }
+
+    private void pointAt(String path) {
+        ReflectionTestUtils.setField(client, "duplicateCheckServiceUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void checkAndReserve_reusesPooledConnection() {
+        pointAt("");
+
+        assertFalse(reserve("r-1").isDuplicate());
+        assertTrue(reserve("r-2").isDuplicate());
+
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    void checkAndReserve_slowServiceTimesOutWithDefaultResponse() {
+        pointAt("/slow");
+
+        long start = System.nanoTime();
+        DuplicateCheckResponse response = reserve("r-1");
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertFalse(response.isDuplicate());
+        assertEquals("SERVICE_UNAVAILABLE", response.getCheckMethod());
+        assertTrue(elapsedMs < 1500, "call should be bounded by the response timeout, took " + elapsedMs + "ms");
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    void poolMetrics_areRegistered() {
+        assertNotNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "duplicate-check").gauge());
+        assertEquals(4.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max").gauge().value());
+    }
+
+    @Test
+    void checkAndReserve_secondUploadOfSameInvoiceIsDuplicate() {
+        pointAt("");
+
+        assertFalse(reserve("r-1").isDuplicate());
+        assertTrue(reserve("r-2").isDuplicate());
+        assertEquals("r-1", reservations.values().iterator().next());
+    }
+
+    @Test
+    void commitFingerprints_sendsWholeBatchInOneRequest() {
+        pointAt("");
+
+        client.commitFingerprints(List.of(outboxEntry(1L, "r-1"), outboxEntry(2L, "r-2"), outboxEntry(3L, "r-3")));
+
+        assertEquals(1, commitRequests.get());
+        assertEquals(List.of("r-1", "r-2", "r-3"), committed);
+    }
+
+    @Test
+    void withoutReserveEndpoints_usesPlainCheckAndSavesEachFingerprint() {
+        pointAt("");
+        ReflectionTestUtils.setField(client, "reserveEnabled", false);
+
+        DuplicateCheckResponse response = reserve("r-1");
+        client.releaseReservation("r-1");
+        client.commitFingerprints(List.of(outboxEntry(1L, "r-1"), outboxEntry(2L, "r-2")));
+
+        assertEquals("SIMILARITY", response.getCheckMethod());
+        assertEquals(List.of("2025-01-01|null"), plainChecks);
+        assertTrue(reservations.isEmpty());
+        assertEquals(0, commitRequests.get());
+        assertEquals(List.of("1", "2"), savedFingerprints);
+    }
+
+    @Test
+    void commitFingerprints_serverErrorIsThrownForRetry() {
+        pointAt("/down");
+
+        assertThrows(HttpServerErrorException.class,
+                () -> client.commitFingerprints(List.of(outboxEntry(1L, "r-1"))));
+    }
+}
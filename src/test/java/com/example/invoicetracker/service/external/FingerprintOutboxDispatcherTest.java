@@ -0,0 +1,120 @@
+package com.example.invoicetracker.service.external;
+
+import com.example.invoicetracker.model.entity.FingerprintOutbox;
+import com.example.invoicetracker.repository.FingerprintOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FingerprintOutboxDispatcherTest {
+
+    private FingerprintOutboxRepository outboxRepository;
+    private DuplicateCheckClient duplicateCheckClient;
+    private SimpleMeterRegistry meterRegistry;
+    private FingerprintOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = mock(FingerprintOutboxRepository.class);
+        duplicateCheckClient = mock(DuplicateCheckClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new FingerprintOutboxDispatcher(outboxRepository, duplicateCheckClient, meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        dispatcher.registerMetrics();
+    }
+
+    private FingerprintOutbox entry(long id) {
+        return FingerprintOutbox.builder().outboxId(id).invoiceId(id).reservationId("r-" + id)
+                .username("alice").role("USER").build();
+    }
+
+    @Test
+    void poll_duplicateCheckDisabled_leavesOutboxAlone() {
+        ReflectionTestUtils.setField(dispatcher, "duplicateCheckEnabled", false);
+
+        dispatcher.poll();
+
+        verifyNoInteractions(outboxRepository, duplicateCheckClient);
+    }
+
+    @Test
+    void dispatchBatch_nothingDue_doesNotCallService() {
+        when(outboxRepository.findDueIds(any(), any())).thenReturn(List.of());
+
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        verifyNoInteractions(duplicateCheckClient);
+    }
+
+    @Test
+    void dispatchBatch_commitsClaimedRowsInOneCallAndDeletesThem() {
+        List<FingerprintOutbox> batch = List.of(entry(1), entry(2));
+        when(outboxRepository.findDueIds(any(), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(outboxRepository.claim(eq(List.of(1L, 2L)), anyString(), any(), any())).thenReturn(2);
+        when(outboxRepository.findByClaimTokenOrderByOutboxIdAsc(anyString())).thenReturn(batch);
+
+        assertEquals(2, dispatcher.dispatchBatch());
+
+        verify(duplicateCheckClient).commitFingerprints(batch);
+        verify(outboxRepository).deleteAllInBatch(batch);
+        assertEquals(2.0, meterRegistry.get("duplicate.check.outbox.committed").counter().count());
+    }
+
+    @Test
+    void dispatchBatch_rowsClaimedElsewhere_skips() {
+        when(outboxRepository.findDueIds(any(), any(Pageable.class))).thenReturn(List.of(1L));
+        when(outboxRepository.claim(any(), anyString(), any(), any())).thenReturn(0);
+
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        verifyNoInteractions(duplicateCheckClient);
+    }
+
+    @Test
+    void dispatchBatch_serviceFailure_keepsRowsWithBackoff() {
+        FingerprintOutbox first = entry(1);
+        first.setClaimToken("token");
+        List<FingerprintOutbox> batch = List.of(first);
+        when(outboxRepository.findDueIds(any(), any(Pageable.class))).thenReturn(List.of(1L));
+        when(outboxRepository.claim(any(), anyString(), any(), any())).thenReturn(1);
+        when(outboxRepository.findByClaimTokenOrderByOutboxIdAsc(anyString())).thenReturn(batch);
+        doThrow(new ResourceAccessException("Connection refused"))
+                .when(duplicateCheckClient).commitFingerprints(batch);
+
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        verify(outboxRepository, never()).deleteAllInBatch(any());
+        verify(outboxRepository).saveAll(batch);
+        assertEquals(1, first.getAttempts());
+        assertNull(first.getClaimToken());
+        assertEquals("Connection refused", first.getLastError());
+        assertTrue(first.getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void poll_drainsWhileBatchesAreFull() {
+        when(outboxRepository.findDueIds(any(), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L))
+                .thenReturn(List.of());
+        when(outboxRepository.claim(any(), anyString(), any(), any())).thenReturn(2, 1);
+        when(outboxRepository.findByClaimTokenOrderByOutboxIdAsc(anyString()))
+                .thenReturn(List.of(entry(1), entry(2)))
+                .thenReturn(List.of(entry(3)));
+
+        dispatcher.poll();
+
+        verify(duplicateCheckClient, times(2)).commitFingerprints(any());
+        verify(outboxRepository, times(2)).findDueIds(any(), any(Pageable.class));
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.invoicetracker.service.ingestion;
+
+import com.example.invoicetracker.config.FileValidator;
+import com.example.invoicetracker.dto.IngestionJobResponse;
+import com.example.invoicetracker.dto.InvoiceRequest;
+import com.example.invoicetracker.dto.InvoiceResponse;
+import com.example.invoicetracker.exception.DuplicateInvoiceException;
+import com.example.invoicetracker.exception.ResourceNotFoundException;
+import com.example.invoicetracker.model.entity.IngestionJob;
+import com.example.invoicetracker.model.enums.IngestionJobStatus;
+import com.example.invoicetracker.repository.IngestionJobRepository;
+import com.example.invoicetracker.service.FileStorageService;
+import com.example.invoicetracker.service.InvoiceService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IngestionJobServiceTest {
+
+    private IngestionJobRepository jobRepository;
+    private InvoiceService invoiceService;
+    private FileStorageService fileStorageService;
+    private FileValidator fileValidator;
+    private PlatformTransactionManager transactionManager;
+    private IngestionJobService ingestionJobService;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(IngestionJobRepository.class);
+        invoiceService = mock(InvoiceService.class);
+        fileStorageService = mock(FileStorageService.class);
+        fileValidator = mock(FileValidator.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        ingestionJobService = new IngestionJobService(jobRepository, invoiceService, fileStorageService, fileValidator,
+                new TransactionTemplate(transactionManager));
+
+        when(jobRepository.save(any(IngestionJob.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private IngestionJob claimedJob(int attempts) {
+        return IngestionJob.builder()
+                .jobId(7L)
+                .status(IngestionJobStatus.PROCESSING)
+                .username("john")
+                .role("USER")
+                .stagedFileName("staged.pdf")
+                .originalFileName("invoice.pdf")
+                .contentType("application/pdf")
+                .invoiceDate(LocalDate.of(2024, 1, 15))
+                .productQuantities(Map.of("3", 2.0))
+                .attempts(attempts)
+                .maxAttempts(3)
+                .lockedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Nested
+    class SubmitTests {
+
+        @Test
+        void submit_validFile_storesAndQueuesJob() throws Exception {
+            MockMultipartFile file = new MockMultipartFile("file", "invoice.pdf", "application/pdf", "data".getBytes());
+            InvoiceRequest request = new InvoiceRequest();
+            request.setFile(file);
+            request.setInvoiceDate(LocalDate.of(2024, 1, 15));
+            request.setProductQuantities(Map.of(3L, 2.0));
+            when(fileStorageService.storeFile(file)).thenReturn("staged.pdf");
+
+            IngestionJobResponse response = ingestionJobService.submit(request, "john", "USER");
+
+            ArgumentCaptor<IngestionJob> captor = ArgumentCaptor.forClass(IngestionJob.class);
+            verify(jobRepository).save(captor.capture());
+            IngestionJob saved = captor.getValue();
+            assertEquals(IngestionJobStatus.QUEUED, saved.getStatus());
+            assertEquals("staged.pdf", saved.getStagedFileName());
+            assertEquals(Map.of("3", 2.0), saved.getProductQuantities());
+            assertEquals(IngestionJobStatus.QUEUED, response.getStatus());
+            verify(fileValidator).validateFile(file);
+            verifyNoInteractions(invoiceService);
+        }
+    }
+
+    @Nested
+    class ProcessTests {
+
+        @Test
+        void process_success_completesJobAndKeepsStagedFileForInvoice() throws Exception {
+            IngestionJob job = claimedJob(1);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(fileStorageService.getContentHash("staged.pdf")).thenReturn("abc123");
+            InvoiceResponse invoice = InvoiceResponse.builder().invoiceId(42L).build();
+            when(invoiceService.createInvoice(any(InvoiceRequest.class), eq("john"), eq("USER"))).thenReturn(invoice);
+
+            ingestionJobService.process(7L);
+
+            ArgumentCaptor<InvoiceRequest> captor = ArgumentCaptor.forClass(InvoiceRequest.class);
+            verify(invoiceService).createInvoice(captor.capture(), eq("john"), eq("USER"));
+            assertEquals(Map.of(3L, 2.0), captor.getValue().getProductQuantities());
+            assertEquals("invoice.pdf", captor.getValue().getFile().getOriginalFilename());
+            // ingest keeps a file that already carries its stored name and hash
+            StoredMultipartFile file = (StoredMultipartFile) captor.getValue().getFile();
+            assertEquals("staged.pdf", file.getStoredFileName());
+            assertEquals("abc123", file.getContentHash());
+
+            verify(jobRepository).markCompleted(eq(7L), eq(42L), any(LocalDateTime.class));
+            verify(transactionManager).commit(any());
+            verify(jobRepository, never()).save(any());
+            verify(fileStorageService, never()).deleteFile(any());
+        }
+
+        @Test
+        void process_linkingJobFails_rollsBackInvoiceAndRetries() throws Exception {
+            IngestionJob job = claimedJob(1);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(invoiceService.createInvoice(any(InvoiceRequest.class), eq("john"), eq("USER")))
+                    .thenReturn(InvoiceResponse.builder().invoiceId(42L).build());
+            when(jobRepository.markCompleted(eq(7L), eq(42L), any(LocalDateTime.class)))
+                    .thenThrow(new RuntimeException("lock wait timeout"));
+
+            ingestionJobService.process(7L);
+
+            // the invoice rolled back with the link, so the retry creates it once
+            verify(transactionManager).rollback(any());
+            verify(transactionManager, never()).commit(any());
+            assertEquals(IngestionJobStatus.QUEUED, job.getStatus());
+            assertNull(job.getInvoiceId());
+            verify(fileStorageService, never()).deleteFile(any());
+        }
+
+        @Test
+        void process_transientFailure_requeuesWithBackoff() throws Exception {
+            IngestionJob job = claimedJob(1);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(invoiceService.createInvoice(any(), any(), any())).thenThrow(new RuntimeException("timeout"));
+
+            LocalDateTime before = LocalDateTime.now();
+            ingestionJobService.process(7L);
+
+            assertEquals(IngestionJobStatus.QUEUED, job.getStatus());
+            assertEquals("timeout", job.getErrorMessage());
+            assertTrue(job.getNextAttemptAt().isAfter(before));
+            verify(fileStorageService, never()).deleteFile(any());
+        }
+
+        @Test
+        void process_attemptsExhausted_failsJob() throws Exception {
+            IngestionJob job = claimedJob(3);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(invoiceService.createInvoice(any(), any(), any())).thenThrow(new RuntimeException("timeout"));
+
+            ingestionJobService.process(7L);
+
+            assertEquals(IngestionJobStatus.FAILED, job.getStatus());
+            verify(fileStorageService).deleteFile("staged.pdf");
+        }
+
+        @Test
+        void process_duplicate_failsWithoutRetry() throws Exception {
+            IngestionJob job = claimedJob(1);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(invoiceService.createInvoice(any(), any(), any()))
+                    .thenThrow(new DuplicateInvoiceException("Duplicate invoice"));
+
+            ingestionJobService.process(7L);
+
+            assertEquals(IngestionJobStatus.FAILED, job.getStatus());
+            assertEquals("Duplicate invoice", job.getErrorMessage());
+        }
+
+        @Test
+        void process_invalidInput_failsWithoutRetry() throws Exception {
+            IngestionJob job = claimedJob(1);
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+            when(fileStorageService.getFilePath("staged.pdf")).thenReturn(Path.of("staged.pdf"));
+            when(invoiceService.createInvoice(any(), any(), any()))
+                    .thenThrow(new IllegalArgumentException("Only JPEG, PNG, GIF images and PDF files are allowed"));
+
+            ingestionJobService.process(7L);
+
+            assertEquals(IngestionJobStatus.FAILED, job.getStatus());
+            assertEquals(1, job.getAttempts());
+            verify(fileStorageService).deleteFile("staged.pdf");
+        }
+    }
+
+    @Nested
+    class GetJobTests {
+
+        @Test
+        void getJob_otherUsersJob_throwsAccessDenied() {
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(claimedJob(1)));
+
+            assertThrows(AccessDeniedException.class, () -> ingestionJobService.getJob(7L, "jane", "USER"));
+        }
+
+        @Test
+        void getJob_auditor_canReadAnyJob() {
+            when(jobRepository.findById(7L)).thenReturn(Optional.of(claimedJob(1)));
+
+            IngestionJobResponse response = ingestionJobService.getJob(7L, "auditor", "AUDITOR");
+
+            assertEquals(7L, response.getJobId());
+        }
+
+        @Test
+        void getJob_missing_throwsNotFound() {
+            when(jobRepository.findById(7L)).thenReturn(Optional.empty());
+
+            assertThrows(ResourceNotFoundException.class, () -> ingestionJobService.getJob(7L, "john", "USER"));
+        }
+    }
+}
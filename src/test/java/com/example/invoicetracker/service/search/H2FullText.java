@@ -0,0 +1,32 @@
+package com.example.invoicetracker.service.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The H2 stand-in for MySQL's MATCH ... AGAINST in boolean mode, registered
+ * by tests as MATCH_WORDS. Handles the queries InvoiceSearchIndex.booleanQuery
+ * builds: every "+word*" must start a word of the document.
+ */
+public final class H2FullText {
+
+    public static final String CREATE_ALIAS =
+            "CREATE ALIAS IF NOT EXISTS MATCH_WORDS FOR '" + H2FullText.class.getName() + ".matchWords'";
+
+    private H2FullText() {
+    }
+
+    public static double matchWords(String text, String query) {
+        if (text == null || query == null) {
+            return 0;
+        }
+        List<String> words = Arrays.asList(text.split(" "));
+        for (String term : query.split(" ")) {
+            String prefix = term.substring(1, term.length() - 1);
+            if (words.stream().noneMatch(word -> word.startsWith(prefix))) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+}
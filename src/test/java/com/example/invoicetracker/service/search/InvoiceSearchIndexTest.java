@@ -0,0 +1,181 @@
+package com.example.invoicetracker.service.search;
+
+import com.example.invoicetracker.model.entity.ExtractedLineItem;
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceProduct;
+import com.example.invoicetracker.model.entity.Product;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.entity.Vendor;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceSearchDocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceSearchIndexTest {
+
+    private InvoiceRepository invoiceRepository;
+    private InvoiceSearchDocumentRepository documentRepository;
+    private TransactionTemplate transactionTemplate;
+    private InvoiceSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        documentRepository = mock(InvoiceSearchDocumentRepository.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        index = new InvoiceSearchIndex(invoiceRepository, documentRepository, mock(JdbcTemplate.class),
+                transactionTemplate);
+    }
+
+    private Invoice invoice(long id, String username, String fileName, String... products) {
+        Invoice invoice = Invoice.builder()
+                .invoiceId(id)
+                .uploadedByUser(User.builder().userId("u1").username(username).build())
+                .fileName(fileName)
+                .invoiceProduct(new ArrayList<>())
+                .build();
+        for (String product : products) {
+            invoice.getInvoiceProduct().add(InvoiceProduct.builder()
+                    .product(Product.builder().productName(product).build())
+                    .build());
+        }
+        return invoice;
+    }
+
+    @Nested
+    class QueryTests {
+
+        @Test
+        void booleanQuery_requiresAWordStartingWithEachWord() {
+            assertEquals("+office* +lap*", InvoiceSearchIndex.booleanQuery("Office LAP"));
+            assertEquals("+inv* +2024* +03*", InvoiceSearchIndex.booleanQuery("INV-2024_03"));
+            assertEquals("+cafe*", InvoiceSearchIndex.booleanQuery("Café"));
+        }
+
+        @Test
+        void booleanQuery_dropsOperatorsAndRepeats() {
+            // boolean mode operators are not letters or digits, so they never reach MySQL
+            assertEquals("+acme* +ltd*", InvoiceSearchIndex.booleanQuery("\"acme\" -ltd* acme"));
+        }
+
+        @Test
+        void booleanQuery_withoutWords_isNull() {
+            assertNull(InvoiceSearchIndex.booleanQuery(null));
+            assertNull(InvoiceSearchIndex.booleanQuery("  -- "));
+        }
+    }
+
+    @Nested
+    class DocumentTests {
+
+        @Test
+        void index_writesEveryNameAsWords() {
+            Invoice invoice = invoice(4L, "bob", "Scan_01.pdf", "Laptop Stand");
+            invoice.setOriginalFileName("March Office.pdf");
+            invoice.setVendor(Vendor.builder().name("Globex Corporation").normalizedName("globex").build());
+            invoice.setExtractedItems(List.of(ExtractedLineItem.builder().name("Espresso Beans").build()));
+
+            index.index(invoice);
+
+            verify(documentRepository).upsert(4L,
+                    "scan 01 pdf march office bob globex corporation laptop stand espresso beans");
+        }
+
+        @Test
+        void index_withoutVendorOrItems_writesFileAndUserNames() {
+            Invoice invoice = invoice(5L, "alice", "april.pdf");
+            invoice.setInvoiceProduct(null);
+
+            index.index(invoice);
+
+            verify(documentRepository).upsert(5L, "april pdf alice");
+        }
+
+        @Test
+        void reindexProduct_rewritesItsInvoicesInPages() {
+            ReflectionTestUtils.setField(index, "backfillPageSize", 2);
+            when(invoiceRepository.findInvoiceIdsByProductId(7L)).thenReturn(List.of(1L, 2L, 3L));
+            when(invoiceRepository.findSearchDocumentRows(List.of(1L, 2L))).thenReturn(List.of(
+                    new Object[] { 1L, "jan.pdf", "January.pdf", "alice", "Northwind Traders" },
+                    new Object[] { 2L, "feb.pdf", null, "alice", null }));
+            when(invoiceRepository.findSearchDocumentRows(List.of(3L))).thenReturn(
+                    List.<Object[]>of(new Object[] { 3L, "mar.pdf", null, "bob", null }));
+            when(invoiceRepository.findProductNameRows(anyList())).thenReturn(List.of());
+            when(invoiceRepository.findProductNameRows(List.of(1L, 2L))).thenReturn(
+                    List.<Object[]>of(new Object[] { 2L, "Printer Paper", "Office" }));
+            when(invoiceRepository.findExtractedItemNameRows(anyList())).thenReturn(List.of());
+            when(invoiceRepository.findExtractedItemNameRows(List.of(1L, 2L))).thenReturn(
+                    List.<Object[]>of(new Object[] { 1L, "Toner Cartridge" }));
+
+            index.reindexProduct(7L);
+
+            verify(documentRepository).upsert(1L, "jan pdf january alice northwind traders toner cartridge");
+            verify(documentRepository).upsert(2L, "feb pdf alice printer paper");
+            verify(documentRepository).upsert(3L, "mar pdf bob");
+        }
+
+        @Test
+        void reindexUploader_withoutInvoices_writesNothing() {
+            when(invoiceRepository.findInvoiceIdsByUploaderId("u1")).thenReturn(List.of());
+
+            index.reindexUploader("u1");
+
+            verifyNoInteractions(documentRepository);
+            verify(invoiceRepository, never()).findSearchDocumentRows(anyList());
+        }
+    }
+
+    @Nested
+    class BackfillTests {
+
+        @SuppressWarnings("unchecked")
+        @BeforeEach
+        void runTransactionsInline() {
+            doAnswer(invocation -> {
+                invocation.getArgument(0, Consumer.class).accept(null);
+                return null;
+            }).when(transactionTemplate).executeWithoutResult(any());
+        }
+
+        @Test
+        void backfill_writesUndocumentedInvoicesAfterTheLastPage() {
+            when(documentRepository.findUndocumentedInvoiceIds(eq(0L), any(Pageable.class)))
+                    .thenReturn(List.of(3L, 8L));
+            when(documentRepository.findUndocumentedInvoiceIds(eq(8L), any(Pageable.class)))
+                    .thenReturn(List.of());
+            when(invoiceRepository.findSearchDocumentRows(List.of(3L, 8L))).thenReturn(List.of(
+                    new Object[] { 3L, "a.pdf", null, "alice", null },
+                    new Object[] { 8L, "b.pdf", null, "bob", null }));
+
+            index.backfill();
+
+            verify(documentRepository).upsert(3L, "a pdf alice");
+            verify(documentRepository).upsert(8L, "b pdf bob");
+            verify(transactionTemplate).executeWithoutResult(any());
+        }
+
+        @Test
+        void backfill_everyInvoiceDocumented_doesNothing() {
+            when(documentRepository.findUndocumentedInvoiceIds(eq(0L), any(Pageable.class)))
+                    .thenReturn(List.of());
+
+            index.backfill();
+
+            verify(transactionTemplate, never()).executeWithoutResult(any());
+            verify(documentRepository, never()).upsert(anyLong(), anyString());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache.Filter;
+import com.example.invoicetracker.service.stats.AnalyticsBucketCache.Totals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsBucketCacheTest {
+
+    private static final Filter ALL = new Filter(null, null, null, null);
+    private static final LocalDate MARCH = LocalDate.of(2024, 3, 1);
+
+    private AnalyticsBucketCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AnalyticsBucketCache(new SimpleMeterRegistry());
+        cache.registerMetrics();
+    }
+
+    @Test
+    void put_afterEviction_isNotStored() {
+        long generation = cache.generation(AnalyticsGranularity.MONTH, MARCH);
+        // an invoice dated in March commits while the total is being computed
+        cache.evictAfterCommit(List.of(LocalDate.of(2024, 3, 20)));
+
+        cache.put(ALL, AnalyticsGranularity.MONTH, MARCH, new Totals(1, 5.0), generation);
+
+        assertNull(cache.get(ALL, AnalyticsGranularity.MONTH, MARCH));
+    }
+
+    @Test
+    void evict_dropsDayWeekAndMonthOfTheDate_forEveryFilter() {
+        Filter pending = new Filter("u1", InvoiceStatus.PENDING, null, null);
+        LocalDate day = LocalDate.of(2024, 3, 20);
+        LocalDate week = LocalDate.of(2024, 3, 18);
+        put(ALL, AnalyticsGranularity.DAY, day);
+        put(ALL, AnalyticsGranularity.WEEK, week);
+        put(pending, AnalyticsGranularity.MONTH, MARCH);
+        put(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 19));
+
+        cache.evictAfterCommit(List.of(day));
+
+        assertNull(cache.get(ALL, AnalyticsGranularity.DAY, day));
+        assertNull(cache.get(ALL, AnalyticsGranularity.WEEK, week));
+        assertNull(cache.get(pending, AnalyticsGranularity.MONTH, MARCH));
+        assertNotNull(cache.get(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 19)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void put_whenFull_startsOver() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        put(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 1));
+        put(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 2));
+
+        put(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 3));
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(ALL, AnalyticsGranularity.DAY, LocalDate.of(2024, 3, 3)));
+    }
+
+    @Test
+    void get_afterTtl_misses() {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", -1L);
+        put(ALL, AnalyticsGranularity.MONTH, MARCH);
+
+        assertNull(cache.get(ALL, AnalyticsGranularity.MONTH, MARCH));
+    }
+
+    private void put(Filter filter, AnalyticsGranularity granularity, LocalDate start) {
+        cache.put(filter, granularity, start, new Totals(1, 5.0), cache.generation(granularity, start));
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.dto.InvoiceAnalyticsRequest;
+import com.example.invoicetracker.dto.InvoiceAnalyticsResponse;
+import com.example.invoicetracker.model.entity.*;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.InvoiceStatsTotalRepository;
+import com.example.invoicetracker.repository.UserRepository;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup.Contribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs analytics against a real schema: rollup and invoice-table sources,
+ * bucketing, and which buckets are served from the cache.
+ * Not wrapped in a test transaction: cache eviction happens on commit, so
+ * the data is committed and deleted again after each test.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:analytics;MODE=MySQL;NON_KEYWORDS=USER,VALUE")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InvoiceAnalyticsServiceTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceStatsTotalRepository totalRepository;
+
+    @Autowired
+    private InvoiceStatsDailyRepository dailyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvoiceStatsRollup rollup;
+    private InvoiceAnalyticsService analyticsService;
+    private TransactionTemplate transaction;
+    private Category office;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        AnalyticsBucketCache bucketCache = new AnalyticsBucketCache(meterRegistry);
+        bucketCache.registerMetrics();
+        transaction = new TransactionTemplate(transactionManager);
+        rollup = new InvoiceStatsRollup(totalRepository, dailyRepository, invoiceRepository, bucketCache,
+                meterRegistry, transaction);
+        rollup.registerMetrics();
+        analyticsService = new InvoiceAnalyticsService(dailyRepository, invoiceRepository, userRepository, rollup,
+                bucketCache);
+
+        transaction.executeWithoutResult(status -> persistInvoices());
+        transaction.executeWithoutResult(status -> rollup.rebuild());
+    }
+
+    @AfterEach
+    void deleteAll() {
+        transaction.executeWithoutResult(status -> {
+            for (String entity : List.of("InvoiceStatsDaily", "InvoiceStatsTotal",
+                    "InvoiceProduct", "Invoice", "Product", "Category", "User")) {
+                entityManager.createQuery("DELETE FROM " + entity).executeUpdate();
+            }
+        });
+    }
+
+    private void persistInvoices() {
+        User alice = persistUser("u1", "alice");
+        User bob = persistUser("u2", "bob");
+        office = Category.builder().categoryCode("OFF").categoryName("Office").isActive(true).build();
+        entityManager.persist(office);
+        Product paper = Product.builder().productCode("P1").productName("Paper").category(office)
+                .unitPrice(5.0).isActive(true).build();
+        entityManager.persist(paper);
+
+        Invoice withPaper = persistInvoice(alice, LocalDate.of(2024, 1, 10), InvoiceStatus.APPROVED, 100.0);
+        entityManager.persist(InvoiceProduct.builder().invoice(withPaper).product(paper).quantity(1.0)
+                .unitPrice(BigDecimal.TEN).subtotal(BigDecimal.TEN).build());
+        persistInvoice(alice, LocalDate.of(2024, 1, 20), InvoiceStatus.PENDING, 50.0);
+        persistInvoice(bob, LocalDate.of(2024, 3, 5), InvoiceStatus.APPROVED, 30.0);
+    }
+
+    @Test
+    void getAnalytics_monthly_includesEmptyBuckets() {
+        InvoiceAnalyticsResponse response = analyticsService.getAnalytics(
+                request("MONTH", LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 31)), "admin", "SUPERUSER");
+
+        assertEquals(LocalDate.of(2024, 1, 1), response.getStartDate());
+        assertEquals(LocalDate.of(2024, 3, 31), response.getEndDate());
+        assertSeries(response, new long[] { 2, 0, 1 }, new double[] { 150.0, 0.0, 30.0 });
+    }
+
+    @Test
+    void getAnalytics_weekly_startsOnMonday() {
+        InvoiceAnalyticsResponse response = analyticsService.getAnalytics(
+                request("week", LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 21)), "admin", "AUDITOR");
+
+        assertEquals(LocalDate.of(2024, 1, 8), response.getSeries().get(0).getBucketStart());
+        assertSeries(response, new long[] { 1, 1 }, new double[] { 100.0, 50.0 });
+    }
+
+    @Test
+    void getAnalytics_filters_byUploaderStatusAndCategory() {
+        InvoiceAnalyticsRequest byBob = request("MONTH", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        byBob.setUsername("bob");
+        assertSeries(analyticsService.getAnalytics(byBob, "admin", "SUPERUSER"),
+                new long[] { 0, 0, 1 }, new double[] { 0.0, 0.0, 30.0 });
+
+        InvoiceAnalyticsRequest pending = request("MONTH", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+        pending.setStatus("pending");
+        assertSeries(analyticsService.getAnalytics(pending, "admin", "SUPERUSER"),
+                new long[] { 1 }, new double[] { 50.0 });
+
+        InvoiceAnalyticsRequest inOffice = request("MONTH", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        inOffice.setCategoryId(office.getCategoryId());
+        assertSeries(analyticsService.getAnalytics(inOffice, "admin", "SUPERUSER"),
+                new long[] { 1, 0, 0 }, new double[] { 100.0, 0.0, 0.0 });
+    }
+
+    @Test
+    void getAnalytics_userRole_onlySeesOwnInvoices() {
+        InvoiceAnalyticsRequest request = request("MONTH", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        request.setUsername("bob");
+
+        assertSeries(analyticsService.getAnalytics(request, "alice", "USER"),
+                new long[] { 2, 0, 0 }, new double[] { 150.0, 0.0, 0.0 });
+    }
+
+    @Test
+    void getAnalytics_closedBuckets_areCachedUntilTheirDatesChange() {
+        InvoiceAnalyticsRequest request = request("MONTH", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        analyticsService.getAnalytics(request, "admin", "SUPERUSER");
+
+        // written behind the rollup's back: cached buckets don't see it
+        dailyRepository.addDelta(InvoiceStatsRollup.ALL_SCOPE, LocalDate.of(2024, 2, 2), "PENDING", "PDF", 1, 7.0);
+        assertSeries(analyticsService.getAnalytics(request, "admin", "SUPERUSER"),
+                new long[] { 2, 0, 1 }, new double[] { 150.0, 0.0, 30.0 });
+        assertEquals(3.0, meterRegistry.get("invoice.analytics.cache.hits").counter().count());
+
+        // a recorded change to a February invoice evicts February only, once it commits
+        transaction.executeWithoutResult(status -> rollup.record(null, new Contribution("u1",
+                LocalDate.of(2024, 2, 20), InvoiceStatus.PENDING, FileType.PDF, 3.0)));
+        assertSeries(analyticsService.getAnalytics(request, "admin", "SUPERUSER"),
+                new long[] { 2, 2, 1 }, new double[] { 150.0, 10.0, 30.0 });
+        assertEquals(5.0, meterRegistry.get("invoice.analytics.cache.hits").counter().count());
+    }
+
+    @Test
+    void getAnalytics_currentBucket_isAlwaysComputed() {
+        LocalDate today = LocalDate.now();
+        InvoiceAnalyticsRequest request = request("DAY", today, today);
+        analyticsService.getAnalytics(request, "admin", "SUPERUSER");
+
+        dailyRepository.addDelta(InvoiceStatsRollup.ALL_SCOPE, today, "PENDING", "PDF", 1, 7.0);
+
+        assertSeries(analyticsService.getAnalytics(request, "admin", "SUPERUSER"),
+                new long[] { 1 }, new double[] { 7.0 });
+    }
+
+    @Test
+    void getAnalytics_defaultRange_isTwelveMonthsToToday() {
+        InvoiceAnalyticsResponse response = analyticsService.getAnalytics(
+                new InvoiceAnalyticsRequest(), "admin", "SUPERUSER");
+
+        assertEquals(12, response.getSeries().size());
+        assertEquals(LocalDate.now().withDayOfMonth(1), response.getSeries().get(11).getBucketStart());
+    }
+
+    @Test
+    void getAnalytics_invalidRequests_throw() {
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getAnalytics(
+                request("HOUR", null, null), "admin", "SUPERUSER"));
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getAnalytics(
+                request("DAY", LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)), "admin", "SUPERUSER"));
+
+        // a misspelt filter must not fall back to the unfiltered series
+        InvoiceAnalyticsRequest typo = request("MONTH", null, null);
+        typo.setStatus("PENDNG");
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getAnalytics(typo, "admin", "SUPERUSER"));
+        InvoiceAnalyticsRequest unknownType = request("MONTH", null, null);
+        unknownType.setFileType("txt");
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getAnalytics(unknownType, "admin", "SUPERUSER"));
+
+        ReflectionTestUtils.setField(analyticsService, "maxBuckets", 10);
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getAnalytics(
+                request("DAY", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 11)), "admin", "SUPERUSER"));
+    }
+
+    private static InvoiceAnalyticsRequest request(String granularity, LocalDate startDate, LocalDate endDate) {
+        InvoiceAnalyticsRequest request = new InvoiceAnalyticsRequest();
+        request.setGranularity(granularity);
+        request.setStartDate(startDate);
+        request.setEndDate(endDate);
+        return request;
+    }
+
+    private static void assertSeries(InvoiceAnalyticsResponse response, long[] counts, double[] amounts) {
+        List<InvoiceAnalyticsResponse.Bucket> series = response.getSeries();
+        assertEquals(counts.length, series.size());
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(counts[i], series.get(i).getInvoiceCount(), "count of bucket " + i);
+            assertEquals(amounts[i], series.get(i).getTotalAmount(), 0.001, "amount of bucket " + i);
+        }
+    }
+
+    private User persistUser(String userId, String username) {
+        User user = User.builder()
+                .userId(userId)
+                .username(username)
+                .password("secret")
+                .email(username + "@example.com")
+                .isActive(true)
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Invoice persistInvoice(User user, LocalDate invoiceDate, InvoiceStatus status, double amount) {
+        Invoice invoice = Invoice.builder()
+                .uploadedByUser(user)
+                .invoiceDate(invoiceDate)
+                .fileType(FileType.PDF)
+                .fileName("invoice.pdf")
+                .totalAmount(amount)
+                .status(status)
+                .isActive(true)
+                .build();
+        entityManager.persist(invoice);
+        return invoice;
+    }
+}
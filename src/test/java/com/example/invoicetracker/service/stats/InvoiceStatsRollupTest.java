@@ -0,0 +1,259 @@
+package com.example.invoicetracker.service.stats;
+
+import com.example.invoicetracker.model.entity.Invoice;
+import com.example.invoicetracker.model.entity.InvoiceStatsDaily;
+import com.example.invoicetracker.model.entity.InvoiceStatsTotal;
+import com.example.invoicetracker.model.entity.User;
+import com.example.invoicetracker.model.enums.FileType;
+import com.example.invoicetracker.model.enums.InvoiceStatus;
+import com.example.invoicetracker.repository.InvoiceRepository;
+import com.example.invoicetracker.repository.InvoiceStatsDailyRepository;
+import com.example.invoicetracker.repository.InvoiceStatsTotalRepository;
+import com.example.invoicetracker.service.stats.InvoiceStatsRollup.Contribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Applies deltas and rebuilds against a real schema, so the upserts and the
+ * grouped source query are exercised, and checks that both agree.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:statsrollup;MODE=MySQL;NON_KEYWORDS=USER,VALUE")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class InvoiceStatsRollupTest {
+
+    private static final LocalDate MARCH_1 = LocalDate.of(2024, 3, 1);
+    private static final LocalDate MARCH_2 = LocalDate.of(2024, 3, 2);
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceStatsTotalRepository totalRepository;
+
+    @Autowired
+    private InvoiceStatsDailyRepository dailyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AnalyticsBucketCache bucketCache;
+    private InvoiceStatsRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bucketCache = new AnalyticsBucketCache(meterRegistry);
+        bucketCache.registerMetrics();
+        rollup = new InvoiceStatsRollup(totalRepository, dailyRepository, invoiceRepository, bucketCache,
+                meterRegistry, new TransactionTemplate(transactionManager));
+        rollup.registerMetrics();
+    }
+
+    @Test
+    void record_newChangedAndDeletedInvoices_keepsTotals() {
+        Contribution first = new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 100.0);
+        Contribution second = new Contribution("u2", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 50.0);
+        rollup.record(List.of(), List.of(first, second));
+
+        Contribution approved = new Contribution("u1", MARCH_1, InvoiceStatus.APPROVED, FileType.PDF, 120.0);
+        rollup.record(first, approved);
+        rollup.record(second, null);
+
+        assertTotals(1, 120.0, rollup.totals("u1"));
+        assertTotals(0, 0.0, rollup.totals("u2"));
+        assertTotals(1, 120.0, rollup.totals(InvoiceStatsRollup.ALL_SCOPE));
+        assertEquals(1, daily(InvoiceStatsRollup.ALL_SCOPE, InvoiceStatus.APPROVED).getInvoiceCount());
+        assertEquals(0, daily(InvoiceStatsRollup.ALL_SCOPE, InvoiceStatus.PENDING).getInvoiceCount());
+    }
+
+    @Test
+    void record_changeThatMovesNothing_writesNothing() {
+        Contribution contribution = new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 100.0);
+
+        rollup.record(contribution, contribution);
+
+        assertEquals(0, totalRepository.count());
+        assertFalse(rollup.isBuilt());
+    }
+
+    @Test
+    void record_beforeFirstRebuild_doesNotMarkBuilt() {
+        // an upload lands before the startup rebuild runs
+        rollup.record(null, new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 100.0));
+
+        assertTrue(totalRepository.existsById(InvoiceStatsRollup.ALL_SCOPE));
+        assertFalse(rollup.isBuilt());
+
+        rollup.rebuild();
+
+        assertTrue(rollup.isBuilt());
+        assertTotals(0, 0.0, rollup.totals(InvoiceStatsRollup.BUILT_MARKER));
+    }
+
+    @Test
+    void record_lineItemsChanged_evictsDatesEvenWithoutDelta() {
+        AnalyticsBucketCache cache = mock(AnalyticsBucketCache.class);
+        rollup = new InvoiceStatsRollup(totalRepository, dailyRepository, invoiceRepository, cache, meterRegistry,
+                new TransactionTemplate(transactionManager));
+        Contribution contribution = new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 100.0);
+
+        rollup.record(contribution, contribution);
+        verify(cache, never()).evictAfterCommit(any());
+
+        rollup.record(contribution, contribution, true);
+        verify(cache).evictAfterCommit(argThat(dates -> dates.contains(MARCH_1)));
+        assertEquals(0, totalRepository.count());
+    }
+
+    @Test
+    void totals_unknownScope_isZero() {
+        assertTotals(0, 0.0, rollup.totals("nobody"));
+    }
+
+    @Test
+    void rebuild_matchesInvoicesAndCountsCorrections() {
+        User alice = persistUser("u1", "alice");
+        User bob = persistUser("u2", "bob");
+        persistInvoice(alice, MARCH_1, InvoiceStatus.PENDING, 10.0, true);
+        persistInvoice(alice, MARCH_1, InvoiceStatus.PENDING, 15.0, true);
+        persistInvoice(alice, MARCH_2, InvoiceStatus.APPROVED, 20.0, true);
+        persistInvoice(bob, MARCH_2, InvoiceStatus.APPROVED, 40.0, true);
+        persistInvoice(bob, MARCH_2, InvoiceStatus.APPROVED, 99.0, false);
+        // drift: alice's two March 1 invoices were recorded as one, bob's never, and u9 is stale
+        rollup.record(null, new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 25.0));
+        rollup.record(null, new Contribution("u1", MARCH_2, InvoiceStatus.APPROVED, FileType.PDF, 20.0));
+        rollup.record(null, new Contribution("u9", MARCH_2, InvoiceStatus.APPROVED, FileType.PDF, 5.0));
+        entityManager.flush();
+        entityManager.clear();
+
+        int corrected = rollup.rebuild();
+
+        assertTotals(3, 45.0, rollup.totals("u1"));
+        assertTotals(1, 40.0, rollup.totals("u2"));
+        assertTotals(0, 0.0, rollup.totals("u9"));
+        assertTotals(4, 85.0, rollup.totals(InvoiceStatsRollup.ALL_SCOPE));
+        assertEquals(2, daily("u1", MARCH_1, InvoiceStatus.PENDING).getInvoiceCount());
+        assertEquals(25.0, daily("u1", MARCH_1, InvoiceStatus.PENDING).getTotalAmount());
+        assertEquals(2, daily(InvoiceStatsRollup.ALL_SCOPE, InvoiceStatus.APPROVED).getInvoiceCount());
+        assertEquals(4, corrected);
+        assertEquals(4.0, meterRegistry.get("invoice.stats.rollup.corrections").counter().count());
+        assertTrue(rollup.isBuilt());
+
+        // a second run finds nothing to correct
+        assertEquals(0, rollup.rebuild());
+    }
+
+    @Test
+    void rebuild_usesOneTransactionPerScope() {
+        persistInvoice(persistUser("u1", "alice"), MARCH_1, InvoiceStatus.PENDING, 10.0, true);
+        persistInvoice(persistUser("u2", "bob"), MARCH_1, InvoiceStatus.PENDING, 20.0, true);
+        rollup.record(null, new Contribution("u9", MARCH_2, InvoiceStatus.APPROVED, FileType.PDF, 5.0));
+        AtomicInteger transactions = new AtomicInteger();
+        rollup = new InvoiceStatsRollup(totalRepository, dailyRepository, invoiceRepository, bucketCache,
+                meterRegistry, new TransactionTemplate(transactionManager) {
+                    @Override
+                    public <T> T execute(TransactionCallback<T> action) {
+                        transactions.incrementAndGet();
+                        return super.execute(action);
+                    }
+                });
+        rollup.registerMetrics();
+
+        rollup.rebuild();
+
+        // u1, u2, the stale u9 and everyone
+        assertEquals(4, transactions.get());
+        assertTotals(2, 30.0, rollup.totals(InvoiceStatsRollup.ALL_SCOPE));
+        assertTotals(0, 0.0, rollup.totals("u9"));
+    }
+
+    @Test
+    void chartQueries_readTheRollup() {
+        persistUser("u1", "alice");
+        persistUser("u2", "bob");
+        rollup.record(List.of(), List.of(
+                new Contribution("u1", MARCH_1, InvoiceStatus.PENDING, FileType.PDF, 10.0),
+                new Contribution("u1", MARCH_2, InvoiceStatus.APPROVED, FileType.PDF, 20.0),
+                new Contribution("u2", MARCH_2, InvoiceStatus.APPROVED, FileType.PDF, 40.0)));
+        Contribution removed = new Contribution("u2", MARCH_1, InvoiceStatus.REJECTED, FileType.PDF, 5.0);
+        rollup.record(null, removed);
+        rollup.record(removed, null);
+
+        List<Object[]> statuses = dailyRepository.countByStatus(InvoiceStatsRollup.ALL_SCOPE);
+        List<Object[]> uploaders = totalRepository.findTopUploaderRows(PageRequest.of(0, 1));
+
+        assertEquals(2, statuses.size());
+        assertEquals(1, uploaders.size());
+        assertEquals("alice", uploaders.get(0)[0]);
+        assertEquals(2L, ((Number) uploaders.get(0)[1]).longValue());
+    }
+
+    private void assertTotals(long count, double amount, InvoiceStatsTotal totals) {
+        assertEquals(count, totals.getInvoiceCount());
+        assertEquals(amount, totals.getTotalAmount(), 0.001);
+    }
+
+    private InvoiceStatsDaily daily(String scope, InvoiceStatus status) {
+        return dailyRepository.findAll().stream()
+                .filter(row -> row.getScope().equals(scope) && row.getStatus() == status)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private InvoiceStatsDaily daily(String scope, LocalDate statDate, InvoiceStatus status) {
+        return dailyRepository.findAll().stream()
+                .filter(row -> row.getScope().equals(scope) && row.getStatDate().equals(statDate)
+                        && row.getStatus() == status)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private User persistUser(String userId, String username) {
+        User user = User.builder()
+                .userId(userId)
+                .username(username)
+                .password("secret")
+                .email(username + "@example.com")
+                .isActive(true)
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private void persistInvoice(User user, LocalDate invoiceDate, InvoiceStatus status, double amount,
+                                boolean active) {
+        entityManager.persist(Invoice.builder()
+                .uploadedByUser(user)
+                .invoiceDate(invoiceDate)
+                .fileType(FileType.PDF)
+                .fileName("invoice.pdf")
+                .totalAmount(amount)
+                .status(status)
+                .isActive(active)
+                .build());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.invoicetracker.service.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentAddressableStorageBackendTest {
+
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @TempDir
+    Path tempDir;
+
+    private ContentAddressableStorageBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new ContentAddressableStorageBackend(tempDir.toString());
+    }
+
+    private StoredObject write(String content, String extension) throws IOException {
+        return backend.write(new ByteArrayInputStream(content.getBytes()), extension);
+    }
+
+    @Test
+    void write_usesShardedHashKey() throws IOException {
+        StoredObject stored = write("abc", ".PDF");
+
+        assertEquals("ba/78/" + ABC_SHA256 + ".pdf", stored.getKey());
+        assertEquals(ABC_SHA256, stored.getContentHash());
+        assertEquals(3, stored.getSize());
+        assertEquals("abc", Files.readString(tempDir.resolve(stored.getKey())));
+    }
+
+    @Test
+    void write_identicalContentStoredOnce() throws IOException {
+        StoredObject first = write("same bytes", ".pdf");
+        StoredObject second = write("same bytes", ".pdf");
+
+        assertEquals(first.getKey(), second.getKey());
+        try (var files = Files.walk(tempDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void delete_prunesEmptyShardDirectories() throws IOException {
+        StoredObject stored = write("abc", ".pdf");
+
+        backend.delete(stored.getKey());
+
+        assertFalse(Files.exists(tempDir.resolve("ba")));
+        assertTrue(Files.exists(tempDir));
+    }
+
+    @Test
+    void delete_keepsShardsStillInUse() throws IOException {
+        StoredObject pdf = write("abc", ".pdf");
+        StoredObject png = write("abc", ".png");
+
+        backend.delete(pdf.getKey());
+
+        assertTrue(Files.exists(tempDir.resolve(png.getKey())));
+    }
+
+    @Test
+    void resolve_acceptsLegacyFlatKeys() throws IOException {
+        Files.writeString(tempDir.resolve("0b1e3c4a-legacy.pdf"), "old");
+
+        assertEquals("old", Files.readString(backend.resolve("0b1e3c4a-legacy.pdf")));
+    }
+
+    @Test
+    void resolve_rejectsPathTraversal() {
+        assertThrows(IllegalArgumentException.class, () -> backend.resolve("../outside.pdf"));
+        assertThrows(IllegalArgumentException.class, () -> backend.resolve("ba/../../outside.pdf"));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.invoicetracker.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackoffTest {
+
+    @Test
+    void exponentialWithJitter_growsAndIsCapped() {
+        long first = Backoff.exponentialWithJitter(1, 2000, 300000);
+        long third = Backoff.exponentialWithJitter(3, 2000, 300000);
+
+        assertTrue(first >= 2000 && first < 2400);
+        assertTrue(third >= 8000 && third < 9600);
+        assertEquals(300000, Backoff.exponentialWithJitter(30, 2000, 300000));
+    }
+
+    @Test
+    void exponential_hasNoJitter() {
+        assertEquals(1000, Backoff.exponential(1, 1000, 60000));
+        assertEquals(4000, Backoff.exponential(3, 1000, 60000));
+        assertEquals(60000, Backoff.exponential(64, 1000, 60000));
+    }
+
+    @Test
+    void withJitter_staysWithinTwentyPercentAndCap() {
+        for (int i = 0; i < 100; i++) {
+            long delay = Backoff.withJitter(1000, 60000);
+            assertTrue(delay >= 1000 && delay < 1200);
+        }
+        assertEquals(1100, Backoff.withJitter(1100, 1100));
+        assertEquals(0, Backoff.withJitter(0, 1000));
+    }
+}